@@ -0,0 +1,80 @@
+package com.rip.vaultify.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caffeine caches behind Hibernate's second-level cache. Each region is created here with its
+ * size and TTL from application properties and handed to Hibernate as a ready CacheManager,
+ * so no region is created implicitly with unbounded defaults.
+ * <p>
+ * Writes through Hibernate (including bulk JPQL, which drops the affected regions) keep the
+ * caches current; the TTL only bounds staleness after writes that bypass Hibernate. Counters
+ * bumped on almost every request (UserCounters, FolderStats) therefore live in their own
+ * uncached tables, and native statements name the tables they write as query spaces, so
+ * neither empties the users or folders regions.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    // Region names used in the @Cache annotations of the entities
+    public static final List<String> ENTITY_REGIONS = List.of("users", "users.roles", "folders", "permissions");
+
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${entity-cache.users.max-size:10000}")
+    private long usersMaxSize;
+
+    @Value("${entity-cache.folders.max-size:100000}")
+    private long foldersMaxSize;
+
+    @Value("${entity-cache.permissions.max-size:100000}")
+    private long permissionsMaxSize;
+
+    @Value("${entity-cache.queries.max-size:10000}")
+    private long queriesMaxSize;
+
+    @Value("${entity-cache.expire-minutes:10}")
+    private long expireMinutes;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        cacheManager.createCache("users", region(usersMaxSize, expireMinutes));
+        cacheManager.createCache("users.roles", region(usersMaxSize, expireMinutes));
+        cacheManager.createCache("folders", region(foldersMaxSize, expireMinutes));
+        cacheManager.createCache("permissions", region(permissionsMaxSize, expireMinutes));
+        cacheManager.createCache(QUERY_RESULTS_REGION, region(queriesMaxSize, expireMinutes));
+        // Hibernate requires update timestamps to outlive every cached query result: no expiry,
+        // and one entry per table so no size bound is needed
+        CaffeineConfiguration<Object, Object> timestamps = new CaffeineConfiguration<>();
+        timestamps.setStatisticsEnabled(true);
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, timestamps);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long expireMinutes) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MINUTES.toNanos(expireMinutes)));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,54 @@
+package com.rip.vaultify.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Second-level cache counters per region (vaultify.entity-cache.*) and the query cache,
+ * published through actuator. Reads Hibernate statistics, so hibernate.generate_statistics
+ * must be on.
+ */
+@Component
+public class HibernateCacheMetrics {
+
+    public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String region : HibernateCacheConfig.ENTITY_REGIONS) {
+            register(meterRegistry, region, statistics, s -> regionHits(s, region), s -> regionMisses(s, region));
+        }
+        register(meterRegistry, "queries", statistics,
+                Statistics::getQueryCacheHitCount, Statistics::getQueryCacheMissCount);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String region, Statistics statistics,
+                                 ToDoubleFunction<Statistics> hits, ToDoubleFunction<Statistics> misses) {
+        FunctionCounter.builder("vaultify.entity-cache.requests", statistics, hits)
+                .tag("region", region).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("vaultify.entity-cache.requests", statistics, misses)
+                .tag("region", region).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("vaultify.entity-cache.hit-ratio", statistics, s -> {
+                    double hit = hits.applyAsDouble(s);
+                    double total = hit + misses.applyAsDouble(s);
+                    return total == 0 ? 0 : hit / total;
+                })
+                .tag("region", region).register(meterRegistry);
+    }
+
+    private static double regionHits(Statistics statistics, String region) {
+        CacheRegionStatistics stats = statistics.getDomainDataRegionStatistics(region);
+        return stats != null ? stats.getHitCount() : 0;
+    }
+
+    private static double regionMisses(Statistics statistics, String region) {
+        CacheRegionStatistics stats = statistics.getDomainDataRegionStatistics(region);
+        return stats != null ? stats.getMissCount() : 0;
+    }
+}
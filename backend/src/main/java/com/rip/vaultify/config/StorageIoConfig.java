@@ -0,0 +1,41 @@
+package com.rip.vaultify.config;
+
+import com.rip.vaultify.storage.BlobIoEngine;
+import com.rip.vaultify.storage.IoUringEngine;
+import com.rip.vaultify.storage.NioIoEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Picks the engine blob reads go through (storage.io.engine). io_uring is optional: when the
+ * platform or JVM cannot provide it, storage keeps working on NIO and logs why.
+ */
+@Configuration
+public class StorageIoConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageIoConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public BlobIoEngine blobIoEngine(@Value("${storage.io.engine:nio}") String engine,
+                                     @Value("${storage.io.uring.entries:256}") int entries,
+                                     @Value("${storage.io.uring.chunk-kb:128}") int chunkKb) {
+        if ("io_uring".equalsIgnoreCase(engine)) {
+            try {
+                BlobIoEngine uring = new IoUringEngine(entries, chunkKb * 1024);
+                logger.info("Blob reads use io_uring ({} entries, {} KB chunks)", entries, chunkKb);
+                return uring;
+            } catch (IOException | LinkageError | RuntimeException e) {
+                // LinkageError: the JVM was started without --enable-preview
+                logger.warn("io_uring is not available ({}); blob reads use NIO", e.toString());
+            }
+        } else if (!"nio".equalsIgnoreCase(engine)) {
+            logger.warn("Unknown storage.io.engine '{}'; blob reads use NIO", engine);
+        }
+        return new NioIoEngine();
+    }
+}
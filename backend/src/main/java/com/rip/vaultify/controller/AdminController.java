@@ -0,0 +1,215 @@
+package com.rip.vaultify.controller;
+
+import com.rip.vaultify.service.BlobReclaimService;
+import com.rip.vaultify.service.ErasureRepairService;
+import com.rip.vaultify.service.FolderAggregateRepairService;
+import com.rip.vaultify.service.IntegrityScrubService;
+import com.rip.vaultify.service.VolumeRebalanceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "Admin", description = "Storage maintenance operations - restricted to administrators")
+@SecurityRequirement(name = "bearerAuth")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    private final IntegrityScrubService integrityScrubService;
+    private final VolumeRebalanceService volumeRebalanceService;
+    private final ErasureRepairService erasureRepairService;
+    private final BlobReclaimService blobReclaimService;
+    private final FolderAggregateRepairService folderAggregateRepairService;
+
+    public AdminController(IntegrityScrubService integrityScrubService,
+                           VolumeRebalanceService volumeRebalanceService,
+                           ErasureRepairService erasureRepairService,
+                           BlobReclaimService blobReclaimService,
+                           FolderAggregateRepairService folderAggregateRepairService) {
+        this.integrityScrubService = integrityScrubService;
+        this.volumeRebalanceService = volumeRebalanceService;
+        this.erasureRepairService = erasureRepairService;
+        this.blobReclaimService = blobReclaimService;
+        this.folderAggregateRepairService = folderAggregateRepairService;
+    }
+
+    @Operation(
+            summary = "Get integrity scrub status",
+            description = "Returns progress of the running scrub and the result of the last completed pass, including corrupt and missing file IDs."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Scrub status retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required")
+    })
+    @GetMapping("/scrub")
+    public ResponseEntity<Map<String, Object>> getScrubStatus() {
+        return ResponseEntity.ok(integrityScrubService.getStatus());
+    }
+
+    @Operation(
+            summary = "Start an integrity scrub",
+            description = "Starts a background pass that re-hashes every stored blob. Returns 409 if a pass is already running."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Scrub started"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required"),
+            @ApiResponse(responseCode = "409", description = "A scrub is already running")
+    })
+    @PostMapping("/scrub")
+    public ResponseEntity<Map<String, Object>> startScrub() {
+        if (!integrityScrubService.triggerScrub()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Integrity scrub already running"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("message", "Integrity scrub started"));
+    }
+
+    @Operation(
+            summary = "Get storage volumes and rebalance status",
+            description = "Lists the configured storage volumes with free space and reports the last volume rebalance pass."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Rebalance status retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required")
+    })
+    @GetMapping("/rebalance")
+    public ResponseEntity<Map<String, Object>> getRebalanceStatus() {
+        return ResponseEntity.ok(volumeRebalanceService.getStatus());
+    }
+
+    @Operation(
+            summary = "Start a volume rebalance",
+            description = "Starts a background pass that moves blobs to the volumes the placement ring assigns them. Returns 409 if a pass is already running."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Rebalance started"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required"),
+            @ApiResponse(responseCode = "409", description = "A rebalance is already running")
+    })
+    @PostMapping("/rebalance")
+    public ResponseEntity<Map<String, Object>> startRebalance() {
+        if (!volumeRebalanceService.triggerRebalance()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Volume rebalance already running"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("message", "Volume rebalance started"));
+    }
+
+    @Operation(
+            summary = "Get erasure repair status",
+            description = "Reports the last pass that rebuilt missing shards of erasure-coded blobs, including files that could not be repaired."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Repair status retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required")
+    })
+    @GetMapping("/erasure-repair")
+    public ResponseEntity<Map<String, Object>> getErasureRepairStatus() {
+        return ResponseEntity.ok(erasureRepairService.getStatus());
+    }
+
+    @Operation(
+            summary = "Get blob reclamation status",
+            description = "Reports the background deletion of blobs whose files were deleted: blobs still queued, reclaimed and failed so far."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Reclamation status retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required")
+    })
+    @GetMapping("/blob-reclaim")
+    public ResponseEntity<Map<String, Object>> getBlobReclaimStatus() {
+        return ResponseEntity.ok(blobReclaimService.getStatus());
+    }
+
+    @Operation(
+            summary = "Start an erasure repair",
+            description = "Starts a background pass that rebuilds lost shards of erasure-coded blobs. Returns 409 if a pass is already running."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Repair started"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required"),
+            @ApiResponse(responseCode = "409", description = "A repair is already running")
+    })
+    @PostMapping("/erasure-repair")
+    public ResponseEntity<Map<String, Object>> startErasureRepair() {
+        if (!erasureRepairService.triggerRepair()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Erasure repair already running"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("message", "Erasure repair started"));
+    }
+
+    @Operation(
+            summary = "Get folder aggregate repair status",
+            description = "Reports the last pass that recomputed folder sizes and file counts from the files table."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Repair status retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required")
+    })
+    @GetMapping("/folder-aggregates")
+    public ResponseEntity<Map<String, Object>> getFolderAggregateStatus() {
+        return ResponseEntity.ok(folderAggregateRepairService.getStatus());
+    }
+
+    @Operation(
+            summary = "Recompute folder aggregates",
+            description = "Starts a background pass that recomputes every folder's size and file counts. Returns 409 if a pass is already running."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Repair started"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - admin role required"),
+            @ApiResponse(responseCode = "409", description = "A repair is already running")
+    })
+    @PostMapping("/folder-aggregates")
+    public ResponseEntity<Map<String, Object>> startFolderAggregateRepair() {
+        if (!folderAggregateRepairService.triggerRepair()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Folder aggregate repair already running"));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(Map.of("message", "Folder aggregate repair started"));
+    }
+}
@@ -1,10 +1,13 @@
 package com.rip.vaultify.controller;
 
 import com.rip.vaultify.config.LoggingConfig;
+import com.rip.vaultify.dto.CursorPage;
 import com.rip.vaultify.dto.FileResponse;
 import com.rip.vaultify.model.File;
 import com.rip.vaultify.model.User;
+import com.rip.vaultify.service.FileAclResolver;
 import com.rip.vaultify.service.FileService;
+import com.rip.vaultify.service.FileSort;
 import com.rip.vaultify.service.IdempotencyService;
 import com.rip.vaultify.service.PermissionService;
 import com.rip.vaultify.service.UserService;
@@ -23,6 +26,9 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -51,13 +57,16 @@ public class FileController {
     private final FileService fileService;
     private final UserService userService;
     private final PermissionService permissionService;
+    private final FileAclResolver aclResolver;
     private final IdempotencyService idempotencyService;
 
     public FileController(FileService fileService, UserService userService, 
-                         PermissionService permissionService, IdempotencyService idempotencyService) {
+                         PermissionService permissionService, FileAclResolver aclResolver,
+                         IdempotencyService idempotencyService) {
         this.fileService = fileService;
         this.userService = userService;
         this.permissionService = permissionService;
+        this.aclResolver = aclResolver;
         this.idempotencyService = idempotencyService;
     }
     
@@ -192,6 +201,38 @@ public class FileController {
                 .body(files);
     }
     
+    @Operation(
+            summary = "Get one page of the files in a folder",
+            description = "Keyset-paginated folder listing for large folders. Sort by name, size or uploadedAt (ties broken by id), ascending or descending. Pass nextCursor from the previous page as cursor; it is null on the last page."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid sort or cursor"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @GetMapping("/folder/{folderId}/page")
+    public ResponseEntity<CursorPage<FileResponse>> getFilesPage(
+            @Parameter(description = "ID of the folder", required = true)
+            @PathVariable Long folderId,
+            @Parameter(description = "Sort key: name, size or uploadedAt")
+            @RequestParam(defaultValue = "name") String sort,
+            @Parameter(description = "asc or desc")
+            @RequestParam(defaultValue = "asc") String direction,
+            @Parameter(description = "nextCursor from the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (1-200)")
+            @RequestParam(defaultValue = "50") int limit) {
+        User currentUser = userService.getCurrentUser();
+        int pageSize = Math.max(1, Math.min(limit, 200));
+        return ResponseEntity.ok(fileService.getFilesPage(folderId, currentUser.getId(), FileSort.fromParam(sort),
+                Sort.Direction.fromString(direction), cursor, pageSize));
+    }
+
     private String generateETagForList(List<FileResponse> files) {
         try {
             StringBuilder data = new StringBuilder();
@@ -237,7 +278,7 @@ public class FileController {
             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         User currentUser = userService.getCurrentUser();
         File file = fileService.getFileByIdAndUser(id, currentUser.getId());
-        FileResponse fileResponse = new FileResponse(file, currentUser, permissionService);
+        FileResponse fileResponse = new FileResponse(file, aclResolver.resolve(file, currentUser.getId()));
         
         String etag = generateETag(file);
         
@@ -287,15 +328,15 @@ public class FileController {
             @ApiResponse(responseCode = "404", description = "File not found")
     })
     @GetMapping("/{id}/preview")
-    public ResponseEntity<ByteArrayResource> previewFile(
+    public ResponseEntity<Resource> previewFile(
             @Parameter(description = "File ID to preview", required = true)
             @PathVariable Long id) throws IOException {
         User currentUser = userService.getCurrentUser();
         // getFileByIdAndUser already checks READ permission
         File file = fileService.getFileByIdAndUser(id, currentUser.getId());
-        byte[] data = Objects.requireNonNull(fileService.downloadFile(id, currentUser.getId()), "File data cannot be null");
 
-        ByteArrayResource resource = new ByteArrayResource(data);
+        // Stream the blob to the client instead of buffering it in memory
+        InputStreamResource resource = new InputStreamResource(fileService.openFileStream(id, currentUser.getId()));
 
         // Preview: no attachment header, allows READ users
         String contentType = file.getContentType();
@@ -305,6 +346,7 @@ public class FileController {
         MediaType mediaType = MediaType.parseMediaType(contentType);
         return ResponseEntity.ok()
                 .contentType(mediaType)
+                .contentLength(file.getSize())
                 .body(resource);
     }
     
@@ -324,7 +366,7 @@ public class FileController {
             @ApiResponse(responseCode = "404", description = "File not found")
     })
     @GetMapping("/{id}/download")
-    public ResponseEntity<ByteArrayResource> downloadFile(
+    public ResponseEntity<Resource> downloadFile(
             @Parameter(description = "File ID to download", required = true)
             @PathVariable Long id,
             @Parameter(description = "Optional idempotency key for retry-safe downloads")
@@ -344,9 +386,7 @@ public class FileController {
             LoggingConfig.LoggingContext.addContext("fileSize", String.valueOf(file.getSize()));
             
             // Check if user has WRITE permission (required for download)
-            User user = new User();
-            user.setId(currentUser.getId());
-            if (!permissionService.isOwner(file, user) && !permissionService.hasWritePermission(file, user)) {
+            if (!permissionService.hasWritePermission(file, currentUser.getId())) {
                 logger.warn(SECURITY_MARKER, "File download denied - insufficient permissions - fileId: {}, fileName: {}, user: {}", 
                            id, file.getOriginalName(), currentUser.getId());
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
@@ -371,12 +411,16 @@ public class FileController {
                         .build();
             }
             
-            byte[] data = Objects.requireNonNull(fileService.downloadFile(id, currentUser.getId()), "File data cannot be null");
-            ByteArrayResource resource = new ByteArrayResource(data);
-            
-            // Store in idempotency cache if key provided
+            Resource resource;
             if (idempotencyKey != null && !idempotencyKey.isEmpty()) {
-                idempotencyService.storeResponse(idempotencyKey, resource);
+                // Buffered so the response can be replayed for the same idempotency key
+                byte[] data = Objects.requireNonNull(fileService.downloadFile(id, currentUser.getId()), "File data cannot be null");
+                ByteArrayResource buffered = new ByteArrayResource(data);
+                idempotencyService.storeResponse(idempotencyKey, buffered);
+                resource = buffered;
+            } else {
+                // Stream the blob to the client instead of buffering it in memory
+                resource = new InputStreamResource(fileService.openFileStream(id, currentUser.getId()));
             }
             
             String contentType = file.getContentType();
@@ -392,6 +436,7 @@ public class FileController {
             return ResponseEntity.ok()
                     .eTag(etag)
                     .contentType(mediaType)
+                    .contentLength(file.getSize())
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + downloadName + "\"")
                     .body(resource);
         } catch (Exception e) {
@@ -440,6 +485,6 @@ public class FileController {
         }
         
         File copiedFile = fileService.copySharedFileToFolder(fileId, folderId, currentUser.getId());
-        return ResponseEntity.ok(new FileResponse(copiedFile, currentUser, permissionService));
+        return ResponseEntity.ok(new FileResponse(copiedFile, aclResolver.resolve(copiedFile, currentUser.getId())));
     }
 }
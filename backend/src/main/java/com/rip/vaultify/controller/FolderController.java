@@ -1,9 +1,15 @@
 package com.rip.vaultify.controller;
 
+import com.rip.vaultify.dto.CursorPage;
+import com.rip.vaultify.dto.FolderListItem;
 import com.rip.vaultify.dto.FolderRequest;
 import com.rip.vaultify.dto.FolderResponse;
+import com.rip.vaultify.dto.FolderSizeResponse;
+import com.rip.vaultify.dto.FolderTreeNode;
 import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
 import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FolderRepository;
 import com.rip.vaultify.service.FolderService;
 import com.rip.vaultify.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,12 +20,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.MessageDigest;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/folders")
@@ -58,7 +66,7 @@ public class FolderController {
             @RequestBody FolderRequest request) {
         User currentUser = userService.getCurrentUser();
         Folder folder = folderService.createFolder(request.getName(), request.getParentId(), currentUser);
-        return ResponseEntity.ok(new FolderResponse(folder));
+        return ResponseEntity.ok(folderService.getFolderContents(folder.getId(), currentUser.getId()));
     }
 
     @Operation(
@@ -95,6 +103,70 @@ public class FolderController {
                 .body(folders);
     }
 
+    @Operation(
+            summary = "Get one page of subfolders",
+            description = "Keyset-paginated listing of the current user's subfolders of parentId, or of their root folders when parentId is omitted, sorted by name (ties broken by id). Pass nextCursor from the previous page as cursor; it is null on the last page."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Parent folder not found")
+    })
+    @GetMapping("/children")
+    public ResponseEntity<CursorPage<FolderListItem>> getSubfoldersPage(
+            @Parameter(description = "Parent folder ID; omit for root folders")
+            @RequestParam(required = false) Long parentId,
+            @Parameter(description = "Name order: asc or desc")
+            @RequestParam(defaultValue = "asc") String direction,
+            @Parameter(description = "nextCursor from the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (1-200)")
+            @RequestParam(defaultValue = "50") int limit) {
+        User currentUser = userService.getCurrentUser();
+        int pageSize = Math.max(1, Math.min(limit, 200));
+        CursorPage<Folder> page = folderService.getSubfoldersPage(parentId, currentUser.getId(),
+                Sort.Direction.fromString(direction), cursor, pageSize);
+        Map<Long, FolderStats> stats = folderService.getStats(page.items().stream().map(Folder::getId).toList());
+        return ResponseEntity.ok(page.map(folder -> new FolderListItem(folder, stats.get(folder.getId()))));
+    }
+
+    @Operation(
+            summary = "Get folder tree",
+            description = "Retrieves every folder of the current user as a nested tree in one response. The ETag changes whenever any of the user's folders is created, renamed, moved or deleted."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder tree retrieved successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = FolderTreeNode.class))
+            ),
+            @ApiResponse(responseCode = "304", description = "Not modified - content unchanged since last request"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/tree")
+    public ResponseEntity<List<FolderTreeNode>> getFolderTree(
+            @Parameter(description = "ETag value for conditional request")
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        User currentUser = userService.getCurrentUser();
+        // The version is checked before the tree is loaded, so a cache hit costs one small query
+        String etag = "\"folders-" + currentUser.getId() + "-" + folderService.getFolderVersion(currentUser.getId()) + "\"";
+
+        if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(folderService.getFolderTree(currentUser.getId()));
+    }
+
     @Operation(
             summary = "Get folder by ID",
             description = "Retrieves a specific folder by ID. User must own the folder. Supports ETag-based caching."
@@ -116,10 +188,9 @@ public class FolderController {
             @Parameter(description = "ETag value for conditional request")
             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         User currentUser = userService.getCurrentUser();
-        Folder folder = folderService.getFolderByIdAndUser(id, currentUser.getId());
-        FolderResponse response = new FolderResponse(folder);
+        FolderResponse response = folderService.getFolderContents(id, currentUser.getId());
         
-        String etag = generateETag(folder);
+        String etag = generateETag(response);
         
         // Check if client has cached version
         if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
@@ -133,7 +204,7 @@ public class FolderController {
                 .body(response);
     }
     
-    private String generateETag(Folder folder) {
+    private String generateETag(FolderResponse folder) {
         try {
             String data = folder.getId() + "_" + folder.getName() + "_" + 
                          (folder.getParent() != null ? folder.getParent().getId() : "null");
@@ -200,7 +271,114 @@ public class FolderController {
             @RequestBody FolderRequest request) {
         User currentUser = userService.getCurrentUser();
         Folder updatedFolder = folderService.renameFolder(id, request.getName(), currentUser.getId());
-        return ResponseEntity.ok(new FolderResponse(updatedFolder));
+        return ResponseEntity.ok(folderService.getFolderContents(updatedFolder.getId(), currentUser.getId()));
+    }
+
+    @Operation(
+            summary = "Move a folder",
+            description = "Moves a folder, with everything below it, under another folder or to the root when parentId is null. Only the folder owner can move it, and only into their own folders."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder moved successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = FolderResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - only owner can move"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @PutMapping("/{id}/move")
+    public ResponseEntity<FolderResponse> moveFolder(
+            @Parameter(description = "Folder ID to move", required = true)
+            @PathVariable Long id,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Move request with the new parentId (null for root)",
+                    required = true
+            )
+            @RequestBody FolderRequest request) {
+        User currentUser = userService.getCurrentUser();
+        Folder moved = folderService.moveFolder(id, request.getParentId(), currentUser.getId());
+        return ResponseEntity.ok(folderService.getFolderContents(moved.getId(), currentUser.getId()));
+    }
+
+    @Operation(
+            summary = "Copy a folder",
+            description = "Copies a folder with all its subfolders and files under another folder, or to the root when parentId is null. The copied files share their stored data with the originals, so no data is duplicated; the copy still counts against the storage quota."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder copied successfully",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = FolderResponse.class))
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - only owner can copy"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @PostMapping("/{id}/copy")
+    public ResponseEntity<FolderResponse> copyFolder(
+            @Parameter(description = "Folder ID to copy", required = true)
+            @PathVariable Long id,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Copy request with the target parentId (null for root)",
+                    required = true
+            )
+            @RequestBody FolderRequest request) {
+        User currentUser = userService.getCurrentUser();
+        Folder copy = folderService.copyFolder(id, request.getParentId(), currentUser.getId());
+        return ResponseEntity.ok(folderService.getFolderContents(copy.getId(), currentUser.getId()));
+    }
+
+    @Operation(
+            summary = "Get folder subtree",
+            description = "Returns a folder and all of its descendants as a flat list (id, name, parentId, path), parents before children."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Subtree retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @GetMapping("/{id}/subtree")
+    public ResponseEntity<List<FolderRepository.FolderNode>> getSubtree(
+            @Parameter(description = "Folder ID", required = true)
+            @PathVariable Long id) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(folderService.getSubtree(id, currentUser.getId()));
+    }
+
+    @Operation(
+            summary = "Get folder size",
+            description = "Returns the number and total size in bytes of the files directly in a folder and in the folder and all its subfolders."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Size retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @GetMapping("/{id}/size")
+    public ResponseEntity<FolderSizeResponse> getSubtreeSize(
+            @Parameter(description = "Folder ID", required = true)
+            @PathVariable Long id) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(folderService.getSubtreeSize(id, currentUser.getId()));
+    }
+
+    @Operation(
+            summary = "Get folder breadcrumbs",
+            description = "Returns the folders from the root down to this folder."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Breadcrumbs retrieved successfully"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @GetMapping("/{id}/breadcrumbs")
+    public ResponseEntity<List<FolderRepository.FolderNode>> getBreadcrumbs(
+            @Parameter(description = "Folder ID", required = true)
+            @PathVariable Long id) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(folderService.getBreadcrumbs(id, currentUser.getId()));
     }
 
     @Operation(
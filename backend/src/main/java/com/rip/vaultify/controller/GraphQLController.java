@@ -1,20 +1,29 @@
 package com.rip.vaultify.controller;
 
+import com.rip.vaultify.dto.BulkShareResult;
+import com.rip.vaultify.dto.CursorPage;
 import com.rip.vaultify.model.File;
 import com.rip.vaultify.model.Folder;
 import com.rip.vaultify.model.Permission;
 import com.rip.vaultify.model.User;
+import com.rip.vaultify.service.BulkShareService;
 import com.rip.vaultify.service.FileService;
+import com.rip.vaultify.service.FileSort;
 import com.rip.vaultify.service.FolderService;
 import com.rip.vaultify.service.PermissionService;
 import com.rip.vaultify.service.UserService;
+import org.springframework.data.domain.Sort;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.stereotype.Controller;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Controller
 public class GraphQLController {
@@ -23,13 +32,16 @@ public class GraphQLController {
     private final FileService fileService;
     private final FolderService folderService;
     private final PermissionService permissionService;
+    private final BulkShareService bulkShareService;
 
     public GraphQLController(UserService userService, FileService fileService, 
-                           FolderService folderService, PermissionService permissionService) {
+                           FolderService folderService, PermissionService permissionService,
+                           BulkShareService bulkShareService) {
         this.userService = userService;
         this.fileService = fileService;
         this.folderService = folderService;
         this.permissionService = permissionService;
+        this.bulkShareService = bulkShareService;
     }
 
     // User Queries
@@ -56,7 +68,18 @@ public class GraphQLController {
 
     @QueryMapping
     public List<File> filesByFolder(@Argument String folderId) {
-        return fileService.getFilesByFolderId(Long.parseLong(folderId));
+        User currentUser = userService.getCurrentUser();
+        return fileService.getReadableFilesByFolderId(Long.parseLong(folderId), currentUser.getId());
+    }
+
+    @QueryMapping
+    public CursorPage<File> filesByFolderPage(@Argument String folderId, @Argument FileSort sort,
+                                              @Argument Sort.Direction direction, @Argument Integer first,
+                                              @Argument String after) {
+        User currentUser = userService.getCurrentUser();
+        int pageSize = first != null ? Math.max(1, Math.min(first, 200)) : 50;
+        return fileService.getReadableFilesPage(Long.parseLong(folderId), currentUser.getId(),
+                sort != null ? sort : FileSort.NAME, direction != null ? direction : Sort.Direction.ASC, after, pageSize);
     }
 
     // Folder Queries
@@ -129,6 +152,16 @@ public class GraphQLController {
         );
     }
 
+    @MutationMapping
+    public List<BulkShareResult> shareFiles(@Argument ShareFilesInput input) {
+        return bulkShareService.share(
+            input.fileIds().stream().map(Long::parseLong).toList(),
+            input.usernames(),
+            Permission.Access.valueOf(input.access()),
+            userService.getCurrentUser()
+        );
+    }
+
     @MutationMapping
     public Permission updatePermission(@Argument String id, @Argument UpdatePermissionInput input) {
         return permissionService.updatePermission(
@@ -149,38 +182,55 @@ public class GraphQLController {
 
     @MutationMapping
     public Permission markAsViewed(@Argument String permissionId) {
-        return permissionService.markAsViewed(Long.parseLong(permissionId));
+        return permissionService.markAsViewed(Long.parseLong(permissionId), userService.getCurrentUser());
     }
 
-    // Field Resolvers for complex type relationships
-    @SchemaMapping
-    public User user(File file) {
-        return file.getUser();
+    @MutationMapping
+    public Integer markAllAsViewed(@Argument List<String> permissionIds) {
+        List<Long> ids = permissionIds != null ? permissionIds.stream().map(Long::parseLong).toList() : null;
+        return permissionService.markSharesAsViewed(userService.getCurrentUser(), ids);
     }
 
-    @SchemaMapping
-    public Folder folder(File file) {
-        return file.getFolder();
+    // Field Resolvers for complex type relationships. Entities reach these detached (there is
+    // no open session in view), so associations are loaded with one query per field and batch
+    // instead of through lazy proxies
+    @BatchMapping(typeName = "File", field = "user")
+    public Map<File, User> fileUser(List<File> files) {
+        Map<Long, User> users = userService.getUsersByIds(files.stream().map(file -> file.getUser().getId()).toList());
+        return bySource(files, file -> users.get(file.getUser().getId()));
     }
 
-    @SchemaMapping
-    public User user(Folder folder) {
-        return folder.getUser();
+    @BatchMapping(typeName = "File", field = "folder")
+    public Map<File, Folder> fileFolder(List<File> files) {
+        Map<Long, Folder> folders = folderService.getFoldersByIds(files.stream().map(file -> file.getFolder().getId()).toList());
+        return bySource(files, file -> folders.get(file.getFolder().getId()));
     }
 
-    @SchemaMapping
-    public Folder parent(Folder folder) {
-        return folder.getParent();
+    @BatchMapping(typeName = "Folder", field = "user")
+    public Map<Folder, User> folderUser(List<Folder> folders) {
+        Map<Long, User> users = userService.getUsersByIds(folders.stream().map(folder -> folder.getUser().getId()).toList());
+        return bySource(folders, folder -> users.get(folder.getUser().getId()));
     }
 
-    @SchemaMapping
-    public List<Folder> children(Folder folder) {
-        return folder.getChildren();
+    @BatchMapping(typeName = "Folder", field = "parent")
+    public Map<Folder, Folder> parent(List<Folder> folders) {
+        Map<Long, Folder> parents = folderService.getFoldersByIds(folders.stream()
+                .filter(folder -> folder.getParent() != null)
+                .map(folder -> folder.getParent().getId())
+                .toList());
+        return bySource(folders, folder -> folder.getParent() != null ? parents.get(folder.getParent().getId()) : null);
     }
 
-    @SchemaMapping
-    public List<File> files(Folder folder) {
-        return folder.getFiles();
+    @BatchMapping(typeName = "Folder", field = "children")
+    public Map<Folder, List<Folder>> children(List<Folder> folders) {
+        Map<Long, List<Folder>> children = folderService.getChildrenByParentIds(folders.stream().map(Folder::getId).toList());
+        return bySource(folders, folder -> children.getOrDefault(folder.getId(), List.of()));
+    }
+
+    @BatchMapping(typeName = "Folder", field = "files")
+    public Map<Folder, List<File>> files(List<Folder> folders) {
+        Map<Long, List<File>> files = fileService.getFilesByFolderIds(folders.stream().map(Folder::getId).toList());
+        return bySource(folders, folder -> files.getOrDefault(folder.getId(), List.of()));
     }
 
     @SchemaMapping
@@ -193,8 +243,18 @@ public class GraphQLController {
         return permission.getUser();
     }
 
+    // Batch results keyed by source entity; values may be null (a root folder has no parent)
+    private static <S, T> Map<S, T> bySource(List<S> sources, Function<S, T> value) {
+        Map<S, T> result = new HashMap<>();
+        for (S source : sources) {
+            result.put(source, value.apply(source));
+        }
+        return result;
+    }
+
     // Input record classes for GraphQL mutations
     public record CreateFolderInput(String name, String parentId) {}
     public record ShareFileInput(String fileId, String username, String access) {}
+    public record ShareFilesInput(List<String> fileIds, List<String> usernames, String access) {}
     public record UpdatePermissionInput(String access) {}
 }
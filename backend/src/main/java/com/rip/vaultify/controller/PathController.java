@@ -0,0 +1,112 @@
+package com.rip.vaultify.controller;
+
+import com.rip.vaultify.dto.FileResponse;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.service.FileAclResolver;
+import com.rip.vaultify.service.FileService;
+import com.rip.vaultify.service.FolderPathResolver;
+import com.rip.vaultify.service.FolderService;
+import com.rip.vaultify.service.UserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/paths")
+@Tag(name = "Paths", description = "Address folders and files by their name path")
+@SecurityRequirement(name = "bearerAuth")
+public class PathController {
+
+    private static final String PREFIX = "/api/paths";
+
+    private final FolderPathResolver pathResolver;
+    private final FolderService folderService;
+    private final FileService fileService;
+    private final FileAclResolver aclResolver;
+    private final UserService userService;
+
+    public PathController(FolderPathResolver pathResolver, FolderService folderService, FileService fileService,
+                          FileAclResolver aclResolver, UserService userService) {
+        this.pathResolver = pathResolver;
+        this.folderService = folderService;
+        this.fileService = fileService;
+        this.aclResolver = aclResolver;
+        this.userService = userService;
+    }
+
+    @Operation(
+            summary = "Resolve a path",
+            description = "Resolves a path such as /api/paths/projects/2024/spec.pdf within the current user's folders. Returns the folder, or the file when the last segment names a file. With content=true a file's contents are streamed instead."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder or file resolved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "400", description = "Empty path"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "404", description = "Nothing at this path")
+    })
+    @GetMapping("/**")
+    public ResponseEntity<?> resolvePath(
+            HttpServletRequest request,
+            @Parameter(description = "Stream the file's contents instead of returning its metadata")
+            @RequestParam(value = "content", defaultValue = "false") boolean content) throws IOException {
+        User currentUser = userService.getCurrentUser();
+        List<String> segments = segments(request);
+        if (segments.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Path is empty"));
+        }
+
+        Optional<Long> folderId = pathResolver.resolve(currentUser.getId(), segments);
+        if (folderId.isPresent() && !content) {
+            return ResponseEntity.ok(folderService.getFolderContents(folderId.get(), currentUser.getId()));
+        }
+
+        Optional<File> file = segments.size() < 2 ? Optional.empty()
+                : pathResolver.resolve(currentUser.getId(), segments.subList(0, segments.size() - 1))
+                        .flatMap(parentId -> fileService.findByFolderIdAndName(parentId, segments.get(segments.size() - 1)));
+        if (file.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Nothing found at path: " + String.join("/", segments)));
+        }
+        if (!content) {
+            return ResponseEntity.ok(new FileResponse(file.get(), aclResolver.resolve(file.get(), currentUser.getId())));
+        }
+
+        File found = file.get();
+        String contentType = found.getContentType() != null ? found.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .contentLength(found.getSize())
+                .body(new InputStreamResource(fileService.openFileStream(found.getId(), currentUser.getId())));
+    }
+
+    private static List<String> segments(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length());
+        return Arrays.stream(path.split("/"))
+                .filter(segment -> !segment.isEmpty())
+                .map(segment -> UriUtils.decode(segment, StandardCharsets.UTF_8))
+                .toList();
+    }
+}
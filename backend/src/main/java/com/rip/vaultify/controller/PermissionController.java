@@ -1,10 +1,18 @@
 package com.rip.vaultify.controller;
 
+import com.rip.vaultify.dto.BulkShareRequest;
+import com.rip.vaultify.dto.BulkShareResult;
 import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderPermission;
 import com.rip.vaultify.model.Permission;
 import com.rip.vaultify.model.User;
 import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.FolderRepository;
+import com.rip.vaultify.repository.PermissionRepository;
 import com.rip.vaultify.repository.UserRepository;
+import com.rip.vaultify.service.BulkShareService;
+import com.rip.vaultify.service.FileAclResolver;
 import com.rip.vaultify.service.PermissionService;
 import com.rip.vaultify.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -38,12 +46,21 @@ public class PermissionController {
     @Autowired
     private FileRepository fileRepository;
 
+    @Autowired
+    private FolderRepository folderRepository;
+
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private FileAclResolver aclResolver;
+
+    @Autowired
+    private BulkShareService bulkShareService;
+
     @Operation(
             summary = "Share a file with another user",
             description = "Shares a file with another user by username. Only the file owner can share files. Access levels: READ (view only) or WRITE (view and download)."
@@ -80,7 +97,7 @@ public class PermissionController {
             String username = body.get("username");
             String accessStr = body.get("access");
 
-            File file = fileRepository.findById(fileId)
+            File file = fileRepository.findWithFolderAndOwnerById(fileId)
                     .orElseThrow(() -> new RuntimeException("File not found with id: " + fileId));
             
             User targetUser = userRepository.findByUsername(username)
@@ -109,6 +126,53 @@ public class PermissionController {
         }
     }
     
+    @Operation(
+            summary = "Share many files with many users",
+            description = "Shares every listed file with every listed user in one transaction. Only files owned by the current user are shared; each file/user pair gets its own result (CREATED, UPDATED, UNCHANGED or FAILED with an error)."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Bulk share processed",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"results\": [{\"fileId\": 1, \"username\": \"john_doe\", \"status\": \"CREATED\", \"error\": null}]}")
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid access type or too many pairs"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/share/bulk")
+    public ResponseEntity<?> shareBulk(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "File ids, usernames, and access level",
+                    required = true,
+                    content = @Content(
+                            examples = @ExampleObject(value = "{\"fileIds\": [1, 2], \"usernames\": [\"john_doe\", \"jane_doe\"], \"access\": \"READ\"}")
+                    )
+            )
+            @RequestBody BulkShareRequest body) {
+        if (body.getFileIds() == null || body.getUsernames() == null || body.getAccess() == null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "fileIds, usernames and access are required"));
+        }
+        Permission.Access access;
+        try {
+            access = Permission.Access.valueOf(body.getAccess().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid access type. Must be READ or WRITE"));
+        }
+        try {
+            User currentUser = userService.getCurrentUser();
+            List<BulkShareResult> results = bulkShareService.share(body.getFileIds(), body.getUsernames(), access, currentUser);
+            return ResponseEntity.ok(Map.of("results", results));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(
             summary = "Get file permissions",
             description = "Retrieves all permissions for a file. Only the file owner can view permissions."
@@ -130,11 +194,11 @@ public class PermissionController {
         try {
             User currentUser = userService.getCurrentUser();
             
-            File file = fileRepository.findById(fileId)
+            File file = fileRepository.findWithFolderAndOwnerById(fileId)
                     .orElseThrow(() -> new RuntimeException("File not found with id: " + fileId));
             
             // Only owner can view permissions
-            if (!permissionService.isOwner(file, currentUser)) {
+            if (!aclResolver.resolve(file, currentUser.getId()).owner()) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(Map.of("error", "Only the file owner can view permissions"));
             }
@@ -162,37 +226,75 @@ public class PermissionController {
     public ResponseEntity<?> getSharedFiles() {
         try {
             User currentUser = userService.getCurrentUser();
-            List<Permission> sharedPermissions = permissionService.getSharedFilesForUser(currentUser);
-            
-            List<Map<String, Object>> sharedFiles = sharedPermissions.stream()
-                    .map(p -> {
-                        File file = p.getFile();
-                        User owner = permissionService.getFileOwner(file).orElse(null);
-                        Map<String, Object> fileInfo = new HashMap<>();
-                        fileInfo.put("permissionId", p.getId());
-                        fileInfo.put("fileId", file.getId());
-                        fileInfo.put("fileName", file.getOriginalName());
-                        fileInfo.put("fileSize", file.getSize());
-                        fileInfo.put("contentType", file.getContentType());
-                        fileInfo.put("uploadedAt", file.getUploadedAt().toString());
-                        fileInfo.put("access", p.getAccess().name());
-                        fileInfo.put("folderId", file.getFolder().getId());
-                        fileInfo.put("folderName", file.getFolder().getName());
-                        if (owner != null) {
-                            fileInfo.put("ownerUsername", owner.getUsername());
-                            fileInfo.put("ownerId", owner.getId());
-                        }
-                        return fileInfo;
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-            
-            return ResponseEntity.ok(sharedFiles);
+            return ResponseEntity.ok(toSharedFileInfo(permissionService.getSharedFilesForUser(currentUser)));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
         }
     }
     
+    @Operation(
+            summary = "Get shared files feed",
+            description = "Returns one page of files shared with the current user, newest share first, with folder and owner included. Pass the returned nextCursor to fetch the next page; it is null on the last page."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Feed page retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/shared/feed")
+    public ResponseEntity<?> getSharedFeed(
+            @Parameter(description = "Only unviewed (false) or accepted (true) shares; both if omitted")
+            @RequestParam(required = false) Boolean viewed,
+            @Parameter(description = "nextCursor from the previous page")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Page size (1-200)")
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            User currentUser = userService.getCurrentUser();
+            int pageSize = Math.max(1, Math.min(limit, 200));
+            List<PermissionRepository.SharedFileRow> items =
+                    permissionService.getSharedFeed(currentUser, viewed, cursor, pageSize);
+
+            Map<String, Object> page = new HashMap<>();
+            page.put("items", items);
+            page.put("nextCursor", items.size() == pageSize ? items.get(items.size() - 1).getPermissionId() : null);
+            return ResponseEntity.ok(page);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Get unread share count",
+            description = "Returns how many shares the current user has not viewed yet, for the notification badge."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Unread count retrieved successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"count\": 3}")
+                    )
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/shared/unread-count")
+    public ResponseEntity<?> getUnreadShareCount() {
+        try {
+            User currentUser = userService.getCurrentUser();
+            return ResponseEntity.ok(Map.of("count", permissionService.getUnreadShareCount(currentUser)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(
             summary = "Get file owner information",
             description = "Retrieves the owner information for a file. User must have READ permission or be the owner."
@@ -214,22 +316,19 @@ public class PermissionController {
         try {
             User currentUser = userService.getCurrentUser();
             
-            File file = fileRepository.findById(fileId)
+            File file = fileRepository.findWithFolderAndOwnerById(fileId)
                     .orElseThrow(() -> new RuntimeException("File not found with id: " + fileId));
             
             // Check if user has permission to view this file
-            if (!permissionService.isOwner(file, currentUser) && 
-                !permissionService.hasReadPermission(file, currentUser)) {
+            FileAclResolver.FileAcl acl = aclResolver.resolve(file, currentUser.getId());
+            if (!acl.canRead()) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                         .body(Map.of("error", "You do not have permission to view this file"));
             }
             
-            User owner = permissionService.getFileOwner(file)
-                    .orElseThrow(() -> new RuntimeException("File owner not found"));
-            
             Map<String, Object> ownerInfo = new HashMap<>();
-            ownerInfo.put("id", owner.getId());
-            ownerInfo.put("username", owner.getUsername());
+            ownerInfo.put("id", acl.ownerId());
+            ownerInfo.put("username", acl.ownerUsername());
             
             return ResponseEntity.ok(ownerInfo);
         } catch (RuntimeException e) {
@@ -265,6 +364,41 @@ public class PermissionController {
         }
     }
     
+    @Operation(
+            summary = "Mark shares as viewed",
+            description = "Marks the listed shares of the current user as viewed in one update, or all of them when permissionIds is omitted. Ids that do not belong to the user are ignored."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Shares marked as viewed",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"updated\": 3}")
+                    )
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PostMapping("/viewed")
+    public ResponseEntity<?> markSharesAsViewed(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Permission ids to mark; omit permissionIds to mark all",
+                    content = @Content(
+                            examples = @ExampleObject(value = "{\"permissionIds\": [1, 2, 3]}")
+                    )
+            )
+            @RequestBody(required = false) Map<String, List<Long>> body) {
+        try {
+            User currentUser = userService.getCurrentUser();
+            List<Long> permissionIds = body != null ? body.get("permissionIds") : null;
+            int updated = permissionService.markSharesAsViewed(currentUser, permissionIds);
+            return ResponseEntity.ok(Map.of("updated", updated));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(
             summary = "Get accepted shared files",
             description = "Retrieves all files that have been shared with the current user and have been accepted."
@@ -281,31 +415,7 @@ public class PermissionController {
     public ResponseEntity<?> getAcceptedSharedFiles() {
         try {
             User currentUser = userService.getCurrentUser();
-            List<Permission> sharedPermissions = permissionService.getAcceptedSharedFilesForUser(currentUser);
-            
-            List<Map<String, Object>> sharedFiles = sharedPermissions.stream()
-                    .map(p -> {
-                        File file = p.getFile();
-                        User owner = permissionService.getFileOwner(file).orElse(null);
-                        Map<String, Object> fileInfo = new HashMap<>();
-                        fileInfo.put("permissionId", p.getId());
-                        fileInfo.put("fileId", file.getId());
-                        fileInfo.put("fileName", file.getOriginalName());
-                        fileInfo.put("fileSize", file.getSize());
-                        fileInfo.put("contentType", file.getContentType());
-                        fileInfo.put("uploadedAt", file.getUploadedAt().toString());
-                        fileInfo.put("access", p.getAccess().name());
-                        fileInfo.put("folderId", file.getFolder().getId());
-                        fileInfo.put("folderName", file.getFolder().getName());
-                        if (owner != null) {
-                            fileInfo.put("ownerUsername", owner.getUsername());
-                            fileInfo.put("ownerId", owner.getId());
-                        }
-                        return fileInfo;
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-            
-            return ResponseEntity.ok(sharedFiles);
+            return ResponseEntity.ok(toSharedFileInfo(permissionService.getAcceptedSharedFilesForUser(currentUser)));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -390,4 +500,190 @@ public class PermissionController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
+
+    @Operation(
+            summary = "Share a folder with another user",
+            description = "Grants a user access to a folder and everything below it, including files and subfolders added later. Only the folder owner can share it. Access levels: READ or WRITE."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder shared successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"id\": 1, \"access\": \"READ\", \"message\": \"Folder shared successfully\"}")
+                    )
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid access type (must be READ or WRITE)"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - only owner can share"),
+            @ApiResponse(responseCode = "404", description = "Folder or user not found")
+    })
+    @PostMapping("/folder")
+    public ResponseEntity<?> shareFolder(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Share request with folderId, username, and access level",
+                    required = true,
+                    content = @Content(
+                            examples = @ExampleObject(value = "{\"folderId\": \"1\", \"username\": \"john_doe\", \"access\": \"READ\"}")
+                    )
+            )
+            @RequestBody Map<String, String> body) {
+        try {
+            User currentUser = userService.getCurrentUser();
+
+            Long folderId = Long.valueOf(body.get("folderId"));
+            String username = body.get("username");
+            String accessStr = body.get("access");
+
+            Folder folder = folderRepository.findById(folderId)
+                    .orElseThrow(() -> new RuntimeException("Folder not found with id: " + folderId));
+
+            User targetUser = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + username));
+
+            Permission.Access access;
+            try {
+                access = Permission.Access.valueOf(accessStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Invalid access type. Must be READ or WRITE"));
+            }
+
+            FolderPermission grant = permissionService.shareFolder(folder, targetUser, access, currentUser);
+
+            return ResponseEntity.ok(Map.of(
+                    "id", grant.getId(),
+                    "access", grant.getAccess().name(),
+                    "message", "Folder shared successfully"
+            ));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Get folder permissions",
+            description = "Retrieves the grants on a folder. Only the folder owner can view them."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder permissions retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - only owner can view folder permissions"),
+            @ApiResponse(responseCode = "404", description = "Folder not found")
+    })
+    @GetMapping("/folder/{folderId}")
+    public ResponseEntity<?> getFolderPermissions(
+            @Parameter(description = "Folder ID", required = true)
+            @PathVariable Long folderId) {
+        try {
+            User currentUser = userService.getCurrentUser();
+
+            Folder folder = folderRepository.findById(folderId)
+                    .orElseThrow(() -> new RuntimeException("Folder not found with id: " + folderId));
+
+            if (!folder.getUser().getId().equals(currentUser.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", "Only the folder owner can view folder permissions"));
+            }
+
+            return ResponseEntity.ok(permissionService.getFolderPermissionsWithUserInfo(folder));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Revoke folder permission",
+            description = "Revokes a folder grant, removing the user's inherited access to everything below the folder. Only the folder owner can revoke it."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Folder permission revoked successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - only owner can revoke folder permissions"),
+            @ApiResponse(responseCode = "404", description = "Folder permission not found")
+    })
+    @DeleteMapping("/folder/grant/{grantId}")
+    public ResponseEntity<?> revokeFolderPermission(
+            @Parameter(description = "Folder permission ID to revoke", required = true)
+            @PathVariable Long grantId) {
+        try {
+            User currentUser = userService.getCurrentUser();
+            permissionService.revokeFolderPermission(grantId, currentUser);
+            return ResponseEntity.ok(Map.of("message", "Folder permission revoked successfully"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+            summary = "Get shared folders",
+            description = "Retrieves the folders that have been shared directly with the current user."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Shared folders retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/folders/shared")
+    public ResponseEntity<?> getSharedFolders() {
+        try {
+            User currentUser = userService.getCurrentUser();
+            List<Map<String, Object>> folders = permissionService.getSharedFoldersForUser(currentUser).stream()
+                    .map(grant -> {
+                        Map<String, Object> folderInfo = new HashMap<>();
+                        folderInfo.put("grantId", grant.getGrantId());
+                        folderInfo.put("folderId", grant.getFolderId());
+                        folderInfo.put("folderName", grant.getFolderName());
+                        folderInfo.put("access", grant.getAccess().name());
+                        folderInfo.put("grantedAt", grant.getGrantedAt().toString());
+                        folderInfo.put("ownerUsername", grant.getOwnerUsername());
+                        folderInfo.put("ownerId", grant.getOwnerId());
+                        return folderInfo;
+                    })
+                    .toList();
+            return ResponseEntity.ok(folders);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Shared-file entries from feed rows; the file creator is its owner, so the rows already
+     * carry everything the response needs
+     */
+    private List<Map<String, Object>> toSharedFileInfo(List<PermissionRepository.SharedFileRow> rows) {
+        return rows.stream()
+                .map(row -> {
+                    Map<String, Object> fileInfo = new HashMap<>();
+                    fileInfo.put("permissionId", row.getPermissionId());
+                    fileInfo.put("fileId", row.getFileId());
+                    fileInfo.put("fileName", row.getFileName());
+                    fileInfo.put("fileSize", row.getFileSize());
+                    fileInfo.put("contentType", row.getContentType());
+                    fileInfo.put("uploadedAt", row.getUploadedAt().toString());
+                    fileInfo.put("access", row.getAccess().name());
+                    fileInfo.put("folderId", row.getFolderId());
+                    fileInfo.put("folderName", row.getFolderName());
+                    fileInfo.put("ownerUsername", row.getOwnerUsername());
+                    fileInfo.put("ownerId", row.getOwnerId());
+                    return fileInfo;
+                })
+                .toList();
+    }
 }
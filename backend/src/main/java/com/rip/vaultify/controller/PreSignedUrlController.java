@@ -16,6 +16,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -122,7 +124,7 @@ public class PreSignedUrlController {
             @ApiResponse(responseCode = "404", description = "File not found")
     })
     @GetMapping("/read")
-    public ResponseEntity<ByteArrayResource> executePreSignedDownload(
+    public ResponseEntity<Resource> executePreSignedDownload(
             @Parameter(description = "Pre-signed token for download", required = true)
             @RequestParam String token,
             @Parameter(description = "Optional idempotency key for retry-safe downloads")
@@ -180,12 +182,16 @@ public class PreSignedUrlController {
         // Get file and download
         Long userId = ((Number) tokenData.get("userId")).longValue();
         var file = fileService.getFileByIdAndUser(fileId, userId);
-        byte[] data = Objects.requireNonNull(fileService.downloadFile(fileId, userId), "File data cannot be null");
-        ByteArrayResource resource = new ByteArrayResource(data);
-
-        // Store in idempotency cache if key provided
+        Resource resource;
         if (idempotencyKey != null && !idempotencyKey.isEmpty()) {
-            idempotencyService.storeResponse(idempotencyKey, resource);
+            // Buffered so the response can be replayed for the same idempotency key
+            byte[] data = Objects.requireNonNull(fileService.downloadFile(fileId, userId), "File data cannot be null");
+            ByteArrayResource buffered = new ByteArrayResource(data);
+            idempotencyService.storeResponse(idempotencyKey, buffered);
+            resource = buffered;
+        } else {
+            // Stream the blob to the client instead of buffering it in memory
+            resource = new InputStreamResource(fileService.openFileStream(fileId, userId));
         }
 
         // Invalidate token after use (one-time use)
@@ -1,6 +1,8 @@
 package com.rip.vaultify.controller;
 
 import com.rip.vaultify.repository.UserRepository;
+import com.rip.vaultify.service.StorageQuotaService;
+import com.rip.vaultify.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -26,6 +28,12 @@ public class UserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+
     @Operation(
             summary = "Get all users",
             description = "Retrieves a list of all registered users in the system."
@@ -51,5 +59,22 @@ public class UserController {
             .collect(Collectors.toList());
         return ResponseEntity.ok(users);
     }
+
+    @Operation(
+            summary = "Get my storage usage",
+            description = "Returns the bytes stored by the current user, their quota and what remains. Quota fields are null when storage is unlimited."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Storage usage retrieved successfully",
+                    content = @Content(mediaType = "application/json")
+            ),
+            @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @GetMapping("/me/storage")
+    public ResponseEntity<Map<String, Object>> getStorageUsage() {
+        return ResponseEntity.ok(quotaService.getUsage(userService.getCurrentUser().getId()));
+    }
 }
 
@@ -0,0 +1,33 @@
+package com.rip.vaultify.dto;
+
+import java.util.List;
+
+public class BulkShareRequest {
+    private List<Long> fileIds;
+    private List<String> usernames;
+    private String access;
+
+    public List<Long> getFileIds() {
+        return fileIds;
+    }
+
+    public void setFileIds(List<Long> fileIds) {
+        this.fileIds = fileIds;
+    }
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+
+    public String getAccess() {
+        return access;
+    }
+
+    public void setAccess(String access) {
+        this.access = access;
+    }
+}
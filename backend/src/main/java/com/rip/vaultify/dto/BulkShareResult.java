@@ -0,0 +1,14 @@
+package com.rip.vaultify.dto;
+
+/**
+ * Outcome of sharing one file with one user in a bulk share
+ *
+ * @param status CREATED, UPDATED, UNCHANGED or FAILED
+ * @param error why the pair failed, null otherwise
+ */
+public record BulkShareResult(Long fileId, String username, String status, String error) {
+
+    public static BulkShareResult failed(Long fileId, String username, String error) {
+        return new BulkShareResult(fileId, username, "FAILED", error);
+    }
+}
@@ -0,0 +1,15 @@
+package com.rip.vaultify.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. nextCursor is null on the last page; otherwise it
+ * is passed back as cursor to fetch the next one.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+}
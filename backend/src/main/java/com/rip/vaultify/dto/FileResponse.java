@@ -1,8 +1,8 @@
 package com.rip.vaultify.dto;
 
 import com.rip.vaultify.model.File;
-import com.rip.vaultify.model.User;
-import com.rip.vaultify.service.PermissionService;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.service.FileAclResolver;
 import java.time.LocalDateTime;
 
 import java.io.Serializable;
@@ -33,7 +33,7 @@ public class FileResponse implements Serializable {
         this.ownerId = file.getUser().getId();
     }
 
-    public FileResponse(File file, User currentUser, PermissionService permissionService) {
+    public FileResponse(File file, FileAclResolver.FileAcl acl) {
         this.id = file.getId();
         this.originalName = file.getOriginalName();
         this.contentType = file.getContentType();
@@ -41,17 +41,23 @@ public class FileResponse implements Serializable {
         this.uploadedAt = file.getUploadedAt();
         this.folderId = file.getFolder().getId();
         this.folderName = file.getFolder().getName();
-        
-        // Check if current user is owner or has shared access
-        boolean isOwner = permissionService.isOwner(file, currentUser);
-        boolean hasRead = permissionService.hasReadPermission(file, currentUser);
         // File is shared if user has read permission but is not the owner
-        this.isShared = Boolean.valueOf(!isOwner && hasRead);
-        
-        // Set owner info
-        User owner = permissionService.getFileOwner(file).orElse(file.getUser());
-        this.ownerUsername = owner.getUsername();
-        this.ownerId = owner.getId();
+        this.isShared = acl.isShared();
+        this.ownerUsername = acl.ownerUsername();
+        this.ownerId = acl.ownerId();
+    }
+
+    public FileResponse(FileRepository.FileRow row, FileAclResolver.FileAcl acl) {
+        this.id = row.getId();
+        this.originalName = row.getOriginalName();
+        this.contentType = row.getContentType();
+        this.size = row.getSize();
+        this.uploadedAt = row.getUploadedAt();
+        this.folderId = row.getFolderId();
+        this.folderName = row.getFolderName();
+        this.isShared = acl.isShared();
+        this.ownerUsername = acl.ownerUsername();
+        this.ownerId = acl.ownerId();
     }
 
     public Long getId() { return id; }
@@ -0,0 +1,29 @@
+package com.rip.vaultify.dto;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
+import java.io.Serializable;
+
+public class FolderListItem implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Long id;
+    private String name;
+    private Long parentId;
+    private long totalFileCount;
+    private long totalBytes;
+
+    // stats may be null for a folder without aggregates yet (counted as empty)
+    public FolderListItem(Folder folder, FolderStats stats) {
+        this.id = folder.getId();
+        this.name = folder.getName();
+        this.parentId = folder.getParent() != null ? folder.getParent().getId() : null;
+        this.totalFileCount = stats != null ? stats.getTotalFileCount() : 0;
+        this.totalBytes = stats != null ? stats.getTotalBytes() : 0;
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public Long getParentId() { return parentId; }
+    public long getTotalFileCount() { return totalFileCount; }
+    public long getTotalBytes() { return totalBytes; }
+}
@@ -1,8 +1,12 @@
 package com.rip.vaultify.dto;
 
 import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.repository.FolderRepository;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class FolderResponse implements Serializable {
@@ -29,6 +33,28 @@ public class FolderResponse implements Serializable {
         }
     }
 
+    private FolderResponse(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * Root folder responses from one projection row per (root, child), rows grouped by root
+     */
+    public static List<FolderResponse> fromRootRows(List<FolderRepository.FolderChildRow> rows) {
+        Map<Long, FolderResponse> roots = new LinkedHashMap<>();
+        for (FolderRepository.FolderChildRow row : rows) {
+            FolderResponse root = roots.computeIfAbsent(row.getId(), id -> new FolderResponse(id, row.getName()));
+            if (row.getChildId() != null) {
+                if (root.children == null) {
+                    root.children = new ArrayList<>();
+                }
+                root.children.add(new ChildInfo(row.getChildId(), row.getChildName()));
+            }
+        }
+        return new ArrayList<>(roots.values());
+    }
+
     public static class ParentInfo implements Serializable {
         private static final long serialVersionUID = 1L;
         private Long id;
@@ -0,0 +1,27 @@
+package com.rip.vaultify.dto;
+
+import com.rip.vaultify.model.FolderStats;
+import java.io.Serializable;
+
+public class FolderSizeResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Long id;
+    private long directFileCount;
+    private long directBytes;
+    private long totalFileCount;
+    private long totalBytes;
+
+    public FolderSizeResponse(Long id, FolderStats stats) {
+        this.id = id;
+        this.directFileCount = stats.getDirectFileCount();
+        this.directBytes = stats.getDirectBytes();
+        this.totalFileCount = stats.getTotalFileCount();
+        this.totalBytes = stats.getTotalBytes();
+    }
+
+    public Long getId() { return id; }
+    public long getDirectFileCount() { return directFileCount; }
+    public long getDirectBytes() { return directBytes; }
+    public long getTotalFileCount() { return totalFileCount; }
+    public long getTotalBytes() { return totalBytes; }
+}
@@ -0,0 +1,24 @@
+package com.rip.vaultify.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FolderTreeNode implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Long id;
+    private String name;
+    private Long parentId;
+    private List<FolderTreeNode> children = new ArrayList<>();
+
+    public FolderTreeNode(Long id, String name, Long parentId) {
+        this.id = id;
+        this.name = name;
+        this.parentId = parentId;
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public Long getParentId() { return parentId; }
+    public List<FolderTreeNode> getChildren() { return children; }
+}
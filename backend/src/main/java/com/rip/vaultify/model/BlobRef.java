@@ -0,0 +1,32 @@
+package com.rip.vaultify.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Reference count of a blob shared by several file rows (folder and file copies point at the
+ * source's blob instead of duplicating it). Blobs referenced by a single file have no row;
+ * the row is dropped again once only one reference remains.
+ */
+@Entity
+@Table(name = "blob_refs")
+public class BlobRef {
+
+    @Id
+    private String storedName;
+
+    @Column(nullable = false)
+    private long refCount;
+
+    public BlobRef() {}
+
+    public BlobRef(String storedName, long refCount) {
+        this.storedName = storedName;
+        this.refCount = refCount;
+    }
+
+    public String getStoredName() { return storedName; }
+    public void setStoredName(String storedName) { this.storedName = storedName; }
+
+    public long getRefCount() { return refCount; }
+    public void setRefCount(long refCount) { this.refCount = refCount; }
+}
@@ -5,11 +5,23 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_stored_name", columnList = "stored_name"),
+        // Keyset pagination of folder listings, one per sort key (see FileSort)
+        @Index(name = "idx_files_folder_name", columnList = "folder_id, original_name, id"),
+        @Index(name = "idx_files_folder_size", columnList = "folder_id, size, id"),
+        @Index(name = "idx_files_folder_uploaded", columnList = "folder_id, uploaded_at, id")
+})
+// Fetch plan for FileResponse and ACL resolution, which read the folder name and the creator
+@NamedEntityGraph(name = "File.withFolderAndOwner",
+        attributeNodes = {@NamedAttributeNode("folder"), @NamedAttributeNode("user")})
 public class File {
 
+    // Pooled sequence: Hibernate reserves 50 ids per round trip, which (unlike IDENTITY) lets
+    // inserts be JDBC-batched. Native inserts take NEXT VALUE FOR directly; see IdSequenceAligner
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "files_seq")
+    @SequenceGenerator(name = "files_seq", sequenceName = "files_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -27,9 +39,23 @@ public class File {
     @Column(nullable = false)
     private String filePath;
 
+    // Storage volume holding the primary copy (null for files stored before volumes were recorded)
+    private String volume;
+
+    // Comma-separated volumes holding a replica, primary first; for erasure-coded blobs, the volume of each shard in shard order
+    private String replicaVolumes;
+
+    // Reed-Solomon layout for erasure-coded blobs (both null for replicated blobs)
+    private Integer dataShards;
+    private Integer parityShards;
+
     @Column(nullable = false)
     private LocalDateTime uploadedAt;
 
+    // SHA-256 of the blob contents, hex encoded (null for files stored before checksums existed)
+    @Column(length = 64)
+    private String checksum;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "folder_id", nullable = false)
     @JsonBackReference
@@ -73,9 +99,39 @@ public class File {
     public String getFilePath() { return filePath; }
     public void setFilePath(String filePath) { this.filePath = filePath; }
 
+    public String getVolume() { return volume; }
+    public void setVolume(String volume) { this.volume = volume; }
+
+    public String getReplicaVolumes() { return replicaVolumes; }
+    public void setReplicaVolumes(String replicaVolumes) { this.replicaVolumes = replicaVolumes; }
+
+    public Integer getDataShards() { return dataShards; }
+    public void setDataShards(Integer dataShards) { this.dataShards = dataShards; }
+
+    public Integer getParityShards() { return parityShards; }
+    public void setParityShards(Integer parityShards) { this.parityShards = parityShards; }
+
+    public boolean isErasureCoded() { return dataShards != null; }
+
+    /**
+     * Point this file at the blob of source (copy-on-write sharing, see BlobRefService)
+     */
+    public void shareBlobOf(File source) {
+        this.storedName = source.storedName;
+        this.filePath = source.filePath;
+        this.volume = source.volume;
+        this.replicaVolumes = source.replicaVolumes;
+        this.dataShards = source.dataShards;
+        this.parityShards = source.parityShards;
+        this.checksum = source.checksum;
+    }
+
     public LocalDateTime getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
 
+    public String getChecksum() { return checksum; }
+    public void setChecksum(String checksum) { this.checksum = checksum; }
+
     public Folder getFolder() { return folder; }
     public void setFolder(Folder folder) { this.folder = folder; }
 
@@ -3,14 +3,30 @@ package com.rip.vaultify.model;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import java.util.Arrays;
 import java.util.List;
 
 @Entity
-@Table(name = "folders")
+@Table(name = "folders", indexes = {
+        @Index(name = "idx_folders_path", columnList = "path"),
+        // Keyset pagination of a folder's subfolders (or the user's roots) by name
+        @Index(name = "idx_folders_user_parent_name", columnList = "user_id, parent_id, name, id")
+})
+// Ownership checks load folders by id over and over
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "folders")
+// Fetch plans: FolderResponse needs the parent and children; ownership checks that go on to
+// use the owner (copies, uploads) need the user
+@NamedEntityGraph(name = "Folder.withParentAndChildren",
+        attributeNodes = {@NamedAttributeNode("parent"), @NamedAttributeNode("children")})
+@NamedEntityGraph(name = "Folder.withOwner", attributeNodes = @NamedAttributeNode("user"))
 public class Folder {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folders_seq")
+    @SequenceGenerator(name = "folders_seq", sequenceName = "folders_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -25,6 +41,14 @@ public class Folder {
     @JsonManagedReference
     private List<Folder> children;
 
+    // Materialized path of ancestor ids including this folder, e.g. /1/5/9/
+    @Column(length = 2048)
+    private String path;
+
+    // Folder this one was deep-copied from; maps source folders to their copies while a
+    // subtree copy inserts one level at a time
+    private Long copiedFromId;
+
     // Getters & Setters
     public Long getId() { return id; }
 
@@ -42,6 +66,33 @@ public class Folder {
 
     public void setChildren(List<Folder> children) { this.children = children; }
 
+    public String getPath() { return path; }
+
+    public void setPath(String path) { this.path = path; }
+
+    public Long getCopiedFromId() { return copiedFromId; }
+
+    public void setCopiedFromId(Long copiedFromId) { this.copiedFromId = copiedFromId; }
+
+    /**
+     * Ids from the root down to this folder, parsed from the materialized path
+     */
+    public List<Long> ancestorIds() {
+        return idsInPath(path);
+    }
+
+    /**
+     * Ids in a materialized path such as /1/5/9/, root first; empty for a missing path
+     */
+    public static List<Long> idsInPath(String path) {
+        if (path == null || path.length() < 2) {
+            return List.of();
+        }
+        return Arrays.stream(path.substring(1, path.length() - 1).split("/"))
+                .map(Long::valueOf)
+                .toList();
+    }
+
     @OneToMany(mappedBy = "folder", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<File> files;
@@ -0,0 +1,39 @@
+package com.rip.vaultify.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Access granted on a folder; it applies to every file in the folder and its subfolders
+ */
+@Entity
+@Table(name = "folder_permissions",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"folder_id", "user_id"}),
+        indexes = @Index(name = "idx_folder_permissions_user", columnList = "user_id"))
+@Getter
+@Setter
+public class FolderPermission {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folder_permissions_seq")
+    @SequenceGenerator(name = "folder_permissions_seq", sequenceName = "folder_permissions_seq", allocationSize = 50)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "folder_id")
+    private Folder folder;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    // READ or WRITE; ownership always stays with the folder's owner
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Permission.Access access;
+
+    @Column(nullable = false)
+    private LocalDateTime grantedAt = LocalDateTime.now();
+}
@@ -0,0 +1,62 @@
+package com.rip.vaultify.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Size and file-count aggregates of a folder. Every upload and delete updates them up the
+ * ancestor chain with bulk JPQL, so they are kept out of the cached folders table (a bulk
+ * update drops the whole cache region of its entity). One row per folder, created with it.
+ */
+@Entity
+@Table(name = "folder_stats")
+public class FolderStats {
+
+    @Id
+    private Long folderId;
+
+    // Files directly in the folder and their total size
+    @Column(nullable = false)
+    private long directFileCount;
+
+    @Column(nullable = false)
+    private long directBytes;
+
+    // Files in the folder and all subfolders. Kept current with atomic increments up the
+    // ancestor chain; FolderAggregateRepairService recomputes them from the files table
+    @Column(nullable = false)
+    private long totalFileCount;
+
+    @Column(nullable = false)
+    private long totalBytes;
+
+    public FolderStats() {}
+
+    public FolderStats(Long folderId) {
+        this.folderId = folderId;
+    }
+
+    public Long getFolderId() { return folderId; }
+
+    public long getDirectFileCount() { return directFileCount; }
+
+    public long getDirectBytes() { return directBytes; }
+
+    public long getTotalFileCount() { return totalFileCount; }
+
+    public long getTotalBytes() { return totalBytes; }
+
+    /**
+     * Overwrite all four aggregates (repair pass)
+     *
+     * @return whether any of them changed
+     */
+    public boolean update(long directFileCount, long directBytes, long totalFileCount, long totalBytes) {
+        boolean changed = this.directFileCount != directFileCount || this.directBytes != directBytes
+                || this.totalFileCount != totalFileCount || this.totalBytes != totalBytes;
+        this.directFileCount = directFileCount;
+        this.directBytes = directBytes;
+        this.totalFileCount = totalFileCount;
+        this.totalBytes = totalBytes;
+        return changed;
+    }
+}
@@ -1,17 +1,23 @@
 package com.rip.vaultify.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Getter;
 import lombok.Setter;
 
 
 @Entity
-@Table(name = "permissions")
+@Table(name = "permissions",
+        indexes = @Index(name = "idx_permissions_user_viewed", columnList = "user_id, viewed, id"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "permissions")
 @Getter
 @Setter
 public class Permission {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "permissions_seq")
+    @SequenceGenerator(name = "permissions_seq", sequenceName = "permissions_seq", allocationSize = 50)
     private long id;
 
     @ManyToOne(optional = false)
@@ -0,0 +1,43 @@
+package com.rip.vaultify.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Counters of a user that change on almost every request (uploads, shares, folder edits).
+ * They live in their own uncached table: bulk JPQL updates make Hibernate drop the cache
+ * region of the entity they target, and on the users table that would empty the users region
+ * with every upload. One row per user, created with the user.
+ */
+@Entity
+@Table(name = "user_counters")
+public class UserCounters {
+
+    @Id
+    private Long userId;
+
+    // Unviewed shares, kept in step with the permissions table for the notification badge
+    @Column(nullable = false)
+    private long unreadShares;
+
+    // Bumped on every change to the user's folders; the folder tree ETag is derived from it
+    @Column(nullable = false)
+    private long folderVersion;
+
+    // Sum of the sizes of the user's files, changed atomically by upload, copy and delete
+    @Column(nullable = false)
+    private long usedBytes;
+
+    public UserCounters() {}
+
+    public UserCounters(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() { return userId; }
+
+    public long getUnreadShares() { return unreadShares; }
+
+    public long getFolderVersion() { return folderVersion; }
+
+    public long getUsedBytes() { return usedBytes; }
+}
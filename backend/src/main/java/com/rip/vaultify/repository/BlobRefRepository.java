@@ -0,0 +1,46 @@
+package com.rip.vaultify.repository;
+
+import com.rip.vaultify.model.BlobRef;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BlobRefRepository extends JpaRepository<BlobRef, String> {
+
+    // Locked so a release and a concurrent copy of the same blob cannot interleave
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BlobRef b WHERE b.storedName IN :storedNames")
+    List<BlobRef> findForUpdate(@Param("storedNames") Collection<String> storedNames);
+
+    // Subtree copy, step 1: blobs in the subtree that were not shared yet start at one reference
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "blob_refs"))
+    @Query(value = "INSERT INTO blob_refs (stored_name, ref_count) " +
+                   "SELECT DISTINCT fi.stored_name, 1 FROM files fi JOIN folders f ON fi.folder_id = f.id " +
+                   "WHERE f.path LIKE CONCAT(:path, '%') " +
+                   "AND NOT EXISTS (SELECT 1 FROM blob_refs b WHERE b.stored_name = fi.stored_name)",
+           nativeQuery = true)
+    int insertMissingForSubtree(@Param("path") String path);
+
+    // Subtree copy, step 2: one more reference per file row in the subtree
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "blob_refs"))
+    @Query(value = "UPDATE blob_refs b SET ref_count = ref_count + " +
+                   "(SELECT COUNT(*) FROM files fi JOIN folders f ON fi.folder_id = f.id " +
+                   "WHERE f.path LIKE CONCAT(:path, '%') AND fi.stored_name = b.stored_name) " +
+                   "WHERE b.stored_name IN (SELECT fi.stored_name FROM files fi JOIN folders f ON fi.folder_id = f.id " +
+                   "WHERE f.path LIKE CONCAT(:path, '%'))",
+           nativeQuery = true)
+    int incrementForSubtree(@Param("path") String path);
+}
@@ -1,9 +1,26 @@
 package com.rip.vaultify.repository;
 
 import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Permission;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface FileRepository extends JpaRepository<File, Long> {
@@ -11,4 +28,139 @@ public interface FileRepository extends JpaRepository<File, Long> {
     List<File> findByFolderIdAndUserId(Long folderId, Long userId);
     List<File> findByUserId(Long userId);
     List<File> findByOriginalNameContainingIgnoreCase(String name);
-}
\ No newline at end of file
+    @EntityGraph("File.withFolderAndOwner")
+    Optional<File> findFirstByFolderIdAndOriginalNameOrderByIdAsc(Long folderId, String originalName);
+
+    // A single file ready to be rendered outside a transaction
+    @EntityGraph("File.withFolderAndOwner")
+    Optional<File> findWithFolderAndOwnerById(Long id);
+
+    // Files of many folders at once (GraphQL Folder.files batches)
+    List<File> findByFolderIdIn(Collection<Long> folderIds);
+
+    // Folder listing with each file's creator and folder fetched in the same query
+    @Query("SELECT f FROM File f JOIN FETCH f.user JOIN FETCH f.folder WHERE f.folder.id = :folderId")
+    List<File> findByFolderIdWithOwner(@Param("folderId") Long folderId);
+
+    // Listing by id set (e.g. from the access index), with creator and folder fetched
+    @Query("SELECT f FROM File f JOIN FETCH f.user JOIN FETCH f.folder WHERE f.id IN :ids")
+    List<File> findWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Folder listing as FileResponse rows: file columns, folder name and creator in one join,
+    // without loading entities into the persistence context
+    @Query("SELECT f.id AS id, f.originalName AS originalName, f.contentType AS contentType, f.size AS size, " +
+           "f.uploadedAt AS uploadedAt, d.id AS folderId, d.name AS folderName, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM File f JOIN f.folder d JOIN f.user o WHERE d.id = :folderId")
+    List<FileRow> findRowsByFolderId(@Param("folderId") Long folderId);
+
+    @Query("SELECT f.id AS id, f.originalName AS originalName, f.contentType AS contentType, f.size AS size, " +
+           "f.uploadedAt AS uploadedAt, d.id AS folderId, d.name AS folderName, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM File f JOIN f.folder d JOIN f.user o WHERE f.id IN :ids")
+    List<FileRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    interface FileRow {
+        Long getId();
+        String getOriginalName();
+        String getContentType();
+        Long getSize();
+        LocalDateTime getUploadedAt();
+        Long getFolderId();
+        String getFolderName();
+        Long getOwnerId();
+        String getOwnerUsername();
+    }
+
+    @Query("SELECT f.id FROM File f WHERE f.folder.id = :folderId")
+    List<Long> findIdsByFolderId(@Param("folderId") Long folderId);
+
+    @Query("SELECT f.id FROM File f WHERE f.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    // Ids among the given files that the user owns, as creator or through an OWNER permission
+    @Query("SELECT f.id FROM File f WHERE f.id IN :fileIds AND (f.user.id = :userId OR EXISTS " +
+           "(SELECT p.id FROM Permission p WHERE p.file = f AND p.user.id = :userId AND p.access = :ownerAccess))")
+    List<Long> findOwnedIds(@Param("fileIds") Collection<Long> fileIds, @Param("userId") Long userId,
+                            @Param("ownerAccess") Permission.Access ownerAccess);
+
+    // Keyset pages of a folder listing, creator and folder fetched; see FileSort for the sort keys
+    @EntityGraph("File.withFolderAndOwner")
+    Window<File> findByFolderId(Long folderId, ScrollPosition position, Sort sort, Limit limit);
+
+    // Same, restricted to the files a user can read according to the access index
+    @EntityGraph("File.withFolderAndOwner")
+    Window<File> findByFolderIdAndIdIn(Long folderId, Collection<Long> ids, ScrollPosition position, Sort sort, Limit limit);
+
+    // Files anywhere in a folder subtree, as the columns a subtree delete needs (placement, size
+    // and blob location) instead of entities
+    @Query("SELECT fi.id AS id, f.id AS folderId, fi.user.id AS userId, fi.size AS size, fi.storedName AS storedName, " +
+           "fi.filePath AS filePath, fi.volume AS volume, fi.replicaVolumes AS replicaVolumes, " +
+           "fi.dataShards AS dataShards, fi.parityShards AS parityShards " +
+           "FROM File fi JOIN fi.folder f WHERE f.path LIKE CONCAT(:path, '%')")
+    List<FileBlobRow> findBlobRowsBySubtree(@Param("path") String path);
+
+    // Every row sharing a blob (copies keep the source's storedName), same columns
+    @Query("SELECT fi.id AS id, fi.folder.id AS folderId, fi.user.id AS userId, fi.size AS size, fi.storedName AS storedName, " +
+           "fi.filePath AS filePath, fi.volume AS volume, fi.replicaVolumes AS replicaVolumes, " +
+           "fi.dataShards AS dataShards, fi.parityShards AS parityShards " +
+           "FROM File fi WHERE fi.storedName = :storedName")
+    List<FileBlobRow> findBlobRowsByStoredName(@Param("storedName") String storedName);
+
+    interface FileBlobRow {
+        Long getId();
+        Long getFolderId();
+        Long getUserId();
+        Long getSize();
+        String getStoredName();
+        String getFilePath();
+        String getVolume();
+        String getReplicaVolumes();
+        Integer getDataShards();
+        Integer getParityShards();
+    }
+
+    @Modifying
+    @Query("DELETE FROM File fi WHERE fi.folder.id IN (SELECT f.id FROM Folder f WHERE f.path LIKE CONCAT(:path, '%'))")
+    int deleteBySubtree(@Param("path") String path);
+
+    // Subtree copy: one row per source file in each copied folder, sharing the source's blob
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "files"))
+    @Query(value = "INSERT INTO files (id, original_name, stored_name, content_type, size, file_path, volume, " +
+                   "replica_volumes, data_shards, parity_shards, uploaded_at, checksum, folder_id, user_id) " +
+                   "SELECT NEXT VALUE FOR files_seq, s.original_name, s.stored_name, s.content_type, s.size, s.file_path, s.volume, " +
+                   "s.replica_volumes, s.data_shards, s.parity_shards, CURRENT_TIMESTAMP, s.checksum, d.id, :userId " +
+                   "FROM files s JOIN folders d ON d.copied_from_id = s.folder_id " +
+                   "WHERE d.path LIKE CONCAT(:newRootPath, '%')",
+           nativeQuery = true)
+    int copyIntoSubtree(@Param("newRootPath") String newRootPath, @Param("userId") Long userId);
+
+    // Access-index warm-up: keyset scan of file placement without loading entities
+    @Query("SELECT f.id AS id, f.folder.id AS folderId, f.user.id AS userId FROM File f WHERE f.id > :afterId ORDER BY f.id")
+    List<FilePlacement> findPlacementsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    interface FilePlacement {
+        Long getId();
+        Long getFolderId();
+        Long getUserId();
+    }
+
+    // Keyset scan used by background jobs: next batch of files after the given id
+    List<File> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Same scan restricted to erasure-coded blobs
+    List<File> findByIdGreaterThanAndDataShardsIsNotNullOrderByIdAsc(Long id, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.checksum = :checksum WHERE f.id = :id AND f.checksum IS NULL")
+    int backfillChecksum(@Param("id") Long id, @Param("checksum") String checksum);
+
+    // Point a file, and every copy sharing its blob, at the moved blob replicas, unless the
+    // row changed since the move started
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.volume = :volume, f.filePath = :filePath, f.replicaVolumes = :replicaVolumes " +
+           "WHERE f.storedName = (SELECT s.storedName FROM File s WHERE s.id = :id) AND f.filePath = :oldFilePath")
+    int relocate(@Param("id") Long id, @Param("oldFilePath") String oldFilePath, @Param("volume") String volume,
+                 @Param("filePath") String filePath, @Param("replicaVolumes") String replicaVolumes);
+}
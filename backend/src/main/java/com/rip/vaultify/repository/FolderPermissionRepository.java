@@ -0,0 +1,51 @@
+package com.rip.vaultify.repository;
+
+import com.rip.vaultify.model.FolderPermission;
+import com.rip.vaultify.model.Permission;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface FolderPermissionRepository extends JpaRepository<FolderPermission, Long> {
+    Optional<FolderPermission> findByFolderIdAndUserId(Long folderId, Long userId);
+
+    // Grants on a folder with the grantee's name, for the owner's sharing dialog
+    @Query("SELECT fp.id AS id, u.id AS userId, u.username AS username, fp.access AS access " +
+           "FROM FolderPermission fp JOIN fp.user u WHERE fp.folder.id = :folderId")
+    List<PermissionRepository.GrantRow> findGrantRowsByFolderId(@Param("folderId") Long folderId);
+
+    // Folders shared directly with a user, with each folder's owner, as response rows
+    @Query("SELECT fp.id AS grantId, f.id AS folderId, f.name AS folderName, fp.access AS access, " +
+           "fp.grantedAt AS grantedAt, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM FolderPermission fp JOIN fp.folder f JOIN f.user o WHERE fp.user.id = :userId")
+    List<SharedFolderRow> findSharedFolderRows(@Param("userId") Long userId);
+
+    interface SharedFolderRow {
+        Long getGrantId();
+        Long getFolderId();
+        String getFolderName();
+        Permission.Access getAccess();
+        LocalDateTime getGrantedAt();
+        Long getOwnerId();
+        String getOwnerUsername();
+    }
+
+    /**
+     * Access the user inherits on a folder from grants on it or any ancestor: a grant applies
+     * when its folder's path is a prefix of the folder's path
+     */
+    @Query("SELECT fp.access FROM FolderPermission fp JOIN fp.folder g, Folder f " +
+           "WHERE f.id = :folderId AND fp.user.id = :userId AND f.path LIKE CONCAT(g.path, '%')")
+    List<Permission.Access> findInheritedAccess(@Param("folderId") Long folderId, @Param("userId") Long userId);
+
+    // Grants on a folder and everything below it (before the subtree is deleted)
+    @Modifying
+    @Query("DELETE FROM FolderPermission fp WHERE fp.folder.id IN " +
+           "(SELECT f.id FROM Folder f WHERE f.path LIKE CONCAT(:pathPrefix, '%'))")
+    int deleteBySubtree(@Param("pathPrefix") String pathPrefix);
+}
@@ -1,14 +1,124 @@
 package com.rip.vaultify.repository;
 
 import com.rip.vaultify.model.Folder;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface FolderRepository extends JpaRepository<Folder, Long> {
     List<Folder> findByParentId(Long parentId);
+
+    // Subfolders of many folders at once (GraphQL Folder.children batches)
+    List<Folder> findByParentIdIn(Collection<Long> parentIds);
+
+    // A folder ready for FolderResponse outside a transaction
+    @EntityGraph("Folder.withParentAndChildren")
+    Optional<Folder> findWithParentAndChildrenById(Long id);
+
+    @EntityGraph("Folder.withOwner")
+    Optional<Folder> findWithOwnerById(Long id);
     List<Folder> findByUserId(Long userId);
     List<Folder> findByUserIdAndParentIdIsNull(Long userId);
     List<Folder> findByUserIdAndParentId(Long userId, Long parentId);
+
+    // Keyset pages of a user's subfolders of a folder, or of their root folders
+    Window<Folder> findByUserIdAndParentId(Long userId, Long parentId, ScrollPosition position, Sort sort, Limit limit);
+    Window<Folder> findByUserIdAndParentIdIsNull(Long userId, ScrollPosition position, Sort sort, Limit limit);
+
+    // Root folder listing: each of the user's roots with its children's ids and names, one row
+    // per child (child columns null for a root without children)
+    @Query("SELECT r.id AS id, r.name AS name, c.id AS childId, c.name AS childName " +
+           "FROM Folder r LEFT JOIN r.children c WHERE r.user.id = :userId AND r.parent IS NULL ORDER BY r.id, c.id")
+    List<FolderChildRow> findRootRowsByUserId(@Param("userId") Long userId);
+
+    // Folders created before materialized paths existed
+    List<Folder> findByPathIsNullOrderByIdAsc();
+
+    // A folder and all of its descendants (paths starting with its path), parents before children
+    @Query("SELECT f.id AS id, f.name AS name, f.parent.id AS parentId, f.path AS path FROM Folder f " +
+           "WHERE f.path LIKE CONCAT(:path, '%') ORDER BY LENGTH(f.path), f.id")
+    List<FolderNode> findSubtree(@Param("path") String path);
+
+    // Every folder of a user as flat rows, for building the whole tree in memory
+    @Query("SELECT f.id AS id, f.name AS name, f.parent.id AS parentId, f.path AS path FROM Folder f WHERE f.user.id = :userId")
+    List<FolderNode> findNodesByUserId(@Param("userId") Long userId);
+
+    // Candidate folders for resolving a name path: all of the user's folders named like a segment
+    @Query("SELECT f.id AS id, f.name AS name, f.parent.id AS parentId, f.path AS path FROM Folder f " +
+           "WHERE f.user.id = :userId AND f.name IN :names")
+    List<FolderNode> findNodesByUserIdAndNameIn(@Param("userId") Long userId, @Param("names") Collection<String> names);
+
+    @Query("SELECT f.id AS id, f.name AS name, f.parent.id AS parentId, f.path AS path FROM Folder f WHERE f.id IN :ids")
+    List<FolderNode> findNodesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Row locks for a move, taken in id order so concurrent moves cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM Folder f WHERE f.id IN :ids ORDER BY f.id")
+    List<Folder> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Re-root every path under oldPrefix at newPrefix: a move is one statement for the whole subtree
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Folder f SET f.path = CONCAT(:newPrefix, SUBSTRING(f.path, LENGTH(:oldPrefix) + 1)) " +
+           "WHERE f.path LIKE CONCAT(:oldPrefix, '%')")
+    int rewritePaths(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix);
+
+    // Drop parent links inside a subtree so it can go in one DELETE regardless of row order
+    @Modifying
+    @Query("UPDATE Folder f SET f.parent = null WHERE f.path LIKE CONCAT(:path, '%')")
+    int detachSubtree(@Param("path") String path);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Folder f WHERE f.path LIKE CONCAT(:path, '%')")
+    int deleteSubtree(@Param("path") String path);
+
+    // Subtree copy: insert copies of the next level of source folders under their already
+    // copied parents inside newRootPath. Returns 0 once the whole subtree has been copied.
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "folders"))
+    @Query(value = "INSERT INTO folders (id, name, parent_id, path, user_id, copied_from_id) " +
+                   "SELECT NEXT VALUE FOR folders_seq, s.name, p.id, NULL, :userId, s.id " +
+                   "FROM folders s JOIN folders p ON p.copied_from_id = s.parent_id " +
+                   "WHERE s.path LIKE CONCAT(:sourcePath, '%') AND p.path LIKE CONCAT(:newRootPath, '%') " +
+                   "AND NOT EXISTS (SELECT 1 FROM folders c WHERE c.parent_id = p.id AND c.copied_from_id = s.id)",
+           nativeQuery = true)
+    int copyNextLevel(@Param("sourcePath") String sourcePath, @Param("newRootPath") String newRootPath,
+                      @Param("userId") Long userId);
+
+    // Subtree copy: give the level just inserted its paths, which need the new ids
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "folders"))
+    @Query(value = "UPDATE folders c SET path = CONCAT((SELECT p.path FROM folders p WHERE p.id = c.parent_id), c.id, '/') " +
+                   "WHERE c.path IS NULL AND c.parent_id IN (SELECT p.id FROM folders p WHERE p.path LIKE CONCAT(:newRootPath, '%'))",
+           nativeQuery = true)
+    int assignCopiedPaths(@Param("newRootPath") String newRootPath);
+
+    interface FolderChildRow {
+        Long getId();
+        String getName();
+        Long getChildId();
+        String getChildName();
+    }
+
+    interface FolderNode {
+        Long getId();
+        String getName();
+        Long getParentId();
+        String getPath();
+    }
 }
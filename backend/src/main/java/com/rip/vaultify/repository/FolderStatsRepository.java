@@ -0,0 +1,93 @@
+package com.rip.vaultify.repository;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FolderStatsRepository extends JpaRepository<FolderStats, Long> {
+
+    @Modifying
+    @Query("UPDATE FolderStats s SET s.directFileCount = s.directFileCount + :files, s.directBytes = s.directBytes + :bytes " +
+           "WHERE s.folderId = :folderId")
+    int addDirectCounts(@Param("folderId") Long folderId, @Param("files") long files, @Param("bytes") long bytes);
+
+    @Modifying
+    @Query("UPDATE FolderStats s SET s.totalFileCount = s.totalFileCount + :files, s.totalBytes = s.totalBytes + :bytes " +
+           "WHERE s.folderId IN :ids")
+    int addTotalCounts(@Param("ids") Collection<Long> ids, @Param("files") long files, @Param("bytes") long bytes);
+
+    /**
+     * Account for files added to (positive) or removed from (negative) a folder: its direct
+     * counts, and the recursive counts of the folder and every ancestor, each as one atomic UPDATE
+     */
+    default void addFiles(Folder folder, long files, long bytes) {
+        addDirectCounts(folder.getId(), files, bytes);
+        List<Long> ancestors = folder.ancestorIds();
+        if (!ancestors.isEmpty()) {
+            addTotalCounts(ancestors, files, bytes);
+        }
+    }
+
+    /**
+     * Shift a whole subtree's recursive counts between ancestor chains (folder move or delete)
+     */
+    default void moveTotals(List<Long> fromAncestors, List<Long> toAncestors, long files, long bytes) {
+        if (files == 0 && bytes == 0) {
+            return;
+        }
+        if (!fromAncestors.isEmpty()) {
+            addTotalCounts(fromAncestors, -files, -bytes);
+        }
+        if (!toAncestors.isEmpty()) {
+            addTotalCounts(toAncestors, files, bytes);
+        }
+    }
+
+    // Subtree copy: every copied folder starts with the aggregates of the folder it copies
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "folder_stats"))
+    @Query(value = "INSERT INTO folder_stats (folder_id, direct_file_count, direct_bytes, total_file_count, total_bytes) " +
+                   "SELECT c.id, s.direct_file_count, s.direct_bytes, s.total_file_count, s.total_bytes " +
+                   "FROM folders c JOIN folder_stats s ON s.folder_id = c.copied_from_id " +
+                   "WHERE c.path LIKE CONCAT(:newRootPath, '%')",
+           nativeQuery = true)
+    int copyForSubtree(@Param("newRootPath") String newRootPath);
+
+    @Modifying
+    @Query("DELETE FROM FolderStats s WHERE s.folderId IN (SELECT f.id FROM Folder f WHERE f.path LIKE CONCAT(:path, '%'))")
+    int deleteBySubtree(@Param("path") String path);
+
+    @Query("SELECT s FROM FolderStats s WHERE s.folderId IN (SELECT f.id FROM Folder f WHERE f.user.id = :userId)")
+    List<FolderStats> findByUserId(@Param("userId") Long userId);
+
+    // Aggregate repair: direct file count and size of each of a user's folders that has files,
+    // one grouped scan; recursive totals are rolled up the paths in memory
+    @Query("SELECT f.id AS folderId, COUNT(fi) AS files, COALESCE(SUM(fi.size), 0) AS bytes " +
+           "FROM File fi JOIN fi.folder f WHERE f.user.id = :userId GROUP BY f.id")
+    List<DirectCounts> findDirectCountsByUserId(@Param("userId") Long userId);
+
+    // Folders created before the aggregates had their own table; the repair pass fills them in
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "folder_stats"))
+    @Query(value = "INSERT INTO folder_stats (folder_id, direct_file_count, direct_bytes, total_file_count, total_bytes) " +
+                   "SELECT f.id, 0, 0, 0, 0 FROM folders f WHERE NOT EXISTS (SELECT 1 FROM folder_stats s WHERE s.folder_id = f.id)",
+           nativeQuery = true)
+    int insertMissing();
+
+    interface DirectCounts {
+        Long getFolderId();
+        long getFiles();
+        long getBytes();
+    }
+}
@@ -3,16 +3,27 @@ package com.rip.vaultify.repository;
 import com.rip.vaultify.model.File;
 import com.rip.vaultify.model.Permission;
 import com.rip.vaultify.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PermissionRepository extends JpaRepository<Permission, Long> {
     Optional<Permission> findByFileAndUser(File file, User user);
 
+    // Access level alone, for permission checks that do not need the entity
+    @Query("SELECT p.access FROM Permission p WHERE p.file.id = :fileId AND p.user.id = :userId")
+    Optional<Permission.Access> findAccess(@Param("fileId") Long fileId, @Param("userId") Long userId);
+
     List<Permission> findByFile(File file);
     
     List<Permission> findByUser(User user);
@@ -20,5 +31,140 @@ public interface PermissionRepository extends JpaRepository<Permission, Long> {
     @Query("SELECT p FROM Permission p WHERE p.user = :user AND p.access != :access")
     List<Permission> findByUserExcludingAccess(@Param("user") User user, @Param("access") Permission.Access access);
 
+    // Same as findByUserExcludingAccess, with each file and its folder fetched in the same query
+    @Query("SELECT p FROM Permission p JOIN FETCH p.file f JOIN FETCH f.folder WHERE p.user = :user AND p.access != :access")
+    List<Permission> findByUserExcludingAccessWithFiles(@Param("user") User user, @Param("access") Permission.Access access);
+
+    // Every unviewed or accepted share of a user as feed rows, oldest share first
+    @Query("SELECT p.id AS permissionId, f.id AS fileId, f.originalName AS fileName, f.size AS fileSize, " +
+           "f.contentType AS contentType, f.uploadedAt AS uploadedAt, p.access AS access, p.viewed AS viewed, " +
+           "d.id AS folderId, d.name AS folderName, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM Permission p JOIN p.file f JOIN f.folder d JOIN f.user o " +
+           "WHERE p.user.id = :userId AND p.viewed = :viewed AND p.access <> :ownerAccess ORDER BY p.id")
+    List<SharedFileRow> findSharedFiles(@Param("userId") Long userId, @Param("viewed") Boolean viewed,
+                                        @Param("ownerAccess") Permission.Access ownerAccess);
+
+    // Who holds which access on a file, for the owner's sharing dialog
+    @Query("SELECT p.id AS id, u.id AS userId, u.username AS username, p.access AS access " +
+           "FROM Permission p JOIN p.user u WHERE p.file.id = :fileId")
+    List<GrantRow> findGrantRowsByFileId(@Param("fileId") Long fileId);
+
+    /**
+     * One page of the shared-with-me feed, newest share first: permissions with an id below
+     * the cursor, joined to file, folder and owner. Served by idx_permissions_user_viewed.
+     */
+    @Query("SELECT p.id AS permissionId, f.id AS fileId, f.originalName AS fileName, f.size AS fileSize, " +
+           "f.contentType AS contentType, f.uploadedAt AS uploadedAt, p.access AS access, p.viewed AS viewed, " +
+           "d.id AS folderId, d.name AS folderName, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM Permission p JOIN p.file f JOIN f.folder d JOIN f.user o " +
+           "WHERE p.user.id = :userId AND p.viewed = :viewed AND p.access <> :ownerAccess AND p.id < :beforeId " +
+           "ORDER BY p.id DESC")
+    List<SharedFileRow> findSharedFeed(@Param("userId") Long userId, @Param("viewed") Boolean viewed,
+                                       @Param("ownerAccess") Permission.Access ownerAccess,
+                                       @Param("beforeId") long beforeId, Pageable pageable);
+
+    // Feed across viewed and unviewed shares
+    @Query("SELECT p.id AS permissionId, f.id AS fileId, f.originalName AS fileName, f.size AS fileSize, " +
+           "f.contentType AS contentType, f.uploadedAt AS uploadedAt, p.access AS access, p.viewed AS viewed, " +
+           "d.id AS folderId, d.name AS folderName, o.id AS ownerId, o.username AS ownerUsername " +
+           "FROM Permission p JOIN p.file f JOIN f.folder d JOIN f.user o " +
+           "WHERE p.user.id = :userId AND p.access <> :ownerAccess AND p.id < :beforeId " +
+           "ORDER BY p.id DESC")
+    List<SharedFileRow> findSharedFeedAll(@Param("userId") Long userId,
+                                          @Param("ownerAccess") Permission.Access ownerAccess,
+                                          @Param("beforeId") long beforeId, Pageable pageable);
+
+    /**
+     * ACL rows for a batch of files: the given user's own permission on each file plus each
+     * file's OWNER row, in one query
+     */
+    @Query("SELECT p.file.id AS fileId, u.id AS userId, u.username AS username, p.access AS access " +
+           "FROM Permission p JOIN p.user u " +
+           "WHERE p.file.id IN :fileIds AND (u.id = :userId OR p.access = :ownerAccess)")
+    List<AclRow> findAclRows(@Param("fileIds") Collection<Long> fileIds, @Param("userId") Long userId,
+                             @Param("ownerAccess") Permission.Access ownerAccess);
+
+    // Access-index loading: every file a user holds a permission on
+    @Query("SELECT p.file.id AS fileId, p.user.id AS userId, p.access AS access FROM Permission p WHERE p.user.id = :userId")
+    List<AccessEntry> findAccessEntriesByUserId(@Param("userId") Long userId);
+
+    // Access-index warm-up: keyset scan over the whole permissions table
+    @Query("SELECT p.id AS id, p.file.id AS fileId, p.user.id AS userId, p.access AS access " +
+           "FROM Permission p WHERE p.id > :afterId ORDER BY p.id")
+    List<AccessEntry> findAccessEntriesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // Existing permissions among fileIds x userIds, for bulk upserts
+    @Query("SELECT p.id AS id, p.file.id AS fileId, p.user.id AS userId, p.access AS access, p.viewed AS viewed " +
+           "FROM Permission p WHERE p.file.id IN :fileIds AND p.user.id IN :userIds")
+    List<ShareEntry> findShareEntriesForPairs(@Param("fileIds") Collection<Long> fileIds,
+                                                @Param("userIds") Collection<Long> userIds);
+
+    interface AccessEntry {
+        Long getId();
+        Long getFileId();
+        Long getUserId();
+        Permission.Access getAccess();
+    }
+
+    // Mark the given shares of a user viewed; returns how many were unviewed
+    @Modifying
+    @Query("UPDATE Permission p SET p.viewed = true WHERE p.user.id = :userId AND p.id IN :ids " +
+           "AND p.viewed = false AND p.access <> :ownerAccess")
+    int markViewed(@Param("userId") Long userId, @Param("ids") Collection<Long> ids,
+                   @Param("ownerAccess") Permission.Access ownerAccess);
+
+    @Modifying
+    @Query("UPDATE Permission p SET p.viewed = true WHERE p.user.id = :userId " +
+           "AND p.viewed = false AND p.access <> :ownerAccess")
+    int markAllViewed(@Param("userId") Long userId, @Param("ownerAccess") Permission.Access ownerAccess);
+
+    interface ShareEntry extends AccessEntry {
+        Boolean getViewed();
+    }
+
+    interface SharedFileRow {
+        Long getPermissionId();
+        Long getFileId();
+        String getFileName();
+        Long getFileSize();
+        String getContentType();
+        LocalDateTime getUploadedAt();
+        Permission.Access getAccess();
+        Boolean getViewed();
+        Long getFolderId();
+        String getFolderName();
+        Long getOwnerId();
+        String getOwnerUsername();
+    }
+
+    interface GrantRow {
+        Long getId();
+        Long getUserId();
+        String getUsername();
+        Permission.Access getAccess();
+    }
+
+    interface AclRow {
+        Long getFileId();
+        Long getUserId();
+        String getUsername();
+        Permission.Access getAccess();
+    }
+
     void deleteByFile(File file);
+
+    // Permissions on every file in a folder subtree
+    @Modifying
+    @Query("DELETE FROM Permission p WHERE p.file.id IN " +
+           "(SELECT fi.id FROM File fi JOIN fi.folder f WHERE f.path LIKE CONCAT(:path, '%'))")
+    int deleteBySubtree(@Param("path") String path);
+
+    // Subtree copy: the copying user owns every file in the new subtree
+    @Modifying(clearAutomatically = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "permissions"))
+    @Query(value = "INSERT INTO permissions (id, file_id, user_id, access, viewed) " +
+                   "SELECT NEXT VALUE FOR permissions_seq, fi.id, :userId, 'OWNER', FALSE FROM files fi JOIN folders d ON fi.folder_id = d.id " +
+                   "WHERE d.path LIKE CONCAT(:path, '%')",
+           nativeQuery = true)
+    int insertOwnerPermissionsForSubtree(@Param("path") String path, @Param("userId") Long userId);
 }
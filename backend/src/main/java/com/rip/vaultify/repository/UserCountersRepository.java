@@ -0,0 +1,86 @@
+package com.rip.vaultify.repository;
+
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.UserCounters;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserCountersRepository extends JpaRepository<UserCounters, Long> {
+
+    @Query("SELECT c.folderVersion FROM UserCounters c WHERE c.userId = :userId")
+    long findFolderVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.folderVersion = c.folderVersion + 1 WHERE c.userId = :userId")
+    int bumpFolderVersion(@Param("userId") Long userId);
+
+    @Query("SELECT c.usedBytes AS usedBytes, u.quotaBytes AS quotaBytes FROM UserCounters c, User u " +
+           "WHERE u.id = c.userId AND c.userId = :userId")
+    Optional<StorageUsage> findStorageUsage(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.usedBytes = c.usedBytes + :delta WHERE c.userId = :userId")
+    int addUsedBytes(@Param("userId") Long userId, @Param("delta") long delta);
+
+    // Check and increment in one statement: 0 rows means the charge would pass the limit
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.usedBytes = c.usedBytes + :bytes " +
+           "WHERE c.userId = :userId AND c.usedBytes + :bytes <= :limit")
+    int chargeUsedBytes(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("limit") long limit);
+
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.usedBytes = (SELECT COALESCE(SUM(f.size), 0) FROM File f WHERE f.user.id = c.userId) " +
+           "WHERE c.userId = :userId")
+    int recomputeUsedBytes(@Param("userId") Long userId);
+
+    @Query("SELECT c.unreadShares FROM UserCounters c WHERE c.userId = :userId")
+    long findUnreadShares(@Param("userId") Long userId);
+
+    // Atomic in the database, so concurrent shares and views never lose an update
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.unreadShares = c.unreadShares + :delta WHERE c.userId = :userId")
+    int addUnreadShares(@Param("userId") Long userId, @Param("delta") long delta);
+
+    // Users losing an unviewed share when every permission on a file is deleted
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.unreadShares = c.unreadShares - 1 WHERE c.userId IN " +
+           "(SELECT p.user.id FROM Permission p WHERE p.file.id = :fileId AND p.viewed = false AND p.access <> :ownerAccess)")
+    int decrementUnreadSharesForFile(@Param("fileId") Long fileId, @Param("ownerAccess") Permission.Access ownerAccess);
+
+    // Users losing unviewed shares when a folder subtree is deleted, each by their own count
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.unreadShares = c.unreadShares - " +
+           "(SELECT COUNT(p) FROM Permission p JOIN p.file fi JOIN fi.folder f WHERE p.user.id = c.userId " +
+           "AND p.viewed = false AND p.access <> :ownerAccess AND f.path LIKE CONCAT(:path, '%')) " +
+           "WHERE c.userId IN (SELECT p2.user.id FROM Permission p2 JOIN p2.file fi2 JOIN fi2.folder f2 " +
+           "WHERE p2.viewed = false AND p2.access <> :ownerAccess AND f2.path LIKE CONCAT(:path, '%'))")
+    int decrementUnreadSharesForSubtree(@Param("path") String path, @Param("ownerAccess") Permission.Access ownerAccess);
+
+    @Modifying
+    @Query("UPDATE UserCounters c SET c.unreadShares = " +
+           "(SELECT COUNT(p) FROM Permission p WHERE p.user.id = c.userId AND p.viewed = false AND p.access <> :ownerAccess)")
+    int recountUnreadShares(@Param("ownerAccess") Permission.Access ownerAccess);
+
+    // Users created before the counters had their own table; the repair and recount passes
+    // fill in the values
+    @Modifying
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = "user_counters"))
+    @Query(value = "INSERT INTO user_counters (user_id, unread_shares, folder_version, used_bytes) " +
+                   "SELECT u.id, 0, 0, 0 FROM users u WHERE NOT EXISTS (SELECT 1 FROM user_counters c WHERE c.user_id = u.id)",
+           nativeQuery = true)
+    int insertMissing();
+
+    interface StorageUsage {
+        long getUsedBytes();
+        Long getQuotaBytes();
+    }
+}
@@ -0,0 +1,37 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.repository.FileRepository;
+
+/**
+ * Where the blob of a deleted file row lives: everything reference counting and reclamation
+ * need, without holding on to the entity
+ */
+public record BlobLocation(Long fileId, String storedName, String filePath, String volume,
+                           String replicaVolumes, Integer dataShards, Integer parityShards) {
+
+    public static BlobLocation of(File file) {
+        return new BlobLocation(file.getId(), file.getStoredName(), file.getFilePath(), file.getVolume(),
+                file.getReplicaVolumes(), file.getDataShards(), file.getParityShards());
+    }
+
+    public static BlobLocation of(FileRepository.FileBlobRow row) {
+        return new BlobLocation(row.getId(), row.getStoredName(), row.getFilePath(), row.getVolume(),
+                row.getReplicaVolumes(), row.getDataShards(), row.getParityShards());
+    }
+
+    /**
+     * A detached file carrying only this location, for the {@link com.rip.vaultify.storage.BlobStore} API
+     */
+    File toFile() {
+        File file = new File();
+        file.setId(fileId);
+        file.setStoredName(storedName);
+        file.setFilePath(filePath);
+        file.setVolume(volume);
+        file.setReplicaVolumes(replicaVolumes);
+        file.setDataShards(dataShards);
+        file.setParityShards(parityShards);
+        return file;
+    }
+}
@@ -0,0 +1,113 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.storage.BlobStore;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes the blobs of deleted files in the background. Blobs are queued only after the
+ * transaction that removed their rows commits, so a rolled-back delete never loses data, and
+ * a large folder delete returns without waiting for thousands of unlinks. Deletes are rate
+ * limited and pause while request I/O latency is high.
+ * <p>
+ * The queue lives in memory: blobs still queued at shutdown are left on disk as orphans.
+ */
+@Service
+public class BlobReclaimService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobReclaimService.class);
+    private static final int MAX_REPORTED_IDS = 1000;
+
+    private final BlobStore blobStore;
+    private final StorageIoMonitor ioMonitor;
+    private final BlockingQueue<BlobLocation> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<Long> failedFileIds = new ArrayList<>();
+
+    private final long delayMs;
+    private final long latencyThresholdMs;
+    private final long backoffMs;
+
+    public BlobReclaimService(BlobStore blobStore,
+                              StorageIoMonitor ioMonitor,
+                              @Value("${storage.reclaim.max-per-second:200}") int maxPerSecond,
+                              @Value("${storage.scrub.latency-threshold-ms:50}") long latencyThresholdMs,
+                              @Value("${storage.scrub.backoff-ms:2000}") long backoffMs) {
+        this.blobStore = blobStore;
+        this.ioMonitor = ioMonitor;
+        this.delayMs = maxPerSecond > 0 ? 1000L / maxPerSecond : 0;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.backoffMs = backoffMs;
+        worker.execute(this::run);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBlobsReleased(BlobsReleasedEvent event) {
+        queue.addAll(event.blobs());
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("pending", queue.size());
+        status.put("reclaimed", reclaimed.get());
+        status.put("failed", failed.get());
+        synchronized (failedFileIds) {
+            status.put("failedFileIds", new ArrayList<>(failedFileIds));
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        if (!queue.isEmpty()) {
+            logger.warn("Blob reclamation stopped with {} blobs still queued", queue.size());
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                BlobLocation blob = queue.take();
+                while (ioMonitor.getRecentLatencyMillis() > latencyThresholdMs) {
+                    Thread.sleep(backoffMs);
+                }
+                try {
+                    blobStore.delete(blob.toFile());
+                    reclaimed.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    synchronized (failedFileIds) {
+                        if (failedFileIds.size() < MAX_REPORTED_IDS) {
+                            failedFileIds.add(blob.fileId());
+                        }
+                    }
+                    logger.error("Blob reclamation failed - fileId: {}, error: {}", blob.fileId(), e.getMessage());
+                }
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.BlobRef;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.repository.BlobRefRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Copy-on-write sharing of blobs between file rows. A copy points the new row at the source's
+ * blob and bumps its reference count; a delete drops the reference and the blob is only
+ * reclaimed once nothing refers to it. Blobs are never modified in place, so sharing needs
+ * no further copy on write.
+ */
+@Service
+public class BlobRefService {
+
+    private static final int MAX_NAMES_PER_QUERY = 1000;
+
+    private final BlobRefRepository blobRefRepository;
+
+    public BlobRefService(BlobRefRepository blobRefRepository) {
+        this.blobRefRepository = blobRefRepository;
+    }
+
+    /**
+     * Record one more file row pointing at the blob of source
+     */
+    @Transactional
+    public void addReference(File source) {
+        List<BlobRef> existing = blobRefRepository.findForUpdate(List.of(source.getStoredName()));
+        if (existing.isEmpty()) {
+            blobRefRepository.save(new BlobRef(source.getStoredName(), 2));
+        } else {
+            BlobRef ref = existing.get(0);
+            ref.setRefCount(ref.getRefCount() + 1);
+        }
+    }
+
+    /**
+     * Record one more reference for every file row in a folder subtree, with two set-based
+     * statements; call before the rows are copied
+     */
+    @Transactional
+    public void addSubtreeReferences(String path) {
+        blobRefRepository.insertMissingForSubtree(path);
+        blobRefRepository.incrementForSubtree(path);
+    }
+
+    /**
+     * Drop the references held by deleted file rows
+     *
+     * @return one location per blob that is no longer referenced, to hand to {@link BlobReclaimService}
+     */
+    @Transactional
+    public List<BlobLocation> release(Collection<BlobLocation> blobs) {
+        Map<String, List<BlobLocation>> byBlob = blobs.stream()
+                .collect(Collectors.groupingBy(BlobLocation::storedName, LinkedHashMap::new, Collectors.toList()));
+        List<String> names = new ArrayList<>(byBlob.keySet());
+        Map<String, BlobRef> refs = new LinkedHashMap<>();
+        for (int from = 0; from < names.size(); from += MAX_NAMES_PER_QUERY) {
+            List<String> chunk = names.subList(from, Math.min(names.size(), from + MAX_NAMES_PER_QUERY));
+            refs.putAll(blobRefRepository.findForUpdate(chunk).stream()
+                    .collect(Collectors.toMap(BlobRef::getStoredName, Function.identity())));
+        }
+
+        List<BlobLocation> unreferenced = new ArrayList<>();
+        for (Map.Entry<String, List<BlobLocation>> entry : byBlob.entrySet()) {
+            BlobRef ref = refs.get(entry.getKey());
+            if (ref == null) {
+                unreferenced.add(entry.getValue().get(0));
+                continue;
+            }
+            long remaining = ref.getRefCount() - entry.getValue().size();
+            if (remaining > 1) {
+                ref.setRefCount(remaining);
+            } else {
+                // Back to a single owner (no row needed) or to none
+                blobRefRepository.delete(ref);
+                if (remaining <= 0) {
+                    unreferenced.add(entry.getValue().get(0));
+                }
+            }
+        }
+        return unreferenced;
+    }
+}
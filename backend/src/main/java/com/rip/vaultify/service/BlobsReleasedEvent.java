@@ -0,0 +1,10 @@
+package com.rip.vaultify.service;
+
+import java.util.List;
+
+/**
+ * Published when file rows are deleted; their blobs are reclaimed once the deleting
+ * transaction has committed
+ */
+public record BlobsReleasedEvent(List<BlobLocation> blobs) {
+}
@@ -0,0 +1,182 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.dto.BulkShareResult;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Shares N files with M users in one call. Ownership of every file, the target users and
+ * the existing permissions are each loaded with a single query. New permission rows are
+ * persisted through Hibernate, which takes their ids from the pooled sequence and batches the
+ * inserts (hibernate.jdbc.batch_size); access changes and unread counters go out as JDBC
+ * batches, all in one transaction.
+ */
+@Service
+public class BulkShareService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkShareService.class);
+
+    // Changed access counts as a new share notification, as in PermissionService.updatePermission
+    private static final String UPDATE_SQL =
+            "UPDATE permissions SET access = ?, viewed = FALSE WHERE id = ?";
+    private static final String UNREAD_SQL =
+            "UPDATE user_counters SET unread_shares = unread_shares + ? WHERE user_id = ?";
+
+    private final FileRepository fileRepository;
+    private final UserRepository userRepository;
+    private final PermissionRepository permissionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxPairs;
+    private final int batchSize;
+
+    public BulkShareService(FileRepository fileRepository,
+                            UserRepository userRepository,
+                            PermissionRepository permissionRepository,
+                            JdbcTemplate jdbcTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${permissions.bulk-share.max-pairs:10000}") int maxPairs,
+                            @Value("${permissions.bulk-share.batch-size:500}") int batchSize) {
+        this.fileRepository = fileRepository;
+        this.userRepository = userRepository;
+        this.permissionRepository = permissionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.maxPairs = maxPairs;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Share every file with every user. Pairs that cannot be shared (file not owned by the
+     * requester, unknown user, sharing with the owner) are reported as FAILED without
+     * affecting the rest.
+     *
+     * @return one result per (file, user) pair, files in the outer order
+     * @throws RuntimeException if the access level is OWNER or the request is too large
+     */
+    @Transactional
+    public List<BulkShareResult> share(List<Long> fileIds, List<String> usernames, Permission.Access access, User owner) {
+        if (access == Permission.Access.OWNER) {
+            throw new RuntimeException("Cannot grant OWNER access. Only the file creator is the owner.");
+        }
+        Set<Long> files = new LinkedHashSet<>(fileIds);
+        Set<String> names = new LinkedHashSet<>(usernames);
+        if (files.isEmpty() || names.isEmpty()) {
+            return List.of();
+        }
+        if ((long) files.size() * names.size() > maxPairs) {
+            throw new RuntimeException("Bulk share is limited to " + maxPairs + " file/user pairs per request");
+        }
+
+        Set<Long> owned = new HashSet<>(fileRepository.findOwnedIds(files, owner.getId(), Permission.Access.OWNER));
+        Map<String, User> users = userRepository.findByUsernameIn(names).stream()
+                .collect(Collectors.toMap(User::getUsername, Function.identity()));
+        Set<Long> userIds = users.values().stream().map(User::getId).collect(Collectors.toSet());
+
+        Map<String, PermissionRepository.ShareEntry> existing = new HashMap<>();
+        if (!owned.isEmpty() && !userIds.isEmpty()) {
+            for (PermissionRepository.ShareEntry entry : permissionRepository.findShareEntriesForPairs(owned, userIds)) {
+                existing.put(pairKey(entry.getFileId(), entry.getUserId()), entry);
+            }
+        }
+
+        List<BulkShareResult> results = new ArrayList<>(files.size() * names.size());
+        List<Permission> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Set<Long> changedFiles = new HashSet<>();
+        Set<Long> changedUsers = new HashSet<>();
+        // New unviewed shares per user, applied to the unread counters in one batch
+        Map<Long, Long> unread = new HashMap<>();
+        for (Long fileId : files) {
+            for (String username : names) {
+                if (!owned.contains(fileId)) {
+                    results.add(BulkShareResult.failed(fileId, username, "File not found or you are not its owner"));
+                    continue;
+                }
+                User target = users.get(username);
+                if (target == null) {
+                    results.add(BulkShareResult.failed(fileId, username, "User not found: " + username));
+                    continue;
+                }
+                if (target.getId().equals(owner.getId())) {
+                    results.add(BulkShareResult.failed(fileId, username, "Cannot share file with the owner"));
+                    continue;
+                }
+                PermissionRepository.ShareEntry current = existing.get(pairKey(fileId, target.getId()));
+                String status;
+                if (current == null) {
+                    Permission permission = new Permission();
+                    permission.setFile(fileRepository.getReferenceById(fileId));
+                    permission.setUser(target);
+                    permission.setAccess(access);
+                    permission.setViewed(false);
+                    inserts.add(permission);
+                    unread.merge(target.getId(), 1L, Long::sum);
+                    status = "CREATED";
+                } else if (current.getAccess() == Permission.Access.OWNER) {
+                    results.add(BulkShareResult.failed(fileId, username, "Cannot share file with the owner"));
+                    continue;
+                } else if (current.getAccess() == access) {
+                    results.add(new BulkShareResult(fileId, username, "UNCHANGED", null));
+                    continue;
+                } else {
+                    updates.add(new Object[]{access.name(), current.getId()});
+                    if (Boolean.TRUE.equals(current.getViewed())) {
+                        unread.merge(target.getId(), 1L, Long::sum);
+                    }
+                    status = "UPDATED";
+                }
+                changedFiles.add(fileId);
+                changedUsers.add(target.getId());
+                results.add(new BulkShareResult(fileId, username, status, null));
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            permissionRepository.saveAll(inserts);
+            permissionRepository.flush();
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates, batchSize, (ps, row) -> {
+                ps.setString(1, (String) row[0]);
+                ps.setLong(2, (Long) row[1]);
+            });
+        }
+        if (!unread.isEmpty()) {
+            jdbcTemplate.batchUpdate(UNREAD_SQL, new ArrayList<>(unread.entrySet()), batchSize, (ps, entry) -> {
+                ps.setLong(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+        }
+        if (!changedFiles.isEmpty()) {
+            eventPublisher.publishEvent(new PermissionsBulkChangedEvent(changedFiles, changedUsers));
+        }
+        logger.info("Bulk share by user {} - files: {}, users: {}, created: {}, updated: {}",
+                owner.getId(), files.size(), names.size(), inserts.size(), updates.size());
+        return results;
+    }
+
+    private static String pairKey(Long fileId, Long userId) {
+        return fileId + ":" + userId;
+    }
+}
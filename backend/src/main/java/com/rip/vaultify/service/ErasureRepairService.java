@@ -0,0 +1,173 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.storage.ErasureCoder;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import com.rip.vaultify.storage.StorageVolume;
+import com.rip.vaultify.storage.StorageVolumes;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background job that walks the erasure-coded blobs and rebuilds shards lost to a failed or
+ * draining volume, so a blob never sits with less redundancy than its layout promises.
+ */
+@Service
+public class ErasureRepairService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ErasureRepairService.class);
+    private static final int MAX_REPORTED_IDS = 1000;
+
+    private final FileRepository fileRepository;
+    private final ErasureCoder erasureCoder;
+    private final StorageIoMonitor ioMonitor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final int batchSize;
+    private final long latencyThresholdMs;
+    private final long backoffMs;
+
+    private volatile Map<String, Object> lastRun;
+
+    public ErasureRepairService(FileRepository fileRepository,
+                                ErasureCoder erasureCoder,
+                                StorageIoMonitor ioMonitor,
+                                @Value("${storage.erasure.repair-interval-hours:6}") long intervalHours,
+                                @Value("${storage.erasure.repair-batch-size:200}") int batchSize,
+                                @Value("${storage.scrub.latency-threshold-ms:50}") long latencyThresholdMs,
+                                @Value("${storage.scrub.backoff-ms:2000}") long backoffMs) {
+        this.fileRepository = fileRepository;
+        this.erasureCoder = erasureCoder;
+        this.ioMonitor = ioMonitor;
+        this.batchSize = batchSize;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.backoffMs = backoffMs;
+
+        if (intervalHours > 0) {
+            scheduler.scheduleWithFixedDelay(this::runRepair, intervalHours, intervalHours, TimeUnit.HOURS);
+        }
+    }
+
+    /**
+     * Interrupt the pass in progress (the next start begins a fresh one) and cancel the schedule
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Erasure repair did not stop within 10s of shutdown");
+        }
+    }
+
+    /**
+     * Start a repair pass in the background
+     *
+     * @return false if a pass is already running
+     */
+    public boolean triggerRepair() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::runRepair);
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("lastRun", lastRun);
+        return status;
+    }
+
+    void runRepair() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Instant startedAt = Instant.now();
+        long scanned = 0;
+        long repairedFiles = 0;
+        long rebuiltShards = 0;
+        List<Long> failedFileIds = new ArrayList<>();
+        logger.info("Erasure repair started");
+        try {
+            long lastId = 0;
+            while (true) {
+                List<File> batch = fileRepository.findByIdGreaterThanAndDataShardsIsNotNullOrderByIdAsc(
+                        lastId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (File file : batch) {
+                    lastId = file.getId();
+                    scanned++;
+                    yieldToRequestTraffic();
+                    try {
+                        ErasureCoder.RepairResult result = erasureCoder.repair(file);
+                        if (result.rebuiltShards() > 0) {
+                            repairedFiles++;
+                            rebuiltShards += result.rebuiltShards();
+                            recordShardVolumes(file, result.shardVolumes());
+                        }
+                    } catch (IOException e) {
+                        logger.error("Erasure repair failed - fileId: {}, error: {}", file.getId(), e.getMessage());
+                        if (failedFileIds.size() < MAX_REPORTED_IDS) {
+                            failedFileIds.add(file.getId());
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Erasure repair interrupted");
+        } catch (RuntimeException e) {
+            logger.error("Erasure repair aborted: {}", e.getMessage(), e);
+        } finally {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", startedAt.toString());
+            report.put("finishedAt", Instant.now().toString());
+            report.put("scanned", scanned);
+            report.put("repairedFiles", repairedFiles);
+            report.put("rebuiltShards", rebuiltShards);
+            report.put("failedFileIds", failedFileIds);
+            lastRun = report;
+            running.set(false);
+            logger.info("Erasure repair finished - {}", report);
+        }
+    }
+
+    /**
+     * Persist shard volumes that moved during the repair (a shard rebuilt off a lost volume)
+     */
+    private void recordShardVolumes(File file, List<StorageVolume> shardVolumes) {
+        String ids = StorageVolumes.joinIds(shardVolumes);
+        if (ids.equals(file.getReplicaVolumes())) {
+            return;
+        }
+        StorageVolume first = shardVolumes.get(0);
+        fileRepository.relocate(file.getId(), file.getFilePath(), first.getId(),
+                erasureCoder.shardPath(first, file, 0).toString(), ids);
+    }
+
+    private void yieldToRequestTraffic() throws InterruptedException {
+        while (ioMonitor.getRecentLatencyMillis() > latencyThresholdMs) {
+            Thread.sleep(backoffMs);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.rip.vaultify.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory index of file ids as compressed 64-bit bitmaps: per user, the files they can read and
+ * write; per folder, the files it contains. "Which files in this folder can U read" becomes
+ * one bitmap intersection instead of a permission lookup per file. Only file-level
+ * permissions are indexed; access inherited from folder grants is resolved by
+ * {@link PermissionService#getInheritedAccess}.
+ * <p>
+ * Both maps are weight-bounded caches: entries evicted under memory pressure are reloaded
+ * from the database on next use. The index is warmed at startup by scanning the permissions
+ * and files tables, and kept current from {@link PermissionChangedEvent} and
+ * {@link FileFolderChangedEvent}. Published bitmaps are never mutated; updates swap in a
+ * modified copy, so readers need no locking.
+ */
+@Service
+public class FileAccessIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileAccessIndex.class);
+    private static final int WARMUP_BATCH_SIZE = 10_000;
+
+    private final PermissionRepository permissionRepository;
+    private final FileRepository fileRepository;
+    private final boolean enabled;
+    private final LoadingCache<Long, UserAccess> userAccess;
+    private final LoadingCache<Long, Roaring64Bitmap> folderFiles;
+    private final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor();
+
+    // Keys changed while the warm-up scan was running; their warmed entries may be stale
+    private volatile Set<Long> dirtyUsers;
+    private volatile Set<Long> dirtyFolders;
+
+    /**
+     * Files a user can read (any access) and write (WRITE or OWNER)
+     */
+    public record UserAccess(Roaring64Bitmap readable, Roaring64Bitmap writable) {
+
+        long sizeInBytes() {
+            return readable.getLongSizeInBytes() + writable.getLongSizeInBytes();
+        }
+    }
+
+    public FileAccessIndex(PermissionRepository permissionRepository,
+                           FileRepository fileRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${access-index.enabled:true}") boolean enabled,
+                           @Value("${access-index.max-memory-mb:256}") long maxMemoryMb) {
+        this.permissionRepository = permissionRepository;
+        this.fileRepository = fileRepository;
+        this.enabled = enabled;
+        long budget = Math.max(1, maxMemoryMb) * 1024 * 1024;
+        // User bitmaps are the large ones; folders get a quarter of the budget
+        this.userAccess = Caffeine.newBuilder()
+                .maximumWeight(budget - budget / 4)
+                .weigher((Long userId, UserAccess access) -> weight(access.sizeInBytes()))
+                .recordStats()
+                .build(this::loadUser);
+        this.folderFiles = Caffeine.newBuilder()
+                .maximumWeight(budget / 4)
+                .weigher((Long folderId, Roaring64Bitmap files) -> weight(files.getLongSizeInBytes()))
+                .recordStats()
+                .build(this::loadFolder);
+        CaffeineCacheMetrics.monitor(meterRegistry, userAccess, "fileAccessIndex.users");
+        CaffeineCacheMetrics.monitor(meterRegistry, folderFiles, "fileAccessIndex.folders");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ids of the files in a folder that the user can read
+     */
+    public Roaring64Bitmap readableInFolder(Long userId, Long folderId) {
+        return Roaring64Bitmap.and(userAccess.get(userId).readable(), folderFiles.get(folderId));
+    }
+
+    /**
+     * Ids of the files in a folder that the user can write
+     */
+    public Roaring64Bitmap writableInFolder(Long userId, Long folderId) {
+        return Roaring64Bitmap.and(userAccess.get(userId).writable(), folderFiles.get(folderId));
+    }
+
+    public boolean canRead(Long userId, Long fileId) {
+        return userAccess.get(userId).readable().contains(fileId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            warmupExecutor.execute(this::runWarmUp);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long fileId = event.fileId();
+        if (event.userId() == null) {
+            // File deleted: drop it from every cached user
+            for (Long userId : userAccess.asMap().keySet()) {
+                updateUser(userId, access -> access.readable().contains(fileId)
+                        ? new UserAccess(without(access.readable(), fileId), without(access.writable(), fileId))
+                        : access);
+            }
+            return;
+        }
+        Optional<Permission.Access> current = permissionRepository.findAccess(event.fileId(), event.userId());
+        boolean readable = current.isPresent();
+        boolean writable = current.filter(a -> a != Permission.Access.READ).isPresent();
+        updateUser(event.userId(), access -> new UserAccess(
+                readable ? with(access.readable(), fileId) : without(access.readable(), fileId),
+                writable ? with(access.writable(), fileId) : without(access.writable(), fileId)));
+    }
+
+    /**
+     * Many pairs changed at once: reloading each affected user is cheaper than one lookup per pair
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionsBulkChanged(PermissionsBulkChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> dirty = dirtyUsers;
+        if (dirty != null) {
+            dirty.addAll(event.userIds());
+        }
+        userAccess.invalidateAll(event.userIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilesDeleted(FilesDeletedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Roaring64Bitmap deleted = new Roaring64Bitmap();
+        event.fileIds().forEach(fileId -> deleted.addLong(fileId));
+        for (Long userId : userAccess.asMap().keySet()) {
+            updateUser(userId, access -> Roaring64Bitmap.intersects(access.readable(), deleted)
+                    ? new UserAccess(Roaring64Bitmap.andNot(access.readable(), deleted),
+                            Roaring64Bitmap.andNot(access.writable(), deleted))
+                    : access);
+        }
+        Set<Long> dirty = dirtyFolders;
+        if (dirty != null) {
+            dirty.addAll(event.folderIds());
+        }
+        folderFiles.invalidateAll(event.folderIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileFolderChanged(FileFolderChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long fileId = event.fileId();
+        if (event.fromFolderId() != null) {
+            updateFolder(event.fromFolderId(), files -> without(files, fileId));
+        }
+        if (event.toFolderId() != null) {
+            updateFolder(event.toFolderId(), files -> with(files, fileId));
+        }
+    }
+
+    private void updateUser(Long userId, UnaryOperator<UserAccess> change) {
+        Set<Long> dirty = dirtyUsers;
+        if (dirty != null) {
+            dirty.add(userId);
+        }
+        // Not cached: the next load reads the committed state anyway
+        userAccess.asMap().computeIfPresent(userId, (id, access) -> change.apply(access));
+    }
+
+    private void updateFolder(Long folderId, UnaryOperator<Roaring64Bitmap> change) {
+        Set<Long> dirty = dirtyFolders;
+        if (dirty != null) {
+            dirty.add(folderId);
+        }
+        folderFiles.asMap().computeIfPresent(folderId, (id, files) -> change.apply(files));
+    }
+
+    private UserAccess loadUser(Long userId) {
+        Roaring64Bitmap readable = new Roaring64Bitmap();
+        Roaring64Bitmap writable = new Roaring64Bitmap();
+        for (PermissionRepository.AccessEntry entry : permissionRepository.findAccessEntriesByUserId(userId)) {
+            add(readable, writable, entry.getFileId(), entry.getAccess());
+        }
+        // Treat the file creator as owner (defensive in case owner permission row is missing)
+        for (Long fileId : fileRepository.findIdsByUserId(userId)) {
+            add(readable, writable, fileId, Permission.Access.OWNER);
+        }
+        readable.runOptimize();
+        writable.runOptimize();
+        return new UserAccess(readable, writable);
+    }
+
+    private Roaring64Bitmap loadFolder(Long folderId) {
+        Roaring64Bitmap files = new Roaring64Bitmap();
+        for (Long fileId : fileRepository.findIdsByFolderId(folderId)) {
+            files.addLong(fileId);
+        }
+        files.runOptimize();
+        return files;
+    }
+
+    /**
+     * Build every user's and folder's bitmap in two sequential table scans, then publish them.
+     * Entries touched by events during the scan are discarded and reload on demand.
+     */
+    private void runWarmUp() {
+        long started = System.currentTimeMillis();
+        dirtyUsers = ConcurrentHashMap.newKeySet();
+        dirtyFolders = ConcurrentHashMap.newKeySet();
+        try {
+            Map<Long, Roaring64Bitmap> readable = new HashMap<>();
+            Map<Long, Roaring64Bitmap> writable = new HashMap<>();
+            Map<Long, Roaring64Bitmap> folders = new HashMap<>();
+
+            long lastId = 0;
+            List<PermissionRepository.AccessEntry> permissions;
+            do {
+                permissions = permissionRepository.findAccessEntriesAfter(lastId, PageRequest.of(0, WARMUP_BATCH_SIZE));
+                for (PermissionRepository.AccessEntry entry : permissions) {
+                    add(readable.computeIfAbsent(entry.getUserId(), id -> new Roaring64Bitmap()),
+                            writable.computeIfAbsent(entry.getUserId(), id -> new Roaring64Bitmap()),
+                            entry.getFileId(), entry.getAccess());
+                    lastId = entry.getId();
+                }
+            } while (!permissions.isEmpty());
+
+            lastId = 0;
+            List<FileRepository.FilePlacement> placements;
+            do {
+                placements = fileRepository.findPlacementsAfter(lastId, PageRequest.of(0, WARMUP_BATCH_SIZE));
+                for (FileRepository.FilePlacement placement : placements) {
+                    add(readable.computeIfAbsent(placement.getUserId(), id -> new Roaring64Bitmap()),
+                            writable.computeIfAbsent(placement.getUserId(), id -> new Roaring64Bitmap()),
+                            placement.getId(), Permission.Access.OWNER);
+                    folders.computeIfAbsent(placement.getFolderId(), id -> new Roaring64Bitmap())
+                            .addLong(placement.getId());
+                    lastId = placement.getId();
+                }
+            } while (!placements.isEmpty());
+
+            for (Map.Entry<Long, Roaring64Bitmap> entry : readable.entrySet()) {
+                Roaring64Bitmap read = entry.getValue();
+                Roaring64Bitmap write = writable.get(entry.getKey());
+                read.runOptimize();
+                write.runOptimize();
+                userAccess.asMap().putIfAbsent(entry.getKey(), new UserAccess(read, write));
+            }
+            for (Map.Entry<Long, Roaring64Bitmap> entry : folders.entrySet()) {
+                entry.getValue().runOptimize();
+                folderFiles.asMap().putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            logger.info("File access index warmed - users: {}, folders: {}, took {} ms",
+                    readable.size(), folders.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            logger.error("File access index warm-up failed, entries will load on demand: {}", e.getMessage(), e);
+        } finally {
+            Set<Long> users = dirtyUsers;
+            Set<Long> changedFolders = dirtyFolders;
+            dirtyUsers = null;
+            dirtyFolders = null;
+            userAccess.invalidateAll(new ArrayList<>(users));
+            folderFiles.invalidateAll(new ArrayList<>(changedFolders));
+        }
+    }
+
+    private static void add(Roaring64Bitmap readable, Roaring64Bitmap writable, Long fileId, Permission.Access access) {
+        readable.addLong(fileId);
+        if (access != Permission.Access.READ) {
+            writable.addLong(fileId);
+        }
+    }
+
+    private static Roaring64Bitmap with(Roaring64Bitmap bitmap, long fileId) {
+        if (bitmap.contains(fileId)) {
+            return bitmap;
+        }
+        Roaring64Bitmap copy = bitmap.clone();
+        copy.addLong(fileId);
+        return copy;
+    }
+
+    private static Roaring64Bitmap without(Roaring64Bitmap bitmap, long fileId) {
+        if (!bitmap.contains(fileId)) {
+            return bitmap;
+        }
+        Roaring64Bitmap copy = bitmap.clone();
+        copy.removeLong(fileId);
+        return copy;
+    }
+
+    private static int weight(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes));
+    }
+}
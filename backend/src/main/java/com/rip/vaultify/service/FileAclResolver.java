@@ -0,0 +1,132 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves a user's access to many files at once. Listings used to check ownership and read
+ * access file by file (several queries each); this loads the user's permissions and the owner
+ * of every file in a single query, plus one cached inherited-access lookup per folder.
+ */
+@Service
+public class FileAclResolver {
+
+    private final PermissionRepository permissionRepository;
+    private final PermissionService permissionService;
+
+    public FileAclResolver(PermissionRepository permissionRepository, PermissionService permissionService) {
+        this.permissionRepository = permissionRepository;
+        this.permissionService = permissionService;
+    }
+
+    /**
+     * A user's effective access to one file, plus who owns it
+     */
+    public record FileAcl(boolean owner, Permission.Access access, Long ownerId, String ownerUsername) {
+
+        public boolean canRead() {
+            return owner || access == Permission.Access.READ || access == Permission.Access.WRITE;
+        }
+
+        public boolean canWrite() {
+            return owner || access == Permission.Access.WRITE;
+        }
+
+        // Readable through a share rather than owned
+        public boolean isShared() {
+            return !owner && canRead();
+        }
+    }
+
+    // What resolution needs to know about a file, from an entity or a projection row
+    private record Target(Long fileId, Long folderId, Long creatorId, String creatorUsername) {}
+
+    /**
+     * Access of the user to each of the files, keyed by file id
+     */
+    public Map<Long, FileAcl> resolve(Collection<File> files, Long userId) {
+        return resolveTargets(files.stream()
+                .map(file -> new Target(file.getId(),
+                        file.getFolder() != null ? file.getFolder().getId() : null,
+                        file.getUser() != null ? file.getUser().getId() : null,
+                        file.getUser() != null ? file.getUser().getUsername() : null))
+                .toList(), userId);
+    }
+
+    /**
+     * Same as {@link #resolve(Collection, Long)} for listing rows, so listings never load entities
+     */
+    public Map<Long, FileAcl> resolveRows(Collection<FileRepository.FileRow> rows, Long userId) {
+        return resolveTargets(rows.stream()
+                .map(row -> new Target(row.getId(), row.getFolderId(), row.getOwnerId(), row.getOwnerUsername()))
+                .toList(), userId);
+    }
+
+    private Map<Long, FileAcl> resolveTargets(List<Target> files, Long userId) {
+        if (files.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> fileIds = files.stream().map(Target::fileId).distinct().toList();
+
+        Map<Long, PermissionRepository.AclRow> userRows = new HashMap<>();
+        Map<Long, PermissionRepository.AclRow> ownerRows = new HashMap<>();
+        for (PermissionRepository.AclRow row : permissionRepository.findAclRows(fileIds, userId, Permission.Access.OWNER)) {
+            if (row.getAccess() == Permission.Access.OWNER) {
+                ownerRows.putIfAbsent(row.getFileId(), row);
+            }
+            if (row.getUserId().equals(userId)) {
+                userRows.put(row.getFileId(), row);
+            }
+        }
+
+        // Grants inherited from folders: one cached lookup per distinct folder, not per file
+        Map<Long, Optional<Permission.Access>> inherited = new HashMap<>();
+        for (Target file : files) {
+            if (file.folderId() != null) {
+                inherited.computeIfAbsent(file.folderId(),
+                        folderId -> permissionService.getInheritedAccess(folderId, userId));
+            }
+        }
+
+        Map<Long, FileAcl> result = new HashMap<>();
+        for (Target file : files) {
+            PermissionRepository.AclRow own = userRows.get(file.fileId());
+            PermissionRepository.AclRow ownerRow = ownerRows.get(file.fileId());
+            // Treat the file creator as owner (defensive in case owner permission row is missing)
+            boolean creator = userId.equals(file.creatorId());
+            boolean owner = creator || (own != null && own.getAccess() == Permission.Access.OWNER);
+            Permission.Access access = owner ? Permission.Access.OWNER : own != null ? own.getAccess() : null;
+            if (!owner && file.folderId() != null) {
+                Permission.Access folderAccess = inherited.get(file.folderId()).orElse(null);
+                if (folderAccess != null && (access == null || folderAccess.compareTo(access) > 0)) {
+                    access = folderAccess;
+                }
+            }
+
+            Long ownerId;
+            String ownerUsername;
+            if (ownerRow != null) {
+                ownerId = ownerRow.getUserId();
+                ownerUsername = ownerRow.getUsername();
+            } else {
+                ownerId = file.creatorId();
+                ownerUsername = file.creatorUsername();
+            }
+            result.put(file.fileId(), new FileAcl(owner, access, ownerId, ownerUsername));
+        }
+        return result;
+    }
+
+    public FileAcl resolve(File file, Long userId) {
+        return resolve(List.of(file), userId).get(file.getId());
+    }
+}
@@ -0,0 +1,16 @@
+package com.rip.vaultify.service;
+
+/**
+ * Published when a file enters, leaves or moves between folders. fromFolderId is null for a
+ * new file and toFolderId is null for a deleted one.
+ */
+public record FileFolderChangedEvent(Long fileId, Long fromFolderId, Long toFolderId) {
+
+    public static FileFolderChangedEvent created(Long fileId, Long folderId) {
+        return new FileFolderChangedEvent(fileId, null, folderId);
+    }
+
+    public static FileFolderChangedEvent deleted(Long fileId, Long folderId) {
+        return new FileFolderChangedEvent(fileId, folderId, null);
+    }
+}
@@ -1,53 +1,93 @@
 package com.rip.vaultify.service;
 
+import com.rip.vaultify.dto.CursorPage;
 import com.rip.vaultify.dto.FileResponse;
 import com.rip.vaultify.model.File;
 import com.rip.vaultify.model.Folder;
 import com.rip.vaultify.model.User;
 import com.rip.vaultify.repository.FileRepository;
 import com.rip.vaultify.repository.FolderRepository;
-import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.FolderStatsRepository;
+import com.rip.vaultify.storage.BlobChecksums;
+import com.rip.vaultify.storage.BlobStore;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class FileService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileService.class);
+    // Readable sets up to this size are fetched with an IN list, larger ones by scanning the folder
+    private static final int MAX_READABLE_ID_LIST = 1000;
+    // Scan budget per page: windows of at least SCAN_WINDOW rows, at most MAX_SCANNED_WINDOWS of them
+    private static final int SCAN_WINDOW = 200;
+    private static final int MAX_SCANNED_WINDOWS = 10;
     private final FileRepository fileRepository;
     private final FolderRepository folderRepository;
+    private final FolderStatsRepository folderStatsRepository;
     private final PermissionService permissionService;
-    private final PermissionRepository permissionRepository;
+    private final FileAclResolver aclResolver;
+    private final FileAccessIndex accessIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StorageIoMonitor ioMonitor;
+    private final BlobStore blobStore;
+    private final StorageQuotaService quotaService;
+    private final BlobRefService blobRefService;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${file.upload.directory:uploads}")
-    private String uploadDirectory;
-
-    public FileService(FileRepository fileRepository, FolderRepository folderRepository, PermissionService permissionService, PermissionRepository permissionRepository) {
+    public FileService(FileRepository fileRepository, FolderRepository folderRepository,
+                       FolderStatsRepository folderStatsRepository, PermissionService permissionService,
+                       FileAclResolver aclResolver, FileAccessIndex accessIndex, ApplicationEventPublisher eventPublisher,
+                       StorageIoMonitor ioMonitor, BlobStore blobStore, StorageQuotaService quotaService,
+                       BlobRefService blobRefService, PlatformTransactionManager transactionManager) {
         this.fileRepository = fileRepository;
         this.folderRepository = folderRepository;
+        this.folderStatsRepository = folderStatsRepository;
         this.permissionService = permissionService;
-        this.permissionRepository = permissionRepository;
+        this.aclResolver = aclResolver;
+        this.accessIndex = accessIndex;
+        this.eventPublisher = eventPublisher;
+        this.ioMonitor = ioMonitor;
+        this.blobStore = blobStore;
+        this.quotaService = quotaService;
+        this.blobRefService = blobRefService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
+    /**
+     * Store an upload. Not one transaction: the blob is streamed to disk without holding a
+     * database connection, and the rows are written in a short transaction afterwards. The
+     * returned file has its folder and owner loaded.
+     */
     public File uploadFile(MultipartFile multipartFile, Long folderId, Long userId) throws IOException {
         Objects.requireNonNull(folderId, "folderId cannot be null");
         Objects.requireNonNull(userId, "userId cannot be null");
         // Validate folder exists and belongs to user
-        Folder folder = folderRepository.findById(folderId)
+        Folder folder = folderRepository.findWithOwnerById(folderId)
                 .orElseThrow(() -> new RuntimeException("Folder not found with id: " + folderId));
         
         if (!folder.getUser().getId().equals(userId)) {
@@ -56,66 +96,197 @@ public class FileService {
         
         User user = folder.getUser();
 
-        // Create upload directory if not exists
-        Path uploadPath = Paths.get(uploadDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
         // Generate unique file name
         String originalName = multipartFile.getOriginalFilename();
         String storedName = UUID.randomUUID().toString() + "_" + originalName;
-        Path filePath = uploadPath.resolve(storedName);
-
-        // Save file to disk
-        Files.copy(multipartFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
 
-        // Create file entity
+        // Create file entity; the blob store fills in where the blob lives
         File file = new File(
                 originalName,
                 storedName,
                 multipartFile.getContentType(),
                 multipartFile.getSize(),
-                filePath.toString(),
+                null,
                 folder,
                 user
         );
 
-        File savedFile = fileRepository.save(file);
-        
-        // Create OWNER permission for the file creator
-        permissionService.createOwnerPermission(savedFile, user);
-        
-        return savedFile;
+        // Reject up front when the declared size alone is over quota
+        long remaining = quotaService.getRemainingBytes(userId);
+        if (multipartFile.getSize() > remaining) {
+            throw new RuntimeException("Storage quota exceeded: upload is larger than the remaining " + remaining + " bytes");
+        }
+
+        // Stream the upload into storage, hashing it on the way through and stopping as soon
+        // as it passes the remaining quota (the blob store discards the partial write)
+        try (DigestInputStream in = BlobChecksums.digesting(quotaService.limit(multipartFile.getInputStream(), remaining))) {
+            blobStore.write(file, in);
+            file.setChecksum(BlobChecksums.toHex(in.getMessageDigest()));
+        } catch (QuotaLimitedInputStream.QuotaExceededException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+
+        try {
+            return transactionTemplate.execute(status -> {
+                // Concurrent uploads may have used the quota in the meantime; the charge re-checks atomically
+                quotaService.charge(userId, sizeOf(file));
+
+                File savedFile = fileRepository.save(file);
+                folderStatsRepository.addFiles(folder, 1, sizeOf(savedFile));
+                eventPublisher.publishEvent(FileFolderChangedEvent.created(savedFile.getId(), folderId));
+
+                // Create OWNER permission for the file creator
+                permissionService.createOwnerPermission(savedFile, user);
+                return savedFile;
+            });
+        } catch (RuntimeException e) {
+            // Nothing references the blob once the transaction has rolled back
+            blobStore.delete(file);
+            throw e;
+        }
     }
 
     public List<FileResponse> getFilesByFolder(Long folderId, Long userId) {
         Objects.requireNonNull(folderId, "folderId cannot be null");
         Objects.requireNonNull(userId, "userId cannot be null");
         
-        User user = new User();
-        user.setId(userId);
-
-        List<File> allFiles = fileRepository.findByFolderId(folderId);
+        List<FileRepository.FileRow> candidates = findReadableRows(folderId, userId);
+        Map<Long, FileAclResolver.FileAcl> acls = aclResolver.resolveRows(candidates, userId);
 
-        return allFiles.stream()
-                .filter(file -> permissionService.isOwner(file, user) ||
-                        permissionService.hasReadPermission(file, user))
-                .map(file -> new FileResponse(file, user, permissionService))
+        return candidates.stream()
+                .filter(row -> acls.get(row.getId()).canRead())
+                .map(row -> new FileResponse(row, acls.get(row.getId())))
                 .toList();
     }
 
+    /**
+     * One keyset page of the files in a folder that the user may read, sorted by the given
+     * key with ties broken by id. Only the page is loaded: the folder owner and users with an
+     * inherited grant page through the folder directly. Others get the files the access index
+     * lists as readable: looked up by id when there are only a few, otherwise by paging through
+     * the folder and keeping the readable rows. A page may come back short (after the ACL check
+     * without the index, or when the scan budget runs out); nextCursor still continues after
+     * the last row scanned.
+     */
+    public CursorPage<File> getReadableFilesPage(Long folderId, Long userId, FileSort sort, Sort.Direction direction,
+                                                 String cursor, int limit) {
+        ReadablePage page = readablePage(folderId, userId, sort, direction, cursor, limit);
+        return new CursorPage<>(page.files(), page.nextCursor());
+    }
+
+    /**
+     * Same page as {@link #getReadableFilesPage}, as responses carrying each file's ACL
+     */
+    public CursorPage<FileResponse> getFilesPage(Long folderId, Long userId, FileSort sort, Sort.Direction direction,
+                                                 String cursor, int limit) {
+        ReadablePage page = readablePage(folderId, userId, sort, direction, cursor, limit);
+        return new CursorPage<>(page.files(), page.nextCursor())
+                .map(file -> new FileResponse(file, page.acls().get(file.getId())));
+    }
+
+    private record ReadablePage(List<File> files, Map<Long, FileAclResolver.FileAcl> acls, String nextCursor) {}
+
+    private ReadablePage readablePage(Long folderId, Long userId, FileSort sort, Sort.Direction direction,
+                                      String cursor, int limit) {
+        Objects.requireNonNull(folderId, "folderId cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        Folder folder = folderRepository.findById(folderId)
+                .orElseThrow(() -> new RuntimeException("Folder not found with id: " + folderId));
+        ScrollPosition position = KeysetCursor.decode(cursor, sort.property(), sort::parse);
+        Sort order = Sort.by(direction, sort.property()).and(Sort.by(direction, "id"));
+
+        List<File> files;
+        File last = null;
+        boolean more;
+        if (folder.getUser().getId().equals(userId) || !accessIndex.isEnabled()
+                || permissionService.getInheritedAccess(folderId, userId).isPresent()) {
+            Window<File> window = fileRepository.findByFolderId(folderId, position, order, Limit.of(limit));
+            files = window.getContent();
+            more = window.hasNext();
+        } else {
+            Roaring64Bitmap readable = accessIndex.readableInFolder(userId, folderId);
+            if (readable.isEmpty()) {
+                return new ReadablePage(List.of(), Map.of(), null);
+            }
+            if (readable.getLongCardinality() <= MAX_READABLE_ID_LIST) {
+                List<Long> ids = new ArrayList<>((int) readable.getLongCardinality());
+                readable.forEach((long id) -> ids.add(id));
+                Window<File> window = fileRepository.findByFolderIdAndIdIn(folderId, ids, position, order, Limit.of(limit));
+                files = window.getContent();
+                more = window.hasNext();
+            } else {
+                // Too many ids for an IN list: page through the folder, keeping readable rows
+                files = new ArrayList<>(limit);
+                more = true;
+                Limit window = Limit.of(Math.max(limit, SCAN_WINDOW));
+                for (int scanned = 0; scanned < MAX_SCANNED_WINDOWS && more && files.size() < limit; scanned++) {
+                    Window<File> scan = fileRepository.findByFolderId(folderId, position, order, window);
+                    List<File> rows = scan.getContent();
+                    int next = 0;
+                    while (next < rows.size() && files.size() < limit) {
+                        File file = rows.get(next++);
+                        last = file;
+                        if (readable.contains(file.getId())) {
+                            files.add(file);
+                        }
+                    }
+                    more = next < rows.size() || scan.hasNext();
+                    if (last != null) {
+                        position = KeysetCursor.after(sort.property(), sort.valueOf(last), last.getId());
+                    }
+                }
+            }
+        }
+        if (last == null && !files.isEmpty()) {
+            last = files.get(files.size() - 1);
+        }
+
+        Map<Long, FileAclResolver.FileAcl> acls = aclResolver.resolve(files, userId);
+        String nextCursor = null;
+        if (more && last != null) {
+            nextCursor = KeysetCursor.encode(sort.property(), sort.valueOf(last), last.getId());
+        }
+        return new ReadablePage(files.stream().filter(file -> acls.get(file.getId()).canRead()).toList(), acls, nextCursor);
+    }
+
+    /**
+     * Files of a folder that may be readable by the user: with the access index, only the
+     * intersection of the user's readable bitmap and the folder's bitmap is loaded. A grant
+     * inherited from the folder or an ancestor makes every file in it readable.
+     */
+    private List<File> findReadableCandidates(Long folderId, Long userId) {
+        if (!accessIndex.isEnabled() || permissionService.getInheritedAccess(folderId, userId).isPresent()) {
+            return fileRepository.findByFolderIdWithOwner(folderId);
+        }
+        List<Long> ids = readableIdsInFolder(userId, folderId);
+        return ids.isEmpty() ? List.of() : fileRepository.findWithOwnerByIdIn(ids);
+    }
+
+    private List<Long> readableIdsInFolder(Long userId, Long folderId) {
+        Roaring64Bitmap readable = accessIndex.readableInFolder(userId, folderId);
+        List<Long> ids = new ArrayList<>(Math.toIntExact(readable.getLongCardinality()));
+        readable.forEach((long id) -> ids.add(id));
+        return ids;
+    }
+
+    // Same candidates as findReadableCandidates, as projection rows
+    private List<FileRepository.FileRow> findReadableRows(Long folderId, Long userId) {
+        if (!accessIndex.isEnabled() || permissionService.getInheritedAccess(folderId, userId).isPresent()) {
+            return fileRepository.findRowsByFolderId(folderId);
+        }
+        List<Long> ids = readableIdsInFolder(userId, folderId);
+        return ids.isEmpty() ? List.of() : fileRepository.findRowsByIdIn(ids);
+    }
+
     public File getFileByIdAndUser(Long id, Long userId) {
         Objects.requireNonNull(id, "file id cannot be null");
         Objects.requireNonNull(userId, "userId cannot be null");
-        File file = fileRepository.findById(id)
+        // Callers render the file after the lookup, so load what FileResponse reads
+        File file = fileRepository.findWithFolderAndOwnerById(id)
                 .orElseThrow(() -> new RuntimeException("File not found with id: " + id));
         
-        User user = new User();
-        user.setId(userId);
-        
         // Check if user has read permission (owner, read, or write)
-        if (!permissionService.isOwner(file, user) && !permissionService.hasReadPermission(file, user)) {
+        if (!permissionService.hasReadPermission(file, userId)) {
             throw new RuntimeException("Access denied: You do not have permission to access this file");
         }
         
@@ -128,11 +299,8 @@ public class FileService {
         File file = fileRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("File not found with id: " + id));
         
-        User user = new User();
-        user.setId(userId);
-        
         // Check if user has write permission (owner or write)
-        if (!permissionService.isOwner(file, user) && !permissionService.hasWritePermission(file, user)) {
+        if (!permissionService.hasWritePermission(file, userId)) {
             throw new RuntimeException("Access denied: You do not have write permission for this file");
         }
         
@@ -146,25 +314,26 @@ public class FileService {
         File file = fileRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("File not found with id: " + id));
         
-        User user = new User();
-        user.setId(userId);
-        
         // Only owner can delete file
-        if (!permissionService.isOwner(file, user)) {
+        if (!permissionService.isOwner(file, userId)) {
             throw new RuntimeException("Access denied: Only the file owner can delete this file");
         }
 
-        // Delete physical file
-        Path filePath = Paths.get(file.getFilePath());
-        if (Files.exists(filePath)) {
-            Files.delete(filePath);
-        }
-
         // Delete any permissions referencing this file first to satisfy FK constraints
-        permissionRepository.deleteByFile(file);
+        permissionService.deletePermissionsForFile(file);
 
         // Delete from database
         fileRepository.delete(file);
+        folderStatsRepository.addFiles(file.getFolder(), -1, -sizeOf(file));
+        quotaService.release(file.getUser().getId(), sizeOf(file));
+        eventPublisher.publishEvent(FileFolderChangedEvent.deleted(file.getId(), file.getFolder().getId()));
+
+        // The blob goes once the delete has committed (see BlobReclaimService), unless a copy
+        // still shares it
+        List<BlobLocation> unreferenced = blobRefService.release(List.of(BlobLocation.of(file)));
+        if (!unreferenced.isEmpty()) {
+            eventPublisher.publishEvent(new BlobsReleasedEvent(unreferenced));
+        }
     }
 
     public byte[] downloadFile(Long id, Long userId) throws IOException {
@@ -172,13 +341,26 @@ public class FileService {
         Objects.requireNonNull(userId, "userId cannot be null");
         // getFileByIdAndUser already checks read permission
         File file = getFileByIdAndUser(id, userId);
-        Path filePath = Paths.get(file.getFilePath());
-        return Files.readAllBytes(filePath);
+        try (InputStream in = ioMonitor.monitor(blobStore.openRead(file))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Open a file's contents for streaming straight to the response, without buffering the blob.
+     * The caller must close the stream.
+     */
+    public InputStream openFileStream(Long id, Long userId) throws IOException {
+        Objects.requireNonNull(id, "file id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        // getFileByIdAndUser already checks read permission
+        File file = getFileByIdAndUser(id, userId);
+        return ioMonitor.monitor(blobStore.openRead(file));
     }
     
     /**
      * Copy a shared file to user's folder (only for WRITE users)
-     * This creates a physical copy of the file in the user's folder
+     * The copy shares the source's blob copy-on-write (see BlobRefService), so no data is written
      */
     @Transactional
     public File copySharedFileToFolder(Long fileId, Long targetFolderId, Long userId) throws IOException {
@@ -189,37 +371,30 @@ public class FileService {
         File sourceFile = getFileByIdForWrite(fileId, userId);
         
         // Validate target folder exists and belongs to user
-        Folder targetFolder = folderRepository.findById(targetFolderId)
+        Folder targetFolder = folderRepository.findWithOwnerById(targetFolderId)
                 .orElseThrow(() -> new RuntimeException("Target folder not found with id: " + targetFolderId));
         
         if (!targetFolder.getUser().getId().equals(userId)) {
             throw new RuntimeException("Target folder does not belong to user");
         }
         
-        // Create upload directory if not exists
-        Path uploadPath = Paths.get(uploadDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        
-        // Copy physical file
-        Path sourceFilePath = Paths.get(sourceFile.getFilePath());
-        String newStoredName = UUID.randomUUID().toString() + "_" + sourceFile.getOriginalName();
-        Path newFilePath = uploadPath.resolve(newStoredName);
-        Files.copy(sourceFilePath, newFilePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        // Create new file entity in target folder
+        // Create new file entity in target folder, pointing at the source's blob
         File newFile = new File(
                 sourceFile.getOriginalName(),
-                newStoredName,
+                sourceFile.getStoredName(),
                 sourceFile.getContentType(),
                 sourceFile.getSize(),
-                newFilePath.toString(),
+                null,
                 targetFolder,
                 targetFolder.getUser() // The user who copied it
         );
+        newFile.shareBlobOf(sourceFile);
+        quotaService.charge(userId, sizeOf(newFile));
+        blobRefService.addReference(sourceFile);
         
         File savedFile = fileRepository.save(newFile);
+        folderStatsRepository.addFiles(targetFolder, 1, sizeOf(savedFile));
+        eventPublisher.publishEvent(FileFolderChangedEvent.created(savedFile.getId(), targetFolderId));
         
         // Create OWNER permission for the user who copied it
         permissionService.createOwnerPermission(savedFile, targetFolder.getUser());
@@ -227,18 +402,51 @@ public class FileService {
         return savedFile;
     }
 
+    private static long sizeOf(File file) {
+        return file.getSize() != null ? file.getSize() : 0;
+    }
+
     public List<File> getAllFiles() {
         return fileRepository.findAll();
     }
 
+    /**
+     * Files of each of the given folders, keyed by folder id
+     */
+    public Map<Long, List<File>> getFilesByFolderIds(Collection<Long> folderIds) {
+        return fileRepository.findByFolderIdIn(folderIds).stream()
+                .collect(Collectors.groupingBy(file -> file.getFolder().getId()));
+    }
+
     public File getFileById(Long id) {
         Objects.requireNonNull(id, "file id cannot be null");
         return fileRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("File not found with id: " + id));
     }
 
+    /**
+     * The oldest file with the given name directly in a folder
+     */
+    public Optional<File> findByFolderIdAndName(Long folderId, String name) {
+        Objects.requireNonNull(folderId, "folderId cannot be null");
+        return fileRepository.findFirstByFolderIdAndOriginalNameOrderByIdAsc(folderId, name);
+    }
+
     public List<File> getFilesByFolderId(Long folderId) {
         Objects.requireNonNull(folderId, "folderId cannot be null");
         return fileRepository.findByFolderId(folderId);
     }
+
+    /**
+     * Files in a folder that the user may read, checked in one batch
+     */
+    public List<File> getReadableFilesByFolderId(Long folderId, Long userId) {
+        Objects.requireNonNull(folderId, "folderId cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        List<File> files = findReadableCandidates(folderId, userId);
+        Map<Long, FileAclResolver.FileAcl> acls = aclResolver.resolve(files, userId);
+        return files.stream()
+                .filter(file -> acls.get(file.getId()).canRead())
+                .toList();
+    }
 }
@@ -0,0 +1,47 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Sort keys for paginated file listings. Each is backed by a (folder_id, key, id) index, and
+ * ties are broken by id so the order is stable across pages.
+ */
+public enum FileSort {
+    NAME("originalName", File::getOriginalName, value -> value),
+    SIZE("size", File::getSize, Long::valueOf),
+    UPLOADED_AT("uploadedAt", File::getUploadedAt, LocalDateTime::parse);
+
+    private final String property;
+    private final Function<File, Object> extractor;
+    private final Function<String, Object> parser;
+
+    FileSort(String property, Function<File, Object> extractor, Function<String, Object> parser) {
+        this.property = property;
+        this.extractor = extractor;
+        this.parser = parser;
+    }
+
+    public String property() { return property; }
+
+    Object valueOf(File file) { return extractor.apply(file); }
+
+    Object parse(String value) { return parser.apply(value); }
+
+    /**
+     * Parse a request parameter: name, size or uploadedAt (case-insensitive)
+     */
+    public static FileSort fromParam(String param) {
+        if (param == null) {
+            return NAME;
+        }
+        for (FileSort sort : values()) {
+            if (sort.property.equalsIgnoreCase(param) || sort.name().equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new RuntimeException("Unsupported sort: " + param + " (use name, size or uploadedAt)");
+    }
+}
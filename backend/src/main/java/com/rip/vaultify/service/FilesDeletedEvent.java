@@ -0,0 +1,12 @@
+package com.rip.vaultify.service;
+
+import java.util.Set;
+
+/**
+ * Published when many files were deleted at once with bulk statements (e.g. a folder subtree),
+ * along with their permissions
+ *
+ * @param folderIds folders that held the files
+ */
+public record FilesDeletedEvent(Set<Long> fileIds, Set<Long> folderIds) {
+}
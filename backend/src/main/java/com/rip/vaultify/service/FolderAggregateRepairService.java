@@ -0,0 +1,215 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
+import com.rip.vaultify.repository.FolderRepository;
+import com.rip.vaultify.repository.FolderStatsRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import com.rip.vaultify.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background job that recomputes the folder size and file-count aggregates, and each user's
+ * storage usage, from the files table, one user per transaction. These are maintained
+ * incrementally on every upload, copy, delete and move; this pass backfills them after an
+ * upgrade and corrects any drift.
+ * <p>
+ * Per user, one grouped query gives the direct counts of every folder; the recursive totals
+ * are then summed up each folder's materialized path in memory, and only folders whose values
+ * changed are written back.
+ */
+@Service
+public class FolderAggregateRepairService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderAggregateRepairService.class);
+
+    private final FolderRepository folderRepository;
+    private final FolderStatsRepository folderStatsRepository;
+    private final UserRepository userRepository;
+    private final UserCountersRepository userCountersRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final int batchSize;
+
+    private volatile Map<String, Object> lastRun;
+
+    public FolderAggregateRepairService(FolderRepository folderRepository,
+                                        FolderStatsRepository folderStatsRepository,
+                                        UserRepository userRepository,
+                                        UserCountersRepository userCountersRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${folders.aggregates.repair-interval-hours:24}") long intervalHours,
+                                        @Value("${folders.aggregates.repair-batch-size:100}") int batchSize) {
+        this.folderRepository = folderRepository;
+        this.folderStatsRepository = folderStatsRepository;
+        this.userRepository = userRepository;
+        this.userCountersRepository = userCountersRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+
+        if (intervalHours > 0) {
+            scheduler.scheduleWithFixedDelay(this::runRepair, intervalHours, intervalHours, TimeUnit.HOURS);
+        }
+    }
+
+    /**
+     * Fill in the aggregates of folders created before they were maintained
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        triggerRepair();
+    }
+
+    /**
+     * Interrupt the pass in progress (the next start begins a fresh one) and cancel the schedule
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Folder aggregate repair did not stop within 10s of shutdown");
+        }
+    }
+
+    /**
+     * Start a repair pass in the background
+     *
+     * @return false if a pass is already running
+     */
+    public boolean triggerRepair() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::runRepair);
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("lastRun", lastRun);
+        return status;
+    }
+
+    void runRepair() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Instant startedAt = Instant.now();
+        long users = 0;
+        long folders = 0;
+        logger.info("Folder aggregate repair started");
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userCountersRepository.insertMissing();
+                folderStatsRepository.insertMissing();
+            });
+            long lastId = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> batch = userRepository.findIdsAfter(lastId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (Long userId : batch) {
+                    lastId = userId;
+                    users++;
+                    Integer updated = transactionTemplate.execute(status -> {
+                        userCountersRepository.recomputeUsedBytes(userId);
+                        return recomputeFolders(userId);
+                    });
+                    folders += updated != null ? updated : 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Folder aggregate repair aborted: {}", e.getMessage(), e);
+        } finally {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", startedAt.toString());
+            report.put("finishedAt", Instant.now().toString());
+            report.put("users", users);
+            report.put("folders", folders);
+            lastRun = report;
+            running.set(false);
+            logger.info("Folder aggregate repair finished - {}", report);
+        }
+    }
+
+    /**
+     * Recompute one user's folder aggregates from the files table
+     *
+     * @return number of folders whose aggregates were corrected
+     */
+    int recomputeFolders(Long userId) {
+        List<FolderRepository.FolderNode> folders = folderRepository.findNodesByUserId(userId);
+        // Per folder: direct files, direct bytes, total files, total bytes
+        Map<Long, long[]> counts = new HashMap<>(folders.size() * 2);
+        for (FolderRepository.FolderNode folder : folders) {
+            counts.put(folder.getId(), new long[4]);
+        }
+        for (FolderStatsRepository.DirectCounts row : folderStatsRepository.findDirectCountsByUserId(userId)) {
+            long[] folder = counts.get(row.getFolderId());
+            if (folder != null) {
+                folder[0] = row.getFiles();
+                folder[1] = row.getBytes();
+            }
+        }
+        for (FolderRepository.FolderNode folder : folders) {
+            long[] own = counts.get(folder.getId());
+            if (own[0] == 0 && own[1] == 0) {
+                continue;
+            }
+            // The path includes the folder itself
+            List<Long> chain = folder.getPath() != null ? Folder.idsInPath(folder.getPath()) : List.of(folder.getId());
+            for (Long id : chain) {
+                long[] ancestor = counts.get(id);
+                if (ancestor != null) {
+                    ancestor[2] += own[0];
+                    ancestor[3] += own[1];
+                }
+            }
+        }
+
+        Map<Long, FolderStats> existing = new HashMap<>(counts.size() * 2);
+        for (FolderStats stats : folderStatsRepository.findByUserId(userId)) {
+            existing.put(stats.getFolderId(), stats);
+        }
+        List<FolderStats> created = new ArrayList<>();
+        int corrected = 0;
+        for (Map.Entry<Long, long[]> entry : counts.entrySet()) {
+            FolderStats stats = existing.get(entry.getKey());
+            if (stats == null) {
+                stats = new FolderStats(entry.getKey());
+                created.add(stats);
+            }
+            long[] c = entry.getValue();
+            // Loaded rows that changed are written back by dirty checking at commit
+            if (stats.update(c[0], c[1], c[2], c[3])) {
+                corrected++;
+            }
+        }
+        folderStatsRepository.saveAll(created);
+        return corrected;
+    }
+}
@@ -0,0 +1,93 @@
+package com.rip.vaultify.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rip.vaultify.repository.FolderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves name paths such as {@code projects/2024/specs} to folder ids within a user's tree.
+ * Resolved prefixes are cached; a miss costs one query for the folders named like any of the
+ * segments instead of one query per level. Entries remember the materialized id path they
+ * resolved to, so a rename, move or delete drops exactly the entries that went through the
+ * changed folder. Misses are not cached, so creating folders needs no invalidation.
+ * <p>
+ * When siblings share a name the oldest folder wins.
+ */
+@Service
+public class FolderPathResolver {
+
+    private record PathKey(Long userId, String path) {}
+
+    private record ResolvedFolder(Long folderId, String idPath) {}
+
+    private final FolderRepository folderRepository;
+    private final Cache<PathKey, ResolvedFolder> cache;
+
+    public FolderPathResolver(FolderRepository folderRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${folders.path-cache.max-size:100000}") long maxSize) {
+        this.folderRepository = folderRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "folderPaths");
+    }
+
+    /**
+     * Folder id at the given name segments from the user's root, empty if there is none
+     */
+    public Optional<Long> resolve(Long userId, List<String> segments) {
+        if (segments.isEmpty()) {
+            return Optional.empty();
+        }
+        ResolvedFolder cached = cache.getIfPresent(new PathKey(userId, String.join("/", segments)));
+        if (cached != null) {
+            return Optional.of(cached.folderId());
+        }
+
+        // parentId (null for roots) -> name -> oldest folder with that name
+        Map<Long, Map<String, FolderRepository.FolderNode>> children = new HashMap<>();
+        for (FolderRepository.FolderNode node : folderRepository.findNodesByUserIdAndNameIn(userId, new HashSet<>(segments))) {
+            children.computeIfAbsent(node.getParentId(), id -> new HashMap<>())
+                    .merge(node.getName(), node, (a, b) -> a.getId() < b.getId() ? a : b);
+        }
+        Long parentId = null;
+        StringBuilder prefix = new StringBuilder();
+        FolderRepository.FolderNode node = null;
+        for (String segment : segments) {
+            node = children.getOrDefault(parentId, Map.of()).get(segment);
+            if (node == null) {
+                return Optional.empty();
+            }
+            if (!prefix.isEmpty()) {
+                prefix.append('/');
+            }
+            prefix.append(segment);
+            cache.put(new PathKey(userId, prefix.toString()), new ResolvedFolder(node.getId(), node.getPath()));
+            parentId = node.getId();
+        }
+        return Optional.of(node.getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFolderPathsChanged(FolderPathsChangedEvent event) {
+        cache.asMap().entrySet().removeIf(entry -> entry.getKey().userId().equals(event.userId())
+                && (entry.getValue().idPath().startsWith(event.path()) || endsWithName(entry.getKey().path(), event.name())));
+    }
+
+    private static boolean endsWithName(String path, String name) {
+        return name != null && (path.equals(name) || path.endsWith("/" + name));
+    }
+}
@@ -0,0 +1,10 @@
+package com.rip.vaultify.service;
+
+/**
+ * Published when a folder is renamed, moved or deleted: every name path resolved through it
+ * (its materialized id path and everything below) may now point elsewhere. name is the
+ * folder's name after the change (null on delete); paths ending in it may now resolve to
+ * this folder instead of a newer sibling.
+ */
+public record FolderPathsChangedEvent(Long userId, String path, String name) {
+}
@@ -0,0 +1,8 @@
+package com.rip.vaultify.service;
+
+/**
+ * Published when a folder grant changes. A null userId means grants of several users changed
+ * (e.g. a folder subtree was deleted).
+ */
+public record FolderPermissionChangedEvent(Long folderId, Long userId) {
+}
@@ -1,26 +1,76 @@
 package com.rip.vaultify.service;
 
+import com.rip.vaultify.dto.CursorPage;
 import com.rip.vaultify.dto.FolderResponse;
+import com.rip.vaultify.dto.FolderSizeResponse;
+import com.rip.vaultify.dto.FolderTreeNode;
 import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
+import com.rip.vaultify.model.Permission;
 import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.FolderPermissionRepository;
 import com.rip.vaultify.repository.FolderRepository;
+import com.rip.vaultify.repository.FolderStatsRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.lang.NonNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class FolderService {
 
     private static final Logger logger = LoggerFactory.getLogger(FolderService.class);
     private final FolderRepository folderRepository;
+    private final FolderStatsRepository folderStatsRepository;
+    private final FolderPermissionRepository folderPermissionRepository;
+    private final FileRepository fileRepository;
+    private final PermissionRepository permissionRepository;
+    private final UserCountersRepository userCountersRepository;
+    private final StorageQuotaService quotaService;
+    private final BlobRefService blobRefService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FolderService(FolderRepository folderRepository) {
+    public FolderService(FolderRepository folderRepository,
+                         FolderStatsRepository folderStatsRepository,
+                         FolderPermissionRepository folderPermissionRepository,
+                         FileRepository fileRepository,
+                         PermissionRepository permissionRepository,
+                         UserCountersRepository userCountersRepository,
+                         StorageQuotaService quotaService,
+                         BlobRefService blobRefService,
+                         ApplicationEventPublisher eventPublisher) {
         this.folderRepository = folderRepository;
+        this.folderStatsRepository = folderStatsRepository;
+        this.folderPermissionRepository = folderPermissionRepository;
+        this.fileRepository = fileRepository;
+        this.permissionRepository = permissionRepository;
+        this.userCountersRepository = userCountersRepository;
+        this.quotaService = quotaService;
+        this.blobRefService = blobRefService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -41,15 +91,77 @@ public class FolderService {
             folder.setParent(parentFolder);
         }
 
-        return folderRepository.save(folder);
+        Folder saved = folderRepository.save(folder);
+        folderStatsRepository.save(new FolderStats(saved.getId()));
+        // The path ends with the folder's own id, which is only known after the insert
+        String parentPath = saved.getParent() != null ? saved.getParent().getPath() : "/";
+        saved.setPath(parentPath + saved.getId() + "/");
+        userCountersRepository.bumpFolderVersion(user.getId());
+        return saved;
+    }
+
+    /**
+     * Fill in materialized paths for folders created before paths were recorded. Parents are
+     * always older than their children, so one pass in id order resolves every chain.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillPaths() {
+        List<Folder> missing = folderRepository.findByPathIsNullOrderByIdAsc();
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, String> paths = new HashMap<>();
+        for (Folder folder : missing) {
+            Folder parent = folder.getParent();
+            String parentPath = "/";
+            if (parent != null) {
+                parentPath = paths.containsKey(parent.getId()) ? paths.get(parent.getId()) : parent.getPath();
+            }
+            String path = parentPath + folder.getId() + "/";
+            folder.setPath(path);
+            paths.put(folder.getId(), path);
+        }
+        logger.info("Backfilled materialized paths for {} folders", missing.size());
     }
 
     public List<FolderResponse> getAllFoldersByUser(Long userId) {
         Objects.requireNonNull(userId, "userId cannot be null");
-        return folderRepository.findByUserIdAndParentIdIsNull(userId)
-                .stream()
-                .map(FolderResponse::new)
-                .toList();
+        return FolderResponse.fromRootRows(folderRepository.findRootRowsByUserId(userId));
+    }
+
+    /**
+     * Version of the user's folder tree; it changes whenever one of their folders is created,
+     * renamed, moved or deleted
+     */
+    public long getFolderVersion(Long userId) {
+        Objects.requireNonNull(userId, "userId cannot be null");
+        return userCountersRepository.findFolderVersion(userId);
+    }
+
+    /**
+     * Every folder of the user as a tree, loaded with one flat query and linked up in a single
+     * pass over the rows
+     *
+     * @return the root folders, children nested inside
+     */
+    public List<FolderTreeNode> getFolderTree(Long userId) {
+        Objects.requireNonNull(userId, "userId cannot be null");
+        List<FolderRepository.FolderNode> rows = folderRepository.findNodesByUserId(userId);
+        Map<Long, FolderTreeNode> nodes = new HashMap<>(rows.size() * 2);
+        for (FolderRepository.FolderNode row : rows) {
+            nodes.put(row.getId(), new FolderTreeNode(row.getId(), row.getName(), row.getParentId()));
+        }
+        List<FolderTreeNode> roots = new ArrayList<>();
+        for (FolderTreeNode node : nodes.values()) {
+            FolderTreeNode parent = node.getParentId() != null ? nodes.get(node.getParentId()) : null;
+            if (parent != null) {
+                parent.getChildren().add(node);
+            } else {
+                roots.add(node);
+            }
+        }
+        return roots;
     }
 
     public List<Folder> getFoldersByParentAndUser(Long parentId, Long userId) {
@@ -86,6 +198,8 @@ public class FolderService {
         Objects.requireNonNull(userId, "userId cannot be null");
         Folder folder = getFolderByIdAndUser(id, userId);
         folder.setName(newName);
+        userCountersRepository.bumpFolderVersion(folder.getUser().getId());
+        eventPublisher.publishEvent(new FolderPathsChangedEvent(folder.getUser().getId(), folder.getPath(), folder.getName()));
         return folderRepository.save(folder);
     }
 
@@ -93,19 +207,297 @@ public class FolderService {
     public void deleteFolder(Long id, Long userId) {
         Objects.requireNonNull(id, "folder id cannot be null");
         Objects.requireNonNull(userId, "userId cannot be null");
-        Folder folder = getFolderByIdAndUser(id, userId);
-        folderRepository.delete(folder);
+        Folder folder = getOwnedFolder(id, userId);
+        deleteSubtree(folder);
     }
 
-    @Transactional(readOnly = true)
-    public Folder getFolderContents(Long id, Long userId) {
+    /**
+     * A folder and all of its descendants, parents before children, in one query
+     */
+    public List<FolderRepository.FolderNode> getSubtree(Long id, Long userId) {
         Objects.requireNonNull(id, "folder id cannot be null");
         Objects.requireNonNull(userId, "userId cannot be null");
-        Folder folder = getFolderByIdAndUser(id, userId);
-        folder.getChildren().size(); // initialize lazy-loaded children
+        return folderRepository.findSubtree(getOwnedFolder(id, userId).getPath());
+    }
+
+    /**
+     * Number and total size of the files in a folder, directly and recursively, read from the
+     * folder's maintained aggregates
+     */
+    public FolderSizeResponse getSubtreeSize(Long id, Long userId) {
+        Objects.requireNonNull(id, "folder id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        return new FolderSizeResponse(getOwnedFolder(id, userId).getId(), getStats(id));
+    }
+
+    /**
+     * Size and file-count aggregates of each of the given folders, keyed by folder id
+     */
+    public Map<Long, FolderStats> getStats(Collection<Long> folderIds) {
+        return folderStatsRepository.findAllById(folderIds).stream()
+                .collect(Collectors.toMap(FolderStats::getFolderId, Function.identity()));
+    }
+
+    private FolderStats getStats(Long folderId) {
+        return folderStatsRepository.findById(folderId).orElseGet(() -> new FolderStats(folderId));
+    }
+
+    /**
+     * Folders from the root down to this one. The ids come from the path, so the names are
+     * a single lookup by id.
+     */
+    public List<FolderRepository.FolderNode> getBreadcrumbs(Long id, Long userId) {
+        Objects.requireNonNull(id, "folder id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        List<Long> ancestorIds = getOwnedFolder(id, userId).ancestorIds();
+        Map<Long, Integer> depth = new HashMap<>();
+        for (int i = 0; i < ancestorIds.size(); i++) {
+            depth.put(ancestorIds.get(i), i);
+        }
+        return folderRepository.findNodesByIdIn(ancestorIds).stream()
+                .sorted(Comparator.comparing(node -> depth.get(node.getId())))
+                .toList();
+    }
+
+    /**
+     * Move a folder under a new parent (or to the root when newParentId is null). The paths
+     * of the whole subtree are rewritten with one bulk UPDATE.
+     */
+    @Transactional
+    public Folder moveFolder(Long id, Long newParentId, Long userId) {
+        Objects.requireNonNull(id, "folder id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        lockForMove(id, newParentId);
+        Folder folder = getOwnedFolder(id, userId);
+        Folder newParent = null;
+        if (newParentId != null) {
+            newParent = getOwnedFolder(newParentId, userId);
+            if (newParent.getPath().startsWith(folder.getPath())) {
+                throw new RuntimeException("Cannot move a folder into itself or one of its subfolders");
+            }
+        }
+
+        String oldPath = folder.getPath();
+        String newPath = (newParent != null ? newParent.getPath() : "/") + folder.getId() + "/";
+        if (!newPath.equals(oldPath)) {
+            List<Long> oldAncestors = folder.ancestorIds().subList(0, folder.ancestorIds().size() - 1);
+            List<Long> newAncestors = newParent != null ? newParent.ancestorIds() : List.of();
+            FolderStats stats = getStats(id);
+            folderStatsRepository.moveTotals(oldAncestors, newAncestors, stats.getTotalFileCount(), stats.getTotalBytes());
+        }
+        folder.setParent(newParent);
+        folderRepository.saveAndFlush(folder);
+        userCountersRepository.bumpFolderVersion(userId);
+        eventPublisher.publishEvent(new FolderPathsChangedEvent(userId, oldPath, folder.getName()));
+        if (!newPath.equals(oldPath)) {
+            folderRepository.rewritePaths(oldPath, newPath);
+            // Inherited grants follow the path, so every cached inheritance may have changed
+            eventPublisher.publishEvent(new FolderPermissionChangedEvent(id, null));
+        }
+        return getFolderById(id);
+    }
+
+    /**
+     * Deep-copy a folder with everything below it under targetParentId (or to the root when
+     * null). Folders are copied one level per INSERT ... SELECT and all files with a single
+     * one; the copied files share their blobs with the originals copy-on-write, so no data is
+     * written however large the subtree.
+     */
+    @Transactional
+    public Folder copyFolder(Long id, Long targetParentId, Long userId) {
+        Objects.requireNonNull(id, "folder id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        Folder source = getOwnedFolder(id, userId);
+        Folder targetParent = null;
+        if (targetParentId != null) {
+            targetParent = getOwnedFolder(targetParentId, userId);
+            if (targetParent.getPath().startsWith(source.getPath())) {
+                throw new RuntimeException("Cannot copy a folder into itself or one of its subfolders");
+            }
+        }
+        FolderStats sourceStats = getStats(source.getId());
+        quotaService.charge(userId, sourceStats.getTotalBytes());
+
+        Folder root = new Folder();
+        root.setName(source.getName());
+        root.setUser(source.getUser());
+        root.setParent(targetParent);
+        root.setCopiedFromId(source.getId());
+        root = folderRepository.saveAndFlush(root);
+        root.setPath((targetParent != null ? targetParent.getPath() : "/") + root.getId() + "/");
+        folderRepository.saveAndFlush(root);
+        String newRootPath = root.getPath();
+
+        int levels = 0;
+        while (folderRepository.copyNextLevel(source.getPath(), newRootPath, userId) > 0) {
+            folderRepository.assignCopiedPaths(newRootPath);
+            levels++;
+        }
+        folderStatsRepository.copyForSubtree(newRootPath);
+        blobRefService.addSubtreeReferences(source.getPath());
+        int files = fileRepository.copyIntoSubtree(newRootPath, userId);
+        permissionRepository.insertOwnerPermissionsForSubtree(newRootPath, userId);
+
+        if (targetParent != null) {
+            folderStatsRepository.moveTotals(List.of(), targetParent.ancestorIds(),
+                    sourceStats.getTotalFileCount(), sourceStats.getTotalBytes());
+        }
+        userCountersRepository.bumpFolderVersion(userId);
+        if (files > 0) {
+            eventPublisher.publishEvent(new PermissionsBulkChangedEvent(Set.of(), Set.of(userId)));
+        }
+        logger.info("Copied folder subtree {} to {} - levels: {}, files: {}", source.getPath(), newRootPath, levels + 1, files);
+        return getFolderById(root.getId());
+    }
+
+    /**
+     * One keyset page of the user's subfolders of parentId (their root folders when null),
+     * sorted by name with ties broken by id
+     */
+    public CursorPage<Folder> getSubfoldersPage(Long parentId, Long userId, Sort.Direction direction,
+                                                String cursor, int limit) {
+        Objects.requireNonNull(userId, "userId cannot be null");
+        if (parentId != null) {
+            getOwnedFolder(parentId, userId);
+        }
+        ScrollPosition position = KeysetCursor.decode(cursor, "name", value -> value);
+        Sort order = Sort.by(direction, "name").and(Sort.by(direction, "id"));
+        Window<Folder> window = parentId == null
+                ? folderRepository.findByUserIdAndParentIdIsNull(userId, position, order, Limit.of(limit))
+                : folderRepository.findByUserIdAndParentId(userId, parentId, position, order, Limit.of(limit));
+
+        List<Folder> folders = window.getContent();
+        String nextCursor = null;
+        if (window.hasNext() && !folders.isEmpty()) {
+            Folder last = folders.get(folders.size() - 1);
+            nextCursor = KeysetCursor.encode("name", last.getName(), last.getId());
+        }
+        return new CursorPage<>(folders, nextCursor);
+    }
+
+    /**
+     * Lock the moved folder, the new parent and the new parent's ancestors before anything is
+     * loaded, so the cycle check reads paths no concurrent move can change. Two moves that
+     * would together form a cycle each lock the other's folder and run one after the other.
+     * The ancestors come from an unlocked read of the parent's path; if a concurrent move
+     * changed it before the locks were granted, lock the new chain too.
+     */
+    private void lockForMove(Long id, Long newParentId) {
+        String parentPath = null;
+        while (true) {
+            Set<Long> ids = new TreeSet<>();
+            ids.add(id);
+            if (newParentId != null) {
+                ids.add(newParentId);
+                ids.addAll(Folder.idsInPath(parentPath != null ? parentPath : pathOf(newParentId)));
+            }
+            Map<Long, Folder> locked = folderRepository.lockByIdIn(ids).stream()
+                    .collect(Collectors.toMap(Folder::getId, Function.identity()));
+            if (newParentId == null || !locked.containsKey(newParentId)) {
+                return;
+            }
+            String current = locked.get(newParentId).getPath();
+            if (ids.containsAll(Folder.idsInPath(current))) {
+                return;
+            }
+            parentPath = current;
+        }
+    }
+
+    private String pathOf(Long folderId) {
+        return folderRepository.findNodesByIdIn(List.of(folderId)).stream()
+                .findFirst()
+                .map(FolderRepository.FolderNode::getPath)
+                .orElse(null);
+    }
+
+    private Folder getOwnedFolder(Long id, Long userId) {
+        Folder folder = getFolderById(id);
+        if (!folder.getUser().getId().equals(userId)) {
+            throw new RuntimeException("Access denied: Folder does not belong to user");
+        }
         return folder;
     }
 
+    /**
+     * Delete a folder with everything below it using bulk statements on the materialized
+     * path, instead of loading the tree through JPA cascades. Dependent rows go first:
+     * folder grants, file permissions, files, then the folders. Blobs are handed to
+     * {@link BlobReclaimService} and deleted after commit.
+     */
+    private void deleteSubtree(Folder folder) {
+        String path = folder.getPath();
+        userCountersRepository.bumpFolderVersion(folder.getUser().getId());
+        eventPublisher.publishEvent(new FolderPathsChangedEvent(folder.getUser().getId(), path, null));
+        List<FileRepository.FileBlobRow> files = fileRepository.findBlobRowsBySubtree(path);
+        List<Long> ancestors = folder.ancestorIds();
+        FolderStats stats = getStats(folder.getId());
+        folderStatsRepository.moveTotals(ancestors.subList(0, ancestors.size() - 1), List.of(),
+                stats.getTotalFileCount(), stats.getTotalBytes());
+
+        deleteFolderGrants(folder);
+        userCountersRepository.decrementUnreadSharesForSubtree(path, Permission.Access.OWNER);
+        permissionRepository.deleteBySubtree(path);
+        fileRepository.deleteBySubtree(path);
+        folderStatsRepository.deleteBySubtree(path);
+        folderRepository.detachSubtree(path);
+        int folders = folderRepository.deleteSubtree(path);
+
+        files.stream()
+                .collect(Collectors.groupingBy(FileRepository.FileBlobRow::getUserId,
+                        Collectors.summingLong(file -> file.getSize() != null ? file.getSize() : 0)))
+                .forEach(quotaService::release);
+
+        if (!files.isEmpty()) {
+            Set<Long> fileIds = files.stream().map(FileRepository.FileBlobRow::getId).collect(Collectors.toSet());
+            Set<Long> folderIds = files.stream().map(FileRepository.FileBlobRow::getFolderId).collect(Collectors.toSet());
+            eventPublisher.publishEvent(new FilesDeletedEvent(fileIds, folderIds));
+            // Blobs still shared with copies elsewhere stay
+            List<BlobLocation> unreferenced = blobRefService.release(files.stream().map(BlobLocation::of).toList());
+            if (!unreferenced.isEmpty()) {
+                eventPublisher.publishEvent(new BlobsReleasedEvent(unreferenced));
+            }
+        }
+        logger.info("Deleted folder subtree {} - folders: {}, files: {}", path, folders, files.size());
+    }
+
+    /**
+     * Folder grants on the subtree reference its folders, so they go before the folders do
+     */
+    private void deleteFolderGrants(Folder folder) {
+        if (folder.getPath() != null && folderPermissionRepository.deleteBySubtree(folder.getPath()) > 0) {
+            eventPublisher.publishEvent(new FolderPermissionChangedEvent(folder.getId(), null));
+        }
+    }
+
+    /**
+     * A folder with its parent and children as a response, loaded in one query with the
+     * Folder.withParentAndChildren fetch plan so nothing is left for lazy loading
+     */
+    public FolderResponse getFolderContents(Long id, Long userId) {
+        Objects.requireNonNull(id, "folder id cannot be null");
+        Objects.requireNonNull(userId, "userId cannot be null");
+        Folder folder = folderRepository.findWithParentAndChildrenById(id)
+                .orElseThrow(() -> new RuntimeException("Folder not found with id: " + id));
+        return new FolderResponse(folder);
+    }
+
+    /**
+     * Folders by id, for batched GraphQL field resolution
+     */
+    public Map<Long, Folder> getFoldersByIds(Collection<Long> ids) {
+        return folderRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Folder::getId, Function.identity()));
+    }
+
+    /**
+     * Subfolders of each of the given folders, keyed by parent id
+     */
+    public Map<Long, List<Folder>> getChildrenByParentIds(Collection<Long> parentIds) {
+        return folderRepository.findByParentIdIn(parentIds).stream()
+                .collect(Collectors.groupingBy(folder -> folder.getParent().getId()));
+    }
+
     public List<Folder> getAllFolders() {
         return folderRepository.findAll();
     }
@@ -122,6 +514,7 @@ public class FolderService {
         return folderRepository.findByUserIdAndParentIdIsNull(userId);
     }
 
+    @Transactional
     public Folder createFolder(String name, Long parentId) {
         Objects.requireNonNull(name, "folder name cannot be null");
         // This is a simplified version for GraphQL - in a real app you'd get current user
@@ -129,17 +522,21 @@ public class FolderService {
         return createFolder(name, parentId, currentUser);
     }
 
+    @Transactional
     public Folder updateFolder(Long id, String name) {
         Objects.requireNonNull(id, "folder id cannot be null");
         Objects.requireNonNull(name, "folder name cannot be null");
         Folder folder = getFolderById(id);
         folder.setName(name);
+        userCountersRepository.bumpFolderVersion(folder.getUser().getId());
+        eventPublisher.publishEvent(new FolderPathsChangedEvent(folder.getUser().getId(), folder.getPath(), folder.getName()));
         return folderRepository.save(folder);
     }
 
+    @Transactional
     public void deleteFolder(Long id) {
         Objects.requireNonNull(id, "folder id cannot be null");
         Folder folder = getFolderById(id);
-        folderRepository.delete(folder);
+        deleteSubtree(folder);
     }
 }
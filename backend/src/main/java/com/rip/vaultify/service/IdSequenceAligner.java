@@ -0,0 +1,62 @@
+package com.rip.vaultify.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Migration from IDENTITY columns to pooled sequences. A database created before the switch
+ * already holds ids that a new sequence would hand out again, so at startup each sequence is
+ * moved past its table's highest id. With the pooled optimizer a sequence value v reserves
+ * ids v-49..v, so the sequence restarts at max(id) + 50.
+ * <p>
+ * Runs before the application serves requests; the EntityManagerFactory dependency makes sure
+ * Hibernate has created the sequences first. The sequence lookup uses H2's INFORMATION_SCHEMA.
+ */
+@Component
+public class IdSequenceAligner {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceAligner.class);
+
+    // allocationSize of every entity sequence
+    private static final long ALLOCATION_SIZE = 50;
+
+    private static final List<String[]> SEQUENCES = List.of(
+            new String[]{"users", "users_seq"},
+            new String[]{"folders", "folders_seq"},
+            new String[]{"files", "files_seq"},
+            new String[]{"permissions", "permissions_seq"},
+            new String[]{"folder_permissions", "folder_permissions_seq"});
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void align() {
+        for (String[] entry : SEQUENCES) {
+            String table = entry[0];
+            String sequence = entry[1];
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            Long next = jdbcTemplate.query(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = ?",
+                    rs -> rs.next() ? rs.getLong(1) : null, sequence.toUpperCase());
+            if (next == null) {
+                logger.warn("Sequence {} not found; ids for {} are not aligned", sequence, table);
+                continue;
+            }
+            long required = maxId + ALLOCATION_SIZE;
+            if (maxId > 0 && next < required) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + required);
+                logger.info("Moved sequence {} from {} to {} past the highest {} id", sequence, next, required, table);
+            }
+        }
+    }
+}
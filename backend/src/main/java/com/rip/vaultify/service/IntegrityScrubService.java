@@ -0,0 +1,388 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.storage.BlobChecksums;
+import com.rip.vaultify.storage.BlobStore;
+import com.rip.vaultify.storage.ErasureCoder;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import com.rip.vaultify.storage.StorageVolumes;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background scrubber that re-hashes every stored blob and compares it with the checksum
+ * recorded at upload time, so bit rot and lost blobs are found before a user downloads them.
+ * Every replica is read and hashed separately, and erasure-coded blobs are checked shard by
+ * shard, so a bad copy is found while the others still serve reads; findings name the copy.
+ * Reads are throttled to a MB/s budget and pause while request I/O latency is elevated.
+ */
+@Service
+public class IntegrityScrubService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntegrityScrubService.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Keep the report bounded even if a whole volume goes bad
+    private static final int MAX_REPORTED_IDS = 1000;
+
+    private final FileRepository fileRepository;
+    private final BlobStore blobStore;
+    private final ErasureCoder erasureCoder;
+    private final StorageIoMonitor ioMonitor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Counter verifiedCounter;
+    private final Counter corruptCounter;
+    private final Counter missingCounter;
+    private final Counter backfilledCounter;
+    private final Counter bytesCounter;
+
+    private final long bytesPerSecond;
+    private final int batchSize;
+    private final long latencyThresholdMs;
+    private final long backoffMs;
+
+    private volatile ScrubReport currentReport;
+    private volatile ScrubReport lastReport;
+
+    public IntegrityScrubService(FileRepository fileRepository,
+                                 BlobStore blobStore,
+                                 ErasureCoder erasureCoder,
+                                 StorageIoMonitor ioMonitor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${storage.scrub.enabled:true}") boolean enabled,
+                                 @Value("${storage.scrub.interval-hours:24}") long intervalHours,
+                                 @Value("${storage.scrub.rate-mb-per-second:20}") long rateMbPerSecond,
+                                 @Value("${storage.scrub.batch-size:500}") int batchSize,
+                                 @Value("${storage.scrub.latency-threshold-ms:50}") long latencyThresholdMs,
+                                 @Value("${storage.scrub.backoff-ms:2000}") long backoffMs) {
+        this.fileRepository = fileRepository;
+        this.blobStore = blobStore;
+        this.erasureCoder = erasureCoder;
+        this.ioMonitor = ioMonitor;
+        this.bytesPerSecond = Math.max(1, rateMbPerSecond) * 1024 * 1024;
+        this.batchSize = batchSize;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.backoffMs = backoffMs;
+
+        this.verifiedCounter = Counter.builder("vaultify.scrub.files").tag("result", "ok").register(meterRegistry);
+        this.corruptCounter = Counter.builder("vaultify.scrub.files").tag("result", "corrupt").register(meterRegistry);
+        this.missingCounter = Counter.builder("vaultify.scrub.files").tag("result", "missing").register(meterRegistry);
+        this.backfilledCounter = Counter.builder("vaultify.scrub.files").tag("result", "backfilled").register(meterRegistry);
+        this.bytesCounter = Counter.builder("vaultify.scrub.bytes").baseUnit("bytes").register(meterRegistry);
+
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::runScrub, intervalHours, intervalHours, TimeUnit.HOURS);
+        }
+    }
+
+    /**
+     * Interrupt the pass in progress (the next start begins a fresh one) and cancel the schedule
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Integrity scrub did not stop within 10s of shutdown");
+        }
+    }
+
+    /**
+     * Start a scrub pass in the background
+     *
+     * @return false if a pass is already running
+     */
+    public boolean triggerScrub() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::runScrub);
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        ScrubReport current = currentReport;
+        ScrubReport last = lastReport;
+        status.put("running", running.get());
+        status.put("budgetMbPerSecond", bytesPerSecond / (1024 * 1024));
+        status.put("currentRun", current != null ? current.toMap() : null);
+        status.put("lastRun", last != null ? last.toMap() : null);
+        return status;
+    }
+
+    void runScrub() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        ScrubReport report = new ScrubReport();
+        currentReport = report;
+        Bucket budget = Bucket.builder()
+                .addLimit(Bandwidth.classic(bytesPerSecond, Refill.greedy(bytesPerSecond, Duration.ofSeconds(1))))
+                .build();
+        logger.info("Integrity scrub started - budget: {} bytes/s", bytesPerSecond);
+        try {
+            long lastId = 0;
+            while (true) {
+                List<File> batch = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (File file : batch) {
+                    scrubFile(file, budget, report);
+                    lastId = file.getId();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Integrity scrub interrupted");
+        } catch (RuntimeException e) {
+            logger.error("Integrity scrub aborted: {}", e.getMessage(), e);
+        } finally {
+            report.finish();
+            lastReport = report;
+            currentReport = null;
+            running.set(false);
+            logger.info("Integrity scrub finished - {}", report.toMap());
+        }
+    }
+
+    /**
+     * Hash every replica on its own: reads through the blob store are served by whichever
+     * replica answers first, which would hide a missing or rotten second copy
+     */
+    private void scrubFile(File file, Bucket budget, ScrubReport report) throws InterruptedException {
+        if (file.isErasureCoded()) {
+            scrubShards(file, budget, report);
+            return;
+        }
+        String expected = file.getChecksum();
+        boolean backfilled = false;
+        boolean missing = false;
+        boolean corrupt = false;
+        for (StorageVolumes.Replica replica : blobStore.replicasOf(file)) {
+            Finding finding = new Finding(file.getId(), replica.volume() != null ? replica.volume().getId() : null,
+                    replica.path().toString(), null);
+            if (!Files.exists(replica.path())) {
+                logger.warn("Integrity scrub: replica missing - fileId: {}, path: {}", file.getId(), replica.path());
+                report.addMissing(finding);
+                missing = true;
+                continue;
+            }
+            String actual;
+            try {
+                actual = hashThrottled(replica.path(), budget, report);
+            } catch (IOException e) {
+                logger.warn("Integrity scrub: replica unreadable - fileId: {}, path: {}, error: {}",
+                        file.getId(), replica.path(), e.getMessage());
+                report.addCorrupt(finding);
+                corrupt = true;
+                continue;
+            }
+            if (expected == null) {
+                // Stored before checksums existed: adopt the first readable replica as the baseline
+                fileRepository.backfillChecksum(file.getId(), actual);
+                expected = actual;
+                backfilled = true;
+            } else if (!expected.equalsIgnoreCase(actual)) {
+                logger.error("Integrity scrub: checksum mismatch - fileId: {}, path: {}, expected: {}, actual: {}",
+                        file.getId(), replica.path(), expected, actual);
+                report.addCorrupt(finding);
+                corrupt = true;
+            }
+        }
+        count(missing, corrupt, backfilled, report);
+    }
+
+    /**
+     * Check each shard of an erasure-coded blob, then the blob decoded from the healthy ones
+     */
+    private void scrubShards(File file, Bucket budget, ScrubReport report) throws InterruptedException {
+        ErasureCoder.ShardReport shards;
+        try {
+            shards = erasureCoder.verifyShards(file, bytes -> consume(bytes, budget, report));
+        } catch (IOException e) {
+            logger.warn("Integrity scrub: shards unverifiable - fileId: {}, error: {}", file.getId(), e.getMessage());
+            report.addCorrupt(new Finding(file.getId(), null, file.getFilePath(), null));
+            count(false, true, false, report);
+            return;
+        }
+        boolean missing = false;
+        boolean corrupt = false;
+        for (ErasureCoder.ShardCheck shard : shards.shards()) {
+            if (shard.state() == ErasureCoder.ShardState.OK) {
+                continue;
+            }
+            Finding finding = new Finding(file.getId(), shard.volumeId(),
+                    shard.path() != null ? shard.path().toString() : null, shard.shard());
+            logger.warn("Integrity scrub: shard {} {} - fileId: {}, path: {}", shard.shard(),
+                    shard.state().name().toLowerCase(), file.getId(), shard.path());
+            if (shard.state() == ErasureCoder.ShardState.MISSING) {
+                report.addMissing(finding);
+                missing = true;
+            } else {
+                report.addCorrupt(finding);
+                corrupt = true;
+            }
+        }
+        boolean backfilled = false;
+        if (shards.checksum() == null) {
+            logger.error("Integrity scrub: too few healthy shards to decode - fileId: {}", file.getId());
+            corrupt = true;
+        } else if (file.getChecksum() == null) {
+            fileRepository.backfillChecksum(file.getId(), shards.checksum());
+            backfilled = true;
+        } else if (!file.getChecksum().equalsIgnoreCase(shards.checksum())) {
+            logger.error("Integrity scrub: checksum mismatch - fileId: {}, expected: {}, actual: {}",
+                    file.getId(), file.getChecksum(), shards.checksum());
+            report.addCorrupt(new Finding(file.getId(), null, file.getFilePath(), null));
+            corrupt = true;
+        }
+        count(missing, corrupt, backfilled, report);
+    }
+
+    private void count(boolean missing, boolean corrupt, boolean backfilled, ScrubReport report) {
+        if (missing) {
+            missingCounter.increment();
+        }
+        if (corrupt) {
+            corruptCounter.increment();
+        }
+        if (missing || corrupt) {
+            return;
+        }
+        if (backfilled) {
+            backfilledCounter.increment();
+            report.backfilled++;
+        } else {
+            verifiedCounter.increment();
+            report.verified++;
+        }
+    }
+
+    private String hashThrottled(Path path, Bucket budget, ScrubReport report) throws IOException, InterruptedException {
+        MessageDigest digest = BlobChecksums.newDigest();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                consume(read, budget, report);
+            }
+        }
+        return BlobChecksums.toHex(digest);
+    }
+
+    private void consume(long bytes, Bucket budget, ScrubReport report) throws InterruptedException {
+        yieldToRequestTraffic(report);
+        long remaining = bytes;
+        while (remaining > 0) {
+            // A single consume may not exceed the bucket capacity
+            long chunk = Math.min(remaining, bytesPerSecond);
+            budget.asBlocking().consume(chunk);
+            remaining -= chunk;
+        }
+        bytesCounter.increment(bytes);
+        report.bytes += bytes;
+    }
+
+    /**
+     * Pause while user-facing I/O is slow, so the scrub never competes with request traffic
+     */
+    private void yieldToRequestTraffic(ScrubReport report) throws InterruptedException {
+        while (ioMonitor.getRecentLatencyMillis() > latencyThresholdMs) {
+            report.backoffs++;
+            Thread.sleep(backoffMs);
+        }
+    }
+
+    /**
+     * One bad copy: a replica, or a shard when shard is set. Volume and path are null where unknown.
+     */
+    private record Finding(Long fileId, String volume, String path, Integer shard) {
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("fileId", fileId);
+            map.put("volume", volume);
+            map.put("path", path);
+            if (shard != null) {
+                map.put("shard", shard);
+            }
+            return map;
+        }
+    }
+
+    private static class ScrubReport {
+        final Instant startedAt = Instant.now();
+        volatile Instant finishedAt;
+        volatile long verified;
+        volatile long backfilled;
+        volatile long bytes;
+        volatile long backoffs;
+        final Set<Long> corruptFileIds = new LinkedHashSet<>();
+        final Set<Long> missingFileIds = new LinkedHashSet<>();
+        final List<Finding> corrupt = new ArrayList<>();
+        final List<Finding> missing = new ArrayList<>();
+
+        synchronized void addCorrupt(Finding finding) {
+            if (corrupt.size() < MAX_REPORTED_IDS) {
+                corrupt.add(finding);
+                corruptFileIds.add(finding.fileId());
+            }
+        }
+
+        synchronized void addMissing(Finding finding) {
+            if (missing.size() < MAX_REPORTED_IDS) {
+                missing.add(finding);
+                missingFileIds.add(finding.fileId());
+            }
+        }
+
+        void finish() {
+            finishedAt = Instant.now();
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("startedAt", startedAt.toString());
+            map.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+            map.put("verified", verified);
+            map.put("backfilled", backfilled);
+            map.put("bytesScanned", bytes);
+            map.put("backoffs", backoffs);
+            map.put("corruptFileIds", List.copyOf(corruptFileIds));
+            map.put("missingFileIds", List.copyOf(missingFileIds));
+            map.put("corruptCopies", corrupt.stream().map(Finding::toMap).toList());
+            map.put("missingCopies", missing.stream().map(Finding::toMap).toList());
+            return map;
+        }
+    }
+}
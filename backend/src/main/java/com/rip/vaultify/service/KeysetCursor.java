@@ -0,0 +1,53 @@
+package com.rip.vaultify.service;
+
+import org.springframework.data.domain.ScrollPosition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Opaque cursors for keyset pagination: the sort key and id of the last row of a page,
+ * Base64url encoded. Decoding checks the cursor was issued for the same sort key.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {}
+
+    public static String encode(String property, Object value, Long id) {
+        String raw = property + "\n" + id + "\n" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Scroll position after the row the cursor was issued for, or the start when cursor is null
+     *
+     * @throws RuntimeException if the cursor is malformed or belongs to another sort key
+     */
+    public static ScrollPosition decode(String cursor, String property, Function<String, Object> parser) {
+        if (cursor == null || cursor.isEmpty()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+            if (parts.length != 3 || !parts[0].equals(property)) {
+                throw new IllegalArgumentException("cursor does not match sort " + property);
+            }
+            return after(property, parser.apply(parts[2]), Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scroll position after the row with this sort key value and id
+     */
+    public static ScrollPosition after(String property, Object value, Long id) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(property, value);
+        keys.put("id", id);
+        return ScrollPosition.forward(keys);
+    }
+}
@@ -0,0 +1,16 @@
+package com.rip.vaultify.service;
+
+/**
+ * Published when a file's permissions change, so cached access decisions can be dropped.
+ * A null userId means every user's access to the file changed (e.g. the file was deleted).
+ */
+public record PermissionChangedEvent(Long fileId, Long userId) {
+
+    public static PermissionChangedEvent forUser(Long fileId, Long userId) {
+        return new PermissionChangedEvent(fileId, userId);
+    }
+
+    public static PermissionChangedEvent forFile(Long fileId) {
+        return new PermissionChangedEvent(fileId, null);
+    }
+}
@@ -1,17 +1,39 @@
 package com.rip.vaultify.service;
 
 import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderPermission;
 import com.rip.vaultify.model.Permission;
 import com.rip.vaultify.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rip.vaultify.repository.FolderPermissionRepository;
 import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,9 +42,72 @@ public class PermissionService {
     @Autowired
     private PermissionRepository permissionRepository;
     
+    @Autowired
+    private FolderPermissionRepository folderPermissionRepository;
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserCountersRepository userCountersRepository;
+
+    @Autowired
+    private ViewedFlagBuffer viewedFlagBuffer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${permissions.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    // Safety net for permission rows changed outside this service
+    @Value("${permissions.cache.expire-minutes:10}")
+    private long cacheExpireMinutes;
+
+    /**
+     * Cache key for an access decision
+     */
+    private record AccessKey(Long fileId, Long userId) {}
+
+    /**
+     * Cache key for access inherited from folder grants
+     */
+    private record FolderAccessKey(Long folderId, Long userId) {}
+
+    // (fileId, userId) -> explicit access level, empty if the user has no permission row
+    private Cache<AccessKey, Optional<Permission.Access>> accessCache;
+
+    // fileId -> users with an entry in accessCache, so a file's entries can be dropped without
+    // scanning the cache. May briefly list users whose entry is already gone, never the reverse.
+    private final ConcurrentHashMap<Long, Set<Long>> cachedUsersByFile = new ConcurrentHashMap<>();
+
+    // (folderId, userId) -> strongest grant on the folder or any ancestor, empty if none
+    private Cache<FolderAccessKey, Optional<Permission.Access>> inheritedCache;
+
+    @PostConstruct
+    public void initAccessCache() {
+        accessCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheExpireMinutes, TimeUnit.MINUTES)
+                // Runs under the entry's lock, so it cannot race a reload of the same key
+                .<AccessKey, Optional<Permission.Access>>evictionListener((key, value, cause) -> unindex(key))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accessCache, "permissionAccess");
+        inheritedCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheExpireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, inheritedCache, "permissionInheritedAccess");
+    }
+
     /**
      * Share a file with a user. Only the owner can share files.
      * Non-owners cannot share files further.
@@ -59,9 +144,12 @@ public class PermissionService {
             p = new Permission();
             p.setFile(file);
             p.setUser(targetUser);
+            userCountersRepository.addUnreadShares(targetUser.getId(), 1);
         }
         p.setAccess(access);
-        return permissionRepository.save(p);
+        Permission saved = permissionRepository.save(p);
+        eventPublisher.publishEvent(PermissionChangedEvent.forUser(file.getId(), targetUser.getId()));
+        return saved;
     }
 
     /**
@@ -70,58 +158,254 @@ public class PermissionService {
     @Transactional
     public Permission createOwnerPermission(File file, User owner) {
         Optional<Permission> existing = permissionRepository.findByFileAndUser(file, owner);
+        Permission p;
         if (existing.isPresent()) {
             // Update if exists
-            Permission p = existing.get();
-            p.setAccess(Permission.Access.OWNER);
-            return permissionRepository.save(p);
+            p = existing.get();
+            dropUnread(p);
         } else {
-            Permission p = new Permission();
+            p = new Permission();
             p.setFile(file);
             p.setUser(owner);
-            p.setAccess(Permission.Access.OWNER);
-            return permissionRepository.save(p);
         }
+        p.setAccess(Permission.Access.OWNER);
+        Permission saved = permissionRepository.save(p);
+        eventPublisher.publishEvent(PermissionChangedEvent.forUser(file.getId(), owner.getId()));
+        return saved;
     }
 
     /**
-     * Check if a user is the owner of a file
+     * Effective access of a user to a file: the stronger of the file's own permission and any
+     * grant on its folder or an ancestor folder. Served from the access caches when possible.
      */
-    public boolean isOwner(File file, User user) {
+    public Optional<Permission.Access> getAccess(File file, Long userId) {
         // Treat the file creator as owner (defensive in case owner permission row is missing)
-        if (file.getUser() != null && file.getUser().getId() != null && file.getUser().getId().equals(user.getId())) {
-            return true;
+        if (file.getUser() != null && file.getUser().getId() != null && file.getUser().getId().equals(userId)) {
+            return Optional.of(Permission.Access.OWNER);
         }
-        Optional<Permission> permission = permissionRepository.findByFileAndUser(file, user);
-        return permission.isPresent() && permission.get().getAccess() == Permission.Access.OWNER;
+        Optional<Permission.Access> explicit = accessCache.get(new AccessKey(file.getId(), userId), this::loadAccess);
+        if (explicit.filter(a -> a == Permission.Access.OWNER).isPresent() || file.getFolder() == null) {
+            return explicit;
+        }
+        return strongest(explicit, getInheritedAccess(file.getFolder().getId(), userId));
     }
 
     /**
-     * Check if a user has read or write permission on a file
+     * Access a user inherits on everything inside a folder from grants on the folder or its
+     * ancestors. One indexed query on the materialized path, whatever the depth, then cached.
      */
-    public boolean hasReadPermission(File file, User user) {
-        // Owner always has read permission
-        if (isOwner(file, user)) {
-            return true;
+    public Optional<Permission.Access> getInheritedAccess(Long folderId, Long userId) {
+        return inheritedCache.get(new FolderAccessKey(folderId, userId),
+                key -> folderPermissionRepository.findInheritedAccess(key.folderId(), key.userId()).stream()
+                        .max(Comparator.naturalOrder()));
+    }
+
+    private static Optional<Permission.Access> strongest(Optional<Permission.Access> a, Optional<Permission.Access> b) {
+        if (a.isEmpty()) {
+            return b;
         }
-        
-        Optional<Permission> permission = permissionRepository.findByFileAndUser(file, user);
-        return permission.isPresent() && 
-               (permission.get().getAccess() == Permission.Access.READ || 
-                permission.get().getAccess() == Permission.Access.WRITE);
+        if (b.isEmpty()) {
+            return a;
+        }
+        return a.get().compareTo(b.get()) >= 0 ? a : b;
+    }
+
+    /**
+     * Check if a user is the owner of a file
+     */
+    public boolean isOwner(File file, User user) {
+        return isOwner(file, user.getId());
+    }
+
+    public boolean isOwner(File file, Long userId) {
+        return getAccess(file, userId).filter(a -> a == Permission.Access.OWNER).isPresent();
     }
 
     /**
-     * Check if a user has write permission on a file
+     * Check if a user has read or write permission on a file (owners always do)
+     */
+    public boolean hasReadPermission(File file, User user) {
+        return hasReadPermission(file, user.getId());
+    }
+
+    public boolean hasReadPermission(File file, Long userId) {
+        return getAccess(file, userId).isPresent();
+    }
+
+    /**
+     * Check if a user has write permission on a file (owners always do)
      */
     public boolean hasWritePermission(File file, User user) {
-        // Owner always has write permission
-        if (isOwner(file, user)) {
-            return true;
+        return hasWritePermission(file, user.getId());
+    }
+
+    public boolean hasWritePermission(File file, Long userId) {
+        return getAccess(file, userId).filter(a -> a != Permission.Access.READ).isPresent();
+    }
+
+    /**
+     * Drop cached access decisions once the change that caused them is committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        if (event.userId() != null) {
+            invalidateAccess(new AccessKey(event.fileId(), event.userId()));
+        } else {
+            invalidateAccess(event.fileId(), userId -> true);
         }
-        
-        Optional<Permission> permission = permissionRepository.findByFileAndUser(file, user);
-        return permission.isPresent() && permission.get().getAccess() == Permission.Access.WRITE;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilesDeleted(FilesDeletedEvent event) {
+        event.fileIds().forEach(fileId -> invalidateAccess(fileId, userId -> true));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionsBulkChanged(PermissionsBulkChangedEvent event) {
+        event.fileIds().forEach(fileId -> invalidateAccess(fileId, event.userIds()::contains));
+        // Bulk shares write permissions and unread counters with JDBC, past the second-level cache
+        entityManagerFactory.getCache().evict(Permission.class);
+        event.userIds().forEach(userId -> entityManagerFactory.getCache().evict(User.class, userId));
+    }
+
+    // Runs under the entry's lock, like the eviction listener and invalidateAccess(AccessKey)
+    private Optional<Permission.Access> loadAccess(AccessKey key) {
+        cachedUsersByFile.compute(key.fileId(), (id, users) -> {
+            Set<Long> indexed = users != null ? users : ConcurrentHashMap.newKeySet();
+            indexed.add(key.userId());
+            return indexed;
+        });
+        return permissionRepository.findAccess(key.fileId(), key.userId());
+    }
+
+    private void unindex(AccessKey key) {
+        cachedUsersByFile.computeIfPresent(key.fileId(), (id, users) -> {
+            users.remove(key.userId());
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    /**
+     * Drop the cached decisions on a file for the matching users, looking them up in the index
+     */
+    private void invalidateAccess(Long fileId, Predicate<Long> users) {
+        Set<Long> cached = cachedUsersByFile.get(fileId);
+        if (cached == null) {
+            return;
+        }
+        for (Long userId : List.copyOf(cached)) {
+            if (users.test(userId)) {
+                invalidateAccess(new AccessKey(fileId, userId));
+            }
+        }
+    }
+
+    private void invalidateAccess(AccessKey key) {
+        // Remove and unindex atomically with respect to a concurrent load of the same key
+        accessCache.asMap().compute(key, (k, value) -> {
+            unindex(k);
+            return null;
+        });
+    }
+
+    /**
+     * Drop cached inherited access once a folder grant change is committed. A grant affects
+     * every folder below it, so all of the user's entries go.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFolderPermissionChanged(FolderPermissionChangedEvent event) {
+        if (event.userId() != null) {
+            inheritedCache.asMap().keySet().removeIf(key -> key.userId().equals(event.userId()));
+        } else {
+            inheritedCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Share a folder and everything below it with a user. Only the folder owner can share it.
+     *
+     * @param folder The folder to share
+     * @param targetUser The user to share with
+     * @param access The access level (READ or WRITE, not OWNER)
+     * @param owner The user attempting to share (must own the folder)
+     * @return The created or updated folder grant
+     * @throws RuntimeException if the requester does not own the folder or trying to grant OWNER access
+     */
+    @Transactional
+    public FolderPermission shareFolder(Folder folder, User targetUser, Permission.Access access, User owner) {
+        if (!folder.getUser().getId().equals(owner.getId())) {
+            throw new RuntimeException("Only the folder owner can share this folder");
+        }
+        if (access == Permission.Access.OWNER) {
+            throw new RuntimeException("Cannot grant OWNER access. Only the folder creator is the owner.");
+        }
+        if (targetUser.getId().equals(owner.getId())) {
+            throw new RuntimeException("Cannot share folder with the owner");
+        }
+
+        FolderPermission grant = folderPermissionRepository.findByFolderIdAndUserId(folder.getId(), targetUser.getId())
+                .orElseGet(() -> {
+                    FolderPermission created = new FolderPermission();
+                    created.setFolder(folder);
+                    created.setUser(targetUser);
+                    return created;
+                });
+        grant.setAccess(access);
+        FolderPermission saved = folderPermissionRepository.save(grant);
+        eventPublisher.publishEvent(new FolderPermissionChangedEvent(folder.getId(), targetUser.getId()));
+        return saved;
+    }
+
+    /**
+     * Revoke a folder grant (only the folder owner can do this)
+     */
+    @Transactional
+    public void revokeFolderPermission(Long grantId, User owner) {
+        FolderPermission grant = folderPermissionRepository.findById(grantId)
+                .orElseThrow(() -> new RuntimeException("Folder permission not found"));
+        Folder folder = grant.getFolder();
+        if (!folder.getUser().getId().equals(owner.getId())) {
+            throw new RuntimeException("Only the folder owner can revoke folder permissions");
+        }
+        folderPermissionRepository.delete(grant);
+        eventPublisher.publishEvent(new FolderPermissionChangedEvent(folder.getId(), grant.getUser().getId()));
+    }
+
+    /**
+     * Grants on a folder with user info
+     */
+    public List<Map<String, Object>> getFolderPermissionsWithUserInfo(Folder folder) {
+        return toGrantInfo(folderPermissionRepository.findGrantRowsByFolderId(folder.getId()));
+    }
+
+    private static List<Map<String, Object>> toGrantInfo(List<PermissionRepository.GrantRow> grants) {
+        return grants.stream()
+                .map(grant -> {
+                    Map<String, Object> info = new HashMap<>();
+                    info.put("id", grant.getId());
+                    info.put("username", grant.getUsername());
+                    info.put("userId", grant.getUserId());
+                    info.put("access", grant.getAccess().name());
+                    return info;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Folders shared directly with a user
+     */
+    public List<FolderPermissionRepository.SharedFolderRow> getSharedFoldersForUser(User user) {
+        return folderPermissionRepository.findSharedFolderRows(user.getId());
+    }
+
+    /**
+     * Remove every permission on a file (before the file itself is deleted)
+     */
+    @Transactional
+    public void deletePermissionsForFile(File file) {
+        userCountersRepository.decrementUnreadSharesForFile(file.getId(), Permission.Access.OWNER);
+        permissionRepository.deleteByFile(file);
+        eventPublisher.publishEvent(PermissionChangedEvent.forFile(file.getId()));
     }
 
     public List<Permission> getFilePermissions(File file) {
@@ -135,45 +419,84 @@ public class PermissionService {
     /**
      * Get all shared files for a user (excluding OWNER permissions and viewed ones)
      */
-    public List<Permission> getSharedFilesForUser(User user) {
-        List<Permission> allShared = permissionRepository.findByUserExcludingAccess(user, Permission.Access.OWNER);
-        // Filter out already viewed notifications
-        return allShared.stream()
-                .filter(p -> !Boolean.TRUE.equals(p.getViewed()))
-                .collect(Collectors.toList());
+    public List<PermissionRepository.SharedFileRow> getSharedFilesForUser(User user) {
+        viewedFlagBuffer.flush(user.getId());
+        return permissionRepository.findSharedFiles(user.getId(), false, Permission.Access.OWNER);
     }
-    
+
     /**
-     * Mark a permission as viewed/accepted
+     * One page of files shared with a user, newest share first
+     *
+     * @param viewed only unviewed (false) or accepted (true) shares; both if null
+     * @param cursor permission id of the last item of the previous page, null for the first page
      */
+    public List<PermissionRepository.SharedFileRow> getSharedFeed(User user, Boolean viewed, Long cursor, int limit) {
+        viewedFlagBuffer.flush(user.getId());
+        long beforeId = cursor != null ? cursor : Long.MAX_VALUE;
+        PageRequest page = PageRequest.of(0, limit);
+        if (viewed == null) {
+            return permissionRepository.findSharedFeedAll(user.getId(), Permission.Access.OWNER, beforeId, page);
+        }
+        return permissionRepository.findSharedFeed(user.getId(), viewed, Permission.Access.OWNER, beforeId, page);
+    }
+
+    /**
+     * Number of unviewed shares, read from the user's counter rather than the permissions table
+     */
+    public long getUnreadShareCount(User user) {
+        viewedFlagBuffer.flush(user.getId());
+        return userCountersRepository.findUnreadShares(user.getId());
+    }
+
+    /**
+     * Recount every user's unread shares at startup, covering rows changed while the
+     * application was down
+     */
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional
+    public void reconcileUnreadCounters() {
+        userCountersRepository.insertMissing();
+        userCountersRepository.recountUnreadShares(Permission.Access.OWNER);
+    }
+    
+    /**
+     * Mark a permission as viewed/accepted. The permission is checked up front (a cached
+     * lookup); only the write is buffered and batched with other marks.
+     */
     public void markPermissionAsViewed(Long permissionId, User user) {
-        Permission permission = permissionRepository.findById(permissionId)
-                .orElseThrow(() -> new RuntimeException("Permission not found"));
-        
-        if (!permission.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Permission does not belong to user");
+        Permission permission = getOwnPermission(permissionId, user);
+        viewedFlagBuffer.add(user.getId(), permission.getId());
+    }
+
+    /**
+     * Mark several of a user's shares, or all of them when permissionIds is null, as viewed
+     * in a single UPDATE
+     *
+     * @return how many shares were unviewed before
+     */
+    @Transactional
+    public int markSharesAsViewed(User user, Collection<Long> permissionIds) {
+        // Queued single marks go first so they are not counted twice
+        viewedFlagBuffer.flush(user.getId());
+        int marked;
+        if (permissionIds == null) {
+            marked = permissionRepository.markAllViewed(user.getId(), Permission.Access.OWNER);
+        } else if (permissionIds.isEmpty()) {
+            return 0;
+        } else {
+            marked = permissionRepository.markViewed(user.getId(), permissionIds, Permission.Access.OWNER);
         }
-        
-        permission.setViewed(true);
-        permissionRepository.save(permission);
+        if (marked > 0) {
+            userCountersRepository.addUnreadShares(user.getId(), -marked);
+        }
+        return marked;
     }
 
     /**
      * Get file permissions with user info
      */
     public List<Map<String, Object>> getFilePermissionsWithUserInfo(File file) {
-        List<Permission> permissions = permissionRepository.findByFile(file);
-        return permissions.stream()
-                .map(p -> {
-                    Map<String, Object> permInfo = new HashMap<>();
-                    permInfo.put("id", p.getId());
-                    permInfo.put("username", p.getUser().getUsername());
-                    permInfo.put("userId", p.getUser().getId());
-                    permInfo.put("access", p.getAccess().name());
-                    return permInfo;
-                })
-                .collect(Collectors.toList());
+        return toGrantInfo(permissionRepository.findGrantRowsByFileId(file.getId()));
     }
 
     /**
@@ -189,12 +512,9 @@ public class PermissionService {
     /**
      * Get all accepted shared files for a user (viewed = true, excluding OWNER)
      */
-    public List<Permission> getAcceptedSharedFilesForUser(User user) {
-        List<Permission> allShared = permissionRepository.findByUserExcludingAccess(user, Permission.Access.OWNER);
-        // Return only viewed (accepted) files
-        return allShared.stream()
-                .filter(p -> Boolean.TRUE.equals(p.getViewed()))
-                .collect(Collectors.toList());
+    public List<PermissionRepository.SharedFileRow> getAcceptedSharedFilesForUser(User user) {
+        viewedFlagBuffer.flush(user.getId());
+        return permissionRepository.findSharedFiles(user.getId(), true, Permission.Access.OWNER);
     }
     
     /**
@@ -218,9 +538,14 @@ public class PermissionService {
         }
         
         // Mark as unviewed so user gets notification
+        if (Boolean.TRUE.equals(permission.getViewed())) {
+            userCountersRepository.addUnreadShares(permission.getUser().getId(), 1);
+        }
         permission.setViewed(false);
         permission.setAccess(newAccess);
-        return permissionRepository.save(permission);
+        Permission saved = permissionRepository.save(permission);
+        eventPublisher.publishEvent(PermissionChangedEvent.forUser(file.getId(), permission.getUser().getId()));
+        return saved;
     }
     
     /**
@@ -243,7 +568,9 @@ public class PermissionService {
             throw new RuntimeException("Cannot revoke OWNER permission");
         }
         
+        dropUnread(permission);
         permissionRepository.delete(permission);
+        eventPublisher.publishEvent(PermissionChangedEvent.forUser(file.getId(), permission.getUser().getId()));
     }
 
     public List<Permission> getAllPermissions() {
@@ -263,7 +590,7 @@ public class PermissionService {
 
     public List<File> getSharedFilesForCurrentUser() {
         User currentUser = userService.getCurrentUser();
-        List<Permission> sharedPermissions = permissionRepository.findByUserExcludingAccess(currentUser, Permission.Access.OWNER);
+        List<Permission> sharedPermissions = permissionRepository.findByUserExcludingAccessWithFiles(currentUser, Permission.Access.OWNER);
         return sharedPermissions.stream()
                 .map(Permission::getFile)
                 .collect(Collectors.toList());
@@ -283,16 +610,40 @@ public class PermissionService {
         throw new RuntimeException("Method needs proper implementation with user context");
     }
 
+    @Transactional
     public void removePermission(Long id) {
         Permission permission = permissionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Permission not found"));
+        dropUnread(permission);
         permissionRepository.delete(permission);
+        eventPublisher.publishEvent(PermissionChangedEvent.forUser(permission.getFile().getId(), permission.getUser().getId()));
+    }
+
+    /**
+     * Same as {@link #markPermissionAsViewed}, answering with the permission as it reads once
+     * the buffered write lands. The entity is detached here (no transaction), so setting the
+     * flag cannot flush ahead of the buffered UPDATE.
+     */
+    public Permission markAsViewed(Long permissionId, User user) {
+        Permission permission = getOwnPermission(permissionId, user);
+        viewedFlagBuffer.add(user.getId(), permission.getId());
+        permission.setViewed(true);
+        return permission;
     }
 
-    public Permission markAsViewed(Long permissionId) {
+    private Permission getOwnPermission(Long permissionId, User user) {
         Permission permission = permissionRepository.findById(permissionId)
                 .orElseThrow(() -> new RuntimeException("Permission not found"));
-        permission.setViewed(true);
-        return permissionRepository.save(permission);
+        if (!permission.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Permission does not belong to user");
+        }
+        return permission;
+    }
+
+    // An unviewed share going away takes its unread notification with it
+    private void dropUnread(Permission permission) {
+        if (!Boolean.TRUE.equals(permission.getViewed()) && permission.getAccess() != Permission.Access.OWNER) {
+            userCountersRepository.addUnreadShares(permission.getUser().getId(), -1);
+        }
     }
 }
@@ -0,0 +1,10 @@
+package com.rip.vaultify.service;
+
+import java.util.Set;
+
+/**
+ * Published when permissions of many (file, user) pairs changed at once, e.g. a bulk share.
+ * Any pair from fileIds x userIds may have changed.
+ */
+public record PermissionsBulkChangedEvent(Set<Long> fileIds, Set<Long> userIds) {
+}
@@ -0,0 +1,71 @@
+package com.rip.vaultify.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and fails the read that takes the total past the limit,
+ * so an upload over quota stops at that point instead of after the whole body is stored.
+ */
+public class QuotaLimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+
+    public QuotaLimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            advance(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        advance(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void advance(long bytes) throws QuotaExceededException {
+        count += bytes;
+        if (count > limit) {
+            throw new QuotaExceededException(limit);
+        }
+    }
+
+    /**
+     * Thrown from a read once the stream has passed its limit. An IOException so blob stores
+     * discard the partial write the same way as for any other I/O failure.
+     */
+    public static class QuotaExceededException extends IOException {
+        public QuotaExceededException(long limit) {
+            super("Storage quota exceeded: upload is larger than the remaining " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.repository.UserCountersRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user storage quotas backed by the usedBytes counter on each user. The counter is
+ * changed with single atomic UPDATEs on upload, copy and delete, and a charge only succeeds
+ * if it keeps the user within quota, so concurrent uploads cannot overshoot it together.
+ */
+@Service
+public class StorageQuotaService {
+
+    private final UserCountersRepository userCountersRepository;
+    private final long defaultQuotaBytes;
+
+    public StorageQuotaService(UserCountersRepository userCountersRepository,
+                               @Value("${storage.quota.default-bytes:0}") long defaultQuotaBytes) {
+        this.userCountersRepository = userCountersRepository;
+        this.defaultQuotaBytes = defaultQuotaBytes;
+    }
+
+    /**
+     * Bytes the user may still store, Long.MAX_VALUE when they have no quota
+     */
+    public long getRemainingBytes(Long userId) {
+        UserCountersRepository.StorageUsage usage = loadUsage(userId);
+        long quota = effectiveQuota(usage);
+        return quota > 0 ? Math.max(0, quota - usage.getUsedBytes()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Wrap an upload stream so reading stops with a QuotaExceededException once it passes the
+     * user's remaining quota
+     */
+    public QuotaLimitedInputStream limit(InputStream in, long remainingBytes) {
+        return new QuotaLimitedInputStream(in, remainingBytes);
+    }
+
+    /**
+     * Add stored bytes to the user's usage
+     *
+     * @throws RuntimeException if that would take the user over quota
+     */
+    public void charge(Long userId, long bytes) {
+        long quota = effectiveQuota(loadUsage(userId));
+        if (quota <= 0) {
+            userCountersRepository.addUsedBytes(userId, bytes);
+        } else if (userCountersRepository.chargeUsedBytes(userId, bytes, quota) == 0) {
+            throw new RuntimeException("Storage quota exceeded: " + bytes + " bytes would exceed the quota of " + quota + " bytes");
+        }
+    }
+
+    public void release(Long userId, long bytes) {
+        if (bytes != 0) {
+            userCountersRepository.addUsedBytes(userId, -bytes);
+        }
+    }
+
+    public Map<String, Object> getUsage(Long userId) {
+        UserCountersRepository.StorageUsage usage = loadUsage(userId);
+        long quota = effectiveQuota(usage);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("usedBytes", usage.getUsedBytes());
+        result.put("quotaBytes", quota > 0 ? quota : null);
+        result.put("remainingBytes", quota > 0 ? Math.max(0, quota - usage.getUsedBytes()) : null);
+        return result;
+    }
+
+    private UserCountersRepository.StorageUsage loadUsage(Long userId) {
+        return userCountersRepository.findStorageUsage(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+    }
+
+    // A per-user quota overrides the default; 0 means unlimited
+    private long effectiveQuota(UserCountersRepository.StorageUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuotaBytes;
+    }
+}
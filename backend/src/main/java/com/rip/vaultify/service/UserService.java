@@ -1,6 +1,8 @@
 package com.rip.vaultify.service;
 
 import com.rip.vaultify.model.User;
+import com.rip.vaultify.model.UserCounters;
+import com.rip.vaultify.repository.UserCountersRepository;
 import com.rip.vaultify.repository.UserRepository;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -9,17 +11,23 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
 
     private final UserRepository repo;
+    private final UserCountersRepository countersRepo;
     private final BCryptPasswordEncoder encoder;
 
-    public UserService(UserRepository repo, BCryptPasswordEncoder encoder) {
+    public UserService(UserRepository repo, UserCountersRepository countersRepo, BCryptPasswordEncoder encoder) {
         this.repo = repo;
+        this.countersRepo = countersRepo;
         this.encoder = encoder;
     }
 
@@ -34,7 +42,9 @@ public class UserService {
         u.setPassword(hashed);
         // default role USER
         u.setRoles(Set.of("ROLE_USER"));
-        return repo.save(u);
+        User saved = repo.save(u);
+        countersRepo.save(new UserCounters(saved.getId()));
+        return saved;
     }
 
     public User findByUsername(String username) {
@@ -55,6 +65,14 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Users by id, for batched GraphQL field resolution
+     */
+    public Map<Long, User> getUsersByIds(Collection<Long> ids) {
+        return repo.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
     public List<User> getAllUsers() {
         return repo.findAll();
     }
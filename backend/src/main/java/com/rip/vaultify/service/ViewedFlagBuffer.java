@@ -0,0 +1,134 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for single "mark as viewed" requests. Marks are collected per user and
+ * written every few hundred milliseconds as one UPDATE per user, all in one transaction, so
+ * a client marking notifications one by one does not open a transaction per click.
+ * <p>
+ * Reads of a user's shares call {@link #flush(Long)} first, so the user always sees their own
+ * marks. Ids are only ever added inside {@code pending.compute}, so a set taken out of the map
+ * cannot receive another mark; a batch that fails to write goes back into the map for the next
+ * flush.
+ */
+@Component
+public class ViewedFlagBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ViewedFlagBuffer.class);
+    private static final int MAX_IDS_PER_UPDATE = 1000;
+
+    private final PermissionRepository permissionRepository;
+    private final UserCountersRepository userCountersRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // userId -> permission ids waiting to be marked viewed
+    private final ConcurrentHashMap<Long, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    public ViewedFlagBuffer(PermissionRepository permissionRepository,
+                            UserCountersRepository userCountersRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${permissions.viewed.flush-interval-ms:250}") long flushIntervalMs) {
+        this.permissionRepository = permissionRepository;
+        this.userCountersRepository = userCountersRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a permission to be marked viewed. Ids that do not belong to the user are ignored
+     * when the batch is written.
+     */
+    public void add(Long userId, Long permissionId) {
+        pending.compute(userId, (id, ids) -> {
+            Set<Long> queued = ids != null ? ids : new HashSet<>();
+            queued.add(permissionId);
+            return queued;
+        });
+    }
+
+    /**
+     * Write the user's queued marks now
+     */
+    public void flush(Long userId) {
+        Set<Long> ids = pending.remove(userId);
+        if (ids != null && !ids.isEmpty()) {
+            write(Map.of(userId, ids));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flushAll();
+    }
+
+    private void flushAll() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Set<Long>> batch = new HashMap<>();
+        for (Long userId : new ArrayList<>(pending.keySet())) {
+            Set<Long> ids = pending.remove(userId);
+            if (ids != null && !ids.isEmpty()) {
+                batch.put(userId, ids);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(Map<Long, Set<Long>> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Map.Entry<Long, Set<Long>> entry : batch.entrySet()) {
+                    List<Long> ids = new ArrayList<>(entry.getValue());
+                    int marked = 0;
+                    for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+                        List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_UPDATE));
+                        marked += permissionRepository.markViewed(entry.getKey(), chunk, Permission.Access.OWNER);
+                    }
+                    if (marked > 0) {
+                        userCountersRepository.addUnreadShares(entry.getKey(), -marked);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to write viewed flags for {} users, keeping them queued: {}",
+                    batch.size(), e.getMessage(), e);
+            batch.forEach(this::requeue);
+        }
+    }
+
+    private void requeue(Long userId, Set<Long> ids) {
+        pending.compute(userId, (id, queued) -> {
+            if (queued == null) {
+                return ids;
+            }
+            queued.addAll(ids);
+            return queued;
+        });
+    }
+}
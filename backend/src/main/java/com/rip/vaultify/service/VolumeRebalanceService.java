@@ -0,0 +1,395 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.BlobRef;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.repository.BlobRefRepository;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.storage.BlobCopier;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import com.rip.vaultify.storage.StorageVolume;
+import com.rip.vaultify.storage.StorageVolumes;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Moves blobs to the volumes the hash ring assigns them, e.g. after a volume is added or
+ * marked as draining, or the replication factor changes. A move copies the blob, repoints the
+ * File row, and deletes old copies only after a grace period so in-flight reads keep working.
+ * <p>
+ * Folder and file copies share a blob (same storedName), so a move repoints every row sharing
+ * it and each blob is moved at most once per pass. Copies are written beside the destination
+ * and renamed into place, never truncating a file readers may have open, and no copy is
+ * deleted while a File row still points at it or its reference count shows rows not yet
+ * visible to this pass.
+ */
+@Service
+public class VolumeRebalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VolumeRebalanceService.class);
+
+    private final FileRepository fileRepository;
+    private final BlobRefRepository blobRefRepository;
+    private final StorageVolumes volumes;
+    private final BlobCopier blobCopier;
+    private final StorageIoMonitor ioMonitor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // Old copies waiting out the delete grace period -> storedName of their blob
+    private final Map<Path, String> pendingDeletes = new ConcurrentHashMap<>();
+
+    private final long bytesPerSecond;
+    private final int batchSize;
+    private final long deleteGraceSeconds;
+    private final long latencyThresholdMs;
+    private final long backoffMs;
+
+    private volatile Map<String, Object> lastRun;
+
+    public VolumeRebalanceService(FileRepository fileRepository,
+                                  BlobRefRepository blobRefRepository,
+                                  StorageVolumes volumes,
+                                  BlobCopier blobCopier,
+                                  StorageIoMonitor ioMonitor,
+                                  @Value("${storage.rebalance.enabled:true}") boolean enabled,
+                                  @Value("${storage.rebalance.rate-mb-per-second:50}") long rateMbPerSecond,
+                                  @Value("${storage.rebalance.batch-size:500}") int batchSize,
+                                  @Value("${storage.rebalance.delete-grace-seconds:60}") long deleteGraceSeconds,
+                                  @Value("${storage.scrub.latency-threshold-ms:50}") long latencyThresholdMs,
+                                  @Value("${storage.scrub.backoff-ms:2000}") long backoffMs) {
+        this.fileRepository = fileRepository;
+        this.blobRefRepository = blobRefRepository;
+        this.volumes = volumes;
+        this.blobCopier = blobCopier;
+        this.ioMonitor = ioMonitor;
+        this.bytesPerSecond = Math.max(1, rateMbPerSecond) * 1024 * 1024;
+        this.batchSize = batchSize;
+        this.deleteGraceSeconds = deleteGraceSeconds;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.backoffMs = backoffMs;
+
+        if (enabled) {
+            // Pick up volume changes shortly after startup
+            scheduler.schedule(this::runRebalance, 1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Interrupt the pass in progress and cancel the schedule. Old copies still in their grace
+     * period are deleted now, unless a row still points at them: no request can be reading
+     * them once the application stops.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Volume rebalance did not stop within 10s of shutdown");
+        }
+        pendingDeletes.forEach((path, storedName) -> deleteIfUnreferenced(storedName, path));
+    }
+
+    /**
+     * Start a rebalance pass in the background
+     *
+     * @return false if a pass is already running
+     */
+    public boolean triggerRebalance() {
+        if (running.get()) {
+            return false;
+        }
+        scheduler.execute(this::runRebalance);
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("lastRun", lastRun);
+        status.put("volumes", volumes.getAllVolumes().stream().map(v -> {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("id", v.getId());
+            info.put("root", v.getRoot().toString());
+            info.put("draining", v.isDraining());
+            info.put("capacityBytes", v.getTotalSpace());
+            info.put("usableBytes", v.getUsableSpace());
+            return info;
+        }).toList());
+        return status;
+    }
+
+    void runRebalance() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Instant startedAt = Instant.now();
+        long scanned = 0;
+        long moved = 0;
+        long recorded = 0;
+        long skipped = 0;
+        long bytesMoved = 0;
+        Bucket budget = Bucket.builder()
+                .addLimit(Bandwidth.classic(bytesPerSecond, Refill.greedy(bytesPerSecond, Duration.ofSeconds(1))))
+                .build();
+        logger.info("Volume rebalance started");
+        // Blobs moved or recorded in this pass; rows later in the scan that share one are stale
+        Set<String> handled = new HashSet<>();
+        try {
+            long lastId = 0;
+            while (true) {
+                List<File> batch = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (File file : batch) {
+                    lastId = file.getId();
+                    scanned++;
+                    if (file.isErasureCoded()) {
+                        // Shards are moved off draining volumes by the erasure repair job
+                        continue;
+                    }
+                    if (handled.contains(file.getStoredName())) {
+                        continue;
+                    }
+                    List<StorageVolume> desired = volumes.placementFor(file.getStoredName());
+                    List<String> current = volumes.replicaIds(file);
+                    List<String> desiredIds = desired.stream().map(StorageVolume::getId).toList();
+                    if (desiredIds.equals(current)) {
+                        if (file.getReplicaVolumes() == null) {
+                            // Legacy row already in the right place: just record it
+                            StorageVolume primary = desired.get(0);
+                            fileRepository.relocate(file.getId(), file.getFilePath(), primary.getId(),
+                                    primary.resolve(file.getStoredName()).toString(), StorageVolumes.joinIds(desired));
+                            handled.add(file.getStoredName());
+                            recorded++;
+                        }
+                        continue;
+                    }
+                    handled.add(file.getStoredName());
+                    long size = moveBlob(file, desired, budget);
+                    if (size >= 0) {
+                        moved++;
+                        bytesMoved += size;
+                    } else {
+                        skipped++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Volume rebalance interrupted");
+        } catch (RuntimeException e) {
+            logger.error("Volume rebalance aborted: {}", e.getMessage(), e);
+        } finally {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", startedAt.toString());
+            report.put("finishedAt", Instant.now().toString());
+            report.put("scanned", scanned);
+            report.put("moved", moved);
+            report.put("recorded", recorded);
+            report.put("skipped", skipped);
+            report.put("bytesMoved", bytesMoved);
+            lastRun = report;
+            running.set(false);
+            logger.info("Volume rebalance finished - {}", report);
+        }
+    }
+
+    /**
+     * Bring a file's replicas in line with its placement: copy to the volumes that lack a
+     * replica, repoint the row and every row sharing its blob, then retire replicas on volumes
+     * that are no longer wanted.
+     *
+     * @return bytes copied, or -1 if the blob was left where it is
+     */
+    private long moveBlob(File scanned, List<StorageVolume> desired, Bucket budget) throws InterruptedException {
+        // Re-read: the row may have been deleted or repointed since the batch was loaded
+        File file = fileRepository.findById(scanned.getId()).orElse(null);
+        if (file == null || !Objects.equals(file.getFilePath(), scanned.getFilePath())
+                || !Objects.equals(file.getReplicaVolumes(), scanned.getReplicaVolumes())) {
+            return -1;
+        }
+        List<StorageVolumes.Replica> existing = volumes.replicasOf(file);
+        Path source = existing.stream()
+                .map(StorageVolumes.Replica::path)
+                .filter(Files::exists)
+                .findFirst()
+                .orElse(null);
+        if (source == null) {
+            // Reported by the integrity scrub; nothing to move
+            return -1;
+        }
+        Set<Path> existingPaths = existing.stream()
+                .map(r -> normalize(r.path()))
+                .collect(Collectors.toSet());
+
+        List<Path> created = new ArrayList<>();
+        long copied = 0;
+        try {
+            long size = Files.size(source);
+            for (StorageVolume target : desired) {
+                Path destination = target.resolve(file.getStoredName());
+                if (Files.exists(destination)
+                        && (existingPaths.contains(normalize(destination)) || Files.size(destination) == size)) {
+                    // Already there, e.g. written by an earlier pass for a row sharing this blob
+                    continue;
+                }
+                if (target.getUsableSpace() <= size) {
+                    logger.warn("Volume rebalance: not enough space on {} for fileId: {}", target.getId(), file.getId());
+                    discard(file.getStoredName(), created);
+                    return -1;
+                }
+                throttle(size, budget);
+                Path partial = destination.resolveSibling(destination.getFileName() + ".rebalance");
+                blobCopier.copy(source, partial);
+                if (Files.size(partial) != size) {
+                    logger.warn("Volume rebalance: size mismatch after copy - fileId: {}", file.getId());
+                    Files.deleteIfExists(partial);
+                    discard(file.getStoredName(), created);
+                    return -1;
+                }
+                Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                created.add(destination);
+                copied += size;
+            }
+        } catch (IOException e) {
+            logger.warn("Volume rebalance: failed to move fileId: {} - {}", file.getId(), e.getMessage());
+            discard(file.getStoredName(), created);
+            return -1;
+        }
+
+        StorageVolume primary = desired.get(0);
+        int updated = fileRepository.relocate(file.getId(), file.getFilePath(), primary.getId(),
+                primary.resolve(file.getStoredName()).toString(), StorageVolumes.joinIds(desired));
+        if (updated == 0) {
+            // File deleted or moved concurrently: discard our copies unless a row now uses them
+            discard(file.getStoredName(), created);
+            return -1;
+        }
+
+        Set<Path> keep = desired.stream()
+                .map(v -> normalize(v.resolve(file.getStoredName())))
+                .collect(Collectors.toSet());
+        for (Path old : existingPaths) {
+            if (!keep.contains(old)) {
+                scheduleDelete(file.getStoredName(), old);
+            }
+        }
+        return copied;
+    }
+
+    private void throttle(long bytes, Bucket budget) throws InterruptedException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            while (ioMonitor.getRecentLatencyMillis() > latencyThresholdMs) {
+                Thread.sleep(backoffMs);
+            }
+            // A single consume may not exceed the bucket capacity
+            long chunk = Math.min(remaining, bytesPerSecond);
+            budget.asBlocking().consume(chunk);
+            remaining -= chunk;
+        }
+    }
+
+    private void scheduleDelete(String storedName, Path path) {
+        pendingDeletes.put(path, storedName);
+        try {
+            scheduler.schedule(() -> retire(storedName, path), deleteGraceSeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: shutdown() deletes whatever is still pending
+        }
+    }
+
+    /**
+     * Delete an old copy after its grace period, or wait another period if a row still points
+     * at it (e.g. a folder copy that committed with the old location); the next pass moves
+     * such rows
+     */
+    private void retire(String storedName, Path path) {
+        try {
+            if (isReferenced(storedName, path)) {
+                scheduleDelete(storedName, path);
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Volume rebalance: could not check references to {} - {}", path, e.getMessage());
+            scheduleDelete(storedName, path);
+            return;
+        }
+        deleteQuietly(path);
+    }
+
+    private void discard(String storedName, List<Path> created) {
+        created.forEach(path -> deleteIfUnreferenced(storedName, path));
+    }
+
+    private void deleteIfUnreferenced(String storedName, Path path) {
+        pendingDeletes.remove(path);
+        try {
+            if (isReferenced(storedName, path)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Volume rebalance: keeping {}, references could not be checked - {}", path, e.getMessage());
+            return;
+        }
+        deleteQuietly(path);
+    }
+
+    /**
+     * Whether a File row still points at this copy of the blob, or its reference count is
+     * above the rows visible here (a copy of the blob is being committed and may use it)
+     */
+    private boolean isReferenced(String storedName, Path path) {
+        Path target = normalize(path);
+        List<FileRepository.FileBlobRow> rows = fileRepository.findBlobRowsByStoredName(storedName);
+        for (FileRepository.FileBlobRow row : rows) {
+            for (StorageVolumes.Replica replica : volumes.replicasOf(BlobLocation.of(row).toFile())) {
+                if (normalize(replica.path()).equals(target)) {
+                    return true;
+                }
+            }
+        }
+        long counted = blobRefRepository.findById(storedName).map(BlobRef::getRefCount).orElse(0L);
+        return counted > rows.size();
+    }
+
+    private void deleteQuietly(Path path) {
+        pendingDeletes.remove(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Volume rebalance: could not delete {} - {}", path, e.getMessage());
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,24 @@
+package com.rip.vaultify.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * How blob files are read from disk: blocking NIO streams, or io_uring where configured
+ * (storage.io.engine). NioBlobStore decides which file to read; the engine only streams it.
+ */
+public interface BlobIoEngine extends AutoCloseable {
+
+    /**
+     * Open a blob file for streaming. The caller must close the stream.
+     *
+     * @throws java.nio.file.NoSuchFileException if the file does not exist
+     */
+    InputStream open(Path path) throws IOException;
+
+    String getName();
+
+    @Override
+    default void close() {}
+}
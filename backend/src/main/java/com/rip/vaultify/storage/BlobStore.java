@@ -0,0 +1,43 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Storage engine behind FileService. Implementations decide where a blob lives and record
+ * that location on the File row; callers only deal in File entities and streams.
+ */
+public interface BlobStore {
+
+    /**
+     * Persist the content as the blob for the given file and record its location on the entity.
+     * A partially written blob is removed if the stream fails.
+     */
+    void write(File file, InputStream content) throws IOException;
+
+    /**
+     * Open the blob for streaming. The caller must close the stream.
+     */
+    InputStream openRead(File file) throws IOException;
+
+    /**
+     * Copy the blob of source to a new blob for target and record its location on target
+     */
+    void copy(File source, File target) throws IOException;
+
+    boolean exists(File file);
+
+    /**
+     * Every replica of a replicated blob, primary first, so each copy can be verified on its own
+     * ({@link #openRead} and {@link #exists} are satisfied by any one of them). Erasure-coded
+     * blobs have shards instead; see {@link ErasureCoder#verifyShards}.
+     *
+     * @throws IllegalArgumentException if the file is erasure coded
+     */
+    List<StorageVolumes.Replica> replicasOf(File file);
+
+    void delete(File file) throws IOException;
+}
@@ -0,0 +1,840 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reed-Solomon erasure coding of large blobs across the storage volumes.
+ * <p>
+ * A blob is cut into stripes of {@code dataShards} chunks; each stripe gets {@code parityShards}
+ * parity chunks and chunk i of every stripe is appended to shard file i ({@code storedName.shardN}),
+ * each shard on a different volume. Every shard starts with a small header holding the blob
+ * length and chunk size. Any {@code dataShards} shards are enough to read the blob, so a k+m layout survives the
+ * loss of m volumes at (k+m)/k storage overhead instead of the full copies replication needs.
+ */
+@Component
+public class ErasureCoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ErasureCoder.class);
+    // Blob length (long), chunk size (int), reserved (int)
+    private static final int HEADER_SIZE = 16;
+
+    private final StorageVolumes volumes;
+    private final StorageIoMonitor ioMonitor;
+    private final boolean enabled;
+    private final ReedSolomon codec;
+    private final long minSizeBytes;
+    private final int chunkSize;
+    // Parity math and per-shard I/O run here, one task per shard or parity row
+    private final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    public ErasureCoder(StorageVolumes volumes,
+                        StorageIoMonitor ioMonitor,
+                        @Value("${storage.erasure.enabled:false}") boolean enabled,
+                        @Value("${storage.erasure.data-shards:6}") int dataShards,
+                        @Value("${storage.erasure.parity-shards:3}") int parityShards,
+                        @Value("${storage.erasure.min-size-mb:8}") long minSizeMb,
+                        @Value("${storage.erasure.chunk-kb:64}") int chunkKb) {
+        this.volumes = volumes;
+        this.ioMonitor = ioMonitor;
+        this.enabled = enabled;
+        this.codec = new ReedSolomon(dataShards, parityShards);
+        this.minSizeBytes = minSizeMb * 1024 * 1024;
+        this.chunkSize = Math.max(1, chunkKb) * 1024;
+        if (enabled && volumes.getActiveVolumes().size() < codec.getTotalShards()) {
+            logger.warn("Erasure coding {}+{} with only {} active volumes: some volumes hold several shards, "
+                    + "so losing one volume can cost more than one shard", dataShards, parityShards,
+                    volumes.getActiveVolumes().size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Erasure coding tasks did not finish within 10s of shutdown");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether a new blob of this file's size should be erasure coded rather than replicated
+     */
+    public boolean appliesTo(File file) {
+        return enabled && file.getSize() != null && file.getSize() >= minSizeBytes;
+    }
+
+    /**
+     * Encode the stream into shards, stripe by stripe. Shard chunks of a stripe are written in
+     * parallel; up to parityShards shards may fail (the repair job rebuilds them later).
+     */
+    public void write(File file, InputStream content) throws IOException {
+        List<StorageVolume> targets = shardPlacement(file.getStoredName());
+        int total = codec.getTotalShards();
+        List<Path> paths = shardPaths(file, targets);
+        FileChannel[] channels = new FileChannel[total];
+        try {
+            for (int i = 0; i < total; i++) {
+                channels[i] = openForWrite(paths.get(i));
+            }
+            requireWritable(channels);
+
+            byte[][] shards = new byte[total][chunkSize];
+            long position = HEADER_SIZE;
+            long length = 0;
+            int stripeBytes = codec.getDataShards() * chunkSize;
+            while (true) {
+                int filled = fillStripe(content, shards);
+                if (filled == 0) {
+                    break;
+                }
+                codec.encodeParity(shards, chunkSize, executor);
+                long started = System.nanoTime();
+                writeChunks(channels, shards, position);
+                ioMonitor.record(System.nanoTime() - started);
+                requireWritable(channels);
+                position += chunkSize;
+                length += filled;
+                if (filled < stripeBytes) {
+                    break;
+                }
+            }
+            ByteBuffer header = header(new ShardHeader(length, chunkSize));
+            forEachChannel(channels, (shard, channel) -> {
+                writeFully(channel, header.duplicate(), 0);
+                channel.force(true);
+            });
+            closeAll(channels);
+            requireWritable(channels);
+        } catch (IOException | RuntimeException e) {
+            closeAll(channels);
+            paths.forEach(ErasureCoder::deleteQuietly);
+            throw e;
+        }
+        for (int i = 0; i < total; i++) {
+            if (channels[i] == null) {
+                deleteQuietly(paths.get(i));
+            }
+        }
+        record(file, targets);
+    }
+
+    /**
+     * Stream the blob back, decoding stripe by stripe. Missing or unreadable data shards are
+     * reconstructed from parity on the fly.
+     */
+    public InputStream openRead(File file) throws IOException {
+        return new DecodingInputStream(file);
+    }
+
+    /**
+     * A blob is readable while at least dataShards of its shards exist
+     */
+    public boolean exists(File file) {
+        return shardPaths(file).stream().filter(p -> p != null && Files.exists(p)).count() >= file.getDataShards();
+    }
+
+    public void delete(File file) throws IOException {
+        IOException failure = null;
+        for (Path path : shardPaths(file)) {
+            if (path == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Outcome of a repair: the (possibly updated) volume of each shard and how many were rebuilt
+     */
+    public record RepairResult(List<StorageVolume> shardVolumes, int rebuiltShards) {}
+
+    /**
+     * Rebuild missing or truncated shards from the surviving ones. A shard whose volume is gone
+     * from the configuration or is draining is rebuilt on another active volume; callers persist
+     * the new shard volumes when they differ from the recorded ones.
+     */
+    public RepairResult repair(File file) throws IOException {
+        ReedSolomon fileCodec = codecFor(file);
+        int total = fileCodec.getTotalShards();
+        List<StorageVolume> shardVolumes = new ArrayList<>(recordedVolumes(file));
+        List<Path> paths = shardPaths(file);
+
+        ShardHeader shardHeader = readHeader(paths);
+        int chunk = shardHeader.chunkSize();
+        long stripes = shardHeader.stripeCount(fileCodec.getDataShards());
+        long expectedSize = HEADER_SIZE + stripes * chunk;
+
+        boolean[] present = new boolean[total];
+        int missing = 0;
+        for (int i = 0; i < total; i++) {
+            Path path = paths.get(i);
+            StorageVolume volume = shardVolumes.get(i);
+            present[i] = path != null && volume != null && !volume.isDraining()
+                    && Files.isReadable(path) && Files.size(path) == expectedSize;
+            if (!present[i]) {
+                missing++;
+            }
+        }
+        if (missing == 0) {
+            return new RepairResult(shardVolumes, 0);
+        }
+        if (total - missing < fileCodec.getDataShards()) {
+            throw new IOException("File " + file.getId() + " has lost " + missing + " shards, only "
+                    + fileCodec.getParityShards() + " can be rebuilt");
+        }
+
+        FileChannel[] readers = new FileChannel[total];
+        FileChannel[] writers = new FileChannel[total];
+        Path[] targets = new Path[total];
+        try {
+            for (int i = 0; i < total; i++) {
+                if (present[i]) {
+                    readers[i] = FileChannel.open(paths.get(i), StandardOpenOption.READ);
+                } else {
+                    StorageVolume volume = replacementFor(shardVolumes, i);
+                    shardVolumes.set(i, volume);
+                    targets[i] = volume.resolve(shardName(file, i) + ".repair");
+                    writers[i] = FileChannel.open(targets[i], StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                }
+            }
+
+            byte[][] shards = new byte[total][chunk];
+            for (long stripe = 0; stripe < stripes; stripe++) {
+                long position = HEADER_SIZE + stripe * chunk;
+                for (int i = 0; i < total; i++) {
+                    if (present[i]) {
+                        readFully(readers[i], ByteBuffer.wrap(shards[i]), position);
+                    }
+                }
+                fileCodec.decodeMissing(shards, present, chunk, true);
+                for (int i = 0; i < total; i++) {
+                    if (!present[i]) {
+                        writeFully(writers[i], ByteBuffer.wrap(shards[i]), position);
+                    }
+                }
+            }
+            ByteBuffer header = header(shardHeader);
+            for (FileChannel writer : writers) {
+                if (writer != null) {
+                    writeFully(writer, header.duplicate(), 0);
+                    writer.force(true);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(readers);
+            closeAll(writers);
+            Arrays.stream(targets).filter(t -> t != null).forEach(ErasureCoder::deleteQuietly);
+            throw e;
+        }
+        closeAll(readers);
+        closeAll(writers);
+
+        for (int i = 0; i < total; i++) {
+            if (targets[i] != null) {
+                Path finalPath = shardVolumes.get(i).resolve(shardName(file, i));
+                Files.move(targets[i], finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (paths.get(i) != null && !paths.get(i).equals(finalPath)) {
+                    deleteQuietly(paths.get(i));
+                }
+            }
+        }
+        logger.info("Rebuilt {} shards - fileId: {}", missing, file.getId());
+        return new RepairResult(shardVolumes, missing);
+    }
+
+    public enum ShardState { OK, MISSING, CORRUPT }
+
+    /**
+     * One shard as found by {@link #verifyShards}; path and volume are null when the shard's
+     * volume is no longer configured
+     */
+    public record ShardCheck(int shard, String volumeId, Path path, ShardState state) {}
+
+    /**
+     * Outcome of {@link #verifyShards}: the state of every shard, and the hex SHA-256 of the
+     * blob as decoded from the healthy shards (null when too few are left to decode it)
+     */
+    public record ShardReport(List<ShardCheck> shards, String checksum) {}
+
+    /**
+     * Told how many bytes each stripe read from disk, so a caller can throttle verification
+     */
+    public interface ReadListener {
+        void onRead(long bytes) throws InterruptedException;
+    }
+
+    /**
+     * Check every shard on its own. Absent shards are missing; shards with a foreign header or
+     * the wrong size are corrupt. Each stripe's parity is recomputed from the data and compared
+     * with the stored parity; on a mismatch the stripe is re-checked without each shard in turn,
+     * and the shard whose exclusion makes the rest consistent is corrupt. That takes at least
+     * two parity shards; a mismatch that cannot be pinned on one shard fails the check.
+     *
+     * @throws IOException if the shards disagree and the faulty one cannot be identified
+     */
+    public ShardReport verifyShards(File file, ReadListener listener) throws IOException, InterruptedException {
+        ReedSolomon fileCodec = codecFor(file);
+        int total = fileCodec.getTotalShards();
+        int dataShards = fileCodec.getDataShards();
+        List<StorageVolume> recorded = recordedVolumes(file);
+        List<Path> paths = shardPaths(file);
+        ShardState[] states = new ShardState[total];
+        Map<ShardHeader, Integer> headerVotes = new HashMap<>();
+        ShardHeader[] headers = new ShardHeader[total];
+        for (int i = 0; i < total; i++) {
+            Path path = i < paths.size() ? paths.get(i) : null;
+            if (path == null || !Files.exists(path)) {
+                states[i] = ShardState.MISSING;
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(channel, header, 0);
+                headers[i] = new ShardHeader(header.getLong(0), header.getInt(Long.BYTES));
+                headerVotes.merge(headers[i], 1, Integer::sum);
+            } catch (IOException e) {
+                states[i] = ShardState.CORRUPT;
+            }
+        }
+        // The header most shards agree on is the real one
+        ShardHeader header = headerVotes.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+        boolean[] healthy = new boolean[total];
+        FileChannel[] channels = new FileChannel[total];
+        try {
+            if (header != null) {
+                long stripes = header.stripeCount(dataShards);
+                long expectedSize = HEADER_SIZE + stripes * header.chunkSize();
+                for (int i = 0; i < total; i++) {
+                    if (states[i] != null) {
+                        continue;
+                    }
+                    if (!header.equals(headers[i]) || Files.size(paths.get(i)) != expectedSize) {
+                        states[i] = ShardState.CORRUPT;
+                        continue;
+                    }
+                    channels[i] = FileChannel.open(paths.get(i), StandardOpenOption.READ);
+                    healthy[i] = true;
+                }
+            }
+            String checksum = null;
+            if (header != null && count(healthy) >= dataShards) {
+                checksum = verifyStripes(file, fileCodec, header, channels, healthy, listener);
+            }
+            for (int i = 0; i < total; i++) {
+                if (states[i] == null) {
+                    states[i] = healthy[i] ? ShardState.OK : ShardState.CORRUPT;
+                }
+            }
+            List<ShardCheck> checks = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                StorageVolume volume = i < recorded.size() ? recorded.get(i) : null;
+                checks.add(new ShardCheck(i, volume != null ? volume.getId() : null,
+                        i < paths.size() ? paths.get(i) : null, states[i]));
+            }
+            return new ShardReport(checks, checksum);
+        } finally {
+            closeAll(channels);
+        }
+    }
+
+    /**
+     * Hash the blob stripe by stripe, clearing healthy[i] for every shard found inconsistent
+     */
+    private String verifyStripes(File file, ReedSolomon fileCodec, ShardHeader header, FileChannel[] channels,
+                                 boolean[] healthy, ReadListener listener) throws IOException, InterruptedException {
+        int total = fileCodec.getTotalShards();
+        int dataShards = fileCodec.getDataShards();
+        int chunk = header.chunkSize();
+        byte[][] stored = new byte[total][chunk];
+        byte[][] work = new byte[total][chunk];
+        MessageDigest digest = BlobChecksums.newDigest();
+        long remaining = header.length();
+        long stripes = header.stripeCount(dataShards);
+        for (long stripe = 0; stripe < stripes; stripe++) {
+            long position = HEADER_SIZE + stripe * chunk;
+            long bytesRead = 0;
+            for (int i = 0; i < total; i++) {
+                if (!healthy[i]) {
+                    continue;
+                }
+                try {
+                    readFully(channels[i], ByteBuffer.wrap(stored[i]), position);
+                    bytesRead += chunk;
+                } catch (IOException e) {
+                    logger.warn("Shard {} of file {} unreadable: {}", i, file.getId(), e.getMessage());
+                    healthy[i] = false;
+                }
+            }
+            listener.onRead(bytesRead);
+            if (count(healthy) < dataShards) {
+                return null;
+            }
+            if (!consistent(fileCodec, stored, healthy, chunk, work)) {
+                int faulty = locateFault(fileCodec, stored, healthy, chunk, work);
+                if (faulty < 0) {
+                    throw new IOException("Shards of file " + file.getId() + " disagree in stripe " + stripe
+                            + " and the faulty shard cannot be identified");
+                }
+                logger.warn("Shard {} of file {} is inconsistent with the others in stripe {}", faulty, file.getId(), stripe);
+                healthy[faulty] = false;
+                consistent(fileCodec, stored, healthy, chunk, work);
+            }
+            for (int d = 0; d < dataShards && remaining > 0; d++) {
+                int length = (int) Math.min(chunk, remaining);
+                digest.update(work[d], 0, length);
+                remaining -= length;
+            }
+        }
+        return BlobChecksums.toHex(digest);
+    }
+
+    /**
+     * Decode the stripe from the shards in use into work and check the stored parity of every
+     * shard in use against parity recomputed from the decoded data
+     */
+    private static boolean consistent(ReedSolomon fileCodec, byte[][] stored, boolean[] use, int chunk, byte[][] work) {
+        for (int i = 0; i < stored.length; i++) {
+            if (use[i]) {
+                System.arraycopy(stored[i], 0, work[i], 0, chunk);
+            }
+        }
+        fileCodec.decodeMissing(work, use, chunk, false);
+        fileCodec.encodeParity(work, chunk, null);
+        for (int p = fileCodec.getDataShards(); p < stored.length; p++) {
+            if (use[p] && !Arrays.equals(work[p], stored[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The single shard whose exclusion makes the stripe consistent, or -1 if there is not
+     * exactly one (the rest must keep a spare shard for the check to mean anything)
+     */
+    private static int locateFault(ReedSolomon fileCodec, byte[][] stored, boolean[] healthy, int chunk, byte[][] work) {
+        if (count(healthy) - 1 <= fileCodec.getDataShards()) {
+            return -1;
+        }
+        int faulty = -1;
+        for (int i = 0; i < healthy.length; i++) {
+            if (!healthy[i]) {
+                continue;
+            }
+            boolean[] without = healthy.clone();
+            without[i] = false;
+            if (consistent(fileCodec, stored, without, chunk, work)) {
+                if (faulty >= 0) {
+                    return -1;
+                }
+                faulty = i;
+            }
+        }
+        return faulty;
+    }
+
+    private static int count(boolean[] flags) {
+        int count = 0;
+        for (boolean flag : flags) {
+            if (flag) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Path shardPath(StorageVolume volume, File file, int shard) {
+        return volume.resolve(shardName(file, shard));
+    }
+
+    /**
+     * Volumes for the shards of a new blob: distinct volumes from the hash ring, wrapping around
+     * when there are fewer volumes than shards
+     */
+    private List<StorageVolume> shardPlacement(String key) throws IOException {
+        int total = codec.getTotalShards();
+        List<StorageVolume> distinct = volumes.locate(key, total);
+        if (distinct.isEmpty()) {
+            throw new IOException("No storage volumes available");
+        }
+        List<StorageVolume> placement = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            placement.add(distinct.get(i % distinct.size()));
+        }
+        return placement;
+    }
+
+    private StorageVolume replacementFor(List<StorageVolume> shardVolumes, int shard) throws IOException {
+        StorageVolume current = shardVolumes.get(shard);
+        if (current != null && !current.isDraining()) {
+            return current;
+        }
+        List<StorageVolume> active = volumes.getActiveVolumes();
+        return active.stream()
+                .filter(v -> !shardVolumes.contains(v))
+                .findFirst()
+                .or(() -> active.stream().findFirst())
+                .orElseThrow(() -> new IOException("No active storage volume to rebuild shard " + shard));
+    }
+
+    private void record(File file, List<StorageVolume> targets) {
+        file.setDataShards(codec.getDataShards());
+        file.setParityShards(codec.getParityShards());
+        file.setVolume(targets.get(0).getId());
+        file.setFilePath(shardPath(targets.get(0), file, 0).toString());
+        file.setReplicaVolumes(StorageVolumes.joinIds(targets));
+    }
+
+    /**
+     * Volume of each shard, in shard order (null where the volume is no longer configured)
+     */
+    private List<StorageVolume> recordedVolumes(File file) {
+        return volumes.replicaIds(file).stream()
+                .map(id -> volumes.getVolume(id).orElse(null))
+                .toList();
+    }
+
+    private List<Path> shardPaths(File file) {
+        List<StorageVolume> recorded = recordedVolumes(file);
+        List<Path> paths = new ArrayList<>(recorded.size());
+        for (int i = 0; i < recorded.size(); i++) {
+            paths.add(recorded.get(i) != null ? shardPath(recorded.get(i), file, i) : null);
+        }
+        return paths;
+    }
+
+    private List<Path> shardPaths(File file, List<StorageVolume> targets) {
+        List<Path> paths = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            paths.add(shardPath(targets.get(i), file, i));
+        }
+        return paths;
+    }
+
+    private static String shardName(File file, int shard) {
+        return file.getStoredName() + ".shard" + shard;
+    }
+
+    private ReedSolomon codecFor(File file) {
+        if (file.getDataShards() == codec.getDataShards() && file.getParityShards() == codec.getParityShards()) {
+            return codec;
+        }
+        // Written under a different layout than the one currently configured
+        return new ReedSolomon(file.getDataShards(), file.getParityShards());
+    }
+
+    private record ShardHeader(long length, int chunkSize) {
+        long stripeCount(int dataShards) {
+            long stripeBytes = (long) dataShards * chunkSize;
+            return (length + stripeBytes - 1) / stripeBytes;
+        }
+    }
+
+    private static ByteBuffer header(ShardHeader header) {
+        return ByteBuffer.allocate(HEADER_SIZE).putLong(0, header.length()).putInt(Long.BYTES, header.chunkSize());
+    }
+
+    private static ShardHeader readHeader(List<Path> paths) throws IOException {
+        for (Path path : paths) {
+            if (path == null || !Files.isReadable(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(channel, header, 0);
+                return new ShardHeader(header.getLong(0), header.getInt(Long.BYTES));
+            } catch (IOException e) {
+                logger.warn("Unreadable shard header {}: {}", path, e.getMessage());
+            }
+        }
+        throw new IOException("No readable shard");
+    }
+
+    /**
+     * Read the next stripe's worth of input into the data shards, zero-padding the tail
+     */
+    private int fillStripe(InputStream content, byte[][] shards) throws IOException {
+        int filled = 0;
+        boolean eof = false;
+        for (int i = 0; i < codec.getDataShards(); i++) {
+            int read = eof ? 0 : content.readNBytes(shards[i], 0, chunkSize);
+            if (read < chunkSize) {
+                eof = true;
+                Arrays.fill(shards[i], read, chunkSize, (byte) 0);
+            }
+            filled += read;
+        }
+        return filled;
+    }
+
+    private void writeChunks(FileChannel[] channels, byte[][] shards, long position) {
+        forEachChannel(channels, (shard, channel) ->
+                writeFully(channel, ByteBuffer.wrap(shards[shard], 0, chunkSize), position));
+    }
+
+    private interface ChannelTask {
+        void run(int shard, FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Run a task on every healthy shard channel in parallel; a failing shard is closed and
+     * dropped (its slot set to null) rather than failing the whole write
+     */
+    private void forEachChannel(FileChannel[] channels, ChannelTask task) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            int shard = i;
+            FileChannel channel = channels[i];
+            futures[i] = channel == null ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.runAsync(() -> {
+                        try {
+                            task.run(shard, channel);
+                        } catch (IOException e) {
+                            logger.warn("Shard {} write failed: {}", shard, e.getMessage());
+                            closeQuietly(channel);
+                            channels[shard] = null;
+                        }
+                    }, executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private void requireWritable(FileChannel[] channels) throws IOException {
+        long healthy = Arrays.stream(channels).filter(c -> c != null).count();
+        // Keep at least one spare shard so a freshly written blob is never one failure from loss
+        if (healthy < codec.getDataShards() + 1) {
+            throw new IOException("Only " + healthy + " of " + channels.length + " shards writable");
+        }
+    }
+
+    private static FileChannel openForWrite(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Cannot create shard {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Shard truncated");
+            }
+            position += read;
+        }
+    }
+
+    private static void closeAll(FileChannel[] channels) {
+        for (FileChannel channel : channels) {
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to do
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // best effort cleanup
+        }
+    }
+
+    /**
+     * Reads one stripe at a time: the surviving shards' chunks are read in parallel and the
+     * missing data chunks decoded before the stripe is served
+     */
+    private class DecodingInputStream extends InputStream {
+
+        private final ReedSolomon fileCodec;
+        private final FileChannel[] channels;
+        private final byte[][] shards;
+        private final boolean[] present;
+        private final long length;
+        private final int chunk;
+        private long stripe;
+        private long delivered;
+        private int stripeLength;
+        private int positionInStripe;
+
+        DecodingInputStream(File file) throws IOException {
+            this.fileCodec = codecFor(file);
+            int total = fileCodec.getTotalShards();
+            List<Path> paths = shardPaths(file);
+            this.channels = new FileChannel[total];
+            ShardHeader header = readHeader(paths);
+            this.length = header.length();
+            this.chunk = header.chunkSize();
+            this.shards = new byte[total][chunk];
+            this.present = new boolean[total];
+            int open = 0;
+            for (int i = 0; i < total && i < paths.size(); i++) {
+                Path path = paths.get(i);
+                if (path == null) {
+                    continue;
+                }
+                try {
+                    channels[i] = FileChannel.open(path, StandardOpenOption.READ);
+                    open++;
+                } catch (IOException e) {
+                    logger.warn("Shard {} of file {} unavailable: {}", i, file.getId(), e.getMessage());
+                }
+            }
+            if (open < fileCodec.getDataShards()) {
+                close();
+                throw new IOException("Only " + open + " shards of file " + file.getId() + " available, need "
+                        + fileCodec.getDataShards());
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+            if (delivered >= length) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (positionInStripe >= stripeLength) {
+                loadStripe();
+            }
+            int shard = positionInStripe / chunk;
+            int shardOffset = positionInStripe % chunk;
+            int count = Math.min(len, Math.min(stripeLength - positionInStripe, chunk - shardOffset));
+            System.arraycopy(shards[shard], shardOffset, buffer, offset, count);
+            positionInStripe += count;
+            delivered += count;
+            return count;
+        }
+
+        private void loadStripe() throws IOException {
+            long position = HEADER_SIZE + stripe * chunk;
+            int dataShards = fileCodec.getDataShards();
+            CompletableFuture<?>[] reads = new CompletableFuture<?>[channels.length];
+            for (int i = 0; i < channels.length; i++) {
+                int shard = i;
+                // Parity is only needed while some data shard is missing
+                boolean needed = channels[i] != null && (i < dataShards || missingData() > 0);
+                present[i] = false;
+                reads[i] = !needed ? CompletableFuture.completedFuture(null)
+                        : CompletableFuture.runAsync(() -> {
+                            try {
+                                readFully(channels[shard], ByteBuffer.wrap(shards[shard]), position);
+                                present[shard] = true;
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }, executor);
+            }
+            for (int i = 0; i < reads.length; i++) {
+                try {
+                    reads[i].join();
+                } catch (CompletionException e) {
+                    logger.warn("Shard {} read failed, reconstructing: {}", i, e.getCause().getMessage());
+                    closeQuietly(channels[i]);
+                    channels[i] = null;
+                }
+            }
+            if (missingData() > 0) {
+                // A data shard failed mid-read: fetch parity for this stripe if it was skipped
+                for (int i = dataShards; i < channels.length; i++) {
+                    if (channels[i] != null && !present[i]) {
+                        try {
+                            readFully(channels[i], ByteBuffer.wrap(shards[i]), position);
+                            present[i] = true;
+                        } catch (IOException e) {
+                            closeQuietly(channels[i]);
+                            channels[i] = null;
+                        }
+                    }
+                }
+                try {
+                    fileCodec.decodeMissing(shards, present, chunk, false);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Cannot reconstruct stripe " + stripe + ": " + e.getMessage(), e);
+                }
+            }
+            stripeLength = (int) Math.min((long) dataShards * chunk, length - delivered);
+            positionInStripe = 0;
+            stripe++;
+        }
+
+        private int missingData() {
+            int missing = 0;
+            for (int i = 0; i < fileCodec.getDataShards(); i++) {
+                if (channels[i] == null) {
+                    missing++;
+                }
+            }
+            return missing;
+        }
+
+        @Override
+        public void close() {
+            closeAll(channels);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.rip.vaultify.storage;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Minimal Linux io_uring binding through the Foreign Function &amp; Memory API: one submission and
+ * completion ring pair mapped into the process, plus the libc calls needed to open files.
+ * <p>
+ * Not thread-safe: {@link IoUringEngine} serialises submissions and reaps completions on a
+ * single thread. Ring head/tail indexes are shared with the kernel, so reads of the kernel's
+ * indexes are followed by an acquire fence and our own index updates are preceded by a release
+ * fence. Built against the Java 21 preview FFM API (compile and run with --enable-preview).
+ */
+final class IoUring implements AutoCloseable {
+
+    static final byte OP_NOP = 0;
+    static final byte OP_READ = 22;
+
+    private static final long SYS_IO_URING_SETUP = 425;
+    private static final long SYS_IO_URING_ENTER = 426;
+    private static final int IORING_ENTER_GETEVENTS = 1;
+    private static final int IORING_FEAT_SINGLE_MMAP = 1;
+    private static final long IORING_OFF_SQ_RING = 0;
+    private static final long IORING_OFF_CQ_RING = 0x8000000L;
+    private static final long IORING_OFF_SQES = 0x10000000L;
+
+    private static final int PROT_READ = 1;
+    private static final int PROT_WRITE = 2;
+    private static final int MAP_SHARED = 1;
+    private static final int MAP_POPULATE = 0x8000;
+    private static final int O_RDONLY = 0;
+    private static final int O_CLOEXEC = 0x80000;
+
+    static final int EINTR = 4;
+    static final int EAGAIN = 11;
+    static final int EBUSY = 16;
+    private static final int ENOENT = 2;
+
+    // struct io_uring_params: 40 bytes of fields, then io_sqring_offsets and io_cqring_offsets (40 bytes each)
+    private static final int PARAMS_SIZE = 120;
+    private static final int SQ_OFF = 40;
+    private static final int CQ_OFF = 80;
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+    private static final VarHandle ERRNO = CALL_STATE.varHandle(MemoryLayout.PathElement.groupElement("errno"));
+    private static final MethodHandle SYSCALL_2 = syscall(2);
+    private static final MethodHandle SYSCALL_6 = syscall(6);
+    private static final MethodHandle MMAP = downcall("mmap",
+            FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_LONG));
+    private static final MethodHandle MUNMAP = downcall("munmap", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle OPEN = downcall("open",
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT),
+            Linker.Option.firstVariadicArg(2), Linker.Option.captureCallState("errno"));
+    private static final MethodHandle CLOSE = downcall("close", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+    private final int ringFd;
+    private final MemorySegment sqRing;
+    private final MemorySegment cqRing;
+    private final MemorySegment sqes;
+    private final long sqRingSize;
+    private final long cqRingSize;
+    private final boolean singleMmap;
+
+    private final int sqEntries;
+    private final int sqMask;
+    private final long sqHead;
+    private final long sqTail;
+    private final long sqArray;
+    private final int cqEntries;
+    private final int cqMask;
+    private final long cqHead;
+    private final long cqTail;
+    private final long cqes;
+
+    // Our copy of the SQ tail and how far the kernel has been told about it
+    private int localTail;
+    private int submittedTail;
+
+    /**
+     * Callback for each reaped completion
+     */
+    interface CompletionHandler {
+        void completed(long userData, int result);
+    }
+
+    IoUring(int entries) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment params = arena.allocate(PARAMS_SIZE, 8);
+            MemorySegment state = arena.allocate(CALL_STATE);
+            long fd = (long) SYSCALL_2.invokeExact(state, SYS_IO_URING_SETUP, (long) entries, params.address());
+            if (fd < 0) {
+                throw new IOException("io_uring_setup failed: errno " + errno(state));
+            }
+            this.ringFd = (int) fd;
+
+            sqEntries = params.get(JAVA_INT, 0);
+            cqEntries = params.get(JAVA_INT, 4);
+            int features = params.get(JAVA_INT, 20);
+            singleMmap = (features & IORING_FEAT_SINGLE_MMAP) != 0;
+
+            int sqArrayOffset = params.get(JAVA_INT, SQ_OFF + 24);
+            int cqesOffset = params.get(JAVA_INT, CQ_OFF + 20);
+            long sqSize = sqArrayOffset + (long) sqEntries * Integer.BYTES;
+            long cqSize = cqesOffset + (long) cqEntries * CQE_SIZE;
+            if (singleMmap) {
+                sqSize = Math.max(sqSize, cqSize);
+                cqSize = sqSize;
+            }
+            this.sqRingSize = sqSize;
+            this.cqRingSize = cqSize;
+            MemorySegment sq = null;
+            MemorySegment cq = null;
+            try {
+                sq = mmap(sqSize, IORING_OFF_SQ_RING);
+                cq = singleMmap ? sq : mmap(cqSize, IORING_OFF_CQ_RING);
+                this.sqes = mmap((long) sqEntries * SQE_SIZE, IORING_OFF_SQES);
+            } catch (IOException e) {
+                unmap(sq, sqSize);
+                if (!singleMmap) {
+                    unmap(cq, cqSize);
+                }
+                closeFd(ringFd);
+                throw e;
+            }
+            this.sqRing = sq;
+            this.cqRing = cq;
+
+            sqHead = params.get(JAVA_INT, SQ_OFF);
+            sqTail = params.get(JAVA_INT, SQ_OFF + 4);
+            sqMask = sqRing.get(JAVA_INT, params.get(JAVA_INT, SQ_OFF + 8));
+            sqArray = sqArrayOffset;
+            cqHead = params.get(JAVA_INT, CQ_OFF);
+            cqTail = params.get(JAVA_INT, CQ_OFF + 4);
+            cqMask = cqRing.get(JAVA_INT, params.get(JAVA_INT, CQ_OFF + 8));
+            cqes = cqesOffset;
+            localTail = sqRing.get(JAVA_INT, sqTail);
+            submittedTail = localTail;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("io_uring setup failed", e);
+        }
+    }
+
+    int getCompletionEntries() {
+        return cqEntries;
+    }
+
+    /**
+     * Free submission slots, counting entries queued but not yet submitted
+     */
+    int freeSlots() {
+        int head = sqRing.get(JAVA_INT, sqHead);
+        VarHandle.acquireFence();
+        return sqEntries - (localTail - head);
+    }
+
+    /**
+     * Queue one operation in the submission ring; it reaches the kernel on the next {@link #submit()}
+     */
+    void prepare(byte opcode, int fd, MemorySegment buffer, int length, long offset, long userData) {
+        int index = localTail & sqMask;
+        MemorySegment sqe = sqes.asSlice((long) index * SQE_SIZE, SQE_SIZE);
+        sqe.fill((byte) 0);
+        sqe.set(JAVA_BYTE, 0, opcode);
+        sqe.set(JAVA_INT, 4, fd);
+        sqe.set(JAVA_LONG, 8, offset);
+        sqe.set(JAVA_LONG, 16, buffer != null ? buffer.address() : 0);
+        sqe.set(JAVA_INT, 24, length);
+        sqe.set(JAVA_LONG, 32, userData);
+        sqRing.set(JAVA_INT, sqArray + (long) index * Integer.BYTES, index);
+        localTail++;
+    }
+
+    /**
+     * Hand every prepared entry to the kernel in one io_uring_enter call
+     *
+     * @return entries the kernel accepted (the rest stay queued for the next call)
+     * @throws IOException with the errno of a failed call; EAGAIN and EBUSY are transient
+     */
+    int submit() throws IOException {
+        int pending = localTail - submittedTail;
+        if (pending == 0) {
+            return 0;
+        }
+        VarHandle.releaseFence();
+        sqRing.set(JAVA_INT, sqTail, localTail);
+        int accepted = enter(pending, 0, 0);
+        submittedTail += accepted;
+        return accepted;
+    }
+
+    /**
+     * Drop prepared entries the kernel has not accepted, so their buffers can be released
+     *
+     * @return the number of entries dropped
+     */
+    int discardUnsubmitted() {
+        int dropped = localTail - submittedTail;
+        localTail = submittedTail;
+        VarHandle.releaseFence();
+        sqRing.set(JAVA_INT, sqTail, localTail);
+        return dropped;
+    }
+
+    /**
+     * Block until at least one completion is available
+     */
+    void awaitCompletion() throws IOException {
+        enter(0, 1, IORING_ENTER_GETEVENTS);
+    }
+
+    /**
+     * Pass every available completion to the handler and release their slots
+     *
+     * @return the number of completions reaped
+     */
+    int reap(CompletionHandler handler) {
+        int head = cqRing.get(JAVA_INT, cqHead);
+        int tail = cqRing.get(JAVA_INT, cqTail);
+        VarHandle.acquireFence();
+        int count = tail - head;
+        for (int i = head; i != tail; i++) {
+            long cqe = cqes + (long) (i & cqMask) * CQE_SIZE;
+            handler.completed(cqRing.get(JAVA_LONG, cqe), cqRing.get(JAVA_INT, cqe + 8));
+        }
+        VarHandle.releaseFence();
+        cqRing.set(JAVA_INT, cqHead, tail);
+        return count;
+    }
+
+    @Override
+    public void close() {
+        unmap(sqes, (long) sqEntries * SQE_SIZE);
+        unmap(sqRing, sqRingSize);
+        if (!singleMmap) {
+            unmap(cqRing, cqRingSize);
+        }
+        closeFd(ringFd);
+    }
+
+    /**
+     * open(2) a file read-only for use in read operations
+     */
+    static int openForRead(Path path) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CALL_STATE);
+            MemorySegment name = arena.allocateUtf8String(path.toString());
+            int fd = (int) OPEN.invokeExact(state, name, O_RDONLY | O_CLOEXEC, 0);
+            if (fd < 0) {
+                int errno = errno(state);
+                if (errno == ENOENT) {
+                    throw new NoSuchFileException(path.toString());
+                }
+                throw new IOException("Cannot open " + path + ": errno " + errno);
+            }
+            return fd;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("open failed for " + path, e);
+        }
+    }
+
+    static void closeFd(int fd) {
+        try {
+            int ignored = (int) CLOSE.invokeExact(fd);
+        } catch (Throwable ignored) {
+            // nothing left to release
+        }
+    }
+
+    private int enter(int toSubmit, int minComplete, int flags) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CALL_STATE);
+            while (true) {
+                long result = (long) SYSCALL_6.invokeExact(state, SYS_IO_URING_ENTER, (long) ringFd,
+                        (long) toSubmit, (long) minComplete, (long) flags, 0L, 0L);
+                if (result >= 0) {
+                    return (int) result;
+                }
+                int errno = errno(state);
+                if (errno != EINTR) {
+                    throw new IoUringException(errno);
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("io_uring_enter failed", e);
+        }
+    }
+
+    private MemorySegment mmap(long size, long offset) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment address = (MemorySegment) MMAP.invokeExact(MemorySegment.NULL, size,
+                    PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringFd, offset);
+            if (address.address() == -1L) {
+                throw new IOException("mmap of io_uring ring failed");
+            }
+            return address.reinterpret(size);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("mmap failed", e);
+        }
+    }
+
+    private static void unmap(MemorySegment segment, long size) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            int ignored = (int) MUNMAP.invokeExact(segment, size);
+        } catch (Throwable ignored) {
+            // process exit reclaims the mapping
+        }
+    }
+
+    private static int errno(MemorySegment state) {
+        return (int) ERRNO.get(state);
+    }
+
+    private static MethodHandle syscall(int arguments) {
+        MemoryLayout[] layouts = new MemoryLayout[arguments + 1];
+        Arrays.fill(layouts, JAVA_LONG);
+        return LINKER.downcallHandle(LINKER.defaultLookup().find("syscall").orElseThrow(),
+                FunctionDescriptor.of(JAVA_LONG, layouts),
+                Linker.Option.firstVariadicArg(1), Linker.Option.captureCallState("errno"));
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+        SymbolLookup libc = LINKER.defaultLookup();
+        return LINKER.downcallHandle(libc.find(name).orElseThrow(), descriptor, options);
+    }
+
+    /**
+     * io_uring_enter failure carrying the errno, so callers can retry transient ones
+     */
+    static final class IoUringException extends IOException {
+        private final int errno;
+
+        IoUringException(int errno) {
+            super("io_uring_enter failed: errno " + errno);
+            this.errno = errno;
+        }
+
+        boolean isTransient() {
+            return errno == EAGAIN || errno == EBUSY;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.rip.vaultify.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+/**
+ * Blob reads through one shared io_uring instead of one blocked thread per read.
+ * <p>
+ * Reads are queued and the first thread to take the submission lock moves every queued read
+ * into the ring and submits them with a single io_uring_enter call. One reaper thread waits for
+ * completions and completes every read that is ready per wake-up. At most as many reads as the
+ * completion ring holds are in flight; the rest wait in the queue. Streams read one chunk ahead
+ * into pooled native buffers, so the next chunk is on its way while the caller copies the
+ * current one into the response.
+ * <p>
+ * Linux only, and the JVM must run with --enable-preview (Java 21 FFM API); otherwise the
+ * engine cannot be created and storage falls back to NIO.
+ */
+public class IoUringEngine implements BlobIoEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(IoUringEngine.class);
+    // user_data of the no-op that wakes the reaper at shutdown
+    private static final long WAKEUP = 0;
+    private static final int MAX_SUBMIT_ATTEMPTS = 1000;
+
+    private final IoUring ring;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final Queue<Read> queued = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Read> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final ReentrantLock submitLock = new ReentrantLock();
+    // Ids of reads prepared in the ring but not yet accepted by the kernel; guarded by submitLock
+    private final ArrayDeque<Long> unsubmitted = new ArrayDeque<>();
+    private long nextId = WAKEUP + 1;
+    private final Queue<MemorySegment> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+    private final Thread reaper;
+    private volatile boolean closed;
+
+    public IoUringEngine(int entries, int chunkSize) throws IOException {
+        if (!System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            throw new IOException("io_uring requires Linux");
+        }
+        this.ring = new IoUring(entries);
+        this.chunkSize = chunkSize;
+        this.maxInFlight = ring.getCompletionEntries();
+        this.reaper = new Thread(this::reapCompletions, "io-uring-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    @Override
+    public InputStream open(Path path) throws IOException {
+        long length = Files.size(path);
+        return new RingInputStream(IoUring.openForRead(path), length);
+    }
+
+    @Override
+    public String getName() {
+        return "io_uring";
+    }
+
+    /**
+     * Read into the buffer at the given file offset, filling at most the whole buffer. The
+     * future completes on the reaper thread with the number of bytes read (0 at end of file).
+     * The buffer must stay allocated until the future completes.
+     */
+    CompletableFuture<Integer> read(int fd, MemorySegment buffer, long offset) {
+        Read read = new Read(fd, buffer, offset);
+        if (closed) {
+            read.result.completeExceptionally(new IOException("io_uring engine is closed"));
+            return read.result;
+        }
+        queued.add(read);
+        drain();
+        return read.result;
+    }
+
+    /**
+     * Submit queued reads while there is room in flight. Whoever holds the lock submits for
+     * everyone; a thread that finds it taken relies on the holder re-checking the queue after
+     * unlocking.
+     */
+    private void drain() {
+        while (!queued.isEmpty() && inFlightCount.get() < maxInFlight && submitLock.tryLock()) {
+            try {
+                submitQueued();
+            } finally {
+                submitLock.unlock();
+            }
+        }
+    }
+
+    private void submitQueued() {
+        if (closed) {
+            failQueued();
+            return;
+        }
+        int free = ring.freeSlots();
+        Read read;
+        while (free > 0 && inFlightCount.get() < maxInFlight && (read = queued.poll()) != null) {
+            long id = nextId++;
+            inFlight.put(id, read);
+            inFlightCount.incrementAndGet();
+            ring.prepare(IoUring.OP_READ, read.fd, read.buffer, (int) read.buffer.byteSize(), read.offset, id);
+            unsubmitted.add(id);
+            free--;
+        }
+        submitPrepared();
+    }
+
+    private void submitPrepared() {
+        int attempts = 0;
+        while (!unsubmitted.isEmpty()) {
+            try {
+                int accepted = ring.submit();
+                for (int i = 0; i < accepted; i++) {
+                    unsubmitted.poll();
+                }
+                if (accepted > 0) {
+                    attempts = 0;
+                    continue;
+                }
+            } catch (IoUring.IoUringException e) {
+                if (!e.isTransient()) {
+                    failUnsubmitted(e);
+                    return;
+                }
+            } catch (IOException e) {
+                failUnsubmitted(e);
+                return;
+            }
+            if (++attempts > MAX_SUBMIT_ATTEMPTS) {
+                failUnsubmitted(new IOException("io_uring did not accept " + unsubmitted.size() + " reads"));
+                return;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Take prepared entries back out of the ring (the kernel never saw them) and fail their reads
+     */
+    private void failUnsubmitted(IOException cause) {
+        logger.error("io_uring submission failed: {}", cause.getMessage());
+        ring.discardUnsubmitted();
+        Long id;
+        while ((id = unsubmitted.poll()) != null) {
+            Read read = inFlight.remove(id);
+            inFlightCount.decrementAndGet();
+            read.result.completeExceptionally(cause);
+        }
+    }
+
+    private void failQueued() {
+        Read read;
+        while ((read = queued.poll()) != null) {
+            read.result.completeExceptionally(new IOException("io_uring engine is closed"));
+        }
+    }
+
+    private void reapCompletions() {
+        while (true) {
+            try {
+                ring.awaitCompletion();
+            } catch (IOException e) {
+                logger.error("Waiting for io_uring completions failed: {}", e.getMessage());
+                sleepQuietly();
+            }
+            ring.reap(this::complete);
+            if (closed && inFlightCount.get() == 0) {
+                return;
+            }
+            drain();
+        }
+    }
+
+    private void complete(long userData, int result) {
+        if (userData == WAKEUP) {
+            return;
+        }
+        Read read = inFlight.remove(userData);
+        if (read == null) {
+            return;
+        }
+        inFlightCount.decrementAndGet();
+        if (result < 0) {
+            read.result.completeExceptionally(new IOException("io_uring read failed: errno " + -result));
+        } else {
+            read.result.complete(result);
+        }
+    }
+
+    /**
+     * Stop accepting reads, let the ones in flight complete, then unmap the ring
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        submitLock.lock();
+        try {
+            failQueued();
+            if (ring.freeSlots() > 0) {
+                ring.prepare(IoUring.OP_NOP, -1, null, 0, 0, WAKEUP);
+                ring.submit();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not wake the io_uring reaper: {}", e.getMessage());
+        } finally {
+            submitLock.unlock();
+        }
+        try {
+            reaper.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reaper.isAlive()) {
+            // Unmapping under reads still in flight would hand the kernel freed memory
+            logger.warn("io_uring reads still in flight at shutdown; leaving the ring mapped");
+            return;
+        }
+        ring.close();
+    }
+
+    private MemorySegment acquireBuffer() {
+        MemorySegment buffer = bufferPool.poll();
+        if (buffer != null) {
+            pooledBuffers.decrementAndGet();
+            return buffer;
+        }
+        // Own arena per buffer, so a buffer dropped from the full pool is freed by the GC
+        return Arena.ofAuto().allocate(chunkSize, 4096);
+    }
+
+    private void releaseBuffer(MemorySegment buffer) {
+        if (pooledBuffers.incrementAndGet() <= 2 * maxInFlight) {
+            bufferPool.add(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Read {
+        final int fd;
+        final MemorySegment buffer;
+        final long offset;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Read(int fd, MemorySegment buffer, long offset) {
+            this.fd = fd;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Streams one file chunk by chunk. Files larger than one chunk use two buffers: the chunk
+     * after the current one is read while the caller drains the current one.
+     */
+    private final class RingInputStream extends InputStream {
+
+        private final int fd;
+        private final long length;
+        private final MemorySegment[] buffers;
+        private CompletableFuture<Integer> ahead;
+        private int aheadIndex;
+        private long requested;
+        private MemorySegment current;
+        private int available;
+        private int position;
+        private boolean closed;
+
+        RingInputStream(int fd, long length) {
+            this.fd = fd;
+            this.length = length;
+            this.buffers = new MemorySegment[length == 0 ? 0 : length <= chunkSize ? 1 : 2];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = acquireBuffer();
+            }
+            if (buffers.length > 0) {
+                ahead = IoUringEngine.this.read(fd, buffers[0], 0);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (position == available && !fill()) {
+                return -1;
+            }
+            int count = Math.min(len, available - position);
+            MemorySegment.copy(current, JAVA_BYTE, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return available - position;
+        }
+
+        private boolean fill() throws IOException {
+            if (ahead == null) {
+                if (requested >= length) {
+                    return false;
+                }
+                ahead = IoUringEngine.this.read(fd, buffers[aheadIndex], requested);
+            }
+            int count = await(ahead);
+            ahead = null;
+            if (count == 0) {
+                throw new EOFException("File ended at " + requested + " of " + length + " bytes");
+            }
+            current = buffers[aheadIndex];
+            available = count;
+            position = 0;
+            requested += count;
+            if (buffers.length > 1) {
+                aheadIndex ^= 1;
+                if (requested < length) {
+                    ahead = IoUringEngine.this.read(fd, buffers[aheadIndex], requested);
+                }
+            }
+            return true;
+        }
+
+        private int await(CompletableFuture<Integer> read) throws IOException {
+            try {
+                return read.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading");
+            }
+        }
+
+        /**
+         * The descriptor and buffers are released once no read is in flight into them
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Runnable release = () -> {
+                IoUring.closeFd(fd);
+                for (MemorySegment buffer : buffers) {
+                    releaseBuffer(buffer);
+                }
+            };
+            if (ahead == null) {
+                release.run();
+            } else {
+                ahead.whenComplete((count, error) -> release.run());
+            }
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blob storage on the local volumes using NIO file channels.
+ * <p>
+ * Each blob is written to the volumes the hash ring picks for its stored name (one per
+ * replica). Replicas are written in parallel and the write succeeds once a quorum has been
+ * flushed to disk. Reads go to the replica with the lowest recent latency, hedge to the next
+ * replica if the first is slow to respond, and fail over on I/O errors, including errors in the
+ * middle of a stream (the next replica resumes at the same offset). Blobs large enough for
+ * erasure coding are handed to {@link ErasureCoder} instead of being replicated. Replica files
+ * are opened for reading through the configured {@link BlobIoEngine}.
+ */
+@Component
+public class NioBlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioBlobStore.class);
+    private static final int CHUNK_SIZE = 256 * 1024;
+    // Latency sample charged to a volume whose read failed, so it drops to the back of the order
+    private static final long FAILED_READ_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final BlobCopier blobCopier;
+    private final StorageVolumes volumes;
+    private final ErasureCoder erasureCoder;
+    private final BlobIoEngine ioEngine;
+    private final StorageIoMonitor ioMonitor;
+    // Replica writes, flushes, copies and hedged reads; bounded so a burst of requests queues
+    // instead of starting a thread per replica operation
+    private final ExecutorService ioExecutor;
+    private final int writeQuorum;
+    private final long flushGraceMs;
+    private final long hedgeAfterMs;
+
+    public NioBlobStore(BlobCopier blobCopier,
+                        StorageVolumes volumes,
+                        ErasureCoder erasureCoder,
+                        BlobIoEngine ioEngine,
+                        StorageIoMonitor ioMonitor,
+                        @Value("${storage.replication.write-quorum:0}") int writeQuorum,
+                        @Value("${storage.replication.flush-grace-ms:100}") long flushGraceMs,
+                        @Value("${storage.replication.hedge-after-ms:50}") long hedgeAfterMs,
+                        @Value("${storage.io.threads:64}") int ioThreads) {
+        this.blobCopier = blobCopier;
+        this.volumes = volumes;
+        this.erasureCoder = erasureCoder;
+        this.ioEngine = ioEngine;
+        this.ioMonitor = ioMonitor;
+        int factor = volumes.getReplicationFactor();
+        // Default to a majority of the replicas
+        this.writeQuorum = writeQuorum > 0 ? Math.min(writeQuorum, factor) : (factor / 2) + 1;
+        this.flushGraceMs = flushGraceMs;
+        this.hedgeAfterMs = hedgeAfterMs;
+        this.ioExecutor = Executors.newFixedThreadPool(Math.max(2, ioThreads));
+    }
+
+    /**
+     * Let replica flushes still running after their write returned finish before the JVM exits
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ioExecutor.shutdown();
+        if (!ioExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("Storage I/O did not finish within 10s of shutdown");
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void write(File file, InputStream content) throws IOException {
+        if (erasureCoder.appliesTo(file)) {
+            erasureCoder.write(file, content);
+            return;
+        }
+        List<StorageVolume> targets = placement(file);
+        List<ReplicaWriter> writers = new ArrayList<>(targets.size());
+        List<StorageVolume> durable;
+        try {
+            for (StorageVolume volume : targets) {
+                writers.add(new ReplicaWriter(volume, volume.resolve(file.getStoredName())));
+            }
+            requireQuorum(writers);
+
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                // Only the store's own work counts, not the time spent receiving the upload
+                long started = System.nanoTime();
+                writeToAll(writers, chunk);
+                ioMonitor.record(System.nanoTime() - started);
+                requireQuorum(writers);
+            }
+            durable = finish(writers);
+        } catch (IOException | RuntimeException e) {
+            writers.forEach(ReplicaWriter::discard);
+            throw e;
+        }
+        record(file, durable);
+    }
+
+    @Override
+    public InputStream openRead(File file) throws IOException {
+        if (file.isErasureCoded()) {
+            return erasureCoder.openRead(file);
+        }
+        List<StorageVolumes.Replica> replicas = new ArrayList<>(volumes.replicasOf(file));
+        if (replicas.size() == 1) {
+            return ioEngine.open(replicas.get(0).path());
+        }
+        replicas.sort(Comparator.comparingDouble(r -> r.volume().getReadLatencyMillis()));
+        return openHedged(replicas, file.getSize() != null ? file.getSize() : -1);
+    }
+
+    @Override
+    public void copy(File source, File target) throws IOException {
+        if (source.isErasureCoded() || erasureCoder.appliesTo(target)) {
+            // Layouts differ or shards must be re-encoded under the target's name: go through the codec
+            try (InputStream in = openRead(source)) {
+                write(target, in);
+            }
+            return;
+        }
+        List<StorageVolume> targets = placement(target);
+        Path sourcePath = readableReplica(source);
+
+        List<CompletableFuture<StorageVolume>> copies = targets.stream()
+                .map(volume -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        blobCopier.copy(sourcePath, volume.resolve(target.getStoredName()));
+                        return volume;
+                    } catch (IOException e) {
+                        logger.warn("Replica copy to {} failed: {}", volume.getId(), e.getMessage());
+                        deleteQuietly(volume.resolve(target.getStoredName()));
+                        return null;
+                    }
+                }, ioExecutor))
+                .toList();
+        List<StorageVolume> copied = copies.stream()
+                .map(CompletableFuture::join)
+                .filter(v -> v != null)
+                .toList();
+        if (copied.size() < writeQuorum) {
+            copied.forEach(v -> deleteQuietly(v.resolve(target.getStoredName())));
+            throw new IOException("Copy reached " + copied.size() + " replicas, quorum is " + writeQuorum);
+        }
+        record(target, copied);
+    }
+
+    @Override
+    public boolean exists(File file) {
+        if (file.isErasureCoded()) {
+            return erasureCoder.exists(file);
+        }
+        return volumes.replicasOf(file).stream().anyMatch(r -> Files.exists(r.path()));
+    }
+
+    @Override
+    public List<StorageVolumes.Replica> replicasOf(File file) {
+        if (file.isErasureCoded()) {
+            throw new IllegalArgumentException("File " + file.getId() + " is erasure coded");
+        }
+        return volumes.replicasOf(file);
+    }
+
+    @Override
+    public void delete(File file) throws IOException {
+        if (file.isErasureCoded()) {
+            erasureCoder.delete(file);
+            return;
+        }
+        IOException failure = null;
+        for (StorageVolumes.Replica replica : volumes.replicasOf(file)) {
+            try {
+                Files.deleteIfExists(replica.path());
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private List<StorageVolume> placement(File file) throws IOException {
+        List<StorageVolume> targets = volumes.placementFor(file.getStoredName());
+        if (targets.size() < writeQuorum) {
+            throw new IOException("Only " + targets.size() + " storage volumes available, write quorum is " + writeQuorum);
+        }
+        return targets;
+    }
+
+    private void record(File file, List<StorageVolume> replicas) {
+        StorageVolume primary = replicas.get(0);
+        file.setVolume(primary.getId());
+        file.setFilePath(primary.resolve(file.getStoredName()).toString());
+        file.setReplicaVolumes(StorageVolumes.joinIds(replicas));
+    }
+
+    private Path readableReplica(File file) throws IOException {
+        return volumes.replicasOf(file).stream()
+                .map(StorageVolumes.Replica::path)
+                .filter(Files::isReadable)
+                .findFirst()
+                .orElseThrow(() -> new IOException("No readable replica for file " + file.getId()));
+    }
+
+    private void requireQuorum(List<ReplicaWriter> writers) throws IOException {
+        long healthy = writers.stream().filter(ReplicaWriter::isHealthy).count();
+        if (healthy < writeQuorum) {
+            throw new IOException("Write quorum lost: " + healthy + " healthy replicas, quorum is " + writeQuorum);
+        }
+    }
+
+    private void writeToAll(List<ReplicaWriter> writers, ByteBuffer chunk) {
+        if (writers.size() == 1) {
+            writers.get(0).write(chunk);
+            return;
+        }
+        CompletableFuture.allOf(writers.stream()
+                .filter(ReplicaWriter::isHealthy)
+                .map(w -> CompletableFuture.runAsync(() -> w.write(chunk.duplicate()), ioExecutor))
+                .toArray(CompletableFuture[]::new))
+                .join();
+    }
+
+    /**
+     * Close all replicas and return the volumes that hold a durable copy. With replication, each
+     * replica is flushed to disk in parallel. Once a quorum is durable the write waits at most
+     * flush-grace-ms for the others; only replicas whose flush completed are recorded, and a
+     * replica that finishes flushing after that is deleted.
+     */
+    private List<StorageVolume> finish(List<ReplicaWriter> writers) throws IOException {
+        if (writers.size() == 1) {
+            writers.get(0).close();
+            requireQuorum(writers);
+            return List.of(writers.get(0).volume);
+        }
+        List<ReplicaWriter> healthy = writers.stream().filter(ReplicaWriter::isHealthy).toList();
+        FlushQuorum quorum = new FlushQuorum(healthy.size());
+        for (ReplicaWriter writer : healthy) {
+            ioExecutor.execute(() -> quorum.flushed(writer, writer.forceAndClose()));
+        }
+        List<ReplicaWriter> durable = quorum.await();
+        return writers.stream().filter(durable::contains).map(w -> w.volume).toList();
+    }
+
+    /**
+     * Tracks the replica flushes of one write until a quorum is durable or can no longer be reached
+     */
+    private class FlushQuorum {
+        private final int total;
+        private final List<ReplicaWriter> durable = new ArrayList<>();
+        private int done;
+        private boolean settled;
+
+        FlushQuorum(int total) {
+            this.total = total;
+        }
+
+        synchronized void flushed(ReplicaWriter writer, boolean success) {
+            done++;
+            if (success && settled) {
+                // Not recorded on the file: the copy would be an orphan
+                writer.discard();
+            } else if (success) {
+                durable.add(writer);
+            } else {
+                logger.error("Replica flush failed on {} for {}", writer.volume.getId(), writer.path);
+            }
+            notifyAll();
+        }
+
+        synchronized List<ReplicaWriter> await() throws IOException {
+            try {
+                long deadline = 0;
+                while (done < total) {
+                    if (durable.size() < writeQuorum) {
+                        wait();
+                        continue;
+                    }
+                    if (deadline == 0) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushGraceMs);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for write quorum");
+            } finally {
+                settled = true;
+            }
+            if (durable.size() < writeQuorum) {
+                throw new IOException("Write quorum not reached: " + durable.size() + " replicas durable, quorum is "
+                        + writeQuorum);
+            }
+            return List.copyOf(durable);
+        }
+    }
+
+    /**
+     * Open the first replica to return data. A further replica is tried whenever the current
+     * attempts have not answered within the hedge delay, or as soon as one of them fails. The
+     * stream fails over to the remaining replicas if the winner fails later on.
+     */
+    private InputStream openHedged(List<StorageVolumes.Replica> replicas, long length) throws IOException {
+        CompletableFuture<OpenedReplica> winner = new CompletableFuture<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        Semaphore progress = new Semaphore(0);
+        int next = 0;
+        try {
+            while (!winner.isDone()) {
+                if (next < replicas.size()) {
+                    inFlight.incrementAndGet();
+                    startRead(replicas.get(next++), winner, inFlight, progress);
+                    progress.tryAcquire(hedgeAfterMs, TimeUnit.MILLISECONDS);
+                } else if (inFlight.get() > 0) {
+                    progress.acquire();
+                } else {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening replica");
+        }
+        OpenedReplica opened = winner.getNow(null);
+        if (opened == null) {
+            throw new IOException("No replica could be read");
+        }
+        List<StorageVolumes.Replica> fallbacks = new ArrayList<>(replicas);
+        fallbacks.remove(opened.replica());
+        return new FailoverInputStream(opened, fallbacks, length);
+    }
+
+    private void startRead(StorageVolumes.Replica replica, CompletableFuture<OpenedReplica> winner,
+                           AtomicInteger inFlight, Semaphore progress) {
+        ioExecutor.execute(() -> {
+            long started = System.nanoTime();
+            InputStream in = null;
+            try {
+                in = ioEngine.open(replica.path());
+                // Reading the first chunk proves the replica is actually readable
+                byte[] head = in.readNBytes(CHUNK_SIZE);
+                replica.volume().recordReadLatency(System.nanoTime() - started);
+                if (!winner.complete(new OpenedReplica(replica, head, in))) {
+                    // Another replica answered first
+                    closeQuietly(in);
+                }
+            } catch (IOException e) {
+                logger.warn("Replica read failed on {}: {}", replica.volume().getId(), e.getMessage());
+                replica.volume().recordReadLatency(FAILED_READ_PENALTY_NANOS);
+                closeQuietly(in);
+            } finally {
+                inFlight.decrementAndGet();
+                progress.release();
+            }
+        });
+    }
+
+    private record OpenedReplica(StorageVolumes.Replica replica, byte[] head, InputStream rest) {}
+
+    /**
+     * Serves the winning replica and, when a read from it fails, reopens the next replica at the
+     * offset reached so far. A replica that ends before the blob's recorded length counts as
+     * failed too. Fails only once every replica has failed.
+     */
+    private class FailoverInputStream extends InputStream {
+
+        private final List<StorageVolumes.Replica> fallbacks;
+        // Expected blob length, or -1 when unknown
+        private final long length;
+        private StorageVolumes.Replica current;
+        private byte[] head;
+        private int headPosition;
+        private InputStream in;
+        private long position;
+
+        FailoverInputStream(OpenedReplica opened, List<StorageVolumes.Replica> fallbacks, long length) {
+            this.current = opened.replica();
+            this.head = opened.head();
+            this.in = opened.rest();
+            this.fallbacks = new ArrayList<>(fallbacks);
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (head != null) {
+                int count = Math.min(len, head.length - headPosition);
+                if (count > 0) {
+                    System.arraycopy(head, headPosition, buffer, offset, count);
+                    headPosition += count;
+                    position += count;
+                    return count;
+                }
+                head = null;
+            }
+            while (true) {
+                try {
+                    int read = in.read(buffer, offset, len);
+                    if (read == -1 && position < length) {
+                        throw new IOException("Replica truncated at " + position + " of " + length + " bytes");
+                    }
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                } catch (IOException e) {
+                    failOver(e);
+                }
+            }
+        }
+
+        /**
+         * Switch to the next replica that can be opened and positioned at the current offset
+         */
+        private void failOver(IOException cause) throws IOException {
+            logger.warn("Replica read failed on {} at offset {}: {}", current.volume().getId(), position,
+                    cause.getMessage());
+            current.volume().recordReadLatency(FAILED_READ_PENALTY_NANOS);
+            closeQuietly(in);
+            in = null;
+            while (!fallbacks.isEmpty()) {
+                StorageVolumes.Replica replica = fallbacks.remove(0);
+                InputStream candidate = null;
+                try {
+                    candidate = ioEngine.open(replica.path());
+                    candidate.skipNBytes(position);
+                    current = replica;
+                    in = candidate;
+                    return;
+                } catch (IOException e) {
+                    cause.addSuppressed(e);
+                    replica.volume().recordReadLatency(FAILED_READ_PENALTY_NANOS);
+                    closeQuietly(candidate);
+                }
+            }
+            throw cause;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // nothing left to do
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // best effort cleanup
+        }
+    }
+
+    /**
+     * Write side of one replica; a failed replica is closed, its partial file deleted, and it is
+     * dropped instead of failing the upload
+     */
+    private static class ReplicaWriter {
+        final StorageVolume volume;
+        final Path path;
+        private FileChannel channel;
+        private volatile boolean healthy = true;
+
+        ReplicaWriter(StorageVolume volume, Path path) {
+            this.volume = volume;
+            this.path = path;
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        boolean isHealthy() {
+            return healthy;
+        }
+
+        void write(ByteBuffer chunk) {
+            if (!healthy) {
+                return;
+            }
+            try {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        boolean forceAndClose() {
+            try {
+                channel.force(true);
+                channel.close();
+                return true;
+            } catch (IOException e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        void discard() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // deleting anyway
+                }
+            }
+            deleteQuietly(path);
+        }
+
+        private void fail(IOException e) {
+            if (healthy) {
+                logger.warn("Replica write failed on {}: {}", volume.getId(), e.getMessage());
+            }
+            healthy = false;
+            discard();
+        }
+    }
+}
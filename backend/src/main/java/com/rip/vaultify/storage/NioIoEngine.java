@@ -0,0 +1,22 @@
+package com.rip.vaultify.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Blocking reads through Files.newInputStream: one thread per read in progress
+ */
+public class NioIoEngine implements BlobIoEngine {
+
+    @Override
+    public InputStream open(Path path) throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public String getName() {
+        return "nio";
+    }
+}
@@ -0,0 +1,232 @@
+package com.rip.vaultify.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Systematic Reed-Solomon codec over GF(2^8).
+ * <p>
+ * The encoding matrix is a Vandermonde matrix normalised so its top rows are the identity:
+ * data shards are stored as-is and parity shards are linear combinations of them. Any
+ * {@code dataShards} of the {@code dataShards + parityShards} shards are enough to rebuild the rest.
+ */
+public final class ReedSolomon {
+
+    private static final int FIELD_SIZE = 256;
+    private static final int GENERATOR_POLYNOMIAL = 0x11D;
+    private static final byte[] EXP = new byte[FIELD_SIZE * 2];
+    private static final int[] LOG = new int[FIELD_SIZE];
+    // Full multiplication table: MUL[a][b] = a * b in GF(256)
+    private static final byte[][] MUL = new byte[FIELD_SIZE][FIELD_SIZE];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < FIELD_SIZE - 1; i++) {
+            EXP[i] = (byte) x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= FIELD_SIZE) {
+                x ^= GENERATOR_POLYNOMIAL;
+            }
+        }
+        for (int i = FIELD_SIZE - 1; i < EXP.length; i++) {
+            EXP[i] = EXP[i - (FIELD_SIZE - 1)];
+        }
+        for (int a = 0; a < FIELD_SIZE; a++) {
+            for (int b = 0; b < FIELD_SIZE; b++) {
+                MUL[a][b] = (byte) multiply(a, b);
+            }
+        }
+    }
+
+    private final int dataShards;
+    private final int parityShards;
+    private final int[][] encodeMatrix;
+
+    public ReedSolomon(int dataShards, int parityShards) {
+        if (dataShards <= 0 || parityShards <= 0 || dataShards + parityShards > FIELD_SIZE) {
+            throw new IllegalArgumentException("Invalid shard counts: " + dataShards + "+" + parityShards);
+        }
+        this.dataShards = dataShards;
+        this.parityShards = parityShards;
+        int total = dataShards + parityShards;
+        int[][] vandermonde = new int[total][dataShards];
+        for (int r = 0; r < total; r++) {
+            for (int c = 0; c < dataShards; c++) {
+                vandermonde[r][c] = power(r, c);
+            }
+        }
+        int[][] top = Arrays.copyOfRange(vandermonde, 0, dataShards);
+        this.encodeMatrix = multiply(vandermonde, invert(top));
+    }
+
+    public int getDataShards() { return dataShards; }
+    public int getParityShards() { return parityShards; }
+    public int getTotalShards() { return dataShards + parityShards; }
+
+    /**
+     * Compute the parity shards from the data shards, over the first {@code length} bytes.
+     * Parity rows are independent, so they are computed in parallel when an executor is given.
+     */
+    public void encodeParity(byte[][] shards, int length, Executor executor) {
+        byte[][] data = Arrays.copyOfRange(shards, 0, dataShards);
+        CompletableFuture<?>[] rows = new CompletableFuture<?>[parityShards];
+        for (int p = 0; p < parityShards; p++) {
+            int row = dataShards + p;
+            Runnable task = () -> combine(encodeMatrix[row], data, shards[row], length);
+            if (executor == null) {
+                task.run();
+            } else {
+                rows[p] = CompletableFuture.runAsync(task, executor);
+            }
+        }
+        if (executor != null) {
+            CompletableFuture.allOf(rows).join();
+        }
+    }
+
+    /**
+     * Rebuild the shards not marked present, over the first {@code length} bytes. Buffers for
+     * missing shards must already be allocated. Parity shards are rebuilt only if requested.
+     *
+     * @throws IllegalArgumentException if fewer than dataShards shards are present
+     */
+    public void decodeMissing(byte[][] shards, boolean[] present, int length, boolean rebuildParity) {
+        int[] available = new int[dataShards];
+        int found = 0;
+        for (int i = 0; i < shards.length && found < dataShards; i++) {
+            if (present[i]) {
+                available[found++] = i;
+            }
+        }
+        if (found < dataShards) {
+            throw new IllegalArgumentException("Need " + dataShards + " shards to decode, only " + found + " present");
+        }
+
+        boolean dataMissing = false;
+        for (int d = 0; d < dataShards; d++) {
+            dataMissing |= !present[d];
+        }
+        if (dataMissing) {
+            int[][] subMatrix = new int[dataShards][];
+            byte[][] inputs = new byte[dataShards][];
+            for (int j = 0; j < dataShards; j++) {
+                subMatrix[j] = encodeMatrix[available[j]];
+                inputs[j] = shards[available[j]];
+            }
+            int[][] decodeMatrix = invert(subMatrix);
+            for (int d = 0; d < dataShards; d++) {
+                if (!present[d]) {
+                    combine(decodeMatrix[d], inputs, shards[d], length);
+                }
+            }
+        }
+
+        if (rebuildParity) {
+            byte[][] data = Arrays.copyOfRange(shards, 0, dataShards);
+            for (int p = dataShards; p < shards.length; p++) {
+                if (!present[p]) {
+                    combine(encodeMatrix[p], data, shards[p], length);
+                }
+            }
+        }
+    }
+
+    /**
+     * out = sum of coefficients[i] * inputs[i] over GF(256)
+     */
+    private static void combine(int[] coefficients, byte[][] inputs, byte[] out, int length) {
+        Arrays.fill(out, 0, length, (byte) 0);
+        for (int i = 0; i < inputs.length; i++) {
+            byte[] table = MUL[coefficients[i]];
+            byte[] in = inputs[i];
+            for (int b = 0; b < length; b++) {
+                out[b] ^= table[in[b] & 0xff];
+            }
+        }
+    }
+
+    private static int multiply(int a, int b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return EXP[LOG[a] + LOG[b]] & 0xff;
+    }
+
+    private static int inverse(int a) {
+        if (a == 0) {
+            throw new ArithmeticException("Zero has no inverse in GF(256)");
+        }
+        return EXP[(FIELD_SIZE - 1) - LOG[a]] & 0xff;
+    }
+
+    private static int power(int a, int n) {
+        if (n == 0) {
+            return 1;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        return EXP[(LOG[a] * n) % (FIELD_SIZE - 1)] & 0xff;
+    }
+
+    private static int[][] multiply(int[][] left, int[][] right) {
+        int rows = left.length;
+        int inner = right.length;
+        int cols = right[0].length;
+        int[][] result = new int[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int value = 0;
+                for (int i = 0; i < inner; i++) {
+                    value ^= multiply(left[r][i], right[i][c]);
+                }
+                result[r][c] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gauss-Jordan inversion of a square matrix over GF(256)
+     */
+    private static int[][] invert(int[][] matrix) {
+        int n = matrix.length;
+        int[][] work = new int[n][2 * n];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(matrix[r], 0, work[r], 0, n);
+            work[r][n + r] = 1;
+        }
+        for (int c = 0; c < n; c++) {
+            int pivot = c;
+            while (pivot < n && work[pivot][c] == 0) {
+                pivot++;
+            }
+            if (pivot == n) {
+                throw new IllegalArgumentException("Matrix is singular");
+            }
+            int[] swap = work[c];
+            work[c] = work[pivot];
+            work[pivot] = swap;
+
+            int scale = inverse(work[c][c]);
+            for (int k = 0; k < 2 * n; k++) {
+                work[c][k] = multiply(work[c][k], scale);
+            }
+            for (int r = 0; r < n; r++) {
+                if (r != c && work[r][c] != 0) {
+                    int factor = work[r][c];
+                    for (int k = 0; k < 2 * n; k++) {
+                        work[r][k] ^= multiply(factor, work[c][k]);
+                    }
+                }
+            }
+        }
+        int[][] inverse = new int[n][n];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(work[r], n, inverse[r], 0, n);
+        }
+        return inverse;
+    }
+}
@@ -0,0 +1,61 @@
+package com.rip.vaultify.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tracks the latency of user-facing blob I/O, one sample per chunk: each chunk an upload writes
+ * and each read of a download stream. Background jobs consult it so they can step aside while
+ * request traffic is slow.
+ */
+@Component
+public class StorageIoMonitor {
+
+    // Weight of the newest sample in the moving average
+    private static final double ALPHA = 0.2;
+    // Samples older than this no longer describe current load
+    private static final long IDLE_AFTER_MS = 5_000;
+
+    private double ewmaMillis;
+    private long lastSampleAt;
+
+    /**
+     * Record the duration of one request-path chunk read or write
+     */
+    public synchronized void record(long durationNanos) {
+        double millis = durationNanos / 1_000_000.0;
+        ewmaMillis = lastSampleAt == 0 ? millis : (ALPHA * millis) + ((1 - ALPHA) * ewmaMillis);
+        lastSampleAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Wrap a streamed read so the latency of every chunk read from it is recorded as it happens,
+     * rather than once the whole download is over
+     */
+    public InputStream monitor(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long started = System.nanoTime();
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    record(System.nanoTime() - started);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Smoothed request I/O latency, or 0 when there has been no recent traffic
+     */
+    public synchronized double getRecentLatencyMillis() {
+        if (lastSampleAt == 0 || System.currentTimeMillis() - lastSampleAt > IDLE_AFTER_MS) {
+            return 0;
+        }
+        return ewmaMillis;
+    }
+}
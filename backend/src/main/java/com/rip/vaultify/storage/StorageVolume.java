@@ -0,0 +1,66 @@
+package com.rip.vaultify.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A local directory (typically its own disk) that holds blobs
+ */
+public class StorageVolume {
+
+    private final String id;
+    private final Path root;
+    private final boolean draining;
+
+    // Smoothed read latency, used to pick the fastest replica
+    private static final double ALPHA = 0.2;
+    private double readLatencyMillis;
+
+    public StorageVolume(String id, Path root, boolean draining) {
+        this.id = id;
+        this.root = root;
+        this.draining = draining;
+    }
+
+    public String getId() { return id; }
+    public Path getRoot() { return root; }
+
+    /**
+     * Draining volumes stay readable but receive no new blobs; the rebalancer empties them
+     */
+    public boolean isDraining() { return draining; }
+
+    public Path resolve(String storedName) {
+        return root.resolve(storedName);
+    }
+
+    public boolean contains(Path path) {
+        return path.toAbsolutePath().normalize().startsWith(root);
+    }
+
+    public synchronized void recordReadLatency(long durationNanos) {
+        double millis = durationNanos / 1_000_000.0;
+        readLatencyMillis = (ALPHA * millis) + ((1 - ALPHA) * readLatencyMillis);
+    }
+
+    public synchronized double getReadLatencyMillis() {
+        return readLatencyMillis;
+    }
+
+    public long getTotalSpace() {
+        try {
+            return Files.getFileStore(root).getTotalSpace();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public long getUsableSpace() {
+        try {
+            return Files.getFileStore(root).getUsableSpace();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The configured storage volumes and the consistent-hash ring used to place blobs on them.
+ * Each volume gets ring positions in proportion to its capacity (rounded to tenths of the
+ * largest volume), which spreads new blobs across disks while adding or removing a volume only
+ * moves the blobs that hash to it. The ring is built once from the configured volumes: weights
+ * do not follow free space, so placement only changes when the volume set does.
+ */
+@Component
+public class StorageVolumes {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageVolumes.class);
+    private static final int VNODES_PER_WEIGHT = 16;
+    private static final int WEIGHT_STEPS = 10;
+
+    // Comma-separated volume directories; defaults to the single upload directory
+    @Value("${storage.volumes:${file.upload.directory:uploads}}")
+    private String configuredVolumes;
+
+    // Comma-separated volume directories being emptied (still readable, no new placements)
+    @Value("${storage.volumes.draining:}")
+    private String configuredDraining;
+
+    // Number of volumes each blob is written to
+    @Value("${storage.replication.factor:1}")
+    private int replicationFactor;
+
+    private final Map<String, StorageVolume> volumes = new LinkedHashMap<>();
+    private volatile NavigableMap<Long, StorageVolume> ring = new TreeMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Set<String> draining = split(configuredDraining).stream().collect(Collectors.toSet());
+        for (String id : split(configuredVolumes)) {
+            register(id, draining.contains(id));
+        }
+        for (String id : draining) {
+            if (!volumes.containsKey(id)) {
+                register(id, true);
+            }
+        }
+        if (getActiveVolumes().isEmpty()) {
+            throw new IllegalStateException("At least one non-draining storage volume must be configured");
+        }
+        buildRing();
+    }
+
+    private void register(String id, boolean draining) throws IOException {
+        Path root = Paths.get(id).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        volumes.put(id, new StorageVolume(id, root, draining));
+    }
+
+    private void buildRing() {
+        List<StorageVolume> active = getActiveVolumes();
+        long maxCapacity = active.stream().mapToLong(StorageVolume::getTotalSpace).max().orElse(0);
+        NavigableMap<Long, StorageVolume> newRing = new TreeMap<>();
+        for (StorageVolume volume : active) {
+            int weight = maxCapacity > 0
+                    ? (int) Math.max(1, Math.round((double) WEIGHT_STEPS * volume.getTotalSpace() / maxCapacity))
+                    : 1;
+            for (int i = 0; i < weight * VNODES_PER_WEIGHT; i++) {
+                newRing.put(hash(volume.getId() + "#" + i), volume);
+            }
+            logger.info("Storage volume {} - weight: {}, capacity: {} bytes, free: {} bytes", volume.getId(), weight,
+                    volume.getTotalSpace(), volume.getUsableSpace());
+        }
+        ring = newRing;
+    }
+
+    /**
+     * One blob copy: the volume may be null for a legacy path outside every configured volume
+     */
+    public record Replica(StorageVolume volume, Path path) {}
+
+    public int getReplicationFactor() {
+        return Math.max(1, replicationFactor);
+    }
+
+    /**
+     * Volume a new blob with this key should be placed on
+     */
+    public StorageVolume locate(String key) {
+        return locate(key, 1).get(0);
+    }
+
+    /**
+     * Volumes a blob with this key should be replicated to, primary first
+     */
+    public List<StorageVolume> placementFor(String key) {
+        return locate(key, getReplicationFactor());
+    }
+
+    /**
+     * The first {@code count} distinct volumes clockwise from the key's ring position
+     * (fewer if not enough active volumes exist)
+     */
+    public List<StorageVolume> locate(String key, int count) {
+        NavigableMap<Long, StorageVolume> current = ring;
+        List<StorageVolume> result = new ArrayList<>(count);
+        long position = hash(key);
+        collect(current.tailMap(position, true).values(), result, count);
+        collect(current.headMap(position, false).values(), result, count);
+        return result;
+    }
+
+    /**
+     * Volume ids recorded for a file, primary first
+     */
+    public List<String> replicaIds(File file) {
+        if (file.getReplicaVolumes() != null && !file.getReplicaVolumes().isBlank()) {
+            return split(file.getReplicaVolumes());
+        }
+        if (file.getVolume() != null) {
+            return List.of(file.getVolume());
+        }
+        return findVolumeForPath(Paths.get(file.getFilePath()))
+                .map(v -> List.of(v.getId()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Where the copies of a file's blob live, primary first
+     */
+    public List<Replica> replicasOf(File file) {
+        List<Replica> replicas = replicaIds(file).stream()
+                .map(volumes::get)
+                .filter(Objects::nonNull)
+                .map(v -> new Replica(v, v.resolve(file.getStoredName())))
+                .toList();
+        if (replicas.isEmpty()) {
+            return List.of(new Replica(null, Paths.get(file.getFilePath())));
+        }
+        return replicas;
+    }
+
+    public static String joinIds(List<StorageVolume> replicas) {
+        return replicas.stream().map(StorageVolume::getId).collect(Collectors.joining(","));
+    }
+
+    public Optional<StorageVolume> getVolume(String id) {
+        return Optional.ofNullable(id).map(volumes::get);
+    }
+
+    /**
+     * Volume whose directory holds the given path (for blobs written before volumes were recorded)
+     */
+    public Optional<StorageVolume> findVolumeForPath(Path path) {
+        return volumes.values().stream().filter(v -> v.contains(path)).findFirst();
+    }
+
+    public List<StorageVolume> getAllVolumes() {
+        return List.copyOf(volumes.values());
+    }
+
+    public List<StorageVolume> getActiveVolumes() {
+        return volumes.values().stream().filter(v -> !v.isDraining()).toList();
+    }
+
+    private static void collect(Collection<StorageVolume> candidates, List<StorageVolume> result, int count) {
+        for (StorageVolume volume : candidates) {
+            if (result.size() == count) {
+                return;
+            }
+            if (!result.contains(volume)) {
+                result.add(volume);
+            }
+        }
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rip.vaultify.config;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FolderRepository;
+import com.rip.vaultify.repository.FolderStatsRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import com.rip.vaultify.repository.UserRepository;
+import com.rip.vaultify.service.FolderService;
+import com.rip.vaultify.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class EntityCacheInvalidationTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private FolderRepository folderRepository;
+    @Autowired
+    private UserCountersRepository userCountersRepository;
+    @Autowired
+    private FolderStatsRepository folderStatsRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void counterUpdatesKeepUsersAndFoldersCached() {
+        User user = userService.register("cache-counters", "secret");
+        Folder folder = folderService.createFolder("docs", null, user);
+        cache(user, folder);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userCountersRepository.addUsedBytes(user.getId(), 10);
+            userCountersRepository.addUnreadShares(user.getId(), 1);
+            userCountersRepository.bumpFolderVersion(user.getId());
+            folderStatsRepository.addFiles(folderRepository.findById(folder.getId()).orElseThrow(), 1, 10);
+        });
+
+        assertTrue(cached(User.class, user.getId()));
+        assertTrue(cached(Folder.class, folder.getId()));
+        assertEquals(10, folderStatsRepository.findById(folder.getId()).orElseThrow().getTotalBytes());
+    }
+
+    @Test
+    void subtreeCopyKeepsUsersCachedAndCopiesAggregates() {
+        User user = userService.register("cache-copy", "secret");
+        Folder source = folderService.createFolder("source", null, user);
+        Folder child = folderService.createFolder("child", source.getId(), user);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                folderStatsRepository.addFiles(folderRepository.findById(child.getId()).orElseThrow(), 2, 300));
+        cache(user, source);
+
+        Folder copy = folderService.copyFolder(source.getId(), null, user.getId());
+
+        // The native copy statements name only folders, files, permissions and blob_refs
+        assertTrue(cached(User.class, user.getId()));
+        assertEquals(2, folderStatsRepository.findById(copy.getId()).orElseThrow().getTotalFileCount());
+        assertEquals(300, folderStatsRepository.findById(copy.getId()).orElseThrow().getTotalBytes());
+    }
+
+    private void cache(User user, Folder folder) {
+        userRepository.findById(user.getId());
+        folderRepository.findById(folder.getId());
+        assertTrue(cached(User.class, user.getId()));
+        assertTrue(cached(Folder.class, folder.getId()));
+    }
+
+    private boolean cached(Class<?> type, Long id) {
+        return entityManagerFactory.getCache().contains(type, id);
+    }
+}
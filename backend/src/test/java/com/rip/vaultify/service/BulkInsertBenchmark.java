@@ -0,0 +1,193 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk insert of files with one permission each, 100k of both by default: the entities as mapped
+ * (pooled sequences, JDBC batching) against the IDENTITY strategy they replaced. IDENTITY makes
+ * Hibernate execute each insert on its own to read the key back, so that side is run as exactly
+ * that, one INSERT per row into IDENTITY-keyed copies of the two tables. Statement counts come
+ * from Hibernate statistics.
+ * <p>
+ * Against the in-process H2 of this build a statement costs no network round trip, and the
+ * IDENTITY side skips Hibernate altogether, so its time is a lower bound; the statement count is
+ * what carries over to a database across a network. Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark}.
+ * The row count can be set with -Dbenchmark.bulk-insert.rows.
+ */
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@Tag("benchmark")
+class BulkInsertBenchmark {
+
+    // Persistence context size between flushes, a multiple of hibernate.jdbc.batch_size
+    private static final int FLUSH_EVERY = 1000;
+
+    private final int rows = Integer.getInteger("benchmark.bulk-insert.rows", 100_000);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+
+    @AfterEach
+    void dropIdentityTables() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_identity_permissions");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_identity_files");
+    }
+
+    @Test
+    void bulkInsertThroughput() {
+        User owner = userService.register("bench-insert-owner", "secret");
+        User reader = userService.register("bench-insert-reader", "secret");
+        Folder folder = folderService.createFolder("bench-insert", null, owner);
+        createIdentityTables();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int round = 0; round <= 1; round++) {
+            // Round 0 is warm-up, at a tenth of the size
+            boolean report = round > 0;
+            int count = report ? rows : Math.max(1, rows / 10);
+
+            long started = System.nanoTime();
+            insertIdentity(count, folder, owner, reader);
+            long identityNanos = System.nanoTime() - started;
+
+            statistics.clear();
+            started = System.nanoTime();
+            insertPooled(count, folder, owner, reader, "round-" + round);
+            long pooledNanos = System.nanoTime() - started;
+            long inserts = statistics.getEntityInsertCount();
+            long statements = statistics.getPrepareStatementCount();
+
+            if (report) {
+                print("IDENTITY", count, identityNanos, 2L * count);
+                print("pooled sequences", count, pooledNanos, statements);
+                // Another thread may have written meanwhile, hence the lower bound
+                assertTrue(inserts >= 2L * count, "entity inserts: " + inserts);
+                // Without batching this would be one statement per row
+                assertTrue(statements * 10 < 2L * count, "prepared statements: " + statements);
+            }
+        }
+        assertEquals(rows + Math.max(1, rows / 10),
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bench_identity_permissions", Long.class));
+    }
+
+    private void insertPooled(int count, Folder folder, User owner, User reader, String prefix) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            EntityManager em = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < count; i++) {
+                String name = prefix + "-" + i;
+                File file = new File(name, name, "application/octet-stream", 1L, name,
+                        em.getReference(Folder.class, folder.getId()), em.getReference(User.class, owner.getId()));
+                file.setUploadedAt(now);
+                em.persist(file);
+                Permission permission = new Permission();
+                permission.setFile(file);
+                permission.setUser(em.getReference(User.class, reader.getId()));
+                permission.setAccess(Permission.Access.READ);
+                em.persist(permission);
+                if ((i + 1) % FLUSH_EVERY == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+    }
+
+    private void insertIdentity(int count, Folder folder, User owner, User reader) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    try (PreparedStatement files = connection.prepareStatement(
+                            "INSERT INTO bench_identity_files (original_name, stored_name, content_type, size, "
+                                    + "file_path, uploaded_at, folder_id, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                            Statement.RETURN_GENERATED_KEYS);
+                         PreparedStatement permissions = connection.prepareStatement(
+                                 "INSERT INTO bench_identity_permissions (file_id, user_id, access, viewed) "
+                                         + "VALUES (?, ?, ?, FALSE)",
+                                 Statement.RETURN_GENERATED_KEYS)) {
+                        for (int i = 0; i < count; i++) {
+                            String name = "identity-" + i;
+                            files.setString(1, name);
+                            files.setString(2, name);
+                            files.setString(3, "application/octet-stream");
+                            files.setLong(4, 1L);
+                            files.setString(5, name);
+                            files.setTimestamp(6, now);
+                            files.setLong(7, folder.getId());
+                            files.setLong(8, owner.getId());
+                            long fileId = executeForKey(files);
+                            permissions.setLong(1, fileId);
+                            permissions.setLong(2, reader.getId());
+                            permissions.setString(3, Permission.Access.READ.name());
+                            executeForKey(permissions);
+                        }
+                    }
+                    return null;
+                }));
+    }
+
+    private static long executeForKey(PreparedStatement statement) throws SQLException {
+        statement.executeUpdate();
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            keys.next();
+            return keys.getLong(1);
+        }
+    }
+
+    private void createIdentityTables() {
+        jdbcTemplate.execute("CREATE TABLE bench_identity_files ("
+                + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "original_name VARCHAR(255) NOT NULL, stored_name VARCHAR(255) NOT NULL, "
+                + "content_type VARCHAR(255) NOT NULL, size BIGINT NOT NULL, file_path VARCHAR(255) NOT NULL, "
+                + "uploaded_at TIMESTAMP NOT NULL, "
+                + "folder_id BIGINT NOT NULL REFERENCES folders (id), user_id BIGINT NOT NULL REFERENCES users (id))");
+        jdbcTemplate.execute("CREATE TABLE bench_identity_permissions ("
+                + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "file_id BIGINT NOT NULL REFERENCES bench_identity_files (id), "
+                + "user_id BIGINT NOT NULL REFERENCES users (id), "
+                + "access VARCHAR(16) NOT NULL, viewed BOOLEAN NOT NULL)");
+    }
+
+    private static void print(String strategy, int count, long nanos, long statements) {
+        double seconds = nanos / 1e9;
+        System.out.printf("insert %,d files + %,d permissions  %-16s %9.1f ms %10.0f rows/s %,9d statements%n",
+                count, count, strategy, nanos / 1e6, 2 * count / seconds, statements);
+    }
+}
@@ -0,0 +1,142 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.dto.BulkShareResult;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+class BulkShareServiceTest {
+
+    @Autowired
+    private BulkShareService bulkShareService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private PermissionRepository permissionRepository;
+    @Autowired
+    private UserCountersRepository userCountersRepository;
+
+    @Test
+    void reportsAnOutcomePerPair() {
+        User owner = userService.register("bulk-owner", "secret");
+        User alice = userService.register("bulk-alice", "secret");
+        User bob = userService.register("bulk-bob", "secret");
+        Folder folder = folderService.createFolder("shared", null, owner);
+        Folder aliceFolder = folderService.createFolder("own", null, alice);
+        File first = addFile(owner, folder, "first");
+        File second = addFile(owner, folder, "second");
+        File foreign = addFile(alice, aliceFolder, "foreign");
+        // Alice has already seen a read-only share of the first file
+        Permission existing = permission(first, alice, Permission.Access.READ);
+        existing.setViewed(true);
+        permissionRepository.save(existing);
+
+        List<BulkShareResult> results = bulkShareService.share(
+                List.of(first.getId(), second.getId(), foreign.getId()),
+                List.of("bulk-alice", "bulk-bob", "bulk-owner", "bulk-nobody"),
+                Permission.Access.WRITE, owner);
+
+        assertEquals(12, results.size());
+        Map<String, BulkShareResult> byPair = results.stream()
+                .collect(Collectors.toMap(r -> r.fileId() + ":" + r.username(), Function.identity()));
+        assertStatus(byPair, first, "bulk-alice", "UPDATED");
+        assertStatus(byPair, first, "bulk-bob", "CREATED");
+        assertStatus(byPair, first, "bulk-owner", "FAILED");
+        assertStatus(byPair, first, "bulk-nobody", "FAILED");
+        assertStatus(byPair, second, "bulk-alice", "CREATED");
+        assertStatus(byPair, second, "bulk-bob", "CREATED");
+        for (String username : List.of("bulk-alice", "bulk-bob", "bulk-owner", "bulk-nobody")) {
+            assertStatus(byPair, foreign, username, "FAILED");
+        }
+        assertNull(byPair.get(first.getId() + ":bulk-bob").error());
+
+        // The update counts as a new notification for Alice, like each created share
+        assertEquals(2, userCountersRepository.findUnreadShares(alice.getId()));
+        assertEquals(2, userCountersRepository.findUnreadShares(bob.getId()));
+
+        List<Permission> shares = sharesOf(Set.of(first.getId(), second.getId()));
+        assertEquals(4, shares.size());
+        shares.forEach(p -> assertEquals(Permission.Access.WRITE, p.getAccess()));
+
+        // Sharing again changes nothing
+        List<BulkShareResult> again = bulkShareService.share(List.of(first.getId()), List.of("bulk-alice"),
+                Permission.Access.WRITE, owner);
+        assertEquals("UNCHANGED", again.get(0).status());
+    }
+
+    @Test
+    void bulkIdsDoNotCollideWithIdsHibernateHandsOut() {
+        User owner = userService.register("ids-owner", "secret");
+        Folder folder = folderService.createFolder("ids", null, owner);
+        List<User> targets = List.of(userService.register("ids-a", "secret"), userService.register("ids-b", "secret"));
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            files.add(addFile(owner, folder, "ids-" + i));
+        }
+        List<Long> fileIds = files.stream().map(File::getId).toList();
+
+        bulkShareService.share(fileIds.subList(0, 30), List.of("ids-a", "ids-b"), Permission.Access.READ, owner);
+        // Interleave single saves with another bulk share: a reused id would fail the insert
+        permissionRepository.save(permission(files.get(30), targets.get(0), Permission.Access.READ));
+        bulkShareService.share(fileIds.subList(31, 60), List.of("ids-a", "ids-b"), Permission.Access.READ, owner);
+        permissionRepository.save(permission(files.get(30), targets.get(1), Permission.Access.READ));
+
+        List<Permission> shares = sharesOf(Set.copyOf(fileIds));
+        assertEquals(120, shares.size());
+        assertEquals(120, shares.stream().map(Permission::getId).distinct().count());
+    }
+
+    private List<Permission> sharesOf(Set<Long> fileIds) {
+        return permissionRepository.findAll().stream()
+                .filter(p -> fileIds.contains(p.getFile().getId()) && p.getAccess() != Permission.Access.OWNER)
+                .toList();
+    }
+
+    private static void assertStatus(Map<String, BulkShareResult> byPair, File file, String username, String status) {
+        assertEquals(status, byPair.get(file.getId() + ":" + username).status(), file.getOriginalName() + "/" + username);
+    }
+
+    private static Permission permission(File file, User user, Permission.Access access) {
+        Permission permission = new Permission();
+        permission.setFile(file);
+        permission.setUser(user);
+        permission.setAccess(access);
+        return permission;
+    }
+
+    private File addFile(User user, Folder folder, String name) {
+        File file = new File();
+        file.setOriginalName(name);
+        file.setStoredName("bulk-" + name);
+        file.setContentType("application/octet-stream");
+        file.setSize(1L);
+        file.setFilePath(file.getStoredName());
+        file.setUploadedAt(LocalDateTime.now());
+        file.setFolder(folder);
+        file.setUser(user);
+        return fileRepository.save(file);
+    }
+}
@@ -0,0 +1,161 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.dto.CursorPage;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Folder listing latency for a user who can read 1M files (-Dbenchmark.access-index.files),
+ * spread over folders of 10k: {@link FileService#getReadableFilesPage} with the access index
+ * against the permission-scan path it replaced, which pages through the folder and checks each
+ * page's ACLs. Two folders are listed: one the user can read entirely and one where only every
+ * hundredth file is shared. Rows are inserted with set-based SQL, the way subtree copies are.
+ * Excluded from the default build; run with {@code mvn test -Pbenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@Tag("benchmark")
+class FileAccessIndexBenchmark {
+
+    private static final int FOLDER_SIZE = 10_000;
+    private static final int SPARSE_EVERY = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int ROUNDS = 20;
+
+    private final int files = Integer.getInteger("benchmark.access-index.files", 1_000_000);
+
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private FileAccessIndex accessIndex;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private PermissionRepository permissionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void listingLatency() {
+        User owner = userService.register("bench-index-owner", "secret");
+        User reader = userService.register("bench-index-reader", "secret");
+        List<Folder> shared = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < Math.max(1, files / FOLDER_SIZE); i++) {
+            Folder folder = folderService.createFolder("shared-" + i, null, owner);
+            insertFiles(folder, owner);
+            shareAll(folder, reader, 1);
+            shared.add(folder);
+        }
+        Folder sparse = folderService.createFolder("sparse", null, owner);
+        insertFiles(sparse, owner);
+        shareAll(sparse, reader, SPARSE_EVERY);
+        System.out.printf("setup  %,d files shared with one user in %.1f s%n",
+                shared.size() * FOLDER_SIZE + FOLDER_SIZE / SPARSE_EVERY, (System.nanoTime() - started) / 1e9);
+
+        // The rows bypassed the services, so drop whatever the index holds for the reader
+        accessIndex.onPermissionsBulkChanged(new PermissionsBulkChangedEvent(Set.of(), Set.of(reader.getId())));
+        started = System.nanoTime();
+        long readable = accessIndex.readableInFolder(reader.getId(), shared.get(0).getId()).getLongCardinality();
+        System.out.printf("index  load of the reader's bitmap %9.1f ms, %,d readable in the first folder%n",
+                (System.nanoTime() - started) / 1e6, readable);
+
+        FileService target = AopTestUtils.getTargetObject(fileService);
+        FileAccessIndex scanOnly = new FileAccessIndex(permissionRepository, fileRepository,
+                new SimpleMeterRegistry(), false, 1);
+        for (Folder folder : List.of(shared.get(0), sparse)) {
+            List<Long> indexed = measure("index", folder, reader);
+            ReflectionTestUtils.setField(target, "accessIndex", scanOnly);
+            try {
+                List<Long> scanned = measure("permission scan", folder, reader);
+                assertEquals(indexed, scanned, "files listed in " + folder.getName());
+            } finally {
+                ReflectionTestUtils.setField(target, "accessIndex", accessIndex);
+            }
+        }
+    }
+
+    /**
+     * Average first-page latency, then one walk through every page
+     *
+     * @return ids of every file listed
+     */
+    private List<Long> measure(String path, Folder folder, User reader) {
+        // Warm-up
+        listAll(folder, reader);
+        long started = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            page(folder, reader, null);
+        }
+        double firstPageMs = (System.nanoTime() - started) / 1e6 / ROUNDS;
+
+        started = System.nanoTime();
+        int[] pages = new int[1];
+        List<Long> ids = listAll(folder, reader, pages);
+        double walkMs = (System.nanoTime() - started) / 1e6;
+        System.out.printf("list   %-8s %-16s first page %8.2f ms   all %,6d files in %4d pages %9.1f ms%n",
+                folder.getName(), path, firstPageMs, ids.size(), pages[0], walkMs);
+        return ids;
+    }
+
+    private List<Long> listAll(Folder folder, User reader) {
+        return listAll(folder, reader, new int[1]);
+    }
+
+    private List<Long> listAll(Folder folder, User reader, int[] pages) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<File> page = page(folder, reader, cursor);
+            page.items().forEach(file -> ids.add(file.getId()));
+            cursor = page.nextCursor();
+            pages[0]++;
+        } while (cursor != null);
+        return ids;
+    }
+
+    private CursorPage<File> page(Folder folder, User reader, String cursor) {
+        return fileService.getReadableFilesPage(folder.getId(), reader.getId(), FileSort.NAME,
+                Sort.Direction.ASC, cursor, PAGE_SIZE);
+    }
+
+    private void insertFiles(Folder folder, User owner) {
+        jdbcTemplate.update("INSERT INTO files (id, original_name, stored_name, content_type, size, file_path, "
+                + "uploaded_at, folder_id, user_id) "
+                + "SELECT NEXT VALUE FOR files_seq, CONCAT('file-', LPAD(X, 5, '0')), CONCAT('bench-index-', ?, '-', X), "
+                + "'application/octet-stream', 1, CONCAT('bench-index-', ?, '-', X), CURRENT_TIMESTAMP, ?, ? "
+                + "FROM SYSTEM_RANGE(1, ?)",
+                folder.getId(), folder.getId(), folder.getId(), owner.getId(), FOLDER_SIZE);
+    }
+
+    // Ids come from a pooled sequence and are not consecutive: pick files by the number in their name
+    private void shareAll(Folder folder, User reader, int every) {
+        jdbcTemplate.update("INSERT INTO permissions (id, file_id, user_id, access, viewed) "
+                + "SELECT NEXT VALUE FOR permissions_seq, id, ?, 'READ', TRUE FROM files "
+                + "WHERE folder_id = ? AND MOD(CAST(SUBSTRING(original_name, 6) AS INT), ?) = 0",
+                reader.getId(), folder.getId(), every);
+    }
+}
@@ -0,0 +1,140 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.dto.CursorPage;
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class FileServicePagingTest {
+
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private BulkShareService bulkShareService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Test
+    void ownerPagesThroughTiesInKeyOrder() {
+        User owner = userService.register("paging-owner", "secret");
+        Folder folder = folderService.createFolder("paging", null, owner);
+        // Few distinct sizes, so most rows tie on the sort key and the id breaks the tie
+        List<File> files = addFiles(owner, folder, "tie", 23, i -> (long) (i % 3));
+
+        List<File> expected = files.stream()
+                .sorted(Comparator.comparing(File::getSize).reversed().thenComparing(File::getId, Comparator.reverseOrder()))
+                .toList();
+        List<File> paged = pageAll(folder, owner, FileSort.SIZE, Sort.Direction.DESC, 5);
+        assertEquals(ids(expected), ids(paged));
+    }
+
+    @Test
+    void sharedUserSeesOnlyReadableFilesFromAFewIds() {
+        User owner = userService.register("paging-few-owner", "secret");
+        User reader = userService.register("paging-few-reader", "secret");
+        Folder folder = folderService.createFolder("few", null, owner);
+        List<File> files = addFiles(owner, folder, "few", 40, i -> (long) i);
+        List<File> shared = everyThird(files);
+        share(shared, reader, owner);
+
+        assertEquals(ids(shared), ids(pageAll(folder, reader, FileSort.NAME, Sort.Direction.ASC, 4)));
+    }
+
+    @Test
+    void sharedUserSeesOnlyReadableFilesWhenScanningTheFolder() {
+        User owner = userService.register("paging-many-owner", "secret");
+        User reader = userService.register("paging-many-reader", "secret");
+        Folder folder = folderService.createFolder("many", null, owner);
+        // More readable files than fit in an id list, so pages come from scanning the folder
+        List<File> files = addFiles(owner, folder, "many", 3200, i -> (long) i);
+        List<File> shared = everyThird(files);
+        share(shared, reader, owner);
+
+        assertEquals(ids(shared), ids(pageAll(folder, reader, FileSort.NAME, Sort.Direction.ASC, 250)));
+        List<File> descending = shared.reversed();
+        assertEquals(ids(descending), ids(pageAll(folder, reader, FileSort.NAME, Sort.Direction.DESC, 250)));
+    }
+
+    @Test
+    void rejectsACursorIssuedForAnotherSort() {
+        User owner = userService.register("paging-cursor-owner", "secret");
+        Folder folder = folderService.createFolder("cursor", null, owner);
+        addFiles(owner, folder, "cursor", 3, i -> (long) i);
+
+        CursorPage<File> first = fileService.getReadableFilesPage(folder.getId(), owner.getId(), FileSort.NAME,
+                Sort.Direction.ASC, null, 2);
+        assertThrows(RuntimeException.class, () -> fileService.getReadableFilesPage(folder.getId(), owner.getId(),
+                FileSort.SIZE, Sort.Direction.ASC, first.nextCursor(), 2));
+        CursorPage<File> second = fileService.getReadableFilesPage(folder.getId(), owner.getId(), FileSort.NAME,
+                Sort.Direction.ASC, first.nextCursor(), 2);
+        assertEquals(1, second.items().size());
+        assertNull(second.nextCursor());
+    }
+
+    private List<File> pageAll(Folder folder, User user, FileSort sort, Sort.Direction direction, int limit) {
+        List<File> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<File> page = fileService.getReadableFilesPage(folder.getId(), user.getId(), sort, direction, cursor, limit);
+            all.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private void share(List<File> files, User reader, User owner) {
+        bulkShareService.share(files.stream().map(File::getId).toList(), List.of(reader.getUsername()),
+                Permission.Access.READ, owner);
+    }
+
+    private static List<File> everyThird(List<File> files) {
+        List<File> picked = new ArrayList<>();
+        for (int i = 0; i < files.size(); i += 3) {
+            picked.add(files.get(i));
+        }
+        return picked;
+    }
+
+    private static List<Long> ids(List<File> files) {
+        return files.stream().map(File::getId).toList();
+    }
+
+    private List<File> addFiles(User user, Folder folder, String prefix, int count, IntFunction<Long> size) {
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File file = new File();
+            // Zero-padded, so name order is creation order
+            file.setOriginalName(String.format("%s-%05d", prefix, i));
+            file.setStoredName("paging-" + prefix + "-" + i);
+            file.setContentType("application/octet-stream");
+            file.setSize(size.apply(i));
+            file.setFilePath(file.getStoredName());
+            file.setUploadedAt(LocalDateTime.now());
+            file.setFolder(folder);
+            file.setUser(user);
+            files.add(file);
+        }
+        return fileRepository.saveAll(files);
+    }
+}
@@ -0,0 +1,83 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.FolderStats;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.FolderStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class FolderAggregateRepairServiceTest {
+
+    @Autowired
+    private FolderAggregateRepairService repairService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private FolderStatsRepository folderStatsRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rollsDirectCountsUpTheTree() {
+        User user = userService.register("repair-tree", "secret");
+        Folder root = folderService.createFolder("root", null, user);
+        Folder left = folderService.createFolder("left", root.getId(), user);
+        Folder deep = folderService.createFolder("deep", left.getId(), user);
+        Folder right = folderService.createFolder("right", root.getId(), user);
+        Folder empty = folderService.createFolder("empty", null, user);
+        // Rows written directly, so the incremental counters know nothing about them
+        addFile(user, root, 1);
+        addFile(user, deep, 10);
+        addFile(user, deep, 20);
+        addFile(user, right, 300);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int corrected = transaction.execute(status -> repairService.recomputeFolders(user.getId()));
+        assertEquals(4, corrected);
+
+        assertStats(root, 1, 1, 4, 331);
+        assertStats(left, 0, 0, 2, 30);
+        assertStats(deep, 2, 30, 2, 30);
+        assertStats(right, 1, 300, 1, 300);
+        assertStats(empty, 0, 0, 0, 0);
+        // A second pass finds nothing to correct
+        int again = transaction.execute(status -> repairService.recomputeFolders(user.getId()));
+        assertEquals(0, again);
+    }
+
+    private void addFile(User user, Folder folder, long size) {
+        File file = new File();
+        file.setOriginalName("file-" + size);
+        file.setStoredName("repair-" + folder.getId() + "-" + size);
+        file.setContentType("application/octet-stream");
+        file.setSize(size);
+        file.setFilePath(file.getStoredName());
+        file.setUploadedAt(LocalDateTime.now());
+        file.setFolder(folder);
+        file.setUser(user);
+        fileRepository.save(file);
+    }
+
+    private void assertStats(Folder folder, long directFiles, long directBytes, long totalFiles, long totalBytes) {
+        FolderStats stats = folderStatsRepository.findById(folder.getId()).orElseThrow();
+        assertEquals(directFiles, stats.getDirectFileCount(), folder.getName() + " direct files");
+        assertEquals(directBytes, stats.getDirectBytes(), folder.getName() + " direct bytes");
+        assertEquals(totalFiles, stats.getTotalFileCount(), folder.getName() + " total files");
+        assertEquals(totalBytes, stats.getTotalBytes(), folder.getName() + " total bytes");
+    }
+}
@@ -0,0 +1,100 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.BlobRefRepository;
+import com.rip.vaultify.storage.BlobStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class FolderCopyTest {
+
+    private static final long RECLAIM_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private BlobRefRepository blobRefRepository;
+
+    @Test
+    void copySharesBlobsUntilTheLastReferenceIsDeleted() throws Exception {
+        User user = userService.register("copy-owner", "secret");
+        Folder template = folderService.createFolder("template", null, user);
+        Folder nested = folderService.createFolder("nested", template.getId(), user);
+        File top = upload(user, template, "top.txt", "top level");
+        File deep = upload(user, nested, "deep.txt", "one level down");
+
+        Folder copy = folderService.copyFolder(template.getId(), null, user.getId());
+        Folder copiedNested = folderService.getFoldersByParentAndUser(copy.getId(), user.getId()).get(0);
+        File copiedTop = fileService.findByFolderIdAndName(copy.getId(), "top.txt").orElseThrow();
+        File copiedDeep = fileService.findByFolderIdAndName(copiedNested.getId(), "deep.txt").orElseThrow();
+
+        assertEquals("nested", copiedNested.getName());
+        assertEquals(copy.getPath() + copiedNested.getId() + "/", copiedNested.getPath());
+        assertNotEquals(top.getId(), copiedTop.getId());
+        // Copy-on-write: the copied rows point at the original blobs
+        assertEquals(top.getStoredName(), copiedTop.getStoredName());
+        assertEquals(deep.getStoredName(), copiedDeep.getStoredName());
+        assertEquals(2, blobRefRepository.findById(top.getStoredName()).orElseThrow().getRefCount());
+        assertEquals(2, folderService.getStats(List.of(copy.getId())).get(copy.getId()).getTotalFileCount());
+
+        folderService.deleteFolder(template.getId(), user.getId());
+        assertFalse(blobRefRepository.existsById(top.getStoredName()));
+        assertArrayEquals(bytes("top level"), fileService.downloadFile(copiedTop.getId(), user.getId()));
+        assertArrayEquals(bytes("one level down"), fileService.downloadFile(copiedDeep.getId(), user.getId()));
+
+        fileService.deleteFile(copiedTop.getId(), user.getId());
+        folderService.deleteFolder(copy.getId(), user.getId());
+        awaitReclaimed(copiedTop);
+        awaitReclaimed(copiedDeep);
+    }
+
+    @Test
+    void rejectsACopyIntoItsOwnSubtree() {
+        User user = userService.register("copy-cycle", "secret");
+        Folder top = folderService.createFolder("top", null, user);
+        Folder child = folderService.createFolder("child", top.getId(), user);
+
+        assertThrows(RuntimeException.class, () -> folderService.copyFolder(top.getId(), child.getId(), user.getId()));
+        assertThrows(RuntimeException.class, () -> folderService.copyFolder(top.getId(), top.getId(), user.getId()));
+    }
+
+    private void awaitReclaimed(File file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RECLAIM_TIMEOUT_MS;
+        while (blobStore.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(blobStore.exists(file), "blob of " + file.getOriginalName() + " still on disk");
+    }
+
+    private File upload(User user, Folder folder, String name, String content) throws Exception {
+        File file = fileService.uploadFile(new MockMultipartFile("file", name, "text/plain", bytes(content)),
+                folder.getId(), user.getId());
+        assertTrue(blobStore.exists(file));
+        return file;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FolderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class FolderMoveTest {
+
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Test
+    void rejectsAMoveIntoOwnSubtree() {
+        User user = userService.register("move-cycle", "secret");
+        Folder top = folderService.createFolder("top", null, user);
+        Folder child = folderService.createFolder("child", top.getId(), user);
+        Folder grandchild = folderService.createFolder("grandchild", child.getId(), user);
+
+        assertThrows(RuntimeException.class, () -> folderService.moveFolder(top.getId(), grandchild.getId(), user.getId()));
+        assertThrows(RuntimeException.class, () -> folderService.moveFolder(top.getId(), top.getId(), user.getId()));
+
+        Folder moved = folderService.moveFolder(grandchild.getId(), null, user.getId());
+        assertEquals("/" + grandchild.getId() + "/", moved.getPath());
+        assertTreeConsistent(user);
+    }
+
+    @Test
+    void concurrentCrossMovesNeverFormACycle() throws Exception {
+        User user = userService.register("move-race", "secret");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                // a/x and b/y: moving a under y while b moves under x would close a loop
+                Folder a = folderService.createFolder("a" + round, null, user);
+                Folder x = folderService.createFolder("x" + round, a.getId(), user);
+                Folder b = folderService.createFolder("b" + round, null, user);
+                Folder y = folderService.createFolder("y" + round, b.getId(), user);
+
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<Boolean> first = executor.submit(() -> tryMove(start, a.getId(), y.getId(), user.getId()));
+                Future<Boolean> second = executor.submit(() -> tryMove(start, b.getId(), x.getId(), user.getId()));
+                int succeeded = (first.get() ? 1 : 0) + (second.get() ? 1 : 0);
+                assertEquals(1, succeeded, "round " + round);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTreeConsistent(user);
+    }
+
+    private boolean tryMove(CyclicBarrier start, Long id, Long newParentId, Long userId) throws Exception {
+        start.await();
+        try {
+            folderService.moveFolder(id, newParentId, userId);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Every path is the parent's path plus the folder's own id, so no folder is its own ancestor
+     */
+    private void assertTreeConsistent(User user) {
+        List<FolderRepository.FolderNode> nodes = folderRepository.findNodesByUserId(user.getId());
+        Map<Long, FolderRepository.FolderNode> byId = nodes.stream()
+                .collect(Collectors.toMap(FolderRepository.FolderNode::getId, Function.identity()));
+        for (FolderRepository.FolderNode node : nodes) {
+            String parentPath = node.getParentId() != null ? byId.get(node.getParentId()).getPath() : "/";
+            assertEquals(parentPath + node.getId() + "/", node.getPath(), "path of folder " + node.getId());
+            List<Long> ids = new ArrayList<>(Folder.idsInPath(node.getPath()));
+            assertEquals(ids.size(), ids.stream().distinct().count(), "folder " + node.getId() + " is its own ancestor");
+            assertEquals(node.getId(), ids.get(ids.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class FolderPathResolverTest {
+
+    @Autowired
+    private FolderPathResolver pathResolver;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void resolvesRepeatedNamesLevelByLevel() {
+        User user = userService.register("path-repeat", "secret");
+        Folder a = folderService.createFolder("a", null, user);
+        Folder aa = folderService.createFolder("a", a.getId(), user);
+        Folder aaa = folderService.createFolder("a", aa.getId(), user);
+        Folder b = folderService.createFolder("b", aa.getId(), user);
+
+        assertEquals(Optional.of(a.getId()), resolve(user, "a"));
+        assertEquals(Optional.of(aaa.getId()), resolve(user, "a", "a", "a"));
+        assertEquals(Optional.of(b.getId()), resolve(user, "a", "a", "b"));
+        assertEquals(Optional.empty(), resolve(user, "a", "b"));
+        assertEquals(Optional.empty(), resolve(user));
+    }
+
+    @Test
+    void oldestSiblingWinsAndPathsStayPerUser() {
+        User user = userService.register("path-siblings", "secret");
+        User other = userService.register("path-other", "secret");
+        Folder first = folderService.createFolder("docs", null, user);
+        folderService.createFolder("docs", null, user);
+        folderService.createFolder("docs", null, other);
+
+        assertEquals(Optional.of(first.getId()), resolve(user, "docs"));
+        assertEquals(Optional.empty(), resolve(userService.register("path-nobody", "secret"), "docs"));
+    }
+
+    @Test
+    void renameMoveAndDeleteDropCachedPaths() {
+        User user = userService.register("path-cache", "secret");
+        Folder projects = folderService.createFolder("projects", null, user);
+        Folder year = folderService.createFolder("2024", projects.getId(), user);
+        Folder specs = folderService.createFolder("specs", year.getId(), user);
+        Folder archive = folderService.createFolder("archive", null, user);
+        assertEquals(Optional.of(specs.getId()), resolve(user, "projects", "2024", "specs"));
+
+        folderService.renameFolder(year.getId(), "2025", user.getId());
+        assertEquals(Optional.empty(), resolve(user, "projects", "2024", "specs"));
+        assertEquals(Optional.of(specs.getId()), resolve(user, "projects", "2025", "specs"));
+
+        // A new folder takes the old name; the cache must not point the name at the renamed one
+        Folder replacement = folderService.createFolder("2024", projects.getId(), user);
+        assertEquals(Optional.of(replacement.getId()), resolve(user, "projects", "2024"));
+
+        folderService.moveFolder(year.getId(), archive.getId(), user.getId());
+        assertEquals(Optional.empty(), resolve(user, "projects", "2025", "specs"));
+        assertEquals(Optional.of(specs.getId()), resolve(user, "archive", "2025", "specs"));
+
+        folderService.deleteFolder(archive.getId(), user.getId());
+        assertEquals(Optional.empty(), resolve(user, "archive", "2025", "specs"));
+        assertEquals(Optional.empty(), resolve(user, "archive"));
+    }
+
+    private Optional<Long> resolve(User user, String... segments) {
+        return pathResolver.resolve(user.getId(), List.of(segments));
+    }
+}
@@ -0,0 +1,143 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.storage.BlobChecksums;
+import com.rip.vaultify.storage.BlobCopier;
+import com.rip.vaultify.storage.ErasureCoder;
+import com.rip.vaultify.storage.NioBlobStore;
+import com.rip.vaultify.storage.NioIoEngine;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import com.rip.vaultify.storage.StorageVolumes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+class IntegrityScrubTest {
+
+    @TempDir
+    Path root;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+
+    private final Set<Long> ownIds = ConcurrentHashMap.newKeySet();
+    private StorageVolumes volumes;
+    private ErasureCoder erasureCoder;
+    private NioBlobStore blobStore;
+    private IntegrityScrubService scrubber;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        volumes = new StorageVolumes();
+        ReflectionTestUtils.setField(volumes, "configuredVolumes",
+                root.resolve("volume0") + "," + root.resolve("volume1"));
+        ReflectionTestUtils.setField(volumes, "replicationFactor", 2);
+        volumes.init();
+        StorageIoMonitor ioMonitor = new StorageIoMonitor();
+        erasureCoder = new ErasureCoder(volumes, ioMonitor, false, 2, 1, 0, 1);
+        blobStore = new NioBlobStore(new BlobCopier(), volumes, erasureCoder, new NioIoEngine(), ioMonitor, 0, 5000, 50, 4);
+        scrubber = new IntegrityScrubService(ownRows(), blobStore, erasureCoder, ioMonitor, new SimpleMeterRegistry(),
+                false, 24, 100, 500, Long.MAX_VALUE, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scrubber.shutdown();
+        blobStore.shutdown();
+        erasureCoder.shutdown();
+    }
+
+    @Test
+    void reportsEachBadReplicaWhileTheOtherStillReads() throws Exception {
+        User user = userService.register("scrub-owner", "secret");
+        Folder folder = folderService.createFolder("scrub", null, user);
+        File rotten = store(user, folder, "rotten.txt", "replicated content");
+        File lost = store(user, folder, "lost.txt", "another replicated blob");
+        File healthy = store(user, folder, "healthy.txt", "left alone");
+
+        List<StorageVolumes.Replica> rottenReplicas = blobStore.replicasOf(rotten);
+        List<StorageVolumes.Replica> lostReplicas = blobStore.replicasOf(lost);
+        assertEquals(2, rottenReplicas.size());
+        Path bad = rottenReplicas.get(1).path();
+        byte[] bytes = Files.readAllBytes(bad);
+        bytes[0] ^= 0x5a;
+        Files.write(bad, bytes);
+        Files.delete(lostReplicas.get(0).path());
+
+        scrubber.runScrub();
+
+        Map<String, Object> run = lastRun();
+        assertEquals(1L, run.get("verified"));
+        assertEquals(List.of(Map.of("fileId", rotten.getId(), "volume", rottenReplicas.get(1).volume().getId(),
+                "path", bad.toString())), run.get("corruptCopies"));
+        assertEquals(List.of(Map.of("fileId", lost.getId(), "volume", lostReplicas.get(0).volume().getId(),
+                "path", lostReplicas.get(0).path().toString())), run.get("missingCopies"));
+        assertFalse(((List<?>) run.get("corruptFileIds")).contains(healthy.getId()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastRun() {
+        return (Map<String, Object>) scrubber.getStatus().get("lastRun");
+    }
+
+    /**
+     * The database is shared with other tests whose blobs live elsewhere: page through only the rows stored here
+     */
+    private FileRepository ownRows() {
+        return (FileRepository) Proxy.newProxyInstance(FileRepository.class.getClassLoader(),
+                new Class<?>[]{FileRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findByIdGreaterThanOrderByIdAsc")) {
+                        Long after = (Long) args[0];
+                        return fileRepository.findAllById(ownIds).stream()
+                                .filter(f -> f.getId() > after)
+                                .sorted(Comparator.comparing(File::getId))
+                                .toList();
+                    }
+                    try {
+                        return method.invoke(fileRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private File store(User user, Folder folder, String name, String content) throws Exception {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        File file = new File(name, "scrub-" + name, "text/plain", (long) bytes.length, null, folder, user);
+        file.setUploadedAt(LocalDateTime.now());
+        file.setChecksum(BlobChecksums.sha256(new ByteArrayInputStream(bytes)));
+        blobStore.write(file, new ByteArrayInputStream(bytes));
+        file = fileRepository.save(file);
+        ownIds.add(file.getId());
+        return file;
+    }
+}
@@ -0,0 +1,101 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class StorageQuotaTest {
+
+    private static final long QUOTA = 100;
+
+    @Autowired
+    private StorageQuotaService quotaService;
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Test
+    void rejectsUploadsThatWouldExceedTheQuota() throws Exception {
+        User user = userWithQuota("quota-upload");
+        Folder folder = folderService.createFolder("quota", null, user);
+
+        File first = upload(new MockMultipartFile("file", "first.bin", "application/octet-stream", new byte[60]), folder, user);
+        assertEquals(60L, usedBytes(user));
+
+        RuntimeException rejected = assertThrows(RuntimeException.class, () ->
+                upload(new MockMultipartFile("file", "second.bin", "application/octet-stream", new byte[60]), folder, user));
+        assertTrue(rejected.getMessage().contains("quota"), rejected.getMessage());
+        assertEquals(60L, usedBytes(user));
+        assertEquals(1, fileRepository.findIdsByFolderId(folder.getId()).size());
+
+        fileService.deleteFile(first.getId(), user.getId());
+        assertEquals(0L, usedBytes(user));
+        upload(new MockMultipartFile("file", "third.bin", "application/octet-stream", new byte[100]), folder, user);
+        assertEquals(0L, quotaService.getUsage(user.getId()).get("remainingBytes"));
+    }
+
+    @Test
+    void stopsAStreamThatIsLargerThanItsDeclaredSize() {
+        User user = userWithQuota("quota-stream");
+        Folder folder = folderService.createFolder("quota", null, user);
+        // The declared size passes the up-front check; the streamed bytes do not
+        MockMultipartFile understated = new MockMultipartFile("file", "big.bin", "application/octet-stream", new byte[500]) {
+            @Override
+            public long getSize() {
+                return 10;
+            }
+        };
+
+        assertThrows(RuntimeException.class, () -> upload(understated, folder, user));
+        assertEquals(0L, usedBytes(user));
+        assertTrue(fileRepository.findIdsByFolderId(folder.getId()).isEmpty());
+    }
+
+    @Test
+    void chargesCopiesAndRejectsOnesOverQuota() throws Exception {
+        User user = userWithQuota("quota-copy");
+        Folder folder = folderService.createFolder("source", null, user);
+        upload(new MockMultipartFile("file", "data.bin", "application/octet-stream", new byte[40]), folder, user);
+
+        folderService.copyFolder(folder.getId(), null, user.getId());
+        assertEquals(80L, usedBytes(user));
+        assertThrows(RuntimeException.class, () -> folderService.copyFolder(folder.getId(), null, user.getId()));
+        assertEquals(80L, usedBytes(user));
+        assertEquals(2, folderService.getRootFolders(user.getId()).size());
+    }
+
+    private User userWithQuota(String username) {
+        User user = userService.register(username, "secret");
+        user.setQuotaBytes(QUOTA);
+        return userRepository.save(user);
+    }
+
+    private long usedBytes(User user) {
+        Map<String, Object> usage = quotaService.getUsage(user.getId());
+        return (Long) usage.get("usedBytes");
+    }
+
+    private File upload(MockMultipartFile content, Folder folder, User user) throws Exception {
+        return fileService.uploadFile(content, folder.getId(), user.getId());
+    }
+}
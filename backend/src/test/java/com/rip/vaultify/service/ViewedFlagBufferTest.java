@@ -0,0 +1,171 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.Permission;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.repository.PermissionRepository;
+import com.rip.vaultify.repository.UserCountersRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ViewedFlagBufferTest {
+
+    // Long enough that the buffer's own timer never fires during a test
+    private static final long NO_TIMER_MS = 3_600_000;
+    private static final int ADDERS = 4;
+
+    @Autowired
+    private BulkShareService bulkShareService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private PermissionRepository permissionRepository;
+    @Autowired
+    private UserCountersRepository userCountersRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void marksAddedWhileFlushingAreNotLost() throws Exception {
+        User reader = userService.register("viewed-race-reader", "secret");
+        List<Long> shares = shareWith(reader, "viewed-race", 400);
+        ViewedFlagBuffer buffer = new ViewedFlagBuffer(permissionRepository, userCountersRepository,
+                transactionManager, NO_TIMER_MS);
+        ExecutorService pool = Executors.newFixedThreadPool(ADDERS + 1);
+        try {
+            AtomicBoolean adding = new AtomicBoolean(true);
+            Future<?> flusher = pool.submit(() -> {
+                while (adding.get()) {
+                    buffer.flush(reader.getId());
+                }
+            });
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < ADDERS; t++) {
+                int offset = t;
+                adders.add(pool.submit(() -> {
+                    for (int i = offset; i < shares.size(); i += ADDERS) {
+                        buffer.add(reader.getId(), shares.get(i));
+                        // Spread the marks over many flushes
+                        LockSupport.parkNanos(50_000);
+                    }
+                }));
+            }
+            for (Future<?> adder : adders) {
+                adder.get(30, TimeUnit.SECONDS);
+            }
+            adding.set(false);
+            flusher.get(30, TimeUnit.SECONDS);
+            buffer.flush(reader.getId());
+        } finally {
+            pool.shutdownNow();
+            buffer.shutdown();
+        }
+
+        assertAllViewed(shares);
+        assertEquals(0, userCountersRepository.findUnreadShares(reader.getId()));
+    }
+
+    @Test
+    void keepsABatchThatFailedToWrite() {
+        User reader = userService.register("viewed-retry-reader", "secret");
+        List<Long> shares = shareWith(reader, "viewed-retry", 3);
+        AtomicInteger failures = new AtomicInteger(1);
+        PlatformTransactionManager failingOnce = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new CannotCreateTransactionException("database unavailable");
+                }
+                return transactionManager.getTransaction(definition);
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                transactionManager.commit(status);
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                transactionManager.rollback(status);
+            }
+        };
+        ViewedFlagBuffer buffer = new ViewedFlagBuffer(permissionRepository, userCountersRepository,
+                failingOnce, NO_TIMER_MS);
+        try {
+            shares.forEach(id -> buffer.add(reader.getId(), id));
+            buffer.flush(reader.getId());
+            assertEquals(3, userCountersRepository.findUnreadShares(reader.getId()));
+
+            buffer.flush(reader.getId());
+        } finally {
+            buffer.shutdown();
+        }
+
+        assertAllViewed(shares);
+        assertEquals(0, userCountersRepository.findUnreadShares(reader.getId()));
+    }
+
+    private List<Long> shareWith(User reader, String prefix, int count) {
+        User owner = userService.register(prefix + "-owner", "secret");
+        Folder folder = folderService.createFolder(prefix, null, owner);
+        List<Long> fileIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            fileIds.add(addFile(owner, folder, prefix + "-" + i).getId());
+        }
+        bulkShareService.share(fileIds, List.of(reader.getUsername()), Permission.Access.READ, owner);
+        Set<Long> files = Set.copyOf(fileIds);
+        List<Long> shares = permissionRepository.findAll().stream()
+                .filter(p -> p.getUser().getId().equals(reader.getId()) && files.contains(p.getFile().getId()))
+                .map(Permission::getId)
+                .toList();
+        assertEquals(count, shares.size());
+        assertEquals(count, userCountersRepository.findUnreadShares(reader.getId()));
+        return shares;
+    }
+
+    private void assertAllViewed(List<Long> shares) {
+        for (Permission permission : permissionRepository.findAllById(shares)) {
+            assertTrue(permission.getViewed(), "permission " + permission.getId());
+        }
+    }
+
+    private File addFile(User user, Folder folder, String name) {
+        File file = new File();
+        file.setOriginalName(name);
+        file.setStoredName(name);
+        file.setContentType("application/octet-stream");
+        file.setSize(1L);
+        file.setFilePath(file.getStoredName());
+        file.setUploadedAt(LocalDateTime.now());
+        file.setFolder(folder);
+        file.setUser(user);
+        return fileRepository.save(file);
+    }
+}
@@ -0,0 +1,138 @@
+package com.rip.vaultify.service;
+
+import com.rip.vaultify.model.File;
+import com.rip.vaultify.model.Folder;
+import com.rip.vaultify.model.User;
+import com.rip.vaultify.repository.BlobRefRepository;
+import com.rip.vaultify.repository.FileRepository;
+import com.rip.vaultify.storage.BlobCopier;
+import com.rip.vaultify.storage.StorageIoMonitor;
+import com.rip.vaultify.storage.StorageVolume;
+import com.rip.vaultify.storage.StorageVolumes;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class VolumeRebalanceTest {
+
+    private static final long GRACE_SECONDS = 1;
+    private static final long DELETE_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private FolderService folderService;
+    @Autowired
+    private FileService fileService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PermissionService permissionService;
+    @Autowired
+    private FileRepository fileRepository;
+    @Autowired
+    private BlobRefRepository blobRefRepository;
+    @Autowired
+    private StorageVolumes storageVolumes;
+
+    @Test
+    void movesSharedBlobsOnceAndKeepsCopiesReadable() throws Exception {
+        User user = userService.register("rebalance-owner", "secret");
+        Folder template = folderService.createFolder("template", null, user);
+        Folder nested = folderService.createFolder("nested", template.getId(), user);
+        File alpha = upload(user, template, "alpha.txt", "alpha");
+        File beta = upload(user, nested, "beta.txt", "beta");
+        folderService.copyFolder(template.getId(), null, user.getId());
+        folderService.copyFolder(template.getId(), null, user.getId());
+        assertEquals(3, fileRepository.findBlobRowsByStoredName(alpha.getStoredName()).size());
+
+        // Drain the application's volume onto a new one
+        StorageVolume current = storageVolumes.getAllVolumes().get(0);
+        Path oldAlpha = current.resolve(alpha.getStoredName());
+        Path oldBeta = current.resolve(beta.getStoredName());
+        StorageVolumes drained = drainInto(current, Paths.get(current.getId() + "-rebalanced"));
+        Path newAlpha = drained.placementFor(alpha.getStoredName()).get(0).resolve(alpha.getStoredName());
+        VolumeRebalanceService rebalancer = new VolumeRebalanceService(fileRepository, blobRefRepository, drained,
+                new BlobCopier(), new StorageIoMonitor(), false, 100, 500, GRACE_SECONDS, Long.MAX_VALUE, 0);
+        try {
+            rebalancer.runRebalance();
+            // A copy that committed with the old location after the rows were repointed
+            File straggler = new File(alpha.getOriginalName(), alpha.getStoredName(), alpha.getContentType(),
+                    alpha.getSize(), alpha.getFilePath(), template, user);
+            straggler.setVolume(alpha.getVolume());
+            straggler.setReplicaVolumes(alpha.getReplicaVolumes());
+            straggler.setUploadedAt(LocalDateTime.now());
+            straggler = fileRepository.save(straggler);
+            permissionService.createOwnerPermission(straggler, user);
+
+            assertTrue(Files.exists(newAlpha));
+            for (FileRepository.FileBlobRow row : fileRepository.findBlobRowsByStoredName(alpha.getStoredName())) {
+                if (!row.getId().equals(straggler.getId())) {
+                    assertEquals(newAlpha.toString(), row.getFilePath(), "row " + row.getId());
+                }
+            }
+            assertReadable(user, alpha.getStoredName(), "alpha");
+            assertReadable(user, beta.getStoredName(), "beta");
+            awaitDeleted(oldBeta);
+            // Past the grace period, but the straggler still reads the old copy
+            Thread.sleep(GRACE_SECONDS * 1000 + 500);
+            assertTrue(Files.exists(oldAlpha));
+            assertReadable(user, alpha.getStoredName(), "alpha");
+
+            rebalancer.runRebalance();
+            assertEquals(newAlpha.toString(), fileRepository.findById(straggler.getId()).orElseThrow().getFilePath());
+            awaitDeleted(oldAlpha);
+            assertReadable(user, alpha.getStoredName(), "alpha");
+            assertReadable(user, beta.getStoredName(), "beta");
+        } finally {
+            rebalancer.shutdown();
+        }
+    }
+
+    private StorageVolumes drainInto(StorageVolume current, Path target) throws Exception {
+        StorageVolumes volumes = new StorageVolumes();
+        ReflectionTestUtils.setField(volumes, "configuredVolumes", target.toString());
+        ReflectionTestUtils.setField(volumes, "configuredDraining", current.getId());
+        ReflectionTestUtils.setField(volumes, "replicationFactor", 1);
+        volumes.init();
+        return volumes;
+    }
+
+    private void assertReadable(User user, String storedName, String content) throws Exception {
+        List<FileRepository.FileBlobRow> rows = fileRepository.findBlobRowsByStoredName(storedName);
+        assertFalse(rows.isEmpty());
+        for (FileRepository.FileBlobRow row : rows) {
+            assertArrayEquals(bytes(content), fileService.downloadFile(row.getId(), user.getId()), "row " + row.getId());
+        }
+    }
+
+    private static void awaitDeleted(Path path) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELETE_TIMEOUT_MS;
+        while (Files.exists(path) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(Files.exists(path), path + " still on disk");
+    }
+
+    private File upload(User user, Folder folder, String name, String content) throws Exception {
+        return fileService.uploadFile(new MockMultipartFile("file", name, "text/plain", bytes(content)),
+                folder.getId(), user.getId());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
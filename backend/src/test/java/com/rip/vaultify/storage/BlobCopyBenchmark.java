@@ -0,0 +1,107 @@
+package com.rip.vaultify.storage;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blob copy cost at 1 MB, 100 MB and 1 GB: BlobCopier (transferTo, copy_file_range on Linux)
+ * against a user-space stream copy and a {@code cp --reflink=auto} process per copy, the
+ * strategy it replaced. Excluded from the default build; run with {@code mvn test -Pbenchmark}.
+ * The largest size can be capped with -Dbenchmark.copy.max-mb.
+ */
+@Tag("benchmark")
+class BlobCopyBenchmark {
+
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final long[] SIZES_MB = {1, 100, 1024};
+    private static final int ROUNDS = 3;
+
+    private final long maxMb = Long.getLong("benchmark.copy.max-mb", 1024);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void copyThroughput() throws IOException {
+        BlobCopier copier = new BlobCopier();
+        for (long sizeMb : SIZES_MB) {
+            if (sizeMb > maxMb) {
+                continue;
+            }
+            Path source = root.resolve("source-" + sizeMb);
+            writeRandom(source, sizeMb * MEGABYTE);
+            Path target = root.resolve("target-" + sizeMb);
+            for (int round = 0; round <= ROUNDS; round++) {
+                // Round 0 is warm-up
+                boolean report = round > 0;
+                measure(report, sizeMb, "transferTo", () -> copier.copy(source, target));
+                measure(report, sizeMb, "stream", () -> streamCopy(source, target));
+                measure(report, sizeMb, "cp process", () -> processCopy(source, target));
+            }
+            Files.delete(source);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private interface CopyTask {
+        void run() throws IOException;
+    }
+
+    private void measure(boolean report, long sizeMb, String name, CopyTask task) throws IOException {
+        long started = System.nanoTime();
+        task.run();
+        long nanos = System.nanoTime() - started;
+        if (report) {
+            double seconds = nanos / 1e9;
+            System.out.printf("copy %5d MB %-12s %9.2f ms %10.1f MB/s%n",
+                    sizeMb, name, nanos / 1e6, sizeMb / seconds);
+        }
+    }
+
+    private static void streamCopy(Path source, Path target) throws IOException {
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+        }
+    }
+
+    private static void processCopy(Path source, Path target) throws IOException {
+        Process process = new ProcessBuilder("cp", "--reflink=auto", "-f", source.toString(), target.toString())
+                .redirectErrorStream(true)
+                .start();
+        try {
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IOException("cp failed for " + source);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeRandom(Path path, long length) throws IOException {
+        Random random = new Random(42);
+        byte[] block = new byte[(int) Math.min(length, 4 * MEGABYTE)];
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < length) {
+                random.nextBytes(block);
+                int n = (int) Math.min(block.length, length - written);
+                out.write(ByteBuffer.wrap(block, 0, n));
+                written += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ErasureCoderTest {
+
+    private static final int DATA = 6;
+    private static final int PARITY = 3;
+    private static final int CHUNK = 1024;
+    private static final int HEADER_SIZE = 16;
+
+    @TempDir
+    Path root;
+
+    private StorageVolumes volumes;
+    private ErasureCoder coder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        volumes = TestVolumes.create(root, DATA + PARITY);
+        coder = new ErasureCoder(volumes, new StorageIoMonitor(), true, DATA, PARITY, 0, CHUNK / 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        coder.shutdown();
+    }
+
+    @Test
+    void padsTheTailStripeAndRecordsTheLengthInEveryHeader() throws IOException {
+        // Two full stripes and a short third one
+        byte[] content = randomBytes(2 * DATA * CHUNK + 100);
+        File file = write(content);
+
+        List<Path> shards = shardPaths(file);
+        assertEquals(DATA + PARITY, shards.size());
+        for (Path shard : shards) {
+            assertEquals(HEADER_SIZE + 3L * CHUNK, Files.size(shard));
+            ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(shard), 0, HEADER_SIZE);
+            assertEquals(content.length, header.getLong(0));
+            assertEquals(CHUNK, header.getInt(Long.BYTES));
+        }
+        // Padding is not part of the blob
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    void readsBackWhenAnyParityCountOfShardsIsLost() throws IOException {
+        byte[] content = randomBytes(3 * DATA * CHUNK + 4321);
+        File file = write(content);
+        List<Path> shards = shardPaths(file);
+        byte[][] saved = readAll(shards);
+
+        for (int[] lost : new int[][]{{0, 1, 2}, {3, 4, 5}, {0, 5, 8}, {6, 7, 8}, {2, 6, 7}}) {
+            for (int shard : lost) {
+                Files.delete(shards.get(shard));
+            }
+            assertArrayEquals(content, read(file), "after losing shards " + List.of(lost[0], lost[1], lost[2]));
+            restore(shards, saved);
+        }
+    }
+
+    @Test
+    void refusesToReadWithMoreThanParityCountOfShardsLost() throws IOException {
+        File file = write(randomBytes(DATA * CHUNK));
+        List<Path> shards = shardPaths(file);
+        for (int shard = 0; shard <= PARITY; shard++) {
+            Files.delete(shards.get(shard));
+        }
+        assertFalse(coder.exists(file));
+        assertThrows(IOException.class, () -> coder.openRead(file).close());
+    }
+
+    @Test
+    void repairRebuildsLostShardsIdenticalToTheOriginals() throws IOException {
+        byte[] content = randomBytes(2 * DATA * CHUNK + 777);
+        File file = write(content);
+        List<Path> shards = shardPaths(file);
+        byte[][] original = readAll(shards);
+
+        Files.delete(shards.get(1));
+        try (FileChannel channel = FileChannel.open(shards.get(7), StandardOpenOption.WRITE)) {
+            channel.truncate(HEADER_SIZE + CHUNK);
+        }
+
+        ErasureCoder.RepairResult result = coder.repair(file);
+
+        assertEquals(2, result.rebuiltShards());
+        assertEquals(volumes.replicaIds(file),
+                result.shardVolumes().stream().map(StorageVolume::getId).collect(Collectors.toList()));
+        assertArrayEquals(original[1], Files.readAllBytes(shards.get(1)));
+        assertArrayEquals(original[7], Files.readAllBytes(shards.get(7)));
+        assertEquals(0, coder.repair(file).rebuiltShards());
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    void verifyPinsMissingAndRottenShardsAndStillHashesTheBlob() throws Exception {
+        byte[] content = randomBytes(2 * DATA * CHUNK + 555);
+        File file = write(content);
+        List<Path> shards = shardPaths(file);
+        byte[][] saved = readAll(shards);
+        String checksum = BlobChecksums.sha256(new ByteArrayInputStream(content));
+        assertShardStates(coder.verifyShards(file, bytes -> {}), checksum, -1);
+
+        // A lost shard and a flipped byte in a data shard
+        Files.delete(shards.get(4));
+        flipByte(shards.get(2), HEADER_SIZE + 10);
+        ErasureCoder.ShardReport report = coder.verifyShards(file, bytes -> {});
+        assertShardStates(report, checksum, 4, 2);
+        assertEquals(shards.get(4), report.shards().get(4).path());
+        restore(shards, saved);
+
+        // A flipped byte in a parity shard, in the second stripe
+        flipByte(shards.get(7), HEADER_SIZE + CHUNK + 3);
+        assertShardStates(coder.verifyShards(file, bytes -> {}), checksum, -1, 7);
+    }
+
+    @Test
+    void verifyFailsWhenTheFaultyShardCannotBeIdentified() throws Exception {
+        File file = write(randomBytes(DATA * CHUNK));
+        List<Path> shards = shardPaths(file);
+        // Two bad shards in one stripe: leaving out either one still leaves the other
+        flipByte(shards.get(0), HEADER_SIZE);
+        flipByte(shards.get(1), HEADER_SIZE);
+        assertThrows(IOException.class, () -> coder.verifyShards(file, bytes -> {}));
+    }
+
+    @Test
+    void verifyReportsNoChecksumWithFewerThanDataShardsLeft() throws Exception {
+        File file = write(randomBytes(DATA * CHUNK));
+        List<Path> shards = shardPaths(file);
+        for (int shard = 0; shard <= PARITY; shard++) {
+            Files.delete(shards.get(shard));
+        }
+        ErasureCoder.ShardReport report = coder.verifyShards(file, bytes -> {});
+        assertNull(report.checksum());
+        assertEquals(PARITY + 1, report.shards().stream()
+                .filter(s -> s.state() == ErasureCoder.ShardState.MISSING).count());
+    }
+
+    private static void assertShardStates(ErasureCoder.ShardReport report, String checksum, int missing, int... corrupt) {
+        assertEquals(checksum, report.checksum());
+        for (ErasureCoder.ShardCheck shard : report.shards()) {
+            ErasureCoder.ShardState expected = shard.shard() == missing ? ErasureCoder.ShardState.MISSING
+                    : Arrays.stream(corrupt).anyMatch(c -> c == shard.shard()) ? ErasureCoder.ShardState.CORRUPT
+                    : ErasureCoder.ShardState.OK;
+            assertEquals(expected, shard.state(), "shard " + shard.shard());
+        }
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0x5a));
+            channel.write(one.rewind(), position);
+        }
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = new File();
+        file.setId(1L);
+        file.setStoredName("blob-" + content.length);
+        file.setSize((long) content.length);
+        assertTrue(coder.appliesTo(file));
+        coder.write(file, new ByteArrayInputStream(content));
+        return file;
+    }
+
+    private byte[] read(File file) throws IOException {
+        try (InputStream in = coder.openRead(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private List<Path> shardPaths(File file) {
+        List<String> ids = volumes.replicaIds(file);
+        List<Path> paths = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            paths.add(coder.shardPath(volumes.getVolume(ids.get(i)).orElseThrow(), file, i));
+        }
+        return paths;
+    }
+
+    private static byte[][] readAll(List<Path> paths) throws IOException {
+        byte[][] contents = new byte[paths.size()][];
+        for (int i = 0; i < paths.size(); i++) {
+            contents[i] = Files.readAllBytes(paths.get(i));
+        }
+        return contents;
+    }
+
+    private static void restore(List<Path> paths, byte[][] contents) throws IOException {
+        for (int i = 0; i < paths.size(); i++) {
+            Files.write(paths.get(i), contents[i]);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,161 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Encode/decode throughput of the 6+3 layout. Excluded from the default build; run with
+ * {@code mvn test -Pbenchmark}. Sizes can be changed with -Dbenchmark.erasure.mb.
+ */
+@Tag("benchmark")
+class ErasureCodingBenchmark {
+
+    private static final int DATA = 6;
+    private static final int PARITY = 3;
+    private static final int CHUNK = 64 * 1024;
+    private static final long MEGABYTE = 1024 * 1024;
+    private static final int ROUNDS = 3;
+
+    private final long totalBytes = Long.getLong("benchmark.erasure.mb", 512) * MEGABYTE;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void codecThroughput() {
+        ReedSolomon codec = new ReedSolomon(DATA, PARITY);
+        byte[][] shards = new byte[DATA + PARITY][CHUNK];
+        Random random = new Random(42);
+        for (int d = 0; d < DATA; d++) {
+            random.nextBytes(shards[d]);
+        }
+        long stripes = totalBytes / ((long) DATA * CHUNK);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (int round = 0; round <= ROUNDS; round++) {
+                // Round 0 is warm-up
+                boolean report = round > 0;
+                measure(report, "encode, sequential", () -> {
+                    for (long s = 0; s < stripes; s++) {
+                        codec.encodeParity(shards, CHUNK, null);
+                    }
+                });
+                measure(report, "encode, parallel parity rows", () -> {
+                    for (long s = 0; s < stripes; s++) {
+                        codec.encodeParity(shards, CHUNK, executor);
+                    }
+                });
+                boolean[] present = {false, true, false, true, false, true, true, true, true};
+                measure(report, "decode, 3 data shards missing", () -> {
+                    for (long s = 0; s < stripes; s++) {
+                        codec.decodeMissing(shards, present, CHUNK, false);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void pipelineThroughput() throws IOException, InterruptedException {
+        StorageVolumes volumes = TestVolumes.create(root, DATA + PARITY);
+        ErasureCoder coder = new ErasureCoder(volumes, new StorageIoMonitor(), true, DATA, PARITY, 0, CHUNK / 1024);
+        try {
+            runPipeline(volumes, coder);
+        } finally {
+            coder.shutdown();
+        }
+    }
+
+    private void runPipeline(StorageVolumes volumes, ErasureCoder coder) throws IOException {
+        for (int round = 0; round <= ROUNDS; round++) {
+            boolean report = round > 0;
+            File file = new File();
+            file.setId((long) round);
+            file.setStoredName("benchmark-" + round);
+            file.setSize(totalBytes);
+            measureIo(report, "write (encode + 9 shard files)", () -> coder.write(file, new PatternInputStream(totalBytes)));
+            measureIo(report, "read, all shards", () -> drain(coder.openRead(file)));
+            List<String> shardVolumes = volumes.replicaIds(file);
+            for (int shard = 0; shard < PARITY; shard++) {
+                Files.delete(coder.shardPath(volumes.getVolume(shardVolumes.get(shard)).orElseThrow(), file, shard));
+            }
+            measureIo(report, "read, 3 data shards reconstructed", () -> drain(coder.openRead(file)));
+            coder.delete(file);
+        }
+    }
+
+    private interface IoTask {
+        void run() throws IOException;
+    }
+
+    private void measureIo(boolean report, String name, IoTask task) throws IOException {
+        long started = System.nanoTime();
+        task.run();
+        print(report, name, System.nanoTime() - started);
+    }
+
+    private void measure(boolean report, String name, Runnable task) {
+        long started = System.nanoTime();
+        task.run();
+        print(report, name, System.nanoTime() - started);
+    }
+
+    private void print(boolean report, String name, long nanos) {
+        if (report) {
+            double seconds = nanos / 1e9;
+            System.out.printf("erasure %-36s %8.1f MB/s (%d MB in %.2f s)%n",
+                    name, totalBytes / (double) MEGABYTE / seconds, totalBytes / MEGABYTE, seconds);
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        try (in) {
+            byte[] buffer = new byte[256 * 1024];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    /**
+     * Deterministic content of the given length without holding it in memory
+     */
+    private static final class PatternInputStream extends InputStream {
+        private final long length;
+        private long position;
+
+        PatternInputStream(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return position < length ? (int) (position++ * 31 & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) (position++ * 31);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.rip.vaultify.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * NIO against io_uring with 1k, 10k and 100k reads outstanding at once. Excluded from the
+ * default build; run with {@code mvn test -Pbenchmark}.
+ * <p>
+ * Positional reads: every request reads one block at a random offset of one of a few large
+ * files. NIO gives each request a virtual thread blocked in FileChannel.read; io_uring queues
+ * all of them on one ring. Stream reads: every request opens a small blob and reads it whole
+ * through the engine, as a download does (1k and 10k only; 100k open streams would need 100k
+ * file descriptors). The files are in the page cache after the first round, so this measures
+ * the cost per read in threads and system calls rather than the disk.
+ */
+@Tag("benchmark")
+class IoEngineBenchmark {
+
+    private static final int[] CONCURRENCY = {1_000, 10_000, 100_000};
+    private static final int[] STREAM_CONCURRENCY = {1_000, 10_000};
+    private static final int FILES = 16;
+    private static final long FILE_SIZE = 64L * 1024 * 1024;
+    private static final int BLOCK = Integer.getInteger("benchmark.io.block-kb", 4) * 1024;
+    private static final int BLOB = 16 * 1024;
+    private static final int ROUNDS = 3;
+
+    @TempDir
+    Path root;
+
+    private final List<Path> files = new ArrayList<>();
+    private IoUringEngine uring;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        for (int f = 0; f < FILES; f++) {
+            Path path = root.resolve("large-" + f);
+            try (OutputStream out = Files.newOutputStream(path)) {
+                for (long written = 0; written < FILE_SIZE; written += block.length) {
+                    out.write(block);
+                }
+            }
+            files.add(path);
+        }
+        uring = new IoUringEngine(Integer.getInteger("benchmark.io.uring-entries", 256), BLOB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        uring.close();
+    }
+
+    @Test
+    void positionalReads() throws Exception {
+        List<FileChannel> channels = new ArrayList<>();
+        int[] fds = new int[FILES];
+        try {
+            for (int f = 0; f < FILES; f++) {
+                channels.add(FileChannel.open(files.get(f), StandardOpenOption.READ));
+                fds[f] = IoUring.openForRead(files.get(f));
+            }
+            for (int concurrency : CONCURRENCY) {
+                long[][] targets = targets(concurrency);
+                for (int round = 0; round <= ROUNDS; round++) {
+                    // Round 0 is warm-up
+                    boolean report = round > 0;
+                    report(report, "nio, positional", concurrency, nioReads(channels, targets));
+                    report(report, "io_uring, positional", concurrency, uringReads(fds, targets));
+                }
+            }
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            for (int fd : fds) {
+                IoUring.closeFd(fd);
+            }
+        }
+    }
+
+    @Test
+    void streamReads() throws Exception {
+        int blobs = STREAM_CONCURRENCY[STREAM_CONCURRENCY.length - 1];
+        byte[] content = new byte[BLOB];
+        new Random(7).nextBytes(content);
+        List<Path> paths = new ArrayList<>(blobs);
+        for (int i = 0; i < blobs; i++) {
+            paths.add(Files.write(root.resolve("blob-" + i), content));
+        }
+        BlobIoEngine nio = new NioIoEngine();
+        for (int concurrency : STREAM_CONCURRENCY) {
+            for (int round = 0; round <= ROUNDS; round++) {
+                boolean report = round > 0;
+                report(report, "nio, open + read stream", concurrency, streams(nio, paths, concurrency));
+                report(report, "io_uring, open + read stream", concurrency, streams(uring, paths, concurrency));
+            }
+        }
+    }
+
+    /**
+     * File index and block-aligned offset for each request
+     */
+    private static long[][] targets(int count) {
+        Random random = new Random(count);
+        long blocks = FILE_SIZE / BLOCK;
+        long[][] targets = new long[count][];
+        for (int i = 0; i < count; i++) {
+            targets[i] = new long[]{random.nextInt(FILES), (random.nextLong(blocks)) * BLOCK};
+        }
+        return targets;
+    }
+
+    private static Result nioReads(List<FileChannel> channels, long[][] targets) throws Exception {
+        long[] latencies = new long[targets.length];
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < targets.length; i++) {
+                int request = i;
+                // Latency counts from submission, so time spent waiting for a carrier thread is included
+                long begun = System.nanoTime();
+                executor.execute(() -> {
+                    ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+                    try {
+                        channels.get((int) targets[request][0]).read(buffer, targets[request][1]);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    latencies[request] = System.nanoTime() - begun;
+                });
+            }
+        }
+        return new Result(System.nanoTime() - started, latencies);
+    }
+
+    private Result uringReads(int[] fds, long[][] targets) {
+        long[] latencies = new long[targets.length];
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment buffers = arena.allocate((long) targets.length * BLOCK, 4096);
+            CompletableFuture<?>[] reads = new CompletableFuture<?>[targets.length];
+            long started = System.nanoTime();
+            for (int i = 0; i < targets.length; i++) {
+                int request = i;
+                long begun = System.nanoTime();
+                reads[i] = uring.read(fds[(int) targets[i][0]], buffers.asSlice((long) i * BLOCK, BLOCK), targets[i][1])
+                        .thenRun(() -> latencies[request] = System.nanoTime() - begun);
+            }
+            CompletableFuture.allOf(reads).join();
+            return new Result(System.nanoTime() - started, latencies);
+        }
+    }
+
+    private static Result streams(BlobIoEngine engine, List<Path> paths, int concurrency) throws Exception {
+        long[] latencies = new long[concurrency];
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                int request = i;
+                // Latency counts from submission, so time spent waiting for a carrier thread is included
+                long begun = System.nanoTime();
+                executor.execute(() -> {
+                    try (InputStream in = engine.open(paths.get(request))) {
+                        in.readAllBytes();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    latencies[request] = System.nanoTime() - begun;
+                });
+            }
+        }
+        return new Result(System.nanoTime() - started, latencies);
+    }
+
+    private static void report(boolean report, String name, int concurrency, Result result) {
+        if (!report) {
+            return;
+        }
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        double seconds = result.elapsedNanos() / 1e9;
+        System.out.printf("io %-30s %,7d concurrent %,10.0f reads/s  p50 %7.2f ms  p99 %7.2f ms%n",
+                name, concurrency, concurrency / seconds,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6);
+    }
+
+    private record Result(long elapsedNanos, long[] latencies) {}
+}
@@ -0,0 +1,119 @@
+package com.rip.vaultify.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IoUringEngineTest {
+
+    // Small ring and chunks, so reads queue behind a full ring and streams span many chunks
+    private static final int ENTRIES = 8;
+    private static final int CHUNK = 4096;
+
+    @TempDir
+    Path root;
+
+    private IoUringEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        engine = new IoUringEngine(ENTRIES, CHUNK);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void readsFilesOfEverySizeAroundTheChunkBoundary() throws IOException {
+        for (int size : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 10 * CHUNK + 123}) {
+            byte[] content = randomBytes(size);
+            Path path = Files.write(root.resolve("blob-" + size), content);
+            assertArrayEquals(content, read(path), "size " + size);
+        }
+    }
+
+    @Test
+    void readsManyStreamsConcurrently() throws Exception {
+        int streams = 200;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            paths.add(Files.write(root.resolve("blob-" + i), randomBytes(3 * CHUNK + i)));
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (Path path : paths) {
+                reads.add(executor.submit(() -> read(path)));
+            }
+            for (int i = 0; i < streams; i++) {
+                assertArrayEquals(Files.readAllBytes(paths.get(i)), reads.get(i).get());
+            }
+        }
+    }
+
+    @Test
+    void readsSingleBytesAndPartialBuffers() throws IOException {
+        byte[] content = randomBytes(2 * CHUNK + 5);
+        Path path = Files.write(root.resolve("partial"), content);
+        try (InputStream in = engine.open(path)) {
+            assertEquals(content[0] & 0xff, in.read());
+            byte[] rest = new byte[content.length - 1];
+            int offset = 0;
+            int read;
+            while ((read = in.read(rest, offset, Math.min(1000, rest.length - offset))) > 0) {
+                offset += read;
+            }
+            assertEquals(rest.length, offset);
+            assertEquals(-1, in.read());
+            for (int i = 0; i < rest.length; i++) {
+                assertEquals(content[i + 1], rest[i]);
+            }
+        }
+    }
+
+    @Test
+    void reportsMissingFiles() {
+        assertThrows(NoSuchFileException.class, () -> engine.open(root.resolve("missing")));
+    }
+
+    @Test
+    void closingMidStreamReleasesTheStream() throws IOException {
+        Path path = Files.write(root.resolve("abandoned"), randomBytes(20 * CHUNK));
+        for (int i = 0; i < 100; i++) {
+            try (InputStream in = engine.open(path)) {
+                in.readNBytes(CHUNK + 1);
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(path), read(path));
+    }
+
+    private byte[] read(Path path) throws IOException {
+        try (InputStream in = engine.open(path)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
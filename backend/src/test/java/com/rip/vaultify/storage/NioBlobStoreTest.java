@@ -0,0 +1,153 @@
+package com.rip.vaultify.storage;
+
+import com.rip.vaultify.model.File;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioBlobStoreTest {
+
+    private static final int REPLICAS = 3;
+    private static final int BLOB_SIZE = 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private StorageVolumes volumes;
+    private ErasureCoder erasureCoder;
+    private NioBlobStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        volumes = TestVolumes.create(root, REPLICAS, REPLICAS);
+        erasureCoder = new ErasureCoder(volumes, new StorageIoMonitor(), false, 6, 3, 8, 64);
+        store = new NioBlobStore(new BlobCopier(), volumes, erasureCoder, new NioIoEngine(), new StorageIoMonitor(), 0, 5000, 50, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.shutdown();
+        erasureCoder.shutdown();
+    }
+
+    @Test
+    void writesEveryReplicaAndReadsBack() throws IOException {
+        byte[] content = randomBytes(BLOB_SIZE);
+        File file = write("all", content);
+
+        assertEquals(REPLICAS, volumes.replicaIds(file).size());
+        for (StorageVolumes.Replica replica : volumes.replicasOf(file)) {
+            assertArrayEquals(content, Files.readAllBytes(replica.path()));
+        }
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    void recordsOnlyTheReplicasThatWereWritten() throws IOException {
+        List<StorageVolume> placement = volumes.placementFor("broken");
+        StorageVolume broken = placement.get(1);
+        block(broken, "broken");
+
+        File file = write("broken", randomBytes(BLOB_SIZE));
+
+        List<String> recorded = volumes.replicaIds(file);
+        assertEquals(List.of(placement.get(0).getId(), placement.get(2).getId()), recorded);
+        assertFalse(recorded.contains(broken.getId()));
+    }
+
+    @Test
+    void removesWrittenReplicasWhenQuorumIsLost() throws IOException {
+        List<StorageVolume> placement = volumes.placementFor("lost");
+        block(placement.get(0), "lost");
+        block(placement.get(1), "lost");
+
+        assertThrows(IOException.class, () -> write("lost", randomBytes(BLOB_SIZE)));
+        assertFalse(Files.exists(placement.get(2).resolve("lost")));
+    }
+
+    @Test
+    void failsOverWhenAReplicaIsMissing() throws IOException {
+        byte[] content = randomBytes(BLOB_SIZE);
+        File file = write("missing", content);
+        List<StorageVolumes.Replica> replicas = volumes.replicasOf(file);
+        Files.delete(replicas.get(0).path());
+        Files.delete(replicas.get(1).path());
+
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    void failsOverInTheMiddleOfTheStream() throws IOException {
+        byte[] content = randomBytes(BLOB_SIZE);
+        File file = write("truncated", content);
+        List<StorageVolumes.Replica> replicas = volumes.replicasOf(file);
+        // Both cut past the first chunk the hedged open reads, so the failure shows up mid-stream
+        truncate(replicas.get(0).path(), 600 * 1024);
+        truncate(replicas.get(1).path(), 700 * 1024);
+
+        assertArrayEquals(content, read(file));
+    }
+
+    @Test
+    void failsWhenEveryReplicaIsBroken() throws IOException {
+        File file = write("gone", randomBytes(BLOB_SIZE));
+        for (StorageVolumes.Replica replica : volumes.replicasOf(file)) {
+            truncate(replica.path(), 300 * 1024);
+        }
+
+        assertThrows(IOException.class, () -> read(file));
+        assertTrue(store.exists(file));
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = new File();
+        file.setId(1L);
+        file.setStoredName(name);
+        file.setSize((long) content.length);
+        store.write(file, new ByteArrayInputStream(content));
+        return file;
+    }
+
+    private byte[] read(File file) throws IOException {
+        try (InputStream in = store.openRead(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Make the blob path unwritable on a volume: a non-empty directory cannot be opened or deleted as a file
+     */
+    private static void block(StorageVolume volume, String storedName) throws IOException {
+        Path blocker = Files.createDirectories(volume.resolve(storedName));
+        Files.writeString(blocker.resolve("keep"), "x");
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
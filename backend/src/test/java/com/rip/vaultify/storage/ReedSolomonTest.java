@@ -0,0 +1,113 @@
+package com.rip.vaultify.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReedSolomonTest {
+
+    private static final int DATA = 6;
+    private static final int PARITY = 3;
+    private static final int LENGTH = 1024;
+
+    @Test
+    void decodesAfterLosingAnyParityCountOfShards() {
+        ReedSolomon codec = new ReedSolomon(DATA, PARITY);
+        byte[][] original = encodedShards(codec, new Random(31));
+
+        for (List<Integer> lost : combinations(DATA + PARITY, PARITY)) {
+            byte[][] shards = copy(original);
+            boolean[] present = new boolean[DATA + PARITY];
+            Arrays.fill(present, true);
+            for (int shard : lost) {
+                present[shard] = false;
+                Arrays.fill(shards[shard], (byte) 0x5A);
+            }
+
+            codec.decodeMissing(shards, present, LENGTH, true);
+
+            for (int i = 0; i < shards.length; i++) {
+                assertArrayEquals(original[i], shards[i], "shard " + i + " after losing " + lost);
+            }
+        }
+    }
+
+    @Test
+    void parallelEncodingMatchesSequential() {
+        ReedSolomon codec = new ReedSolomon(DATA, PARITY);
+        byte[][] sequential = encodedShards(codec, new Random(7));
+        byte[][] parallel = copy(sequential);
+        for (int p = DATA; p < DATA + PARITY; p++) {
+            parallel[p] = new byte[LENGTH];
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(PARITY);
+        try {
+            codec.encodeParity(parallel, LENGTH, executor);
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < sequential.length; i++) {
+            assertArrayEquals(sequential[i], parallel[i]);
+        }
+    }
+
+    @Test
+    void refusesToDecodeWithTooFewShards() {
+        ReedSolomon codec = new ReedSolomon(DATA, PARITY);
+        byte[][] shards = encodedShards(codec, new Random(1));
+        boolean[] present = new boolean[DATA + PARITY];
+        for (int i = 0; i < DATA - 1; i++) {
+            present[i] = true;
+        }
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeMissing(shards, present, LENGTH, true));
+    }
+
+    @Test
+    void rejectsInvalidShardCounts() {
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomon(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomon(200, 57));
+    }
+
+    private static byte[][] encodedShards(ReedSolomon codec, Random random) {
+        byte[][] shards = new byte[codec.getTotalShards()][LENGTH];
+        for (int d = 0; d < codec.getDataShards(); d++) {
+            random.nextBytes(shards[d]);
+        }
+        codec.encodeParity(shards, LENGTH, null);
+        return shards;
+    }
+
+    private static byte[][] copy(byte[][] shards) {
+        byte[][] copy = new byte[shards.length][];
+        for (int i = 0; i < shards.length; i++) {
+            copy[i] = shards[i].clone();
+        }
+        return copy;
+    }
+
+    private static List<List<Integer>> combinations(int n, int k) {
+        List<List<Integer>> result = new ArrayList<>();
+        collect(n, k, 0, new ArrayList<>(), result);
+        return result;
+    }
+
+    private static void collect(int n, int k, int start, List<Integer> current, List<List<Integer>> result) {
+        if (current.size() == k) {
+            result.add(List.copyOf(current));
+            return;
+        }
+        for (int i = start; i < n; i++) {
+            current.add(i);
+            collect(n, k, i + 1, current, result);
+            current.remove(current.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.rip.vaultify.storage;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * StorageVolumes over numbered directories under a test's temporary root
+ */
+final class TestVolumes {
+
+    private TestVolumes() {}
+
+    static StorageVolumes create(Path root, int count) throws IOException {
+        return create(root, count, 1);
+    }
+
+    static StorageVolumes create(Path root, int count, int replicationFactor) throws IOException {
+        StorageVolumes volumes = new StorageVolumes();
+        String dirs = IntStream.range(0, count)
+                .mapToObj(i -> root.resolve("volume" + i).toString())
+                .collect(Collectors.joining(","));
+        ReflectionTestUtils.setField(volumes, "configuredVolumes", dirs);
+        ReflectionTestUtils.setField(volumes, "replicationFactor", replicationFactor);
+        volumes.init();
+        return volumes;
+    }
+}